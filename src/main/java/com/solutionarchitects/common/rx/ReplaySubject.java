@@ -10,6 +10,7 @@ import rx.Scheduler;
 import rx.annotations.Beta;
 import rx.exceptions.Exceptions;
 import rx.functions.Action1;
+import rx.functions.Func0;
 import rx.functions.Func1;
 import rx.functions.Func2;
 import rx.internal.operators.NotificationLite;
@@ -147,9 +148,9 @@ public  class ReplaySubject<T> extends Subject<T, T> {
      * {@code size} {@code onNext} events followed by a termination event.
      * <p>
      * If an observer subscribes while the {@code ReplaySubject} is active, it will observe all items in the
-     * buffer at that point in time and each item observed afterwards, even if the buffer evicts items due to
-     * the size constraint in the mean time. In other words, once an Observer subscribes, it will receive items
-     * without gaps in the sequence.
+     * buffer at that point in time and each item observed afterwards. The items are held in an array ring of the
+     * next power of two above {@code size}, so an observer that is still replaying the buffer when more than that
+     * many items arrive continues with the oldest item retained at that point.
      *
      * @param <T>
      *          the type of items observed and emitted by the Subject
@@ -158,6 +159,13 @@ public  class ReplaySubject<T> extends Subject<T, T> {
      * @return the created subject
      */
     public static <T> ReplaySubject<T> createWithSize(int size) {
+        return createWithRingBufferState(new RingBufferState<T>(size));
+    }
+    /**
+     * Creates a size-bounded replay subject on a linked list of nodes, which lets an observer replaying the buffer
+     * see every item without gaps at the cost of one node per item. Kept for comparison with {@link #createWithSize}.
+     */
+    /* public */ static <T> ReplaySubject<T> createWithSizeLinked(int size) {
         final BoundedState<T> state = new BoundedState<T>(
                 new SizeEvictionPolicy(size),
                 UtilityFunctions.identity(),
@@ -313,6 +321,63 @@ public  class ReplaySubject<T> extends Subject<T, T> {
 
 
 
+    /**
+     * Creates a size-bounded replay subject on an array ring, observers replay from the sequence number of the
+     * oldest retained item.
+     */
+    static <T> ReplaySubject<T> createWithRingBufferState(final RingBufferState<T> state) {
+        SubjectSubscriptionManager<T> ssm = new SubjectSubscriptionManager<T>();
+        ssm.onStart = o -> o.index(state.replayObserverFromIndex(state.head(), o));
+        ssm.onAdded = o -> {
+            synchronized (o) {
+                if (!o.first || o.emitting) {
+                    return;
+                }
+                o.first = false;
+                o.emitting = true;
+            }
+            boolean skipFinal = false;
+            try {
+                for (;;) {
+                    long idx = o.<Long>index();
+                    if (idx == SnapshotDeltaState.LAPPED) {
+                        break;
+                    }
+                    long sidx = state.tail;
+                    if (idx != sidx) {
+                        o.index(state.replayObserverFromIndex(idx, o));
+                    }
+                    synchronized (o) {
+                        if (sidx == state.tail) {
+                            o.emitting = false;
+                            skipFinal = true;
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                if (!skipFinal) {
+                    synchronized (o) {
+                        o.emitting = false;
+                    }
+                }
+            }
+        };
+        ssm.onTerminated = t1 -> {
+            Long l = t1.index();
+            if (l == null) {
+                l = state.head();
+            }
+            state.replayObserverFromIndex(l, t1);
+        };
+
+        return new ReplaySubject<T>(ssm, ssm, state);
+    }
+
+    /**
+     * Creates a subject sending each subscriber the state accumulated so far and then the values after it, the first
+     * value being the initial state.
+     */
     public static <T> ReplaySubject<T> createWithSnapshotDeltaState(Func2<Object, Object, Object> accumulator) {
         final SnapshotDeltaState<T> state = new SnapshotDeltaState<T>(
                 accumulator
@@ -320,54 +385,77 @@ public  class ReplaySubject<T> extends Subject<T, T> {
         return createWithSnapshotDeltaState(state);
     }
 
+    /**
+     * Creates a subject sending each subscriber the state accumulated so far and then the values after it, the first
+     * value being folded into the provided state.
+     */
+    public static <T> ReplaySubject<T> createWithSnapshotDeltaState(Func0<Object> initialStateProvider, Func2<Object, Object, Object> accumulator) {
+        final SnapshotDeltaWithCollectionState<T> state = new SnapshotDeltaWithCollectionState<T>(
+                initialStateProvider, accumulator
+        );
+        return createWithSnapshotDeltaState(state);
+    }
 
-    protected static <T> ReplaySubject<T> createWithSnapshotDeltaState(final SnapshotDeltaState<T> state) {
-        SubjectSubscriptionManager<T> ssm = new SubjectSubscriptionManager<T>();
-        ssm.onStart = tSubjectObserver -> {
-            state.replayObserver(tSubjectObserver);
-            tSubjectObserver.caughtUp = true;
-        };
-        ssm.onAdded = tSubjectObserver -> {
-
-        };
-        ssm.onTerminated = t1 -> {
-           System.out.println("SnapshotDelta State Terminated");
-        };
 
+    protected static <T> ReplaySubject<T> createWithSnapshotDeltaState(final SnapshotDeltaState<T> state) {
+        SubjectSubscriptionManager<T> ssm = createSubjectSubscriptionManagerWithSnapshotDelta(state);
         return new ReplaySubject<T>(ssm, ssm, state);
     }
 
+    /**
+     * The observer is sent one snapshot before it is added and replays the deltas from the snapshot's version once
+     * added, so the deltas published in between are neither missed nor sent twice. An observer the producer laps
+     * while it replays is ended with an error instead.
+     */
     protected static <T> SubjectSubscriptionManager<T> createSubjectSubscriptionManagerWithSnapshotDelta(final SnapshotDeltaState<T> state) {
         SubjectSubscriptionManager<T> ssm = new SubjectSubscriptionManager<T>();
-        ssm.onStart = tSubjectObserver -> {
-            state.replayObserver(tSubjectObserver);
-            tSubjectObserver.caughtUp = true;
-        };
-        ssm.onAdded = tSubjectObserver -> {
-
+        ssm.onStart = o -> o.index(state.replaySnapshot(o));
+        ssm.onAdded = o -> {
+            synchronized (o) {
+                if (!o.first || o.emitting) {
+                    return;
+                }
+                o.first = false;
+                o.emitting = true;
+            }
+            boolean skipFinal = false;
+            try {
+                for (;;) {
+                    long idx = o.<Long>index();
+                    long sidx = state.tail;
+                    if (idx != sidx) {
+                        o.index(state.replayObserverFromIndex(idx, o));
+                    }
+                    synchronized (o) {
+                        if (sidx == state.tail) {
+                            o.emitting = false;
+                            skipFinal = true;
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                if (!skipFinal) {
+                    synchronized (o) {
+                        o.emitting = false;
+                    }
+                }
+            }
         };
         ssm.onTerminated = t1 -> {
-            System.out.println("SnapshotDelta State Terminated");
+            Long l = t1.index();
+            if (l == null) {
+                l = state.replaySnapshot(t1);
+            }
+            state.replayObserverFromIndex(l, t1);
         };
 
-        return  ssm;
+        return ssm;
     }
 
 
     protected static <T> SubjectSubscriptionManager<T> createSubjectSubscriptionManagerWithSnapshotDeltaWithCollection(final SnapshotDeltaWithCollectionState<T> state) {
-        SubjectSubscriptionManager<T> ssm = new SubjectSubscriptionManager<T>();
-        ssm.onStart = tSubjectObserver -> {
-            state.replayObserver(tSubjectObserver);
-            tSubjectObserver.caughtUp = true;
-        };
-        ssm.onAdded = tSubjectObserver -> {
-
-        };
-        ssm.onTerminated = t1 -> {
-            System.out.println("SnapshotDelta State Terminated");
-        };
-
-        return  ssm;
+        return createSubjectSubscriptionManagerWithSnapshotDelta(state);
     }
 
 
@@ -0,0 +1,191 @@
+package com.solutionarchitects.common.rx;
+
+import rx.internal.operators.NotificationLite;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The size-bounded replay state backed by a power-of-two array ring.
+ * <p>
+ * Every notification gets the next sequence number and goes into the slot {@code sequence & mask}, so the buffer
+ * allocates nothing per item and {@link #size()} and {@link #latest()} are computed from the sequence numbers alone.
+ * Observers keep the sequence of the next notification to replay as a {@code Long} index.
+ * <p>
+ * The ring holds the {@code maxSize} values plus the terminal notification. An observer still replaying when the
+ * writer laps it continues from the oldest retained value, which is the one difference to {@link BoundedState},
+ * where evicted nodes stay reachable from a lagging observer.
+ *
+ * @param <T> the input and output type
+ */
+final class RingBufferState<T> implements ReplayState<T, Long> {
+
+    final NotificationLite<T> nl = NotificationLite.instance();
+
+    final AtomicReferenceArray<Object> ring;
+
+    final int mask;
+
+    final int maxSize;
+
+    /** The sequence of the next notification, published after its slot is written. */
+    volatile long tail;
+
+    /** The sequence of the terminal notification, written before it is published. */
+    volatile long end = Long.MAX_VALUE;
+
+    volatile boolean terminated;
+
+    public RingBufferState(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize > 0 required but it was " + maxSize);
+        }
+        if (maxSize >= 1 << 30) {
+            throw new IllegalArgumentException("maxSize < 2^30 required but it was " + maxSize);
+        }
+        int capacity = Integer.highestOneBit(maxSize) << 1;
+        this.ring = new AtomicReferenceArray<Object>(capacity);
+        this.mask = capacity - 1;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void next(T value) {
+        if (!terminated) {
+            long t = tail;
+            ring.lazySet((int) t & mask, nl.next(value));
+            tail = t + 1;
+        }
+    }
+
+    @Override
+    public void error(Throwable e) {
+        terminate(nl.error(e));
+    }
+
+    @Override
+    public void complete() {
+        terminate(nl.completed());
+    }
+
+    private void terminate(Object notification) {
+        if (!terminated) {
+            terminated = true;
+            long t = tail;
+            ring.lazySet((int) t & mask, notification);
+            end = t;
+            tail = t + 1;
+        }
+    }
+
+    /**
+     * @return the number of values written, not counting the terminal notification
+     */
+    private long values() {
+        return Math.min(tail, end);
+    }
+
+    /**
+     * @return the sequence of the oldest retained value
+     */
+    public long head() {
+        return Math.max(0, values() - maxSize);
+    }
+
+    /**
+     * @return true if the slot of the sequence may have been overwritten since it was read
+     */
+    private boolean lapped(long sequence) {
+        // the writer may be filling the slot of tail, unless everything up to the terminal notification is written
+        return Math.min(tail, end) > sequence + mask;
+    }
+
+    @Override
+    public boolean terminated() {
+        return terminated;
+    }
+
+    @Override
+    public boolean replayObserver(SubjectSubscriptionManager.SubjectObserver<? super T> observer) {
+        synchronized (observer) {
+            observer.first = false;
+            if (observer.emitting) {
+                return false;
+            }
+        }
+
+        Long index = observer.index();
+        observer.index(replayObserverFromIndex(index == null ? head() : index, observer));
+        return true;
+    }
+
+    @Override
+    public Long replayObserverFromIndex(Long index, SubjectSubscriptionManager.SubjectObserver<? super T> observer) {
+        long i = index;
+        long t = tail;
+        while (i < t) {
+            Object v = ring.get((int) i & mask);
+            // one read of tail per value both validates it and tells whether more arrived
+            t = tail;
+            if (t - i > mask && lapped(i)) {
+                i = head();
+                continue;
+            }
+            nl.accept(observer, v);
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public Long replayObserverFromIndexTest(Long index, SubjectSubscriptionManager.SubjectObserver<? super T> observer, long now) {
+        // values never get stale by size
+        return replayObserverFromIndex(index, observer);
+    }
+
+    @Override
+    public int size() {
+        long v = values();
+        return (int) Math.min(v, maxSize);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return values() == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T[] toArray(T[] a) {
+        for (; ; ) {
+            long last = values();
+            long first = Math.max(0, last - maxSize);
+            int n = (int) (last - first);
+            T[] r = a.length >= n ? a : Arrays.copyOf(a, n);
+            for (int i = 0; i < n; i++) {
+                r[i] = nl.getValue(ring.get((int) (first + i) & mask));
+            }
+            if (n != 0 && lapped(first)) {
+                continue;
+            }
+            if (r.length > n) {
+                r[n] = null;
+            }
+            return r;
+        }
+    }
+
+    @Override
+    public T latest() {
+        for (; ; ) {
+            long last = values();
+            if (last == 0) {
+                return null;
+            }
+            Object v = ring.get((int) (last - 1) & mask);
+            if (!lapped(last - 1)) {
+                return nl.getValue(v);
+            }
+        }
+    }
+}
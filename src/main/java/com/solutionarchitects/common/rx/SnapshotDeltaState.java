@@ -1,25 +1,121 @@
 package com.solutionarchitects.common.rx;
 
+import rx.exceptions.MissingBackpressureException;
+import rx.functions.Func0;
 import rx.functions.Func2;
 import rx.internal.operators.NotificationLite;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
- * Created by e211303 on 3/24/2016.
+ * The state of a subject that sends a new subscriber the accumulated state first and the deltas after it.
+ * <p>
+ * Every delta is folded into a new immutable {@link Snapshot} carrying its version, the number of deltas it
+ * contains, and is also written into an array ring at the sequence number {@code version - 1}. The accumulator must
+ * return a new state rather than modify the one it is given, so a published snapshot never changes. A subscriber
+ * reads one snapshot, then replays the ring from the snapshot's version, which gives it the deltas that snapshot
+ * does not contain. Observers keep the sequence of the next delta to replay as a {@code Long} index.
+ * <p>
+ * The producer publishes with two volatile writes and takes no lock, so it can lap an observer still replaying. The
+ * deltas that observer is missing are gone then, and a snapshot in the middle of the deltas could not be told apart
+ * from one, so the observer is ended with a {@link MissingBackpressureException} and may subscribe again.
+ * {@link #getLapped()} counts these.
+ *
+ * @param <T> the input and output type
  */
-public class SnapshotDeltaState<T> implements ReplayState<T, NodeList.Node<Object>> {
+public class SnapshotDeltaState<T> implements ReplayState<T, Long> {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /** The index of an observer ended because the producer lapped it, nothing is replayed to it any more. */
+    static final long LAPPED = Long.MAX_VALUE;
+
+    /**
+     * An accumulated state and the number of deltas folded into it.
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(0, null);
+
+        final long version;
+
+        final Object value;
+
+        Snapshot(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return the accumulated state, null before the first delta
+         */
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    private final Func0<Object> initialStateProvider;
 
     private final Func2<Object, Object, Object> accumulator;
-    volatile boolean terminated;
+
     final NotificationLite<T> notificationLite = NotificationLite.instance();
 
-    Object latestObject =null;
+    final AtomicReferenceArray<Object> ring;
 
+    final int mask;
 
-    public SnapshotDeltaState( Func2<Object,Object, Object> accumulator) {
+    final int maxSize;
 
-        this.accumulator = accumulator;
+    /** Published before {@link #tail}, so its version is never behind it. */
+    volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /** The sequence of the next notification, published after its slot is written. */
+    volatile long tail;
+
+    /** The sequence of the terminal notification, written before it is published. */
+    volatile long end = Long.MAX_VALUE;
+
+    volatile boolean terminated;
+
+    final LongAdder lapped = new LongAdder();
+
+    /**
+     * The first delta is the initial state.
+     */
+    public SnapshotDeltaState(Func2<Object, Object, Object> accumulator) {
+        this(null, accumulator, DEFAULT_CAPACITY);
     }
 
+    /**
+     * @param capacity the deltas retained for subscribers still replaying
+     */
+    public SnapshotDeltaState(Func2<Object, Object, Object> accumulator, int capacity) {
+        this(null, accumulator, capacity);
+    }
+
+    /**
+     * @param initialStateProvider the state the first delta is folded into, null if the first delta is the state
+     */
+    protected SnapshotDeltaState(Func0<Object> initialStateProvider, Func2<Object, Object, Object> accumulator, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        }
+        if (capacity >= 1 << 30) {
+            throw new IllegalArgumentException("capacity < 2^30 required but it was " + capacity);
+        }
+        int length = Integer.highestOneBit(capacity) << 1;
+        this.initialStateProvider = initialStateProvider;
+        this.accumulator = accumulator;
+        this.ring = new AtomicReferenceArray<Object>(length);
+        this.mask = length - 1;
+        this.maxSize = capacity;
+    }
 
     @Override
     public boolean terminated() {
@@ -27,72 +123,178 @@ public class SnapshotDeltaState<T> implements ReplayState<T, NodeList.Node<Objec
     }
 
     @Override
-    public boolean replayObserver(SubjectSubscriptionManager.SubjectObserver<? super T> observer) {
-        synchronized (observer) {
-            observer.first = false;
-            if (observer.emitting) {
-                return false;
+    public void next(T value) {
+        if (!terminated) {
+            Snapshot s = snapshot;
+            Object state;
+            if (s.value != null) {
+                state = accumulator.call(s.value, value);
+            } else if (initialStateProvider != null) {
+                state = accumulator.call(initialStateProvider.call(), value);
+            } else {
+                state = value;
             }
+            long t = tail;
+            ring.lazySet((int) t & mask, notificationLite.next(value));
+            snapshot = new Snapshot(t + 1, state);
+            tail = t + 1;
         }
-        if(latestObject != null) {
-            notificationLite.accept(observer,latestObject );
-            return true;
-        }
-
-        return false;
     }
 
     @Override
-    public NodeList.Node<Object> replayObserverFromIndex(NodeList.Node<Object> idx, SubjectSubscriptionManager.SubjectObserver<? super T> observer) {
-        return null;
+    public void error(Throwable e) {
+        terminate(notificationLite.error(e));
     }
 
     @Override
-    public NodeList.Node<Object> replayObserverFromIndexTest(NodeList.Node<Object> idx, SubjectSubscriptionManager.SubjectObserver<? super T> observer, long now) {
-        return null;
+    public void complete() {
+        terminate(notificationLite.completed());
     }
 
-    @Override
-    public void next(T value) {
+    private void terminate(Object notification) {
+        if (!terminated) {
+            terminated = true;
+            long t = tail;
+            ring.lazySet((int) t & mask, notification);
+            end = t;
+            tail = t + 1;
+        }
+    }
 
-        if(latestObject == null){
-            latestObject = value;
-        }else{
-            latestObject = accumulator.call(latestObject,value);
+    /**
+     * @return the latest snapshot, its version is the sequence of the first delta it does not contain
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Sends the latest snapshot, unless nothing was accumulated yet.
+     *
+     * @return the sequence of the first delta to replay after it
+     */
+    @SuppressWarnings("unchecked")
+    public long replaySnapshot(SubjectSubscriptionManager.SubjectObserver<? super T> observer) {
+        Snapshot s = snapshot;
+        if (s.value != null) {
+            observer.onNext((T) s.value);
         }
-        notificationLite.next(value);
+        return s.version;
+    }
+
+    /**
+     * @return the number of deltas written, not counting the terminal notification
+     */
+    private long values() {
+        return Math.min(tail, end);
+    }
+
+    /**
+     * @return the sequence of the oldest retained delta
+     */
+    public long head() {
+        return Math.max(0, values() - maxSize);
+    }
+
+    /**
+     * @return true if the slot of the sequence may have been overwritten since it was read
+     */
+    private boolean lapped(long sequence) {
+        // the writer may be filling the slot of tail, unless everything up to the terminal notification is written
+        return Math.min(tail, end) > sequence + mask;
     }
 
     @Override
-    public void error(Throwable e) {
+    public boolean replayObserver(SubjectSubscriptionManager.SubjectObserver<? super T> observer) {
+        synchronized (observer) {
+            observer.first = false;
+            if (observer.emitting) {
+                return false;
+            }
+        }
 
+        Long index = observer.index();
+        long next = replayObserverFromIndex(index == null ? replaySnapshot(observer) : index, observer);
+        observer.index(next);
+        // a lapped observer is never caught up, so it is not sent the values published later
+        return next != LAPPED;
     }
 
     @Override
-    public void complete() {
-        if (!terminated) {
-            terminated = true;
+    public Long replayObserverFromIndex(Long index, SubjectSubscriptionManager.SubjectObserver<? super T> observer) {
+        long i = index;
+        long t = tail;
+        while (i < t) {
+            Object v = ring.get((int) i & mask);
+            t = tail;
+            if (t - i > mask && lapped(i)) {
+                // the deltas the observer is missing are gone
+                lapped.increment();
+                observer.onError(new MissingBackpressureException("Lapped " + (t - i) + " deltas behind at version " + i));
+                return LAPPED;
+            }
+            notificationLite.accept(observer, v);
+            i++;
         }
+        return i;
     }
 
+    @Override
+    public Long replayObserverFromIndexTest(Long index, SubjectSubscriptionManager.SubjectObserver<? super T> observer, long now) {
+        // deltas never get stale
+        return replayObserverFromIndex(index, observer);
+    }
+
+    /**
+     * @return the number of deltas retained
+     */
     @Override
     public int size() {
-        return 0;
+        return (int) Math.min(values(), maxSize);
     }
 
     @Override
     public boolean isEmpty() {
-        return false;
+        return values() == 0;
     }
 
+    /**
+     * Copies the retained deltas.
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public T[] toArray(T[] a) {
+        for (; ; ) {
+            long last = values();
+            long first = Math.max(0, last - maxSize);
+            int n = (int) (last - first);
+            T[] r = a.length >= n ? a : Arrays.copyOf(a, n);
+            for (int i = 0; i < n; i++) {
+                r[i] = notificationLite.getValue(ring.get((int) (first + i) & mask));
+            }
+            if (n != 0 && lapped(first)) {
+                continue;
+            }
+            if (r.length > n) {
+                r[n] = null;
+            }
+            return r;
+        }
+    }
 
-        return null;
+    /**
+     * @return the number of observers ended because the producer lapped them
+     */
+    public long getLapped() {
+        return lapped.sum();
     }
 
+    /**
+     * @return the accumulated state of the latest snapshot
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public T latest() {
-        return (T) latestObject;
+        return (T) snapshot.value;
     }
 }
@@ -0,0 +1,27 @@
+package com.solutionarchitects.common.rx.v2;
+
+/**
+ * Behavior subject for {@code double} values: a new observer is sent the latest value, or the default value if there
+ * is none yet, and every value after it. An observer subscribing after termination only gets the terminal event.
+ */
+public final class DoubleBehaviorSubject extends DoubleReplaySubject {
+
+    public static DoubleBehaviorSubject create() {
+        return new DoubleBehaviorSubject();
+    }
+
+    public static DoubleBehaviorSubject create(double defaultValue) {
+        DoubleBehaviorSubject subject = new DoubleBehaviorSubject();
+        subject.onNext(defaultValue);
+        return subject;
+    }
+
+    private DoubleBehaviorSubject() {
+        super(1);
+    }
+
+    @Override
+    long start() {
+        return done ? tail : head();
+    }
+}
@@ -0,0 +1,13 @@
+package com.solutionarchitects.common.rx.v2;
+
+/**
+ * Receives the values of a {@link DoubleReplaySubject} or {@link DoubleBehaviorSubject} without boxing them.
+ */
+public interface DoubleObserver {
+
+    void onNext(double value);
+
+    void onError(Throwable e);
+
+    void onCompleted();
+}
@@ -0,0 +1,329 @@
+package com.solutionarchitects.common.rx.v2;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.exceptions.Exceptions;
+import rx.subscriptions.Subscriptions;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Size-bounded replay subject for {@code double} values, which are neither boxed nor wrapped in a notification.
+ * <p>
+ * Values go into a power-of-two ring of their raw long bits under increasing sequence numbers, and each observer
+ * replays from the sequence of the next value it is due, so {@link #onNext(double)} allocates nothing. Otherwise it
+ * behaves as {@link LongReplaySubject}.
+ */
+public class DoubleReplaySubject {
+
+    private static final Cursor[] EMPTY = new Cursor[0];
+    private static final Cursor[] TERMINATED = new Cursor[0];
+
+    final AtomicLongArray ring;
+
+    final int mask;
+
+    final int maxSize;
+
+    /** The sequence of the next value, published after its slot is written. */
+    volatile long tail;
+
+    /** Set after the last value, with the error written before it. */
+    volatile boolean done;
+
+    Throwable error;
+
+    final AtomicReference<Cursor[]> cursors = new AtomicReference<Cursor[]>(EMPTY);
+
+    /**
+     * @param size the maximum number of values replayed to a new observer
+     */
+    public static DoubleReplaySubject createWithSize(int size) {
+        return new DoubleReplaySubject(size);
+    }
+
+    DoubleReplaySubject(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size > 0 required but it was " + size);
+        }
+        if (size >= 1 << 30) {
+            throw new IllegalArgumentException("size < 2^30 required but it was " + size);
+        }
+        int capacity = Integer.highestOneBit(size) << 1;
+        this.ring = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.maxSize = size;
+    }
+
+    public void onNext(double value) {
+        if (!done) {
+            long t = tail;
+            ring.lazySet((int) t & mask, Double.doubleToRawLongBits(value));
+            tail = t + 1;
+            for (Cursor c : cursors.get()) {
+                c.drain();
+            }
+        }
+    }
+
+    public void onError(Throwable e) {
+        terminate(e);
+    }
+
+    public void onCompleted() {
+        terminate(null);
+    }
+
+    private void terminate(Throwable e) {
+        if (!done) {
+            error = e;
+            done = true;
+            for (Cursor c : cursors.getAndSet(TERMINATED)) {
+                c.drain();
+            }
+        }
+    }
+
+    /**
+     * Replays the retained values to the observer, then the values that follow.
+     *
+     * @return the subscription, unsubscribe it to stop receiving values
+     */
+    public Subscription subscribe(DoubleObserver observer) {
+        Cursor c = new Cursor(observer, start());
+        add(c);
+        c.drain();
+        return c;
+    }
+
+    /**
+     * @return an Observable of the boxed values, each subscriber of which is one observer of this subject
+     */
+    public Observable<Double> asObservable() {
+        return Observable.create(subscriber -> {
+            Subscription s = subscribe(new DoubleObserver() {
+                @Override
+                public void onNext(double value) {
+                    subscriber.onNext(value);
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    subscriber.onError(e);
+                }
+
+                @Override
+                public void onCompleted() {
+                    subscriber.onCompleted();
+                }
+            });
+            subscriber.add(Subscriptions.create(s::unsubscribe));
+        });
+    }
+
+    /**
+     * @return the sequence a new observer starts replaying from
+     */
+    long start() {
+        return head();
+    }
+
+    /**
+     * @return the sequence of the oldest retained value
+     */
+    final long head() {
+        return Math.max(0, tail - maxSize);
+    }
+
+    private boolean add(Cursor c) {
+        for (; ; ) {
+            Cursor[] a = cursors.get();
+            if (a == TERMINATED) {
+                return false;
+            }
+            Cursor[] b = new Cursor[a.length + 1];
+            System.arraycopy(a, 0, b, 0, a.length);
+            b[a.length] = c;
+            if (cursors.compareAndSet(a, b)) {
+                return true;
+            }
+        }
+    }
+
+    private void remove(Cursor c) {
+        for (; ; ) {
+            Cursor[] a = cursors.get();
+            int j = -1;
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] == c) {
+                    j = i;
+                    break;
+                }
+            }
+            if (j < 0) {
+                return;
+            }
+            Cursor[] b = a.length == 1 ? EMPTY : new Cursor[a.length - 1];
+            System.arraycopy(a, 0, b, 0, j);
+            System.arraycopy(a, j + 1, b, j, a.length - j - 1);
+            if (cursors.compareAndSet(a, b)) {
+                return;
+            }
+        }
+    }
+
+    public boolean hasObservers() {
+        return cursors.get().length != 0;
+    }
+
+    public boolean hasCompleted() {
+        return done && error == null;
+    }
+
+    public boolean hasThrowable() {
+        return done && error != null;
+    }
+
+    public Throwable getThrowable() {
+        return done ? error : null;
+    }
+
+    /**
+     * @return the number of values available for replay
+     */
+    public int size() {
+        return (int) Math.min(tail, maxSize);
+    }
+
+    public boolean hasValue() {
+        return tail != 0;
+    }
+
+    /**
+     * @return the latest value
+     * @throws NoSuchElementException if there is none
+     */
+    public double getValue() {
+        for (; ; ) {
+            long t = tail;
+            if (t == 0) {
+                throw new NoSuchElementException();
+            }
+            long v = ring.get((int) (t - 1) & mask);
+            if (tail - t < mask) {
+                return Double.longBitsToDouble(v);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the values available for replay
+     */
+    public double[] getValues() {
+        for (; ; ) {
+            long t = tail;
+            long first = Math.max(0, t - maxSize);
+            double[] values = new double[(int) (t - first)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Double.longBitsToDouble(ring.get((int) (first + i) & mask));
+            }
+            if (tail - first <= mask) {
+                return values;
+            }
+        }
+    }
+
+    /**
+     * The position of one observer, drained by whichever thread published or subscribed last.
+     */
+    final class Cursor extends AtomicInteger implements Subscription {
+
+        private static final long serialVersionUID = 7413809276503118629L;
+
+        final DoubleObserver observer;
+
+        /** The sequence of the next value, only accessed by the draining thread. */
+        long index;
+
+        volatile boolean cancelled;
+
+        Cursor(DoubleObserver observer, long index) {
+            this.observer = observer;
+            this.index = index;
+        }
+
+        void drain() {
+            if (getAndIncrement() != 0) {
+                return;
+            }
+
+            int missed = 1;
+
+            for (; ; ) {
+
+                long i = index;
+                long t = tail;
+
+                while (i < t) {
+                    long v = ring.get((int) i & mask);
+                    // one read of tail per value both validates it and tells whether more arrived
+                    t = tail;
+                    if (t - i > mask) {
+                        i = head();
+                        continue;
+                    }
+                    if (cancelled) {
+                        return;
+                    }
+                    try {
+                        observer.onNext(Double.longBitsToDouble(v));
+                    } catch (Throwable e) {
+                        Exceptions.throwIfFatal(e);
+                        unsubscribe();
+                        observer.onError(e);
+                        return;
+                    }
+                    i++;
+                }
+
+                index = i;
+
+                if (cancelled) {
+                    return;
+                }
+
+                if (done && i == tail) {
+                    unsubscribe();
+                    Throwable e = error;
+                    if (e != null) {
+                        observer.onError(e);
+                    } else {
+                        observer.onCompleted();
+                    }
+                    return;
+                }
+
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void unsubscribe() {
+            if (!cancelled) {
+                cancelled = true;
+                remove(this);
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return cancelled;
+        }
+    }
+}
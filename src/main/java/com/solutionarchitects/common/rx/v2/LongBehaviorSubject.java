@@ -0,0 +1,27 @@
+package com.solutionarchitects.common.rx.v2;
+
+/**
+ * Behavior subject for {@code long} values: a new observer is sent the latest value, or the default value if there
+ * is none yet, and every value after it. An observer subscribing after termination only gets the terminal event.
+ */
+public final class LongBehaviorSubject extends LongReplaySubject {
+
+    public static LongBehaviorSubject create() {
+        return new LongBehaviorSubject();
+    }
+
+    public static LongBehaviorSubject create(long defaultValue) {
+        LongBehaviorSubject subject = new LongBehaviorSubject();
+        subject.onNext(defaultValue);
+        return subject;
+    }
+
+    private LongBehaviorSubject() {
+        super(1);
+    }
+
+    @Override
+    long start() {
+        return done ? tail : head();
+    }
+}
@@ -0,0 +1,13 @@
+package com.solutionarchitects.common.rx.v2;
+
+/**
+ * Receives the values of a {@link LongReplaySubject} or {@link LongBehaviorSubject} without boxing them.
+ */
+public interface LongObserver {
+
+    void onNext(long value);
+
+    void onError(Throwable e);
+
+    void onCompleted();
+}
@@ -0,0 +1,124 @@
+package com.solutionarchitects.common.rx.v2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evicts the aged-out values of time-bounded replay buffers on a single timer thread.
+ * <p>
+ * A {@link ReplaySizeAndTimeBoundBuffer} otherwise only evicts when its next value arrives, so a subject that
+ * bursts and then goes quiet holds the burst until it publishes again. Every registered buffer is swept once per
+ * period, which bounds how long a quiet buffer holds stale values to its max age plus the period. Sweeping only
+ * moves the head of a buffer forward and takes no lock, so producers are never blocked by it.
+ * <p>
+ * Buffers are held weakly and dropped once collected, or once they completed and hold no more values.
+ */
+public final class ReplayEvictionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayEvictionService.class.getName());
+
+    private static final class Default {
+        static final ReplayEvictionService INSTANCE =
+                new ReplayEvictionService(Long.getLong("rx.v2.eviction.periodMillis", 1000L), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the service the time-bounded {@link ReplaySubject} factories register with, sweeping every
+     * {@code rx.v2.eviction.periodMillis} milliseconds, 1000 by default
+     */
+    public static ReplayEvictionService getDefault() {
+        return Default.INSTANCE;
+    }
+
+    private final ConcurrentLinkedQueue<WeakReference<ReplaySizeAndTimeBoundBuffer<?>>> buffers = new ConcurrentLinkedQueue<>();
+
+    private final ScheduledExecutorService timer;
+
+    final LongAdder sweeps = new LongAdder();
+    final LongAdder evicted = new LongAdder();
+
+    public ReplayEvictionService(long period, TimeUnit unit) {
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rx-replay-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.scheduleWithFixedDelay(this::sweep, period, period, unit);
+    }
+
+    /**
+     * Sweeps the buffer from now on, buffers without a max age are ignored.
+     */
+    public void register(ReplaySizeAndTimeBoundBuffer<?> buffer) {
+        if (buffer.isTimeBound()) {
+            buffers.offer(new WeakReference<ReplaySizeAndTimeBoundBuffer<?>>(buffer));
+        }
+    }
+
+    /**
+     * Evicts the aged-out values of every registered buffer.
+     */
+    void sweep() {
+
+        long n = 0;
+
+        try {
+            for (Iterator<WeakReference<ReplaySizeAndTimeBoundBuffer<?>>> it = buffers.iterator(); it.hasNext(); ) {
+                ReplaySizeAndTimeBoundBuffer<?> buffer = it.next().get();
+                if (buffer == null) {
+                    it.remove();
+                    continue;
+                }
+                n += buffer.evictStale();
+                if (buffer.isComplete() && buffer.isEmpty()) {
+                    it.remove();
+                }
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel the periodic task
+            logger.warn("Error sweeping replay buffers Error : {}", e.getMessage());
+        }
+
+        sweeps.increment();
+        evicted.add(n);
+    }
+
+    public void shutdown() {
+        timer.shutdown();
+    }
+
+    /**
+     * @return the number of buffers swept
+     */
+    public int getRegisteredCount() {
+        return buffers.size();
+    }
+
+    public long getSweeps() {
+        return sweeps.sum();
+    }
+
+    /**
+     * @return the number of values evicted by sweeps rather than by their buffer's producer
+     */
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayEvictionService{" +
+                "registered=" + getRegisteredCount() +
+                ", sweeps=" + getSweeps() +
+                ", evicted=" + getEvicted() +
+                '}';
+    }
+}
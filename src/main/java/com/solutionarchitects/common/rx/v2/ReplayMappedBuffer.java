@@ -0,0 +1,485 @@
+package com.solutionarchitects.common.rx.v2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscriber;
+import rx.internal.operators.BackpressureUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An unbounded ReplayBuffer that keeps its history in memory-mapped segment files, so the heap it takes does not
+ * grow with the number of values.
+ * <p>
+ * Every value is serialized as a length-prefixed record into the current segment when it arrives, and the latest
+ * {@code hotSize} values are also kept in an array ring. Subscribers that keep up are served from the ring, late
+ * ones read the segments front to back. A full segment is followed by a new one, and beyond {@code maxSegments}
+ * the oldest is dropped: subscribers still reading it keep it mapped until they move on, after which it is unmapped
+ * and its file deleted, and a subscriber behind the oldest retained value continues from there.
+ * <p>
+ * The buffer takes a single producer, and does not survive the process; {@link #close()} deletes its files.
+ *
+ * @param <T> the value type
+ */
+public final class ReplayMappedBuffer<T> implements ReplayBuffer<T>, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayMappedBuffer.class.getName());
+
+    final ReplaySerializer<T> serializer;
+
+    final Path directory;
+
+    final int segmentBytes;
+
+    final int maxSegments;
+
+    final int hotSize;
+
+    final AtomicReferenceArray<Object> hot;
+
+    final int mask;
+
+    /** The retained segments by the index of their first value. */
+    final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    Segment current;
+
+    /** The number of values written, published after the value is in both its segment and the ring. */
+    volatile long size;
+
+    volatile boolean done;
+    Throwable error;
+
+    /**
+     * @param directory    where the segment files are created
+     * @param hotSize      the latest values kept on the heap
+     * @param segmentBytes the size of a segment file, which must hold the largest serialized value
+     * @param maxSegments  the segments retained, 0 to retain all
+     */
+    public ReplayMappedBuffer(ReplaySerializer<T> serializer, Path directory, int hotSize, int segmentBytes, int maxSegments) throws IOException {
+        if (hotSize <= 0 || hotSize >= 1 << 30) {
+            throw new IllegalArgumentException("0 < hotSize < 2^30 required but it was " + hotSize);
+        }
+        if (segmentBytes <= 4) {
+            throw new IllegalArgumentException("segmentBytes > 4 required but it was " + segmentBytes);
+        }
+        this.serializer = serializer;
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.hotSize = hotSize;
+        int capacity = Integer.highestOneBit(hotSize) << 1;
+        this.hot = new AtomicReferenceArray<Object>(capacity);
+        this.mask = capacity - 1;
+        this.current = new Segment(directory, 0L, segmentBytes);
+        this.segments.put(0L, current);
+    }
+
+    @Override
+    public void next(T t) {
+        if (done) {
+            return;
+        }
+
+        long s = size;
+
+        if (!current.append(t, serializer)) {
+            roll(s);
+            if (!current.append(t, serializer)) {
+                throw new IllegalArgumentException("Value does not fit in a segment of " + segmentBytes + " bytes");
+            }
+        }
+
+        hot.lazySet((int) s & mask, t);
+        size = s + 1;
+    }
+
+    private void roll(long first) {
+        try {
+            current = new Segment(directory, first, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments.put(first, current);
+
+        while (maxSegments > 0 && segments.size() > maxSegments) {
+            Map.Entry<Long, Segment> oldest = segments.pollFirstEntry();
+            oldest.getValue().release();
+        }
+    }
+
+    @Override
+    public void error(Throwable e) {
+        if (done) {
+            RxJavaHooks.onError(e);
+            return;
+        }
+        error = e;
+        done = true;
+    }
+
+    @Override
+    public void complete() {
+        done = true;
+    }
+
+    /**
+     * @return the index of the oldest retained value
+     */
+    long first() {
+        Map.Entry<Long, Segment> e = segments.firstEntry();
+        return e != null ? e.getKey() : size;
+    }
+
+    @Override
+    public void drain(ReplayProducer<T> rp) {
+        if (rp.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+
+        final Subscriber<? super T> a = rp.actual;
+
+        for (; ; ) {
+
+            long r = rp.requested.get();
+            long e = 0L;
+
+            @SuppressWarnings("unchecked")
+            Cursor<T> c = (Cursor<T>) rp.node;
+            if (c == null) {
+                c = new Cursor<T>(this, first());
+                rp.node = c;
+            }
+
+            while (e != r) {
+                if (a.isUnsubscribed()) {
+                    c.close();
+                    rp.node = null;
+                    return;
+                }
+
+                boolean d = done;
+                long s = size;
+                long i = c.index;
+
+                if (i >= s) {
+                    if (d) {
+                        c.close();
+                        rp.node = null;
+                        Throwable ex = error;
+                        if (ex != null) {
+                            a.onError(ex);
+                        } else {
+                            a.onCompleted();
+                        }
+                        return;
+                    }
+                    break;
+                }
+
+                T v;
+
+                if (s - i <= hotSize) {
+                    @SuppressWarnings("unchecked")
+                    T h = (T) hot.get((int) i & mask);
+                    // a value overwritten meanwhile is still in its segment
+                    if (size - i <= mask) {
+                        v = h;
+                        c.index = i + 1;
+                    } else {
+                        v = c.read();
+                    }
+                } else {
+                    v = c.read();
+                }
+
+                a.onNext(v);
+
+                e++;
+            }
+
+            if (e != 0L) {
+                if (r != Long.MAX_VALUE) {
+                    BackpressureUtils.produced(rp.requested, e);
+                }
+            }
+
+            // an idle subscriber does not keep a dropped segment mapped
+            c.release();
+
+            missed = rp.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean isComplete() {
+        return done;
+    }
+
+    @Override
+    public Throwable error() {
+        return error;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T last() {
+        for (; ; ) {
+            long s = size;
+            if (s == 0) {
+                return null;
+            }
+            T v = (T) hot.get((int) (s - 1) & mask);
+            if (size - s < mask) {
+                return v;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, size - first());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == first();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T[] toArray(T[] a) {
+        List<T> values = new ArrayList<T>();
+
+        Cursor<T> c = new Cursor<T>(this, first());
+        long s = size;
+        while (c.index < s) {
+            values.add(c.read());
+        }
+        c.close();
+
+        if (a.length < values.size()) {
+            a = (T[]) Array.newInstance(a.getClass().getComponentType(), values.size());
+        }
+        return values.toArray(a);
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Drops every segment, to be called once the subject is no longer used.
+     */
+    @Override
+    public void close() {
+        done = true;
+        Map.Entry<Long, Segment> segment;
+        while ((segment = segments.pollFirstEntry()) != null) {
+            segment.getValue().release();
+        }
+    }
+
+    /**
+     * A segment file, mapped until it was dropped and no cursor holds it anymore.
+     */
+    static final class Segment extends AtomicInteger {
+
+        private static final long serialVersionUID = -6090315611716327411L;
+
+        final Path file;
+
+        /** The index of the first value. */
+        final long first;
+
+        /** Written by the producer only, readers use duplicates. */
+        final MappedByteBuffer buffer;
+
+        /** The number of values written, which readers see before the size of the buffer. */
+        volatile int count;
+
+        Segment(Path directory, long first, int bytes) throws IOException {
+            super(1);
+            this.first = first;
+            this.file = directory.resolve("segment-" + first + ".dat");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            }
+        }
+
+        /**
+         * Appends a record of the value's length and bytes.
+         *
+         * @return false if it does not fit
+         */
+        <T> boolean append(T value, ReplaySerializer<T> serializer) {
+            ByteBuffer b = buffer;
+            int start = b.position();
+            if (b.remaining() < 4) {
+                return false;
+            }
+            b.position(start + 4);
+            try {
+                serializer.write(value, b);
+            } catch (BufferOverflowException e) {
+                b.position(start);
+                return false;
+            }
+            b.putInt(start, b.position() - start - 4);
+            count++;
+            return true;
+        }
+
+        /**
+         * @return false if the segment was dropped
+         */
+        boolean acquire() {
+            for (; ; ) {
+                int refs = get();
+                if (refs == 0) {
+                    return false;
+                }
+                if (compareAndSet(refs, refs + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (decrementAndGet() == 0) {
+                Unmap(buffer);
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.warn("Error deleting segment File : {} Error : {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Unmaps the buffer right away instead of when it is collected, through the cleaner of the JDK 8 direct buffers.
+     */
+    static void Unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleaner = buffer.getClass().getMethod("cleaner");
+            cleaner.setAccessible(true);
+            Object c = cleaner.invoke(buffer);
+            if (c != null) {
+                c.getClass().getMethod("clean").invoke(c);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // left to the collector
+        }
+    }
+
+    /**
+     * The position of one subscriber in the segments, held as the node of its ReplayProducer.
+     */
+    static final class Cursor<T> {
+
+        final ReplayMappedBuffer<T> parent;
+
+        /** The index of the next value. */
+        long index;
+
+        Segment segment;
+
+        /** Positioned at the record of {@link #next}. */
+        ByteBuffer view;
+
+        long next;
+
+        boolean held;
+
+        Cursor(ReplayMappedBuffer<T> parent, long index) {
+            this.parent = parent;
+            this.index = index;
+        }
+
+        /**
+         * Reads the value at the index from its segment, or the oldest retained value if it was dropped, and
+         * moves past it.
+         */
+        T read() {
+            for (; ; ) {
+                Segment s = segment;
+                if (s != null && (held || (held = s.acquire()))) {
+                    if (index >= s.first && index < s.first + s.count) {
+                        if (next > index) {
+                            view.position(0);
+                            next = s.first;
+                        }
+                        while (next < index) {
+                            view.position(view.position() + 4 + view.getInt(view.position()));
+                            next++;
+                        }
+                        int length = view.getInt();
+                        int end = view.position() + length;
+                        view.limit(end);
+                        T v = parent.serializer.read(view);
+                        view.limit(view.capacity()).position(end);
+                        next++;
+                        index++;
+                        return v;
+                    }
+                }
+                close();
+                Map.Entry<Long, Segment> e = parent.segments.floorEntry(index);
+                if (e == null) {
+                    index = parent.first();
+                    continue;
+                }
+                s = e.getValue();
+                if (s.acquire()) {
+                    segment = s;
+                    held = true;
+                    view = s.buffer.duplicate();
+                    view.position(0);
+                    next = s.first;
+                }
+            }
+        }
+
+        /**
+         * Lets the segment be unmapped while the subscriber is idle, it is acquired again by the next read.
+         */
+        void release() {
+            if (held) {
+                held = false;
+                segment.release();
+            }
+        }
+
+        void close() {
+            release();
+            segment = null;
+            view = null;
+        }
+    }
+}
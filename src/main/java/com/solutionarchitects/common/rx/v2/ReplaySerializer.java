@@ -0,0 +1,23 @@
+package com.solutionarchitects.common.rx.v2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the values of a {@link ReplayMappedBuffer} to and from the bytes of its segment files.
+ *
+ * @param <T> the value type
+ */
+public interface ReplaySerializer<T> {
+
+    /**
+     * Writes the value at the position of the buffer.
+     *
+     * @throws java.nio.BufferOverflowException if it does not fit in the remaining bytes
+     */
+    void write(T value, ByteBuffer out);
+
+    /**
+     * Reads a value from the position of the buffer, whose limit is the end of the value.
+     */
+    T read(ByteBuffer in);
+}
@@ -7,11 +7,12 @@ import rx.internal.operators.BackpressureUtils;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Created by montu on 8/6/16.
  */
-final class ReplaySizeAndTimeBoundBuffer<T> implements ReplayBuffer<T> {
+public final class ReplaySizeAndTimeBoundBuffer<T> implements ReplayBuffer<T> {
     final int limit;
 
     final long maxAgeMillis;
@@ -20,16 +21,18 @@ final class ReplaySizeAndTimeBoundBuffer<T> implements ReplayBuffer<T> {
 
     volatile TimedNode<T> head;
 
-    TimedNode<T> tail;
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<ReplaySizeAndTimeBoundBuffer, TimedNode> HEAD =
+            AtomicReferenceFieldUpdater.newUpdater(ReplaySizeAndTimeBoundBuffer.class, TimedNode.class, "head");
 
-    int size;
+    TimedNode<T> tail;
 
     volatile boolean done;
     Throwable error;
 
     public ReplaySizeAndTimeBoundBuffer(int limit, long maxAgeMillis, Scheduler scheduler) {
         this.limit = limit;
-        TimedNode<T> n = new TimedNode<T>(null, 0L);
+        TimedNode<T> n = new TimedNode<T>(null, 0L, 0L);
         this.tail = n;
         this.head = n;
         this.maxAgeMillis = maxAgeMillis;
@@ -40,20 +43,21 @@ final class ReplaySizeAndTimeBoundBuffer<T> implements ReplayBuffer<T> {
     public void next(T value) {
         long now = scheduler.now();
 
-        TimedNode<T> n = new TimedNode<T>(value, now);
-        tail.set(n);
+        TimedNode<T> t = tail;
+        TimedNode<T> n = new TimedNode<T>(value, now, t.index + 1);
+        t.set(n);
         tail = n;
 
+        long last = n.index;
+
         now -= maxAgeMillis;
 
-        int s = size;
         TimedNode<T> h0 = head;
         TimedNode<T> h = h0;
 
-        if (s == limit) {
+        // the size follows from the indexes, so eviction by the sweeper needs no shared counter
+        while (last - h.index > limit) {
             h = h.get();
-        } else {
-            s++;
         }
 
         while ((n = h.get()) != null) {
@@ -61,12 +65,10 @@ final class ReplaySizeAndTimeBoundBuffer<T> implements ReplayBuffer<T> {
                 break;
             }
             h = n;
-            s--;
         }
 
-        size = s;
         if (h != h0) {
-            head = h;
+            advanceHead(h0, h);
         }
     }
 
@@ -84,6 +86,17 @@ final class ReplaySizeAndTimeBoundBuffer<T> implements ReplayBuffer<T> {
     }
 
     void evictFinal() {
+        evictStale();
+    }
+
+    /**
+     * Evicts the values that aged out, also called by the {@link ReplayEvictionService} so that a buffer that went
+     * quiet lets go of them. The head only ever moves forward, so a sweep racing {@link #next} never brings back
+     * the values the producer evicted to keep the size bound.
+     *
+     * @return the number of values evicted
+     */
+    long evictStale() {
         long now = scheduler.now() - maxAgeMillis;
 
         TimedNode<T> h0 = head;
@@ -97,9 +110,35 @@ final class ReplaySizeAndTimeBoundBuffer<T> implements ReplayBuffer<T> {
             h = n;
         }
 
-        if (h0 != h) {
-            head = h;
+        if (h0 == h) {
+            return 0L;
+        }
+
+        return advanceHead(h0, h);
+    }
+
+    /**
+     * Moves the head to h unless the producer or a sweep already moved it there or past it.
+     *
+     * @param expected the head h was found from
+     * @return the number of values evicted
+     */
+    private long advanceHead(TimedNode<T> expected, TimedNode<T> h) {
+        TimedNode<T> current = expected;
+        while (!HEAD.compareAndSet(this, current, h)) {
+            current = head;
+            if (current.index >= h.index) {
+                return 0L;
+            }
         }
+        return h.index - current.index;
+    }
+
+    /**
+     * @return true if values may age out of the buffer
+     */
+    boolean isTimeBound() {
+        return maxAgeMillis != Long.MAX_VALUE;
     }
 
     TimedNode<T> latestHead() {
@@ -211,9 +250,13 @@ final class ReplaySizeAndTimeBoundBuffer<T> implements ReplayBuffer<T> {
 
         final long timestamp;
 
-        public TimedNode(T value, long timestamp) {
+        /** The position in the sequence of values, 0 for the initial head. */
+        final long index;
+
+        public TimedNode(T value, long timestamp, long index) {
             this.value = value;
             this.timestamp = timestamp;
+            this.index = index;
         }
     }
 
@@ -196,6 +196,9 @@ public final class ReplaySubject<T> extends Subject<T, T> {
      * example, with a max age of 5, the first item is observed at T=0, then an {@code onCompleted} notification
      * arrives at T=10. If an observer subscribes at T=11, it will find an empty {@code ReplaySubject} with just
      * an {@code onCompleted} notification.
+     * <p>
+     * Items that age out while the subject is quiet are evicted by the {@link ReplayEvictionService#getDefault()
+     * default eviction service} within its period.
      *
      * @param <T>       the type of items observed and emitted by the Subject
      * @param time      the maximum age of the contained items
@@ -205,7 +208,21 @@ public final class ReplaySubject<T> extends Subject<T, T> {
      * @return the created subject
      */
     public static <T> ReplaySubject<T> createWithTimeAndSize(long time, TimeUnit unit, int size, final Scheduler scheduler) {
-        ReplayBuffer<T> buffer = new ReplaySizeAndTimeBoundBuffer<T>(size, unit.toMillis(time), scheduler);
+        ReplaySizeAndTimeBoundBuffer<T> buffer = new ReplaySizeAndTimeBoundBuffer<T>(size, unit.toMillis(time), scheduler);
+        ReplayEvictionService.getDefault().register(buffer);
+        ReplayState<T> state = new ReplayState<T>(buffer);
+        return new ReplaySubject<T>(state);
+    }
+
+    /**
+     * Creates an unbounded replay subject whose history is kept in memory-mapped segment files instead of on the
+     * heap, see {@link ReplayMappedBuffer}. Close the buffer once the subject is no longer used.
+     *
+     * @param <T>    the type of items observed and emitted by the Subject
+     * @param buffer the buffer, not shared with another subject
+     * @return the created subject
+     */
+    public static <T> ReplaySubject<T> createWithMappedBuffer(ReplayMappedBuffer<T> buffer) {
         ReplayState<T> state = new ReplayState<T>(buffer);
         return new ReplaySubject<T>(state);
     }
@@ -0,0 +1,50 @@
+package com.solutionarchitects.socketio;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Answers an inbound event that asked for an acknowledgement. Only the first reply is sent.
+ */
+public final class SocketIOAckReply {
+
+    private final SocketIOOutboundQueue outboundQueue;
+    private final String nameSpace;
+    private final long ackId;
+    private final AtomicBoolean sent = new AtomicBoolean();
+
+    public SocketIOAckReply(SocketIOOutboundQueue outboundQueue, String nameSpace, long ackId) {
+        this.outboundQueue = outboundQueue;
+        this.nameSpace = nameSpace;
+        this.ackId = ackId;
+    }
+
+    /**
+     * Sends the Ack packet with the given arguments, serialized as JSON; byte[] and ByteBuffer values are sent as
+     * binary attachments.
+     *
+     * @return false if a reply was already sent or the connection no longer accepts frames
+     */
+    public boolean send(Object... args) {
+        if (!sent.compareAndSet(false, true)) {
+            return false;
+        }
+        return outboundQueue.offer(SocketIOFrame.ack(nameSpace, ackId, args));
+    }
+
+    public boolean isSent() {
+        return sent.get();
+    }
+
+    public long getAckId() {
+        return ackId;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOAckReply{" +
+                "nameSpace='" + nameSpace + '\'' +
+                ", ackId=" + ackId +
+                ", sent=" + sent.get() +
+                '}';
+    }
+}
@@ -0,0 +1,243 @@
+package com.solutionarchitects.socketio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Acks a connection is waiting for, keyed by ack id.
+ * <p>
+ * Ids are primitive longs in an open-addressed table, so registering and completing an ack allocates nothing but
+ * the pending entry. Expiry does not schedule a timer per ack: the table itself is a single task on the shared
+ * timer wheel, armed for the earliest deadline, which fails every overdue ack when it fires and re-arms for the
+ * next one.
+ * <p>
+ * Futures are completed outside the table's lock. Timeouts complete them on the timer thread, so dependent
+ * actions that block should use the async variants of {@link CompletableFuture}.
+ */
+public final class SocketIOAckTable implements SocketIOTimerWheel.Task {
+
+    /** Returned by {@link #register(CompletableFuture, long)} once the table is closed. */
+    public static final long CLOSED = -1L;
+
+    private static final long FREE = 0L;
+
+    private final SocketIOTimerWheel timerWheel;
+
+    private long[] keys = new long[16];
+    private Pending[] values = new Pending[16];
+    private int size;
+
+    /** Ack ids start at 1, 0 marks a free slot. */
+    private long nextId = 1L;
+
+    /** The earliest deadline the table is armed for, Long.MAX_VALUE when nothing is armed. */
+    private long armedDeadline = Long.MAX_VALUE;
+
+    private SocketIOTimerWheel.Timeout timeout;
+
+    private boolean closed;
+
+    public SocketIOAckTable(SocketIOTimerWheel timerWheel) {
+        this.timerWheel = timerWheel;
+    }
+
+    /**
+     * Registers a future to be completed with the arguments of the matching Ack packet.
+     *
+     * @param timeoutMillis the time after which the future fails with a {@link TimeoutException}
+     * @return the ack id to send with the event, or {@link #CLOSED}
+     */
+    public long register(CompletableFuture<List<Object>> future, long timeoutMillis) {
+        long deadline = timerWheel.now() + Math.max(0L, timeoutMillis);
+        synchronized (this) {
+            if (closed) {
+                return CLOSED;
+            }
+            long id = nextId++;
+            put(id, new Pending(future, deadline));
+            if (deadline < armedDeadline) {
+                // the table is armed once, a later handle left armed would re-arm itself and scan on every fire
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+                armedDeadline = deadline;
+                timeout = timerWheel.scheduleAt(this, deadline);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Completes the pending ack with the given id.
+     *
+     * @return false if no ack with that id is pending, e.g. because it timed out
+     */
+    public boolean complete(long id, List<Object> args) {
+        Pending pending;
+        synchronized (this) {
+            pending = remove(id);
+        }
+        if (pending == null) {
+            return false;
+        }
+        pending.future.complete(args);
+        return true;
+    }
+
+    /**
+     * Forgets a pending ack without completing it, e.g. when the event carrying it could not be queued.
+     */
+    public boolean cancel(long id) {
+        synchronized (this) {
+            return remove(id) != null;
+        }
+    }
+
+    /**
+     * Fails every pending ack and rejects new ones.
+     */
+    public void close() {
+        List<Pending> failed = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE) {
+                    failed.add(values[i]);
+                }
+            }
+            keys = new long[1];
+            values = new Pending[1];
+            size = 0;
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+        }
+        for (Pending pending : failed) {
+            pending.future.completeExceptionally(new IllegalStateException("Connection closed"));
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public long expire(long now) {
+        List<Pending> expired = null;
+        long next = Long.MAX_VALUE;
+        synchronized (this) {
+            int i = 0;
+            while (i < keys.length) {
+                if (keys[i] != FREE && values[i].deadline <= now) {
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(values[i]);
+                    // removal shifts a later entry into slot i, so look at it again
+                    removeAt(i);
+                    continue;
+                }
+                if (keys[i] != FREE) {
+                    next = Math.min(next, values[i].deadline);
+                }
+                i++;
+            }
+            armedDeadline = next;
+            if (next == Long.MAX_VALUE) {
+                timeout = null;
+            }
+        }
+        if (expired != null) {
+            for (Pending pending : expired) {
+                pending.future.completeExceptionally(new TimeoutException("Ack timed out"));
+            }
+        }
+        return next == Long.MAX_VALUE ? 0L : next;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void put(long id, Pending pending) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int i = hash(id) & mask;
+        while (keys[i] != FREE) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        values[i] = pending;
+        size++;
+    }
+
+    private Pending remove(long id) {
+        int mask = keys.length - 1;
+        for (int i = hash(id) & mask; keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                Pending pending = values[i];
+                removeAt(i);
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Frees a slot and shifts back the entries of its probe run so lookups need no tombstones.
+     */
+    private void removeAt(int i) {
+        int mask = keys.length - 1;
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == FREE) {
+                break;
+            }
+            int home = hash(keys[j]) & mask;
+            // the entry at j may fill the hole unless its home slot lies cyclically within (hole, j]
+            if (hole <= j ? (home <= hole || home > j) : (home <= hole && home > j)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = FREE;
+        values[hole] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Pending[] oldValues = values;
+        keys = new long[capacity];
+        values = new Pending[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static final class Pending {
+
+        final CompletableFuture<List<Object>> future;
+        final long deadline;
+
+        Pending(CompletableFuture<List<Object>> future, long deadline) {
+            this.future = future;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.solutionarchitects.socketio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionListener;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cluster transport over the RabbitMQ broker of spring-boot-starter-amqp, configured with the
+ * {@code spring.rabbitmq.*} properties.
+ * <p>
+ * Batches are published non-persistent to a fanout exchange with the node id as app id. Each node consumes from a
+ * server-named, exclusive, auto-delete queue bound to the exchange, without acks, so a batch reaches every node that
+ * is up and nothing outlives its consumer. The exchange, queue and binding are declared again whenever the
+ * connection is re-established.
+ */
+@Service
+@ConditionalOnProperty(name = "socketio.cluster.enabled", havingValue = "true")
+public class SocketIOAmqpClusterTransport implements SocketIOClusterTransport {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+    private final AnonymousQueue queue = new AnonymousQueue();
+
+    private final AtomicBoolean declaring = new AtomicBoolean();
+
+    private FanoutExchange exchange;
+
+    private RabbitAdmin rabbitAdmin;
+
+    private RabbitTemplate rabbitTemplate;
+
+    private SimpleMessageListenerContainer container;
+
+    @Resource
+    private SocketIOConfig socketIOConfig;
+
+    @Resource
+    private ConnectionFactory connectionFactory;
+
+    @PostConstruct
+    private void afterInit() {
+
+        exchange = new FanoutExchange(socketIOConfig.clusterExchange, false, false);
+
+        rabbitAdmin = new RabbitAdmin(connectionFactory);
+
+        rabbitTemplate = new RabbitTemplate(connectionFactory);
+
+        connectionFactory.addConnectionListener(new ConnectionListener() {
+            @Override
+            public void onCreate(Connection connection) {
+                Declare();
+            }
+
+            @Override
+            public void onClose(Connection connection) {
+            }
+        });
+    }
+
+    @PreDestroy
+    private void beforeDestroy() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    private void Declare() {
+
+        // declaring opens a channel on the new connection, which must not declare again
+        if (!declaring.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            rabbitAdmin.declareExchange(exchange);
+            rabbitAdmin.declareQueue(queue);
+            rabbitAdmin.declareBinding(BindingBuilder.bind(queue).to(exchange));
+            logger.info("Declared Queue : {} bound to Exchange : {}", queue.getName(), exchange.getName());
+        } catch (RuntimeException e) {
+            logger.warn("Error declaring Exchange : {} Error : {}", exchange.getName(), e.getMessage());
+        } finally {
+            declaring.set(false);
+        }
+    }
+
+    @Override
+    public void publish(String nodeId, byte[] batch) {
+
+        MessageProperties properties = new MessageProperties();
+        properties.setAppId(nodeId);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_BYTES);
+        properties.setDeliveryMode(MessageDeliveryMode.NON_PERSISTENT);
+
+        rabbitTemplate.send(exchange.getName(), "", new Message(batch, properties));
+    }
+
+    @Override
+    public synchronized void subscribe(final Receiver receiver) {
+
+        if (container != null) {
+            throw new IllegalStateException("Already subscribed");
+        }
+
+        Declare();
+
+        container = new SimpleMessageListenerContainer(connectionFactory);
+        container.setQueues(queue);
+        container.setAcknowledgeMode(AcknowledgeMode.NONE);
+        container.setMessageListener((MessageListener) message ->
+                receiver.receive(message.getMessageProperties().getAppId(), message.getBody()));
+        container.start();
+    }
+
+    /**
+     * @return the name of the queue this node consumes from
+     */
+    String getQueueName() {
+        return queue.getName();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOAmqpClusterTransport{" +
+                "exchange=" + (exchange == null ? null : exchange.getName()) +
+                ", queue=" + queue.getName() +
+                '}';
+    }
+}
@@ -0,0 +1,258 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Broadcasts to the connections of every node of a cluster.
+ * <p>
+ * A broadcast is encoded once, handed to the local members right away and queued for the other nodes. One
+ * publisher thread drains the queue and publishes whatever accumulated as a single batch of at most
+ * {@code socketio.cluster.batchSize} broadcasts, so batches grow with the broadcast rate without adding latency
+ * when it is low. Received batches are handed to the local members as the frames the publishing node encoded.
+ * Each node drops its own batches before decoding them. Without a {@link SocketIOClusterTransport} broadcasts only
+ * reach this node.
+ */
+@Service
+public class SocketIOClusterAdapter {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentLinkedQueue<SocketIOClusterMessage> outbox = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    final LongAdder published = new LongAdder();
+    final LongAdder batches = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    final LongAdder received = new LongAdder();
+    final LongAdder ownBatches = new LongAdder();
+
+    private ExecutorService publisher;
+
+    private int batchSize;
+
+    @Resource
+    private SocketIOConfig socketIOConfig;
+
+    @Resource
+    private SocketIORooms socketIORooms;
+
+    @Autowired(required = false)
+    private SocketIOClusterTransport socketIOClusterTransport;
+
+    @PostConstruct
+    private void afterInit() {
+
+        if (socketIOClusterTransport == null) {
+            return;
+        }
+
+        batchSize = Math.max(1, socketIOConfig.clusterBatchSize);
+
+        publisher = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("socketio-cluster-%d").setDaemon(true).build());
+
+        socketIOClusterTransport.subscribe(this::receive);
+
+        logger.info("Cluster Node ID : {} Transport : {}", nodeId, socketIOClusterTransport);
+    }
+
+    @PreDestroy
+    private void beforeDestroy() {
+        if (publisher != null) {
+            publisher.shutdown();
+        }
+    }
+
+    /**
+     * Emits an event to every member of a namespace on all nodes.
+     *
+     * @return the number of local connections the event was handed to
+     */
+    public int broadcast(String nameSpace, String eventName, Object payload) {
+        SocketIOFrame frame = SocketIOFrame.event(nameSpace, eventName, payload);
+        Publish(SocketIOClusterMessage.Target.Namespace, nameSpace, null, frame);
+        return socketIORooms.emit(nameSpace, frame);
+    }
+
+    /**
+     * Emits an event to every member of a room on all nodes.
+     *
+     * @return the number of local connections the event was handed to
+     */
+    public int broadcastToRoom(String nameSpace, String room, String eventName, Object payload) {
+        SocketIOFrame frame = SocketIOFrame.event(nameSpace, eventName, payload);
+        Publish(SocketIOClusterMessage.Target.Room, nameSpace, room, frame);
+        return socketIORooms.emitToRoom(nameSpace, room, frame);
+    }
+
+    /**
+     * Emits an event to every member of a namespace that is not in the given room, on all nodes.
+     *
+     * @return the number of local connections the event was handed to
+     */
+    public int broadcastExceptRoom(String nameSpace, String exceptRoom, String eventName, Object payload) {
+        SocketIOFrame frame = SocketIOFrame.event(nameSpace, eventName, payload);
+        Publish(SocketIOClusterMessage.Target.ExceptRoom, nameSpace, exceptRoom, frame);
+        return socketIORooms.emitExceptRoom(nameSpace, exceptRoom, frame);
+    }
+
+    private void Publish(SocketIOClusterMessage.Target target, String nameSpace, String room, SocketIOFrame frame) {
+
+        if (socketIOClusterTransport == null) {
+            return;
+        }
+
+        outbox.offer(new SocketIOClusterMessage(target, nameSpace, room, frame.getEventName(), frame.getMessage().getPayload(), frame.getOffset()));
+
+        if (wip.getAndIncrement() == 0) {
+            publisher.execute(this::Drain);
+        }
+    }
+
+    private void Drain() {
+
+        int missed = 1;
+
+        List<SocketIOClusterMessage> batch = new ArrayList<>();
+
+        for (; ; ) {
+
+            SocketIOClusterMessage message;
+
+            while ((message = outbox.poll()) != null) {
+                batch.add(message);
+                if (batch.size() == batchSize) {
+                    PublishBatch(batch);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                PublishBatch(batch);
+            }
+
+            missed = wip.addAndGet(-missed);
+
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void PublishBatch(List<SocketIOClusterMessage> batch) {
+        try {
+            socketIOClusterTransport.publish(nodeId, SocketIOClusterMessage.encode(batch));
+            published.add(batch.size());
+            batches.increment();
+        } catch (IOException | RuntimeException e) {
+            failed.add(batch.size());
+            logger.warn("Dropping {} cluster broadcasts Error : {}", batch.size(), e.getMessage());
+        }
+        batch.clear();
+    }
+
+    /**
+     * Hands the broadcasts of another node's batch to the local members.
+     */
+    void receive(String publisherNodeId, byte[] batch) {
+
+        if (nodeId.equals(publisherNodeId)) {
+            ownBatches.increment();
+            return;
+        }
+
+        List<SocketIOClusterMessage> messages;
+
+        try {
+            messages = SocketIOClusterMessage.decode(batch);
+        } catch (IOException e) {
+            logger.warn("Dropping malformed cluster batch from Node ID : {} Error : {}", publisherNodeId, e.getMessage());
+            return;
+        }
+
+        for (SocketIOClusterMessage message : messages) {
+
+            SocketIOFrame frame = SocketIOFrame.encoded(message.frame, message.nameSpace, message.eventName, message.offset);
+
+            switch (message.target) {
+                case Namespace:
+                    socketIORooms.emit(message.nameSpace, frame);
+                    break;
+                case Room:
+                    socketIORooms.emitToRoom(message.nameSpace, message.room, frame);
+                    break;
+                case ExceptRoom:
+                    socketIORooms.emitExceptRoom(message.nameSpace, message.room, frame);
+                    break;
+            }
+        }
+
+        received.add(messages.size());
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the number of broadcasts published to other nodes
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of broadcasts the transport failed to publish
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the number of broadcasts received from other nodes
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * @return the number of this node's own batches the transport delivered back and were dropped
+     */
+    public long getOwnBatches() {
+        return ownBatches.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOClusterAdapter{" +
+                "nodeId='" + nodeId + '\'' +
+                ", published=" + getPublished() +
+                ", batches=" + getBatches() +
+                ", failed=" + getFailed() +
+                ", received=" + getReceived() +
+                ", ownBatches=" + getOwnBatches() +
+                '}';
+    }
+}
@@ -0,0 +1,116 @@
+package com.solutionarchitects.socketio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A broadcast forwarded to the other nodes of a cluster. It carries the frame as encoded by the publishing node,
+ * so the event is encoded once for the whole cluster.
+ * <p>
+ * Batches are a version byte and a count followed by the messages; strings are length-prefixed UTF-8.
+ */
+final class SocketIOClusterMessage {
+
+    private static final int VERSION = 2;
+
+    enum Target {
+        Namespace, Room, ExceptRoom
+    }
+
+    final Target target;
+    final String nameSpace;
+    /** The room of Room and ExceptRoom broadcasts, null for Namespace broadcasts. */
+    final String room;
+    final String eventName;
+    final String frame;
+    /** The offset the frame carries, null if the publishing node does not recover connections. */
+    final String offset;
+
+    SocketIOClusterMessage(Target target, String nameSpace, String room, String eventName, String frame, String offset) {
+        this.target = target;
+        this.nameSpace = nameSpace;
+        this.room = room;
+        this.eventName = eventName;
+        this.frame = frame;
+        this.offset = offset;
+    }
+
+    static byte[] encode(List<SocketIOClusterMessage> batch) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * batch.size());
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(batch.size());
+            for (SocketIOClusterMessage message : batch) {
+                out.writeByte(message.target.ordinal());
+                writeString(out, message.nameSpace);
+                writeString(out, message.room);
+                writeString(out, message.eventName);
+                writeString(out, message.frame);
+                writeString(out, message.offset);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IOException if the batch is truncated or of an unknown version
+     */
+    static List<SocketIOClusterMessage> decode(byte[] batch) throws IOException {
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(batch));
+
+        int version = in.readUnsignedByte();
+
+        if (version != VERSION) {
+            throw new IOException("Unknown cluster batch version " + version);
+        }
+
+        int count = in.readInt();
+
+        List<SocketIOClusterMessage> messages = new ArrayList<>(Math.min(count, 1024));
+
+        for (int i = 0; i < count; i++) {
+            int target = in.readUnsignedByte();
+            if (target >= Target.values().length) {
+                throw new IOException("Unknown cluster target " + target);
+            }
+            messages.add(new SocketIOClusterMessage(Target.values()[target], readString(in), readString(in), readString(in), readString(in), readString(in)));
+        }
+
+        return messages;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new IOException("Truncated cluster batch");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
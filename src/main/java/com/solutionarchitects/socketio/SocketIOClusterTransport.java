@@ -0,0 +1,27 @@
+package com.solutionarchitects.socketio;
+
+import java.io.IOException;
+
+/**
+ * Carries broadcast batches between the nodes of a cluster. Every node receives every batch, including its own;
+ * the {@link SocketIOClusterAdapter} drops its own by node id.
+ */
+public interface SocketIOClusterTransport {
+
+    /**
+     * Publishes a batch to all nodes.
+     *
+     * @param nodeId the id of the publishing node, delivered with the batch
+     */
+    void publish(String nodeId, byte[] batch) throws IOException;
+
+    /**
+     * Starts delivering the batches of all nodes to the receiver.
+     */
+    void subscribe(Receiver receiver);
+
+    interface Receiver {
+
+        void receive(String nodeId, byte[] batch);
+    }
+}
@@ -0,0 +1,82 @@
+package com.solutionarchitects.socketio;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of outbound compression. Bytes are counted before and after compressing, times are in nanoseconds
+ * spent deflating on the sending thread.
+ * <p>
+ * Only compression done here, of polling responses, is measured. The permessage-deflate of WebSocket connections
+ * runs inside Tomcat and is not measured; only the number of connections that negotiated it is counted.
+ */
+public class SocketIOCompressionMetrics {
+
+    final LongAdder compressed = new LongAdder();
+    final LongAdder skipped = new LongAdder();
+    final LongAdder uncompressedBytes = new LongAdder();
+    final LongAdder compressedBytes = new LongAdder();
+    final LongAdder deflateConnections = new LongAdder();
+
+    private final SocketIOHistogram compressTime = new SocketIOHistogram();
+
+    void recordCompressed(long uncompressed, long compressed, long nanos) {
+        this.compressed.increment();
+        uncompressedBytes.add(uncompressed);
+        compressedBytes.add(compressed);
+        compressTime.record(nanos);
+    }
+
+    /**
+     * @return the number of responses the policy selected for compression
+     */
+    public long getCompressed() {
+        return compressed.sum();
+    }
+
+    /**
+     * @return the number of responses sent uncompressed because of the policy or the client
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * @return compressed over uncompressed bytes of everything compressed, 1 if nothing was
+     */
+    public double getRatio() {
+        long uncompressed = getUncompressedBytes();
+        return uncompressed == 0 ? 1d : (double) getCompressedBytes() / uncompressed;
+    }
+
+    /**
+     * @return the number of WebSocket connections that negotiated permessage-deflate
+     */
+    public long getDeflateConnections() {
+        return deflateConnections.sum();
+    }
+
+    public SocketIOHistogram getCompressTime() {
+        return compressTime;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOCompressionMetrics{" +
+                "compressed=" + getCompressed() +
+                ", skipped=" + getSkipped() +
+                ", uncompressedBytes=" + getUncompressedBytes() +
+                ", compressedBytes=" + getCompressedBytes() +
+                ", ratio=" + getRatio() +
+                ", deflateConnections=" + getDeflateConnections() +
+                ", compressTime=" + compressTime +
+                '}';
+    }
+}
@@ -0,0 +1,92 @@
+package com.solutionarchitects.socketio;
+
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides per outbound message whether compressing it is worth the CPU: messages below the size threshold, of
+ * namespaces not listed or of excluded events go out as they are.
+ * <p>
+ * Polling responses are compressed when the policy selects any message they carry. On WebSocket connections
+ * Tomcat's permessage-deflate compresses every message once negotiated and offers no way to skip one, so there the
+ * policy only decides whether the extension is negotiated at all.
+ */
+@Service
+public class SocketIOCompressionPolicy {
+
+    private boolean permessageDeflate;
+    private int threshold;
+    private int level;
+
+    /** Namespaces whose messages may be compressed, empty for all. */
+    private Set<String> nameSpaces = Collections.emptySet();
+
+    private Set<String> excludedEvents = Collections.emptySet();
+
+    @Resource
+    private SocketIOConfig socketIOConfig;
+
+    @Resource
+    private SocketIOMetrics socketIOMetrics;
+
+    @PostConstruct
+    private void afterInit() {
+
+        permessageDeflate = socketIOConfig.compressionPermessageDeflate;
+        threshold = socketIOConfig.compressionThreshold;
+        level = socketIOConfig.compressionLevel;
+
+        Set<String> names = new HashSet<>();
+        if (socketIOConfig.compressionNamespaces != null) {
+            for (String nameSpace : socketIOConfig.compressionNamespaces) {
+                names.add("/".equals(nameSpace) ? "" : nameSpace);
+            }
+        }
+        nameSpaces = names;
+
+        excludedEvents = socketIOConfig.compressionExcludedEvents == null ? Collections.<String>emptySet()
+                : new HashSet<>(Arrays.asList(socketIOConfig.compressionExcludedEvents));
+    }
+
+    /**
+     * @param nameSpace the namespace of the message, null for Engine.IO and connect packets
+     * @param eventName the event, null for acks and packets other than events
+     * @param length    the length of the message and its attachments
+     */
+    public boolean shouldCompress(String nameSpace, String eventName, long length) {
+
+        if (length < threshold) {
+            return false;
+        }
+
+        if (!nameSpaces.isEmpty() && (nameSpace == null || !nameSpaces.contains(nameSpace))) {
+            return false;
+        }
+
+        return eventName == null || !excludedEvents.contains(eventName);
+    }
+
+    /**
+     * @return true if WebSocket connections may negotiate permessage-deflate
+     */
+    public boolean isPermessageDeflate() {
+        return permessageDeflate;
+    }
+
+    /**
+     * @return the deflate level, -1 for the default
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    public SocketIOCompressionMetrics getMetrics() {
+        return socketIOMetrics.getCompressionMetrics();
+    }
+}
@@ -0,0 +1,51 @@
+package com.solutionarchitects.socketio;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Deflates the responses of one connection. The Deflater and its buffer are created once and reset between
+ * responses, so compressing allocates only the output. Not thread safe, {@link #end()} releases the native memory.
+ */
+class SocketIOCompressor {
+
+    private final Deflater deflater;
+
+    private final SocketIOCompressionMetrics metrics;
+
+    private final byte[] buffer = new byte[8192];
+
+    SocketIOCompressor(int level, SocketIOCompressionMetrics metrics) {
+        this.deflater = new Deflater(level);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the input in zlib format, the HTTP deflate content coding
+     */
+    byte[] deflate(byte[] input) {
+
+        long start = System.nanoTime();
+
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 64);
+
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+
+        byte[] compressed = out.toByteArray();
+
+        metrics.recordCompressed(input.length, compressed.length, System.nanoTime() - start);
+
+        return compressed;
+    }
+
+    void end() {
+        deflater.end();
+    }
+}
@@ -5,6 +5,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Arrays;
+
 @Configuration
 @EnableAutoConfiguration
 public class SocketIOConfig {
@@ -14,6 +16,33 @@ public class SocketIOConfig {
         return "SocketIOConfig{" +
                 "pingTimeout=" + pingTimeout +
                 ", pingInterval=" + pingInterval +
+                ", outboundQueueCapacity=" + outboundQueueCapacity +
+                ", outboundBatchSize=" + outboundBatchSize +
+                ", outboundOverflowPolicy=" + outboundOverflowPolicy +
+                ", outboundThreads=" + outboundThreads +
+                ", timerTickMillis=" + timerTickMillis +
+                ", inboundMaxMessageSize=" + inboundMaxMessageSize +
+                ", inboundStreaming=" + inboundStreaming +
+                ", inboundStreamingNamespaces=" + Arrays.toString(inboundStreamingNamespaces) +
+                ", namespaces=" + Arrays.toString(namespaces) +
+                ", namespaceMaxConnections=" + namespaceMaxConnections +
+                ", handlerExecutor=" + handlerExecutor +
+                ", handlerThreads=" + handlerThreads +
+                ", handlerQueueCapacity=" + handlerQueueCapacity +
+                ", logSampleRate=" + logSampleRate +
+                ", pollingEnabled=" + pollingEnabled +
+                ", compressionPermessageDeflate=" + compressionPermessageDeflate +
+                ", compressionThreshold=" + compressionThreshold +
+                ", compressionNamespaces=" + Arrays.toString(compressionNamespaces) +
+                ", compressionExcludedEvents=" + Arrays.toString(compressionExcludedEvents) +
+                ", compressionLevel=" + compressionLevel +
+                ", clusterEnabled=" + clusterEnabled +
+                ", clusterExchange=" + clusterExchange +
+                ", clusterBatchSize=" + clusterBatchSize +
+                ", recoveryEnabled=" + recoveryEnabled +
+                ", recoveryWindowMillis=" + recoveryWindowMillis +
+                ", recoveryBufferSize=" + recoveryBufferSize +
+                ", topicMaxLag=" + topicMaxLag +
                 '}';
     }
 
@@ -25,4 +54,143 @@ public class SocketIOConfig {
     public int pingInterval;
 
 
+    @Value("${socketio.outbound.queueCapacity:1024}")
+    public int outboundQueueCapacity;
+
+
+    @Value("${socketio.outbound.batchSize:64}")
+    public int outboundBatchSize;
+
+
+    @Value("${socketio.outbound.overflowPolicy:DropOldest}")
+    public SocketIOOverflowPolicy outboundOverflowPolicy;
+
+
+    /** Threads draining outbound queues, 0 means one per available processor. */
+    @Value("${socketio.outbound.threads:0}")
+    public int outboundThreads;
+
+
+    /** Resolution of the timer wheel enforcing heartbeat and ack timeouts. */
+    @Value("${socketio.timer.tickMillis:100}")
+    public long timerTickMillis;
+
+
+    /** Largest inbound message accepted, in chars for text and bytes for binary; larger ones close the connection. */
+    @Value("${socketio.inbound.maxMessageSize:1048576}")
+    public int inboundMaxMessageSize;
+
+
+    /** Accept messages in fragments instead of having the container buffer them whole. */
+    @Value("${socketio.inbound.streaming:false}")
+    public boolean inboundStreaming;
+
+
+    /** Namespaces whose events are parsed while their fragments arrive, requires inbound streaming. */
+    @Value("${socketio.inbound.streamingNamespaces:}")
+    public String[] inboundStreamingNamespaces;
+
+
+    /** Namespaces clients may connect to besides those of event handlers, connects to others are rejected. */
+    @Value("${socketio.namespaces:/}")
+    public String[] namespaces;
+
+
+    /** Connections each namespace of {@code socketio.namespaces} accepts at a time, 0 for no limit. */
+    @Value("${socketio.namespace.maxConnections:0}")
+    public int namespaceMaxConnections;
+
+
+    /** Where inbound event handlers run. */
+    @Value("${socketio.handler.executor:Pool}")
+    public SocketIOHandlerExecutorType handlerExecutor;
+
+
+    /** Threads running event handlers of the Pool and ForkJoin executors, 0 means one per available processor. */
+    @Value("${socketio.handler.threads:0}")
+    public int handlerThreads;
+
+
+    /** Connections with pending events the Pool executor queues before handlers run on the reading thread. */
+    @Value("${socketio.handler.queueCapacity:10000}")
+    public int handlerQueueCapacity;
+
+
+    /** Per-message info logs are written for one in this many messages, 1 logs every message and 0 none. */
+    @Value("${socketio.log.sampleRate:1}")
+    public int logSampleRate;
+
+
+    /** Serve the HTTP long-polling transport next to WebSocket, for clients that cannot open a WebSocket. */
+    @Value("${socketio.polling.enabled:true}")
+    public boolean pollingEnabled;
+
+
+    /**
+     * Let WebSocket clients negotiate permessage-deflate. Tomcat then compresses every message of the connection,
+     * tiny ticks included, ignoring the threshold, namespaces and excluded events, and the compression metrics do
+     * not see it; off by default, turn it on when messages are mostly large and bandwidth costs more than CPU.
+     */
+    @Value("${socketio.compression.permessageDeflate:false}")
+    public boolean compressionPermessageDeflate;
+
+
+    /** Messages shorter than this are sent uncompressed. */
+    @Value("${socketio.compression.threshold:1024}")
+    public int compressionThreshold;
+
+
+    /** Namespaces whose messages may be compressed, empty for all. */
+    @Value("${socketio.compression.namespaces:}")
+    public String[] compressionNamespaces;
+
+
+    /** Events that are never compressed, e.g. high rate ticks that are small anyway. */
+    @Value("${socketio.compression.excludedEvents:}")
+    public String[] compressionExcludedEvents;
+
+
+    /** Deflate level from 1 (fastest) to 9 (smallest), -1 for the default. */
+    @Value("${socketio.compression.level:-1}")
+    public int compressionLevel;
+
+
+    /** Forward broadcasts of SocketIOClusterAdapter to the other nodes over the AMQP broker of spring.rabbitmq. */
+    @Value("${socketio.cluster.enabled:false}")
+    public boolean clusterEnabled;
+
+
+    /** Fanout exchange the nodes of a cluster share. */
+    @Value("${socketio.cluster.exchange:socketio.cluster}")
+    public String clusterExchange;
+
+
+    /** Broadcasts published to the other nodes in one message at most. */
+    @Value("${socketio.cluster.batchSize:256}")
+    public int clusterBatchSize;
+
+
+    /**
+     * Keep the rooms and recent events of a dropped connection so that a client reconnecting with
+     * {@code recover=<sid>&offset=<last offset>} resumes its session and only receives the events it missed.
+     */
+    @Value("${socketio.recovery.enabled:false}")
+    public boolean recoveryEnabled;
+
+
+    /** How long a dropped connection can be resumed, events older than this are not replayed. */
+    @Value("${socketio.recovery.windowMillis:120000}")
+    public long recoveryWindowMillis;
+
+
+    /** Events kept per connection for replay. */
+    @Value("${socketio.recovery.bufferSize:256}")
+    public int recoveryBufferSize;
+
+
+    /** Frames a topic member may fall behind the source before it skips ahead to the latest ones. */
+    @Value("${socketio.topic.maxLag:1024}")
+    public int topicMaxLag;
+
+
 }
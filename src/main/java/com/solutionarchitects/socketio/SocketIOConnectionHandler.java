@@ -1,28 +1,54 @@
 package com.solutionarchitects.socketio;
 
-import com.google.gson.Gson;
-import com.google.gson.internal.StringMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import rx.functions.Func1;
+import rx.functions.Func2;
 
-import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by e211303 on 5/25/2016.
  */
 public class SocketIOConnectionHandler {
 
-    private final WebSocketSession webSocketSession;
+    private volatile WebSocketSession webSocketSession;
+    private final SocketIOOutboundQueue outboundQueue;
+    private final SocketIORooms socketIORooms;
+    private final SocketIOAckTable acks;
+    private final Set<String> rooms = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private final String nameSpace;
     private Logger logger = LoggerFactory.getLogger(this.getClass().getName());
     private final String sessionid;
 
-    public SocketIOConnectionHandler(WebSocketSession webSocketSession , String sessionId, String nameSpace){
+    /** Handlers of the inbound events of the namespace, set before the connection is published. */
+    private SocketIOEventDispatchTable eventHandlers = SocketIOEventDispatchTable.EMPTY;
+
+    /** Set once the handler is removed from the rooms index, a join racing with it leaves again. */
+    private volatile boolean unregistered;
+
+    /** Conflators by event name, replaced as a whole when one is added. */
+    private volatile Map<String, SocketIOEventConflator<?>> conflators = Collections.emptyMap();
+
+    public SocketIOConnectionHandler(WebSocketSession webSocketSession , SocketIOOutboundQueue outboundQueue, SocketIORooms socketIORooms, String sessionId, String nameSpace){
+        this(webSocketSession, outboundQueue, socketIORooms, null, sessionId, nameSpace);
+    }
+
+    /**
+     * @param acks the pending acks of the connection, shared by its namespaces; null if emits cannot request acks
+     */
+    public SocketIOConnectionHandler(WebSocketSession webSocketSession , SocketIOOutboundQueue outboundQueue, SocketIORooms socketIORooms, SocketIOAckTable acks, String sessionId, String nameSpace){
         this.webSocketSession = webSocketSession;
+        this.outboundQueue = outboundQueue;
+        this.socketIORooms = socketIORooms;
+        this.acks = acks;
         this.sessionid= sessionId;
         this.nameSpace = nameSpace;
 
@@ -30,32 +56,241 @@ public class SocketIOConnectionHandler {
     }
 
 
-    public void receiveEvent(String eventName, StringMap payload){
+    public void receiveEvent(String eventName, Object payload){
+
+        receiveEvent(eventName, payload, null);
+
+    }
+
+    /**
+     * @param payload the event data; binary attachments arrive as read-only ByteBuffers in place of their placeholders
+     * @param ack     the reply callback if the client asked for an acknowledgement, null otherwise
+     */
+    public void receiveEvent(String eventName, Object payload, SocketIOAckReply ack){
+
+        SocketIOEventInvoker invoker = eventHandlers.get(eventName);
+
+        if (invoker == null) {
+            logger.info("Event Received Namespace : {}  EventName {} Payload {} Ack {}", nameSpace,eventName,payload,ack);
+            return;
+        }
+
+        try {
+            Object result = invoker.invoke(this, payload, ack);
+            if (result != null && ack != null) {
+                ack.send(result);
+            }
+        } catch (Exception e) {
+            logger.error("Event Handler failed Namespace : {} EventName : {} SessionId : {} Handler : {}", nameSpace, eventName, sessionid, invoker, e);
+        }
+
+    }
+
+    /**
+     * @param eventHandlers the {@link SocketIOEvent} handlers of the namespace, called by {@link #receiveEvent(String, Object, SocketIOAckReply)}
+     */
+    public void setEventHandlers(SocketIOEventDispatchTable eventHandlers) {
+        this.eventHandlers = eventHandlers;
+    }
+
+    /**
+     * Called instead of {@link #receiveEvent(String, Object, SocketIOAckReply)} for events of a streamed namespace,
+     * as soon as the event name was parsed and before the rest of the message arrived. The default builds the
+     * arguments and then calls {@code receiveEvent}; override it to consume large payloads token by token.
+     *
+     * @param ack the reply callback if the client asked for an acknowledgement, null otherwise
+     */
+    public SocketIOEventStream openEventStream(String eventName, SocketIOAckReply ack){
 
-        logger.info("Event Received Namespace : {}  EventName {} Payload {}", nameSpace,eventName,payload);
+        return new SocketIOEventTreeBuilder(this, eventName, ack);
 
     }
 
+    @SuppressWarnings("unchecked")
     public void sendEvent(String eventName, Object payload){
 
-        ArrayList eventPayload = new ArrayList();
+        SocketIOEventConflator<Object> conflator = (SocketIOEventConflator<Object>) conflators.get(eventName);
 
-        eventPayload.add(eventName);
-        eventPayload.add(payload);
+        if (conflator != null) {
+            conflator.offer(payload);
+        } else {
+            outboundQueue.offer(SocketIOFrame.event(nameSpace, eventName, payload));
+        }
 
-        Gson gson = new Gson();
+    }
 
-        String json = gson.toJson(eventPayload);
+    /**
+     * Sends an event whose payload may contain byte[] or ByteBuffer values, which are written as binary frames
+     * rather than base64 in the JSON. Binary events are never conflated.
+     */
+    public boolean sendBinaryEvent(String eventName, Object payload){
 
-        String eventMessage = String.format("%d%d%s,%s", 4, 2, nameSpace, json);
+        return outboundQueue.offer(SocketIOFrame.binaryEvent(nameSpace, eventName, payload));
 
-        try {
-            webSocketSession.sendMessage(new TextMessage(eventMessage));
-        } catch (IOException e) {
-            e.printStackTrace();
+    }
+
+    /**
+     * Sends an event that asks the client for an acknowledgement. Acked events are never conflated, byte[] and
+     * ByteBuffer values of the payload are sent as binary attachments.
+     *
+     * @param timeoutMillis the time after which the future fails with a {@link java.util.concurrent.TimeoutException}
+     * @return a future completed with the arguments of the client's ack; it fails if the connection closes first or
+     * the connection was created without acks
+     */
+    public CompletableFuture<List<Object>> sendEventWithAck(String eventName, Object payload, long timeoutMillis){
+
+        CompletableFuture<List<Object>> future = new CompletableFuture<>();
+
+        if (acks == null) {
+            future.completeExceptionally(new IllegalStateException("Acks are not enabled for this connection"));
+            return future;
+        }
+
+        long ackId = acks.register(future, timeoutMillis);
+
+        if (ackId == SocketIOAckTable.CLOSED) {
+            future.completeExceptionally(new IllegalStateException("Connection closed"));
+            return future;
+        }
+
+        if (!outboundQueue.offer(SocketIOFrame.event(nameSpace, eventName, ackId, payload)) && acks.cancel(ackId)) {
+            future.completeExceptionally(new IllegalStateException("Connection closed"));
+        }
+
+        return future;
+    }
+
+    /**
+     * Switches an event to conflating mode: while the connection is behind, pending updates of the event are
+     * merged per key instead of queued one by one.
+     *
+     * @param eventName   the event to conflate
+     * @param keySelector extracts the conflation key, e.g. the symbol, from a payload
+     * @param accumulator merges a pending value (first argument) with a newer update (second argument)
+     * @param <T>         the payload type
+     */
+    public synchronized <T> void conflate(String eventName, Func1<? super T, ?> keySelector, Func2<T, T, T> accumulator){
+
+        HashMap<String, SocketIOEventConflator<?>> map = new HashMap<>(conflators);
+
+        map.put(eventName, new SocketIOEventConflator<T>(nameSpace, eventName, keySelector, accumulator, outboundQueue));
+
+        conflators = map;
+
+        logger.debug("Conflating Namespace : {} EventName : {} SessionId : {}", nameSpace, eventName, sessionid);
+    }
+
+    /**
+     * Queues an already encoded frame on the connection's outbound queue, the frame may be shared with other
+     * connections.
+     *
+     * @return false if the connection no longer accepts frames
+     */
+    public boolean sendFrame(SocketIOFrame frame){
+
+        if (frame.isConflatable()) {
+            SocketIOEventConflator<?> conflator = conflators.get(frame.getEventName());
+            if (conflator != null) {
+                return conflator.offer(frame);
+            }
+        }
+
+        return outboundQueue.offer(frame);
+
+    }
+
+    /**
+     * Adds the connection to a room of its namespace.
+     */
+    public void join(String room){
+
+        if (unregistered) {
+            return;
         }
 
+        if (rooms.add(room)) {
+            socketIORooms.join(this, room);
+            // the rooms may have been walked by unregister before this one was added
+            if (unregistered) {
+                leave(room);
+            }
+        }
+
+    }
+
+    /**
+     * Removes the connection from a room of its namespace.
+     */
+    public void leave(String room){
+
+        if (rooms.remove(room)) {
+            socketIORooms.leave(this, room);
+        }
+
+    }
+
+    /**
+     * Marks the handler removed from the rooms index, called before its rooms are walked.
+     */
+    void unregistered() {
+        unregistered = true;
+    }
+
+    boolean isUnregistered() {
+        return unregistered;
+    }
+
+    public boolean inRoom(String room) {
+        return rooms.contains(room);
+    }
+
+    /**
+     * @return a read-only view of the rooms the connection joined
+     */
+    public Set<String> getRooms() {
+        return Collections.unmodifiableSet(rooms);
+    }
+
+    /**
+     * Emits an event to every connection in a room of this connection's namespace, including this one if it
+     * joined the room.
+     *
+     * @return the number of connections the event was handed to
+     */
+    public int emitToRoom(String room, String eventName, Object payload){
+        return socketIORooms.emitToRoom(nameSpace, room, eventName, payload);
+    }
+
+    /**
+     * Emits an event to every connection of this connection's namespace that is not in the given room.
+     *
+     * @return the number of connections the event was handed to
+     */
+    public int emitExceptRoom(String room, String eventName, Object payload){
+        return socketIORooms.emitExceptRoom(nameSpace, room, eventName, payload);
+    }
+
+    public String getNameSpace() {
+        return nameSpace;
+    }
+
+    public String getSessionId() {
+        return sessionid;
+    }
+
+    public WebSocketSession getWebSocketSession() {
+        return webSocketSession;
+    }
+
+    /**
+     * Called when the session is resumed on a new connection.
+     */
+    void rebind(WebSocketSession webSocketSession) {
+        this.webSocketSession = webSocketSession;
+    }
 
+    public SocketIOOutboundQueue getOutboundQueue() {
+        return outboundQueue;
     }
 
 }
@@ -0,0 +1,56 @@
+package com.solutionarchitects.socketio;
+
+/**
+ * Hands the tokens of a streamed event to a stream as they are parsed, but completes it on the handler executor of
+ * the connection, in order with its other events.
+ */
+final class SocketIODispatchedEventStream implements SocketIOEventStream {
+
+    private final SocketIOSession session;
+    private final SocketIOEventStream stream;
+
+    SocketIODispatchedEventStream(SocketIOSession session, SocketIOEventStream stream) {
+        this.session = session;
+        this.stream = stream;
+    }
+
+    @Override
+    public void startObject() {
+        stream.startObject();
+    }
+
+    @Override
+    public void endObject() {
+        stream.endObject();
+    }
+
+    @Override
+    public void startArray() {
+        stream.startArray();
+    }
+
+    @Override
+    public void endArray() {
+        stream.endArray();
+    }
+
+    @Override
+    public void name(String name) {
+        stream.name(name);
+    }
+
+    @Override
+    public void value(Object value) {
+        stream.value(value);
+    }
+
+    @Override
+    public void end() {
+        session.dispatch(stream::end);
+    }
+
+    @Override
+    public void abort(Exception cause) {
+        session.dispatch(() -> stream.abort(cause));
+    }
+}
@@ -0,0 +1,31 @@
+package com.solutionarchitects.socketio;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a Spring bean as the handler of an inbound event.
+ * <p>
+ * Parameters are resolved by type: a {@link SocketIOConnectionHandler} receives the connection, a
+ * {@link SocketIOAckReply} the reply callback (null if the client asked for no acknowledgement), and at most one
+ * other parameter receives the event data, bound to its declared type by {@link SocketIOPayloadBinder}. A value
+ * returned by the method is sent as the acknowledgement if the client asked for one.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SocketIOEvent {
+
+    /**
+     * @return the namespace, "/" for the default namespace
+     */
+    String namespace() default "/";
+
+    /**
+     * @return the event name
+     */
+    String event();
+}
@@ -0,0 +1,151 @@
+package com.solutionarchitects.socketio;
+
+import org.springframework.web.socket.TextMessage;
+import rx.functions.Func1;
+import rx.functions.Func2;
+
+import java.util.HashMap;
+
+/**
+ * Conflates the pending updates of one event of a connection by a key extracted from the payload.
+ * <p>
+ * The first update for a key places a single lazily encoded frame on the outbound queue; later updates for the
+ * same key are merged into the pending value with the accumulator until the drainer writes that frame. A slow
+ * client therefore receives at most one merged update per key per flush and the connection never holds more
+ * than one pending update per key. An update that is not merged with anything is written as the original
+ * shared frame, so encode-once broadcasts stay encode-once.
+ * <p>
+ * Conflated events are not recorded for connection state recovery, a merged value never existed as one event. They
+ * are therefore sent without an offset, so a client never reports one as the last event it received; a shared frame
+ * carrying an offset is encoded again without it.
+ * <p>
+ * The accumulator is called with the pending value first and the new update second, like the accumulator of
+ * {@link com.solutionarchitects.common.rx.v2.BehaviorSubject#create(Func2)}. Payloads of broadcasts are shared
+ * by all connections, so the accumulator must return a new value instead of mutating either argument.
+ *
+ * @param <T> the payload type
+ */
+public class SocketIOEventConflator<T> {
+
+    private final String nameSpace;
+    private final String eventName;
+    private final Func1<? super T, ?> keySelector;
+    private final Func2<T, T, T> accumulator;
+    private final SocketIOOutboundQueue outboundQueue;
+
+    /** Pending updates by key, guarded by this. */
+    private final HashMap<Object, Pending<T>> pending = new HashMap<>();
+
+    public SocketIOEventConflator(String nameSpace, String eventName, Func1<? super T, ?> keySelector,
+                                  Func2<T, T, T> accumulator, SocketIOOutboundQueue outboundQueue) {
+        this.nameSpace = nameSpace;
+        this.eventName = eventName;
+        this.keySelector = keySelector;
+        this.accumulator = accumulator;
+        this.outboundQueue = outboundQueue;
+    }
+
+    /**
+     * Conflates an update that has not been encoded yet.
+     *
+     * @return false if the connection no longer accepts frames
+     */
+    public boolean offer(T payload) {
+        return offer(payload, null);
+    }
+
+    /**
+     * Conflates the update carried by an encoded event frame.
+     *
+     * @return false if the connection no longer accepts frames
+     */
+    @SuppressWarnings("unchecked")
+    public boolean offer(SocketIOFrame frame) {
+        return offer((T) frame.getPayload(), frame);
+    }
+
+    private boolean offer(T payload, SocketIOFrame frame) {
+
+        if (outboundQueue.isClosed()) {
+            return false;
+        }
+
+        Object key = keySelector.call(payload);
+
+        synchronized (this) {
+            Pending<T> p = pending.get(key);
+            if (p != null) {
+                p.value = accumulator.call(p.value, payload);
+                p.frame = null;
+                outboundQueue.getMetrics().conflated.increment();
+                return true;
+            }
+            pending.put(key, new Pending<T>(payload, frame));
+        }
+
+        if (!outboundQueue.offer(new ConflatedFrame(key))) {
+            remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    private synchronized Pending<T> remove(Object key) {
+        return pending.remove(key);
+    }
+
+    /**
+     * @return the number of keys with a pending update
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    static final class Pending<T> {
+
+        T value;
+
+        /** The original encoded frame while the value has not been merged with another update. */
+        SocketIOFrame frame;
+
+        Pending(T value, SocketIOFrame frame) {
+            this.value = value;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * Placeholder on the outbound queue, the merged value of its key is taken and encoded when it is written.
+     */
+    final class ConflatedFrame extends SocketIOFrame {
+
+        private final Object key;
+
+        private TextMessage message;
+
+        ConflatedFrame(Object key) {
+            super(nameSpace, eventName);
+            this.key = key;
+        }
+
+        @Override
+        public TextMessage getMessage() {
+            if (message == null) {
+                Pending<T> p = remove(key);
+                message = p.frame != null && p.frame.getOffset() == null
+                        ? p.frame.getMessage()
+                        : SocketIOFrame.event(nameSpace, eventName, p.value, false).getMessage();
+            }
+            return message;
+        }
+
+        @Override
+        void dropped() {
+            remove(key);
+        }
+    }
+}
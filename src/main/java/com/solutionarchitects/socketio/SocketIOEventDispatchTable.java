@@ -0,0 +1,49 @@
+package com.solutionarchitects.socketio;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@link SocketIOEvent} handlers of one namespace by event name. Immutable, a connection resolves its table
+ * once when it connects to the namespace.
+ */
+public final class SocketIOEventDispatchTable {
+
+    public static final SocketIOEventDispatchTable EMPTY = new SocketIOEventDispatchTable(Collections.<String, SocketIOEventInvoker>emptyMap());
+
+    private final Map<String, SocketIOEventInvoker> invokers;
+
+    SocketIOEventDispatchTable(Map<String, SocketIOEventInvoker> invokers) {
+        this.invokers = invokers;
+    }
+
+    /**
+     * @return the handler of an event, null if there is none
+     */
+    public SocketIOEventInvoker get(String eventName) {
+        return invokers.get(eventName);
+    }
+
+    public int size() {
+        return invokers.size();
+    }
+
+    /**
+     * @return a copy of this table with one more handler
+     * @throws IllegalStateException if the event already has a handler
+     */
+    SocketIOEventDispatchTable with(String eventName, SocketIOEventInvoker invoker) {
+        if (invokers.containsKey(eventName)) {
+            throw new IllegalStateException("Event " + eventName + " already handled by " + invokers.get(eventName) + ", cannot add " + invoker);
+        }
+        HashMap<String, SocketIOEventInvoker> map = new HashMap<>(invokers);
+        map.put(eventName, invoker);
+        return new SocketIOEventDispatchTable(map);
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOEventDispatchTable{" + invokers.keySet() + '}';
+    }
+}
@@ -0,0 +1,118 @@
+package com.solutionarchitects.socketio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the {@link SocketIOEvent} methods of all singleton beans once the context started and compiles them into
+ * a {@link SocketIOEventDispatchTable} per namespace, declaring the namespace in the
+ * {@link SocketIONamespaceRegistry}. Payload types of the handlers are declared to the
+ * {@link SocketIOPayloadBinder} so the event data arrives already bound.
+ */
+@Service
+public class SocketIOEventHandlers implements SmartInitializingSingleton {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+    /** Dispatch tables by namespace, replaced as a whole when a handler is added. */
+    private volatile Map<String, SocketIOEventDispatchTable> tables = Collections.emptyMap();
+
+    @Resource
+    private ApplicationContext applicationContext;
+
+    @Resource
+    private SocketIOPayloadBinder socketIOPayloadBinder;
+
+    @Resource
+    private SocketIONamespaceRegistry socketIONamespaceRegistry;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+
+        for (String beanName : applicationContext.getBeanDefinitionNames()) {
+            Class<?> beanType = applicationContext.getType(beanName);
+            if (beanType == null || !applicationContext.isSingleton(beanName) || findHandlerMethods(beanType).isEmpty()) {
+                continue;
+            }
+            register(applicationContext.getBean(beanName));
+        }
+
+        logger.info("SocketIO Event Handlers : {}", tables);
+    }
+
+    /**
+     * Adds the {@link SocketIOEvent} methods of a bean. Connections resolve their table when they connect, so
+     * handlers should be registered before clients connect.
+     *
+     * @return the number of handlers added
+     * @throws IllegalStateException if an event already has a handler
+     */
+    public synchronized int register(Object bean) {
+
+        List<Method> methods = findHandlerMethods(ClassUtils.getUserClass(bean));
+
+        HashMap<String, SocketIOEventDispatchTable> map = new HashMap<>(tables);
+
+        for (Method method : methods) {
+
+            SocketIOEvent annotation = AnnotationUtils.findAnnotation(method, SocketIOEvent.class);
+            String nameSpace = normalize(annotation.namespace());
+
+            SocketIOEventInvoker invoker = SocketIOEventInvoker.of(bean, method);
+
+            SocketIOEventDispatchTable table = map.containsKey(nameSpace) ? map.get(nameSpace) : SocketIOEventDispatchTable.EMPTY;
+            map.put(nameSpace, table.with(annotation.event(), invoker));
+
+            if (invoker.getPayloadType() != null && invoker.getPayloadType() != Object.class) {
+                socketIOPayloadBinder.bind(nameSpace, annotation.event(), invoker.getPayloadType());
+            }
+
+            logger.debug("Registered Namespace : {} EventName : {} Handler : {}", nameSpace, annotation.event(), invoker);
+        }
+
+        tables = map;
+
+        for (Map.Entry<String, SocketIOEventDispatchTable> entry : map.entrySet()) {
+            socketIONamespaceRegistry.declare(entry.getKey()).setEventHandlers(entry.getValue());
+        }
+
+        return methods.size();
+    }
+
+    /**
+     * @param nameSpace the namespace, the empty string for the default namespace
+     * @return the handlers of a namespace, an empty table if there are none
+     */
+    public SocketIOEventDispatchTable getDispatchTable(String nameSpace) {
+        SocketIOEventDispatchTable table = tables.get(normalize(nameSpace));
+        return table == null ? SocketIOEventDispatchTable.EMPTY : table;
+    }
+
+    private static String normalize(String nameSpace) {
+        return nameSpace == null || "/".equals(nameSpace) ? "" : nameSpace;
+    }
+
+    private static List<Method> findHandlerMethods(Class<?> type) {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : ReflectionUtils.getUniqueDeclaredMethods(ClassUtils.getUserClass(type))) {
+            if (!method.isBridge() && AnnotationUtils.findAnnotation(method, SocketIOEvent.class) != null) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+}
@@ -0,0 +1,103 @@
+package com.solutionarchitects.socketio;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Calls a {@link SocketIOEvent} method.
+ * <p>
+ * The method is bound to its bean and its parameters are rearranged once into a handle of the fixed type
+ * {@code (SocketIOConnectionHandler, Object, SocketIOAckReply)Object}, so each event is an {@code invokeExact}
+ * without reflective argument arrays or access checks.
+ */
+public final class SocketIOEventInvoker {
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, SocketIOConnectionHandler.class, Object.class, SocketIOAckReply.class);
+
+    private static final int HANDLER = 0;
+    private static final int PAYLOAD = 1;
+    private static final int ACK = 2;
+
+    private final MethodHandle handle;
+    private final Type payloadType;
+    private final String description;
+
+    private SocketIOEventInvoker(MethodHandle handle, Type payloadType, String description) {
+        this.handle = handle;
+        this.payloadType = payloadType;
+        this.description = description;
+    }
+
+    /**
+     * @param bean the bean to call the method on, ignored for static methods
+     * @throws IllegalArgumentException if the method has more than one payload parameter
+     */
+    public static SocketIOEventInvoker of(Object bean, Method method) {
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        int[] reorder = new int[parameterTypes.length];
+        Class<?>[] invokedTypes = new Class<?>[parameterTypes.length];
+        Type payloadType = null;
+
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i] == SocketIOConnectionHandler.class) {
+                reorder[i] = HANDLER;
+            } else if (parameterTypes[i] == SocketIOAckReply.class) {
+                reorder[i] = ACK;
+            } else if (payloadType == null) {
+                reorder[i] = PAYLOAD;
+                payloadType = method.getGenericParameterTypes()[i];
+            } else {
+                throw new IllegalArgumentException("More than one payload parameter " + method);
+            }
+            invokedTypes[i] = INVOKER_TYPE.parameterType(reorder[i]);
+        }
+
+        MethodHandle handle;
+        try {
+            method.setAccessible(true);
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + method, e);
+        }
+
+        if (!Modifier.isStatic(method.getModifiers())) {
+            handle = handle.bindTo(bean);
+        }
+
+        handle = handle.asType(MethodType.methodType(Object.class, invokedTypes));
+        handle = MethodHandles.permuteArguments(handle, INVOKER_TYPE, reorder);
+
+        return new SocketIOEventInvoker(handle, payloadType, method.toGenericString());
+    }
+
+    /**
+     * @return the value returned by the method, null for void methods
+     */
+    public Object invoke(SocketIOConnectionHandler socketIOConnectionHandler, Object payload, SocketIOAckReply ack) throws Exception {
+        try {
+            return (Object) handle.invokeExact(socketIOConnectionHandler, payload, ack);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+
+    /**
+     * @return the declared type of the payload parameter, null if the method takes no payload
+     */
+    public Type getPayloadType() {
+        return payloadType;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOEventInvoker{" + description + '}';
+    }
+}
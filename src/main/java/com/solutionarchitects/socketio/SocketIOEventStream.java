@@ -0,0 +1,25 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOJsonStreamParser;
+
+/**
+ * Consumes the arguments of an inbound event token by token while its message is still arriving, see
+ * {@link SocketIOConnectionHandler#openEventStream(String, SocketIOAckReply)}.
+ * <p>
+ * Tokens are those of the event's arguments following the event name, in order; the enclosing array is not
+ * reported. Exactly one of {@link #end()} or {@link #abort(Exception)} is called last. Tokens arrive on the thread
+ * reading the connection; when handlers run on an executor, {@code end} and {@code abort} are called there.
+ */
+public interface SocketIOEventStream extends SocketIOJsonStreamParser.Handler {
+
+    /**
+     * Called once the whole message was received.
+     */
+    void end();
+
+    /**
+     * Called instead of {@link #end()} when the message turned out to be malformed, too large or the connection
+     * closed before it was complete.
+     */
+    void abort(Exception cause);
+}
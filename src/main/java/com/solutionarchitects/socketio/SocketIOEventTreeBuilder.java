@@ -0,0 +1,92 @@
+package com.solutionarchitects.socketio;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the arguments of a streamed event into lists and maps and hands the event to
+ * {@link SocketIOConnectionHandler#receiveEvent(String, Object, SocketIOAckReply)} when it is complete, the same
+ * way a whole message is delivered.
+ */
+public class SocketIOEventTreeBuilder implements SocketIOEventStream {
+
+    private final SocketIOConnectionHandler socketIOConnectionHandler;
+    private final String eventName;
+    private final SocketIOAckReply ack;
+
+    private final List<Object> args = new ArrayList<>();
+    private final ArrayDeque<Object> containers = new ArrayDeque<>();
+    private String name;
+
+    public SocketIOEventTreeBuilder(SocketIOConnectionHandler socketIOConnectionHandler, String eventName, SocketIOAckReply ack) {
+        this.socketIOConnectionHandler = socketIOConnectionHandler;
+        this.eventName = eventName;
+        this.ack = ack;
+    }
+
+    @Override
+    public void startObject() {
+        open(new LinkedHashMap<String, Object>());
+    }
+
+    @Override
+    public void endObject() {
+        close();
+    }
+
+    @Override
+    public void startArray() {
+        open(new ArrayList<>());
+    }
+
+    @Override
+    public void endArray() {
+        close();
+    }
+
+    @Override
+    public void name(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void value(Object value) {
+        add(value);
+    }
+
+    @Override
+    public void end() {
+        socketIOConnectionHandler.receiveEvent(eventName, args.isEmpty() ? null : args.get(0), ack);
+    }
+
+    @Override
+    public void abort(Exception cause) {
+        args.clear();
+        containers.clear();
+    }
+
+    private void open(Object container) {
+        add(container);
+        containers.push(container);
+    }
+
+    private void close() {
+        containers.pop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(Object value) {
+        Object parent = containers.peek();
+        if (parent == null) {
+            args.add(value);
+        } else if (parent instanceof Map) {
+            ((Map<String, Object>) parent).put(name, value);
+            name = null;
+        } else {
+            ((List<Object>) parent).add(value);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import com.solutionarchitects.socketio.protocol.SocketIOPacketCodec;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable, fully encoded outbound frame.
+ * <p>
+ * The frame is serialized once and the same {@link TextMessage} instance is handed to every recipient, so
+ * emitting one event to many sessions costs one serialization regardless of the number of recipients.
+ * <p>
+ * Event frames keep a reference to their payload so that a connection conflating that event can merge it with
+ * pending updates.
+ * <p>
+ * Binary frames carry their attachments as read-only buffers that are written as binary frames after the text
+ * frame; every recipient writes its own view of the same bytes.
+ * <p>
+ * While connection state recovery is enabled, events that are not acked carry an offset as their last argument,
+ * as in Socket.IO 4.6. The offset identifies the frame, not the recipient, so the frame is still shared; a client
+ * reconnecting with the offset of the last event it received is sent the events it missed.
+ */
+public class SocketIOFrame {
+
+    private final TextMessage message;
+    private final String nameSpace;
+    private final String eventName;
+    private final Object payload;
+    private final ByteBuffer[] attachments;
+    private final boolean conflatable;
+    private final boolean droppable;
+    private final String offset;
+
+    private static final ByteBuffer[] NO_ATTACHMENTS = new ByteBuffer[0];
+
+    /** Starts at a random point so that the offsets of the nodes of a cluster do not meet. */
+    private static final AtomicLong OFFSETS = new AtomicLong(ThreadLocalRandom.current().nextLong(1L << 52));
+
+    /** Set while connection state recovery is enabled; frames are encoded by static factories, so it is static too. */
+    private static volatile boolean offsets;
+
+    /** Time spent encoding frames; they are encoded by static factories, so the histogram is static too. */
+    static final SocketIOHistogram ENCODE_TIME = new SocketIOHistogram();
+
+    private SocketIOFrame(String text, String nameSpace, String eventName, Object payload, ByteBuffer[] attachments,
+                          boolean conflatable, boolean droppable, String offset) {
+        this.message = new TextMessage(text);
+        this.nameSpace = nameSpace;
+        this.eventName = eventName;
+        this.payload = payload;
+        this.attachments = attachments;
+        this.conflatable = conflatable;
+        this.droppable = droppable;
+        this.offset = offset;
+    }
+
+    /**
+     * Wraps an event encoded elsewhere, e.g. by another node. Its payload is not known, so it is not conflated.
+     *
+     * @param offset the offset the text carries, null if none
+     */
+    static SocketIOFrame encoded(String text, String nameSpace, String eventName, String offset) {
+        return new SocketIOFrame(text, nameSpace, eventName, null, NO_ATTACHMENTS, false, true, offset);
+    }
+
+    /**
+     * Constructor for frames of their own type wrapping an already encoded frame.
+     */
+    SocketIOFrame(String text) {
+        this(text, null, null, null, NO_ATTACHMENTS, false, false, null);
+    }
+
+    /**
+     * Constructor for frames that are encoded lazily, when the outbound queue writes them.
+     */
+    SocketIOFrame(String nameSpace, String eventName) {
+        this.message = null;
+        this.nameSpace = nameSpace;
+        this.eventName = eventName;
+        this.payload = null;
+        this.attachments = NO_ATTACHMENTS;
+        this.conflatable = true;
+        this.droppable = true;
+        this.offset = null;
+    }
+
+    /**
+     * Wraps an already encoded frame, such as a handshake, connect, pong or ack; it is never dropped.
+     */
+    public static SocketIOFrame of(CharSequence encoded) {
+        return new SocketIOFrame(encoded.toString());
+    }
+
+    /**
+     * Encodes an Event message for the given namespace.
+     *
+     * @param nameSpace the namespace, the empty string for the default namespace
+     * @param eventName the event name
+     * @param payload   the event data, serialized as JSON
+     * @return the encoded frame
+     */
+    public static SocketIOFrame event(String nameSpace, String eventName, Object payload) {
+        return event(nameSpace, eventName, payload, true);
+    }
+
+    /**
+     * Encodes an Event message, without an offset for events that are not recorded for recovery.
+     *
+     * @param offset false to never add an offset
+     */
+    static SocketIOFrame event(String nameSpace, String eventName, Object payload, boolean offset) {
+        long start = System.nanoTime();
+        StringBuilder encoded = SocketIOPacketCodec.encodeEvent(SocketIOPacketCodec.buffer(), nameSpace, SocketIOPacket.NO_ACK, eventName, payload);
+        String frameOffset = offset ? appendOffset(encoded, SocketIOPacket.NO_ACK) : null;
+        SocketIOFrame frame = new SocketIOFrame(encoded.toString(), nameSpace, eventName, payload, NO_ATTACHMENTS, true, true, frameOffset);
+        ENCODE_TIME.record(System.nanoTime() - start);
+        return frame;
+    }
+
+    /**
+     * Encodes an Event message whose payload may contain byte[] or ByteBuffer values, they are sent as binary
+     * attachments instead of being serialized into the JSON. The buffers must not be modified afterwards.
+     * Binary frames are never conflated.
+     */
+    public static SocketIOFrame binaryEvent(String nameSpace, String eventName, Object payload) {
+        return event(nameSpace, eventName, SocketIOPacket.NO_ACK, payload);
+    }
+
+    /**
+     * Encodes an Event message that may carry binary attachments and may ask the recipient for an
+     * acknowledgement. A frame with an ack id is specific to one connection and is neither shared nor conflated.
+     */
+    static SocketIOFrame event(String nameSpace, String eventName, long ackId, Object payload) {
+        long start = System.nanoTime();
+        List<ByteBuffer> attachments = new ArrayList<>(0);
+        StringBuilder encoded = SocketIOPacketCodec.encodeBinaryEvent(SocketIOPacketCodec.buffer(), nameSpace, ackId, eventName, payload, attachments);
+        String offset = appendOffset(encoded, ackId);
+        SocketIOFrame frame = new SocketIOFrame(encoded.toString(), nameSpace, eventName, null, attachments.toArray(NO_ATTACHMENTS),
+                false, ackId == SocketIOPacket.NO_ACK, offset);
+        ENCODE_TIME.record(System.nanoTime() - start);
+        return frame;
+    }
+
+    /**
+     * Encodes an Ack message that may carry binary attachments.
+     */
+    static SocketIOFrame ack(String nameSpace, long ackId, Object... args) {
+        long start = System.nanoTime();
+        List<ByteBuffer> attachments = new ArrayList<>(0);
+        StringBuilder encoded = SocketIOPacketCodec.encodeBinaryAck(SocketIOPacketCodec.buffer(), nameSpace, ackId, attachments, args);
+        SocketIOFrame frame = new SocketIOFrame(encoded.toString(), nameSpace, null, null, attachments.toArray(NO_ATTACHMENTS), false, false, null);
+        ENCODE_TIME.record(System.nanoTime() - start);
+        return frame;
+    }
+
+    /**
+     * Adds the next offset as last argument of an encoded event, unless offsets are off or the event is acked.
+     *
+     * @return the offset or null
+     */
+    private static String appendOffset(StringBuilder encoded, long ackId) {
+        if (!offsets || ackId != SocketIOPacket.NO_ACK) {
+            return null;
+        }
+        String offset = Long.toString(OFFSETS.incrementAndGet());
+        encoded.setLength(encoded.length() - 1);
+        encoded.append(",\"").append(offset).append("\"]");
+        return offset;
+    }
+
+    /**
+     * Turns the offsets of events on or off, for frames encoded from then on.
+     */
+    static void setOffsets(boolean enabled) {
+        offsets = enabled;
+    }
+
+    static boolean isOffsets() {
+        return offsets;
+    }
+
+    public TextMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the binary attachments to write after the text frame, shared and not to be modified
+     */
+    public ByteBuffer[] getAttachments() {
+        return attachments;
+    }
+
+    /**
+     * @return the namespace of an event or ack frame, null for other frames
+     */
+    public String getNameSpace() {
+        return nameSpace;
+    }
+
+    /**
+     * @return the unencoded data of an event frame, null for other frames
+     */
+    public Object getPayload() {
+        return payload;
+    }
+
+    /**
+     * Called by the outbound queue when the frame is discarded instead of being written.
+     */
+    void dropped() {
+    }
+
+    /**
+     * Called by the outbound queue once the frame was written.
+     */
+    void sent() {
+    }
+
+    /**
+     * @return the offset of an event sent while connection state recovery is enabled, null for other frames
+     */
+    public String getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return true for events that may be conflated, those without attachments and ack id
+     */
+    public boolean isConflatable() {
+        return conflatable;
+    }
+
+    /**
+     * @return true for events without ack id, the only frames a full queue may drop; losing a handshake, connect,
+     * pong or ack breaks the protocol for the client
+     */
+    public boolean isDroppable() {
+        return droppable;
+    }
+
+    /**
+     * @return the event name of an event frame, null for other frames
+     */
+    public String getEventName() {
+        return eventName;
+    }
+
+    /**
+     * @return true if both frames are events of the same name in the same namespace, so that the later one
+     * supersedes the earlier one when a slow connection is conflated. Lazily encoded frames carry per-key state
+     * and are never superseded.
+     */
+    public boolean supersedes(SocketIOFrame other) {
+        return conflatable && other.conflatable && other.message != null
+                && eventName.equals(other.eventName) && nameSpace.equals(other.nameSpace);
+    }
+
+    public String getText() {
+        return getMessage().getPayload();
+    }
+
+    /**
+     * @return the encoded length in chars
+     */
+    public int length() {
+        return getText().length();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOFrame{" + (message != null ? message.getPayload() : nameSpace + "#" + eventName) + '}';
+    }
+}
@@ -0,0 +1,21 @@
+package com.solutionarchitects.socketio;
+
+/**
+ * Where inbound event handlers run. Apart from {@link #Inline}, each connection still sees its events handled one
+ * at a time and in order.
+ */
+public enum SocketIOHandlerExecutorType {
+
+    /** On the container thread that read the message, a slow handler holds up the reads of its connection. */
+    Inline,
+
+    /** On a fixed pool with a bounded queue; when it is full the handler runs on the reading thread. */
+    Pool,
+
+    /** On a work-stealing {@link java.util.concurrent.ForkJoinPool} in async mode. */
+    ForkJoin,
+
+    /** On a new virtual thread per turn, falls back to {@link #ForkJoin} where the JDK has no virtual threads. */
+    Virtual
+
+}
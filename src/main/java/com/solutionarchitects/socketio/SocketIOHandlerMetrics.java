@@ -0,0 +1,91 @@
+package com.solutionarchitects.socketio;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters shared by the inbound event handlers of all connections. Times are in nanoseconds, queued time is from
+ * the receipt of an event to the start of its handler.
+ */
+public class SocketIOHandlerMetrics {
+
+    final LongAdder submitted = new LongAdder();
+    final LongAdder executed = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder pending = new LongAdder();
+
+    private final LongAdder queuedNanos = new LongAdder();
+    private final LongAccumulator maxQueuedNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder executionNanos = new LongAdder();
+    private final LongAccumulator maxExecutionNanos = new LongAccumulator(Math::max, 0);
+
+    void recordQueued(long nanos) {
+        queuedNanos.add(nanos);
+        maxQueuedNanos.accumulate(nanos);
+    }
+
+    void recordExecuted(long nanos) {
+        executed.increment();
+        executionNanos.add(nanos);
+        maxExecutionNanos.accumulate(nanos);
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the number of times the shared executor was full and a handler ran on the reading thread
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the number of events waiting for their handler over all connections
+     */
+    public long getPending() {
+        return pending.sum();
+    }
+
+    public long getQueuedNanos() {
+        return queuedNanos.sum();
+    }
+
+    public long getMaxQueuedNanos() {
+        return maxQueuedNanos.get();
+    }
+
+    public long getExecutionNanos() {
+        return executionNanos.sum();
+    }
+
+    public long getMaxExecutionNanos() {
+        return maxExecutionNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        long executed = getExecuted();
+        return "SocketIOHandlerMetrics{" +
+                "submitted=" + getSubmitted() +
+                ", executed=" + executed +
+                ", failed=" + getFailed() +
+                ", rejected=" + getRejected() +
+                ", pending=" + getPending() +
+                ", avgQueuedNanos=" + (executed == 0 ? 0 : getQueuedNanos() / executed) +
+                ", maxQueuedNanos=" + getMaxQueuedNanos() +
+                ", avgExecutionNanos=" + (executed == 0 ? 0 : getExecutionNanos() / executed) +
+                ", maxExecutionNanos=" + getMaxExecutionNanos() +
+                '}';
+    }
+}
@@ -0,0 +1,64 @@
+package com.solutionarchitects.socketio;
+
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Tracks when a connection was last heard from and expires it when it stays silent longer than the timeout.
+ * <p>
+ * Every inbound frame calls {@link #touch()}, which is a single volatile write; the timer wheel only re-arms the
+ * deadline when the previous one fires.
+ */
+public class SocketIOHeartbeat implements SocketIOTimerWheel.Task {
+
+    /**
+     * Called on the timer thread when a connection timed out.
+     */
+    public interface Listener {
+        void onHeartbeatTimeout(WebSocketSession session);
+    }
+
+    private final WebSocketSession webSocketSession;
+    private final SocketIOTimerWheel timerWheel;
+    private final long timeoutMillis;
+    private final Listener listener;
+    private final SocketIOTimerWheel.Timeout timeout;
+
+    private volatile long lastSeen;
+
+    public SocketIOHeartbeat(WebSocketSession webSocketSession, SocketIOTimerWheel timerWheel, long timeoutMillis, Listener listener) {
+        this.webSocketSession = webSocketSession;
+        this.timerWheel = timerWheel;
+        this.timeoutMillis = timeoutMillis;
+        this.listener = listener;
+        this.lastSeen = timerWheel.now();
+        this.timeout = timerWheel.scheduleAt(this, lastSeen + timeoutMillis);
+    }
+
+    /**
+     * Records that the connection is alive.
+     */
+    public void touch() {
+        lastSeen = timerWheel.now();
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Stops tracking the connection.
+     */
+    public void cancel() {
+        timeout.cancel();
+    }
+
+    @Override
+    public long expire(long now) {
+        long deadline = lastSeen + timeoutMillis;
+        if (deadline > now) {
+            return deadline;
+        }
+        listener.onHeartbeatTimeout(webSocketSession);
+        return 0L;
+    }
+}
@@ -0,0 +1,108 @@
+package com.solutionarchitects.socketio;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with power-of-two buckets.
+ * <p>
+ * Recording is a bucket index from the leading zeros of the value and a striped increment, it takes no lock and
+ * allocates nothing. Percentiles are reported as the upper bound of their bucket, so they are accurate to within a
+ * factor of two, which is enough to tell microseconds from milliseconds.
+ */
+public class SocketIOHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public SocketIOHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param value a duration in nanoseconds, negative values count as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        // bucket i holds [2^i, 2^(i+1)), 0 and 1 share bucket 0
+        buckets[63 - Long.numberOfLeadingZeros(value | 1)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        return percentile(counts, total, percentile);
+    }
+
+    private long percentile(long[] counts, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100d);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return count, mean, p50, p90, p99, p999 and max, in the unit recorded
+     */
+    public Map<String, Object> snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", total);
+        snapshot.put("mean", total == 0 ? 0 : sum.sum() / total);
+        snapshot.put("p50", percentile(counts, total, 50));
+        snapshot.put("p90", percentile(counts, total, 90));
+        snapshot.put("p99", percentile(counts, total, 99));
+        snapshot.put("p999", percentile(counts, total, 99.9));
+        snapshot.put("max", getMax());
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOHistogram" + snapshot();
+    }
+}
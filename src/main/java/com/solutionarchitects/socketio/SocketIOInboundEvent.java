@@ -0,0 +1,34 @@
+package com.solutionarchitects.socketio;
+
+/**
+ * The name and bound data of a decoded inbound event.
+ */
+public final class SocketIOInboundEvent {
+
+    private final String eventName;
+    private final Object payload;
+
+    public SocketIOInboundEvent(String eventName, Object payload) {
+        this.eventName = eventName;
+        this.payload = payload;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    /**
+     * @return the first argument of the event bound to its declared type, null if the event has no arguments
+     */
+    public Object getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOInboundEvent{" +
+                "eventName='" + eventName + '\'' +
+                ", payload=" + payload +
+                '}';
+    }
+}
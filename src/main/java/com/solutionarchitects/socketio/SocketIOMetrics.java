@@ -0,0 +1,260 @@
+package com.solutionarchitects.socketio;
+
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the Socket.IO server: traffic per namespace and event, decode, dispatch and encode times, handshake
+ * latency and the server's share of the ping round trip, next to the outbound queue and event handler counters.
+ * <p>
+ * Everything is recorded into striped counters and histograms, the hot paths never lock or allocate for it. Times
+ * are in nanoseconds. A timer thread samples the counters every {@link SocketIORate#TICK_SECONDS} seconds for their
+ * per-second rates, reported next to them.
+ */
+@Service
+public class SocketIOMetrics {
+
+    final LongAdder framesIn = new LongAdder();
+    final LongAdder bytesIn = new LongAdder();
+
+    final LongAdder sessionsSuspended = new LongAdder();
+    final LongAdder sessionsRecovered = new LongAdder();
+    final LongAdder recoveryFailed = new LongAdder();
+    final LongAdder eventsReplayed = new LongAdder();
+
+    private final SocketIOTrafficMetrics traffic = new SocketIOTrafficMetrics();
+
+    private final SocketIOOutboundMetrics outboundMetrics = new SocketIOOutboundMetrics(traffic);
+
+    private final SocketIOHandlerMetrics handlerMetrics = new SocketIOHandlerMetrics();
+
+    private final SocketIOCompressionMetrics compressionMetrics = new SocketIOCompressionMetrics();
+
+    /** From the receipt of an Event message to its payload being bound. */
+    private final SocketIOHistogram decodeTime = new SocketIOHistogram();
+
+    /** From the receipt of an event to the return of its handler, queued time included. */
+    private final SocketIOHistogram dispatchTime = new SocketIOHistogram();
+
+    /** From the WebSocket being established to the first namespace being connected. */
+    private final SocketIOHistogram handshakeTime = new SocketIOHistogram();
+
+    /**
+     * From the receipt of a ping to its pong being written. EIO3 clients send the pings, so this is the part of
+     * their round trip spent in the server.
+     */
+    private final SocketIOHistogram pongLatency = new SocketIOHistogram();
+
+    private final SocketIORate framesInRate = new SocketIORate();
+    private final SocketIORate bytesInRate = new SocketIORate();
+    private final SocketIORate sentRate = new SocketIORate();
+    private final SocketIORate bytesSentRate = new SocketIORate();
+    private final SocketIORate droppedRate = new SocketIORate();
+    private final SocketIORate executedRate = new SocketIORate();
+
+    private int logSampleRate = 1;
+
+    private ScheduledExecutorService timer;
+
+    @Resource
+    private SocketIOConfig socketIOConfig;
+
+    @PostConstruct
+    private void afterInit() {
+        logSampleRate = socketIOConfig.logSampleRate;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "socketio-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::tick, SocketIORate.TICK_SECONDS, SocketIORate.TICK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void beforeDestroy() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Samples every counter for its rate.
+     */
+    void tick() {
+        framesInRate.tick(getFramesIn());
+        bytesInRate.tick(getBytesIn());
+        sentRate.tick(outboundMetrics.getSent());
+        bytesSentRate.tick(outboundMetrics.getBytesSent());
+        droppedRate.tick(outboundMetrics.getDropped());
+        executedRate.tick(handlerMetrics.getExecuted());
+        traffic.tick();
+    }
+
+    /**
+     * @return true if a message should be logged: always at a sample rate of 1, one in N at N and never at 0
+     */
+    public boolean isSampled() {
+        int rate = logSampleRate;
+        return rate == 1 || (rate > 1 && ThreadLocalRandom.current().nextInt(rate) == 0);
+    }
+
+    void recordIn(long bytes) {
+        framesIn.increment();
+        bytesIn.add(bytes);
+    }
+
+    public long getFramesIn() {
+        return framesIn.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    /**
+     * @return inbound frames per second over about the last minute
+     */
+    public double getFramesInRate() {
+        return framesInRate.getRate();
+    }
+
+    /**
+     * @return outbound frames written per second over about the last minute
+     */
+    public double getSentRate() {
+        return sentRate.getRate();
+    }
+
+    /**
+     * @return the number of sessions kept for recovery after their connection dropped
+     */
+    public long getSessionsSuspended() {
+        return sessionsSuspended.sum();
+    }
+
+    public long getSessionsRecovered() {
+        return sessionsRecovered.sum();
+    }
+
+    /**
+     * @return the number of reconnects that asked for recovery and got a new session
+     */
+    public long getRecoveryFailed() {
+        return recoveryFailed.sum();
+    }
+
+    public long getEventsReplayed() {
+        return eventsReplayed.sum();
+    }
+
+    public SocketIOTrafficMetrics getTraffic() {
+        return traffic;
+    }
+
+    public SocketIOOutboundMetrics getOutboundMetrics() {
+        return outboundMetrics;
+    }
+
+    public SocketIOHandlerMetrics getHandlerMetrics() {
+        return handlerMetrics;
+    }
+
+    public SocketIOCompressionMetrics getCompressionMetrics() {
+        return compressionMetrics;
+    }
+
+    public SocketIOHistogram getDecodeTime() {
+        return decodeTime;
+    }
+
+    public SocketIOHistogram getDispatchTime() {
+        return dispatchTime;
+    }
+
+    public SocketIOHistogram getEncodeTime() {
+        return SocketIOFrame.ENCODE_TIME;
+    }
+
+    public SocketIOHistogram getHandshakeTime() {
+        return handshakeTime;
+    }
+
+    public SocketIOHistogram getPongLatency() {
+        return pongLatency;
+    }
+
+    /**
+     * @return all metrics as nested maps, ready to be rendered as JSON
+     */
+    public Map<String, Object> snapshot() {
+
+        Map<String, Object> inbound = new LinkedHashMap<>();
+        inbound.put("frames", getFramesIn());
+        inbound.put("bytes", getBytesIn());
+        inbound.put("framesRate", framesInRate.getRate());
+        inbound.put("bytesRate", bytesInRate.getRate());
+
+        Map<String, Object> outbound = new LinkedHashMap<>();
+        outbound.put("enqueued", outboundMetrics.getEnqueued());
+        outbound.put("sent", outboundMetrics.getSent());
+        outbound.put("bytesSent", outboundMetrics.getBytesSent());
+        outbound.put("batches", outboundMetrics.getBatches());
+        outbound.put("dropped", outboundMetrics.getDropped());
+        outbound.put("conflated", outboundMetrics.getConflated());
+        outbound.put("disconnected", outboundMetrics.getDisconnected());
+        outbound.put("queueDepth", outboundMetrics.getQueueDepth());
+        outbound.put("sentRate", sentRate.getRate());
+        outbound.put("bytesSentRate", bytesSentRate.getRate());
+        outbound.put("droppedRate", droppedRate.getRate());
+
+        Map<String, Object> handlers = new LinkedHashMap<>();
+        handlers.put("submitted", handlerMetrics.getSubmitted());
+        handlers.put("executed", handlerMetrics.getExecuted());
+        handlers.put("failed", handlerMetrics.getFailed());
+        handlers.put("rejected", handlerMetrics.getRejected());
+        handlers.put("pending", handlerMetrics.getPending());
+        handlers.put("executedRate", executedRate.getRate());
+
+        Map<String, Object> compression = new LinkedHashMap<>();
+        compression.put("compressed", compressionMetrics.getCompressed());
+        compression.put("skipped", compressionMetrics.getSkipped());
+        compression.put("uncompressedBytes", compressionMetrics.getUncompressedBytes());
+        compression.put("compressedBytes", compressionMetrics.getCompressedBytes());
+        compression.put("ratio", compressionMetrics.getRatio());
+        compression.put("deflateConnections", compressionMetrics.getDeflateConnections());
+        compression.put("compressTime", compressionMetrics.getCompressTime().snapshot());
+
+        Map<String, Object> recovery = new LinkedHashMap<>();
+        recovery.put("suspended", getSessionsSuspended());
+        recovery.put("recovered", getSessionsRecovered());
+        recovery.put("failed", getRecoveryFailed());
+        recovery.put("replayed", getEventsReplayed());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("inbound", inbound);
+        snapshot.put("outbound", outbound);
+        snapshot.put("handlers", handlers);
+        snapshot.put("compression", compression);
+        snapshot.put("recovery", recovery);
+        snapshot.put("decodeTime", decodeTime.snapshot());
+        snapshot.put("dispatchTime", dispatchTime.snapshot());
+        snapshot.put("encodeTime", getEncodeTime().snapshot());
+        snapshot.put("handshakeTime", handshakeTime.snapshot());
+        snapshot.put("pongLatency", pongLatency.snapshot());
+        snapshot.put("namespaces", traffic.snapshot());
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOMetrics" + snapshot();
+    }
+}
@@ -0,0 +1,40 @@
+package com.solutionarchitects.socketio;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Map;
+
+/**
+ * Exposes {@link SocketIOMetrics} as the actuator endpoint {@code socketio}, served as JSON at /socketio.
+ */
+@Component
+public class SocketIOMetricsEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+    @Resource
+    private SocketIOMetrics socketIOMetrics;
+
+    @Resource
+    private SocketIOWebSocketProtocolHandler socketIOWebSocketProtocolHandler;
+
+    @Resource
+    private SocketIOTopics socketIOTopics;
+
+    public SocketIOMetricsEndpoint() {
+        super("socketio", false);
+    }
+
+    @Override
+    public Map<String, Object> invoke() {
+
+        Map<String, Object> snapshot = socketIOMetrics.snapshot();
+
+        snapshot.put("sessions", socketIOWebSocketProtocolHandler.getSessionCount());
+        snapshot.put("connections", socketIOWebSocketProtocolHandler.getConnectionHandlerCount());
+        snapshot.put("suspendedSessions", socketIOWebSocketProtocolHandler.getSuspendedSessionCount());
+        snapshot.put("topics", socketIOTopics.getTopicCount());
+
+        return snapshot;
+    }
+}
@@ -0,0 +1,135 @@
+package com.solutionarchitects.socketio;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A namespace clients may connect to, declared up front in the {@link SocketIONamespaceRegistry}.
+ * <p>
+ * Carries the event handlers, the optional authorization hook and the connection limit of the namespace.
+ */
+public final class SocketIONamespace {
+
+    /**
+     * Decides whether a connection may join a namespace.
+     */
+    public interface Authorizer {
+
+        /**
+         * @param auth the data the client sent with its CONNECT packet, null if there was none
+         * @return true to accept the connection
+         */
+        boolean authorize(SocketIOSession session, SocketIONamespace nameSpace, Object auth);
+    }
+
+    private final String name;
+    private final int id;
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private volatile int maxConnections;
+    private volatile Authorizer authorizer;
+    private volatile boolean streaming;
+    private volatile SocketIOEventDispatchTable eventHandlers = SocketIOEventDispatchTable.EMPTY;
+
+    SocketIONamespace(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * @return the name, the empty string for the default namespace
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the interned id, indexes the handlers of {@link SocketIOSession}
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Takes a connection slot.
+     *
+     * @return false if the namespace already has {@link #getMaxConnections()} connections
+     */
+    boolean tryAcquire() {
+        int max = maxConnections;
+        for (; ; ) {
+            int n = connections.get();
+            if (max > 0 && n >= max) {
+                return false;
+            }
+            if (connections.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        connections.decrementAndGet();
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * @return the most connections accepted at a time, 0 for no limit
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return the authorization hook, null if every connection is accepted
+     */
+    public Authorizer getAuthorizer() {
+        return authorizer;
+    }
+
+    public void setAuthorizer(Authorizer authorizer) {
+        this.authorizer = authorizer;
+    }
+
+    /**
+     * @return true if events are parsed while their fragments arrive, requires inbound streaming
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @return the {@link SocketIOEvent} handlers of the namespace
+     */
+    public SocketIOEventDispatchTable getEventHandlers() {
+        return eventHandlers;
+    }
+
+    public void setEventHandlers(SocketIOEventDispatchTable eventHandlers) {
+        this.eventHandlers = eventHandlers;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIONamespace{" +
+                "name='" + name + '\'' +
+                ", id=" + id +
+                ", connections=" + connections.get() +
+                ", maxConnections=" + maxConnections +
+                ", authorizer=" + (authorizer != null) +
+                ", streaming=" + streaming +
+                ", events=" + eventHandlers.size() +
+                '}';
+    }
+}
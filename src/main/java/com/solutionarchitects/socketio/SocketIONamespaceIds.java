@@ -0,0 +1,153 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+
+/**
+ * Interns namespaces to small int ids, the default namespace is id 0.
+ * <p>
+ * Ids index the per-connection handler arrays of {@link SocketIOSession}. Inbound frames are resolved straight
+ * from the namespace slice of the decoded packet through an open-addressed table, so the lookup builds no String
+ * and takes no lock. Interning replaces the table as a whole and only happens when a namespace is declared.
+ */
+public final class SocketIONamespaceIds {
+
+    /** Returned for namespaces that were never interned. */
+    public static final int UNKNOWN = -1;
+
+    /** Id of the default namespace. */
+    public static final int DEFAULT = 0;
+
+    private final int capacity;
+
+    private volatile Table table;
+
+    /**
+     * @param capacity the maximum number of namespaces, bounds the memory a client can make the server spend on
+     *                 namespaces it invents
+     */
+    public SocketIONamespaceIds(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        }
+        this.capacity = capacity;
+        this.table = new Table(new String[]{""});
+    }
+
+    /**
+     * @param nameSpace the namespace, "" or "/" for the default namespace
+     * @return the id of the namespace or {@link #UNKNOWN} if the capacity is exhausted
+     */
+    public int intern(String nameSpace) {
+        if (nameSpace == null || "/".equals(nameSpace)) {
+            nameSpace = "";
+        }
+        int id = table.get(nameSpace, 0, nameSpace.length(), hash(nameSpace, 0, nameSpace.length()));
+        if (id != UNKNOWN) {
+            return id;
+        }
+        synchronized (this) {
+            Table t = table;
+            id = t.get(nameSpace, 0, nameSpace.length(), hash(nameSpace, 0, nameSpace.length()));
+            if (id != UNKNOWN) {
+                return id;
+            }
+            if (t.names.length == capacity) {
+                return UNKNOWN;
+            }
+            String[] names = new String[t.names.length + 1];
+            System.arraycopy(t.names, 0, names, 0, t.names.length);
+            names[t.names.length] = nameSpace;
+            table = new Table(names);
+            return t.names.length;
+        }
+    }
+
+    /**
+     * @return the id of the namespace of a decoded packet or {@link #UNKNOWN}
+     */
+    public int lookup(SocketIOPacket packet) {
+        CharSequence frame = packet.getFrame();
+        int start = packet.getNamespaceStart();
+        int end = packet.getNamespaceEnd();
+        if (end - start == 1 && frame.charAt(start) == '/') {
+            return DEFAULT;
+        }
+        return table.get(frame, start, end, hash(frame, start, end));
+    }
+
+    /**
+     * @return the id of the namespace or {@link #UNKNOWN}
+     */
+    public int lookup(String nameSpace) {
+        if ("/".equals(nameSpace)) {
+            nameSpace = "";
+        }
+        return table.get(nameSpace, 0, nameSpace.length(), hash(nameSpace, 0, nameSpace.length()));
+    }
+
+    /**
+     * @return the namespace of an id, "" for the default namespace
+     */
+    public String name(int id) {
+        return table.names[id];
+    }
+
+    public int size() {
+        return table.names.length;
+    }
+
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Table {
+
+        final String[] names;
+
+        /** Open-addressed slots holding id + 1, 0 marks a free slot. */
+        final int[] slots;
+
+        final int mask;
+
+        Table(String[] names) {
+            this.names = names;
+            int size = Integer.highestOneBit(Math.max(names.length, 2) * 2 - 1) << 1;
+            this.slots = new int[size];
+            this.mask = size - 1;
+            for (int id = 0; id < names.length; id++) {
+                int i = hash(names[id], 0, names[id].length()) & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = id + 1;
+            }
+        }
+
+        int get(CharSequence s, int start, int end, int hash) {
+            int length = end - start;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) {
+                    return UNKNOWN;
+                }
+                String name = names[slot - 1];
+                if (name.length() == length && regionEquals(name, s, start)) {
+                    return slot - 1;
+                }
+            }
+        }
+
+        private static boolean regionEquals(String name, CharSequence s, int start) {
+            for (int i = 0; i < name.length(); i++) {
+                if (name.charAt(i) != s.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The namespaces clients may connect to.
+ * <p>
+ * Namespaces are declared up front, from {@code socketio.namespaces}, from the namespaces of {@link SocketIOEvent}
+ * handlers or programmatically, and are interned to int ids by which sessions index their handlers. A CONNECT to
+ * any other namespace resolves to {@link SocketIONamespaceIds#UNKNOWN} without building a String and is rejected
+ * before anything is allocated for it. The default namespace is always declared.
+ */
+@Service
+public class SocketIONamespaceRegistry {
+
+    /** Upper bound of declared namespaces. */
+    public static final int MAX_NAMESPACES = 256;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+    private final SocketIONamespaceIds ids = new SocketIONamespaceIds(MAX_NAMESPACES);
+
+    /** Namespaces by id, replaced as a whole when one is declared. */
+    private volatile SocketIONamespace[] namespaces = {new SocketIONamespace("", SocketIONamespaceIds.DEFAULT)};
+
+    @Resource
+    private SocketIOConfig socketIOConfig;
+
+    @PostConstruct
+    private void afterInit() {
+
+        if (socketIOConfig.namespaces != null) {
+            for (String nameSpace : socketIOConfig.namespaces) {
+                declare(nameSpace.trim()).setMaxConnections(socketIOConfig.namespaceMaxConnections);
+            }
+        }
+
+        if (socketIOConfig.inboundStreaming && socketIOConfig.inboundStreamingNamespaces != null) {
+            for (String nameSpace : socketIOConfig.inboundStreamingNamespaces) {
+                declare(nameSpace.trim()).setStreaming(true);
+            }
+        }
+
+        logger.info("SocketIO Namespaces : {}", getNamespaces());
+    }
+
+    /**
+     * Declares a namespace, or returns it if it already is.
+     *
+     * @param nameSpace the namespace, "" or "/" for the default namespace
+     * @throws IllegalStateException if {@link #MAX_NAMESPACES} are declared already
+     */
+    public synchronized SocketIONamespace declare(String nameSpace) {
+
+        int id = ids.intern(nameSpace);
+
+        if (id == SocketIONamespaceIds.UNKNOWN) {
+            throw new IllegalStateException("More than " + MAX_NAMESPACES + " namespaces, cannot declare " + nameSpace);
+        }
+
+        SocketIONamespace[] current = namespaces;
+
+        if (id < current.length) {
+            return current[id];
+        }
+
+        SocketIONamespace namespace = new SocketIONamespace(ids.name(id), id);
+
+        SocketIONamespace[] next = Arrays.copyOf(current, id + 1);
+        next[id] = namespace;
+        namespaces = next;
+
+        logger.debug("Declared {}", namespace);
+
+        return namespace;
+    }
+
+    /**
+     * @return the namespace with the given id, null for {@link SocketIONamespaceIds#UNKNOWN}
+     */
+    public SocketIONamespace get(int id) {
+        SocketIONamespace[] current = namespaces;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * @param nameSpace the namespace, "" or "/" for the default namespace
+     * @return the declared namespace or null
+     */
+    public SocketIONamespace get(String nameSpace) {
+        return get(lookup(nameSpace));
+    }
+
+    /**
+     * @return the id of the namespace of a decoded packet or {@link SocketIONamespaceIds#UNKNOWN}
+     */
+    public int lookup(SocketIOPacket packet) {
+        return ids.lookup(packet);
+    }
+
+    /**
+     * @return the id of the namespace or {@link SocketIONamespaceIds#UNKNOWN}
+     */
+    public int lookup(String nameSpace) {
+        return nameSpace == null ? SocketIONamespaceIds.DEFAULT : ids.lookup(nameSpace);
+    }
+
+    public List<SocketIONamespace> getNamespaces() {
+        return Collections.unmodifiableList(Arrays.asList(namespaces));
+    }
+}
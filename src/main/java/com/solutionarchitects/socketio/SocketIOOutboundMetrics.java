@@ -0,0 +1,88 @@
+package com.solutionarchitects.socketio;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters shared by all outbound queues. Updates are striped so that publishing threads do not contend on them.
+ */
+public class SocketIOOutboundMetrics {
+
+    final LongAdder enqueued = new LongAdder();
+    final LongAdder sent = new LongAdder();
+    final LongAdder bytesSent = new LongAdder();
+    final LongAdder batches = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    final LongAdder conflated = new LongAdder();
+    final LongAdder disconnected = new LongAdder();
+    final LongAdder queueDepth = new LongAdder();
+
+    /** Frames sent per namespace and event, null when not tracked. */
+    private final SocketIOTrafficMetrics traffic;
+
+    public SocketIOOutboundMetrics() {
+        this(null);
+    }
+
+    public SocketIOOutboundMetrics(SocketIOTrafficMetrics traffic) {
+        this.traffic = traffic;
+    }
+
+    /**
+     * Counts the bytes of a written frame, chars for its text plus the bytes of its attachments.
+     */
+    void recordSent(SocketIOFrame frame, long bytes) {
+        bytesSent.add(bytes);
+        if (traffic != null && frame.getNameSpace() != null) {
+            traffic.recordOut(frame.getNameSpace(), frame.getEventName() == null ? SocketIOTrafficMetrics.ACK : frame.getEventName(), bytes);
+        }
+    }
+
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getConflated() {
+        return conflated.sum();
+    }
+
+    public long getDisconnected() {
+        return disconnected.sum();
+    }
+
+    /**
+     * @return the number of frames pending over all connections
+     */
+    public long getQueueDepth() {
+        return queueDepth.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOOutboundMetrics{" +
+                "enqueued=" + getEnqueued() +
+                ", sent=" + getSent() +
+                ", bytesSent=" + getBytesSent() +
+                ", batches=" + getBatches() +
+                ", dropped=" + getDropped() +
+                ", conflated=" + getConflated() +
+                ", disconnected=" + getDisconnected() +
+                ", queueDepth=" + getQueueDepth() +
+                '}';
+    }
+}
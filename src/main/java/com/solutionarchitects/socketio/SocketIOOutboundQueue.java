@@ -0,0 +1,489 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOPacketCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bounded outbound queue of a single WebSocket connection.
+ * <p>
+ * Any thread may offer frames; it never touches the socket. A single drainer, scheduled on the shared outbound
+ * executor whenever the queue goes from idle to busy, writes pending frames in batches of at most
+ * {@code batchSize} and flushes the container's write batch once per batch. When the queue is full the
+ * configured {@link SocketIOOverflowPolicy} decides what gives way, so a slow browser can only fall behind or be
+ * disconnected, it never stalls the publisher.
+ * <p>
+ * With a {@link SocketIOReplayLog} the queue records the events it is offered, also once it is closed, and a closed
+ * queue can be resumed on the new connection of a client that reconnected, starting with the events it missed.
+ * <p>
+ * This holds the work-in-progress indicator of the drainer.
+ */
+public class SocketIOOutboundQueue extends AtomicInteger implements Runnable {
+
+    /** */
+    private static final long serialVersionUID = 2984471539623471165L;
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketIOOutboundQueue.class.getName());
+
+    private final Executor executor;
+    private final int capacity;
+    private final int batchSize;
+    private final SocketIOOverflowPolicy overflowPolicy;
+    private final SocketIOOutboundMetrics metrics;
+    private final SocketIOReplayLog replayLog;
+
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private static final Runnable[] NO_LISTENERS = new Runnable[0];
+
+    /** Run after each written batch, replaced as a whole when a listener is added or removed. */
+    private volatile Runnable[] drainListeners = NO_LISTENERS;
+
+    /** Replaced when the queue is resumed on a new connection. */
+    private volatile Channel channel;
+
+    private volatile boolean closed;
+    private volatile int highWatermark;
+
+    public SocketIOOutboundQueue(WebSocketSession webSocketSession, Executor executor, int capacity, int batchSize,
+                                 SocketIOOverflowPolicy overflowPolicy, SocketIOOutboundMetrics metrics) {
+        this(webSocketSession, executor, capacity, batchSize, overflowPolicy, metrics, null);
+    }
+
+    /**
+     * @param replayLog records the events offered so that the queue can be resumed, null if it cannot be
+     */
+    SocketIOOutboundQueue(WebSocketSession webSocketSession, Executor executor, int capacity, int batchSize,
+                          SocketIOOverflowPolicy overflowPolicy, SocketIOOutboundMetrics metrics, SocketIOReplayLog replayLog) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity > 0 required but it was " + capacity);
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize > 0 required but it was " + batchSize);
+        }
+        this.executor = executor;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.metrics = metrics;
+        this.replayLog = replayLog;
+        this.channel = open(webSocketSession);
+    }
+
+    private Channel open(WebSocketSession webSocketSession) {
+        Channel c = new Channel(webSocketSession);
+        if (c.pollingSession != null) {
+            // frames stay in the queue, under the overflow policy, until a poll waits for them
+            c.pollingSession.setPollListener(this::schedule);
+        }
+        return c;
+    }
+
+    /**
+     * A connection and the frames pending for it. The drainer writes a channel's frames to that channel only, so
+     * a drainer still busy with the previous connection never takes the frames of the next one.
+     */
+    private static final class Channel {
+
+        final WebSocketSession webSocketSession;
+        final ConcurrentLinkedQueue<SocketIOFrame> queue = new ConcurrentLinkedQueue<>();
+        final RemoteEndpoint.Basic batchingRemote;
+
+        /** Set for polling connections, they compress per response and need to know what the frames are. */
+        final SocketIOPollingSession pollingSession;
+
+        Channel(WebSocketSession webSocketSession) {
+            this.webSocketSession = webSocketSession;
+            this.batchingRemote = batchingRemote(webSocketSession);
+            this.pollingSession = webSocketSession instanceof SocketIOPollingSession ? (SocketIOPollingSession) webSocketSession : null;
+        }
+    }
+
+    /**
+     * Turns on container side write batching when the connection is backed by a JSR-356 session, frames are
+     * then flushed once per drained batch instead of once per frame.
+     */
+    private static RemoteEndpoint.Basic batchingRemote(WebSocketSession webSocketSession) {
+        if (!(webSocketSession instanceof NativeWebSocketSession)) {
+            return null;
+        }
+        Session nativeSession = ((NativeWebSocketSession) webSocketSession).getNativeSession(Session.class);
+        if (nativeSession == null) {
+            return null;
+        }
+        try {
+            RemoteEndpoint.Basic remote = nativeSession.getBasicRemote();
+            remote.setBatchingAllowed(true);
+            return remote;
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Write batching not available Session ID : {} Error : {}", webSocketSession.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Queues a frame for sending.
+     *
+     * @return false if the frame was not queued because the connection is closed or was disconnected by the
+     * overflow policy
+     */
+    public boolean offer(SocketIOFrame frame) {
+
+        SocketIOReplayLog log = replayLog;
+
+        if (log != null && frame.getOffset() != null) {
+            synchronized (log) {
+                log.record(frame);
+                return enqueue(frame);
+            }
+        }
+
+        return enqueue(frame);
+    }
+
+    private boolean enqueue(SocketIOFrame frame) {
+
+        if (closed) {
+            return false;
+        }
+
+        int d = depth.incrementAndGet();
+
+        if (d > capacity) {
+            switch (overflowPolicy) {
+                case Disconnect:
+                    depth.decrementAndGet();
+                    metrics.disconnected.increment();
+                    disconnect();
+                    return false;
+                case Conflate:
+                    if (removeSuperseded(frame)) {
+                        metrics.conflated.increment();
+                        break;
+                    }
+                    // nothing to conflate with, make room like DropOldest
+                case DropOldest:
+                default:
+                    if (!removeOldestDroppable()) {
+                        // only control frames are pending, the client cannot make progress
+                        depth.decrementAndGet();
+                        metrics.disconnected.increment();
+                        disconnect();
+                        return false;
+                    }
+                    metrics.dropped.increment();
+                    break;
+            }
+        } else if (d > highWatermark) {
+            highWatermark = d;
+        }
+
+        channel.queue.offer(frame);
+        metrics.enqueued.increment();
+        metrics.queueDepth.increment();
+
+        schedule();
+
+        return true;
+    }
+
+    /**
+     * Removes the oldest pending event without ack id; handshakes, connects, pongs and acks stay.
+     *
+     * @return false if no pending frame may be dropped
+     */
+    private boolean removeOldestDroppable() {
+        ConcurrentLinkedQueue<SocketIOFrame> queue = channel.queue;
+        Iterator<SocketIOFrame> it = queue.iterator();
+        while (it.hasNext()) {
+            SocketIOFrame pending = it.next();
+            if (pending.isDroppable() && queue.remove(pending)) {
+                depth.decrementAndGet();
+                metrics.queueDepth.decrement();
+                pending.dropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean removeSuperseded(SocketIOFrame frame) {
+        ConcurrentLinkedQueue<SocketIOFrame> queue = channel.queue;
+        Iterator<SocketIOFrame> it = queue.iterator();
+        while (it.hasNext()) {
+            SocketIOFrame pending = it.next();
+            if (frame.supersedes(pending) && queue.remove(pending)) {
+                depth.decrementAndGet();
+                metrics.queueDepth.decrement();
+                pending.dropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void schedule() {
+        if (getAndIncrement() == 0) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Outbound executor rejected drain Session ID : {}", channel.webSocketSession.getId());
+                set(0);
+            }
+        }
+    }
+
+    /**
+     * Drains pending frames, only ever run by one thread at a time.
+     */
+    @Override
+    public void run() {
+
+        int missed = 1;
+
+        for (; ; ) {
+
+            Channel c = channel;
+
+            if (closed) {
+                clear(c);
+            } else {
+
+                int n = 0;
+                SocketIOFrame frame;
+                WebSocketSession webSocketSession = c.webSocketSession;
+
+                try {
+                    while (n < batchSize && (c.pollingSession == null || n != 0 || c.pollingSession.isWritable())
+                            && (frame = c.queue.poll()) != null) {
+                        depth.decrementAndGet();
+                        metrics.queueDepth.decrement();
+                        TextMessage message = frame.getMessage();
+                        long bytes = message.getPayloadLength();
+                        for (ByteBuffer attachment : frame.getAttachments()) {
+                            bytes += 1 + attachment.remaining();
+                        }
+                        if (c.pollingSession != null) {
+                            c.pollingSession.selectCompression(frame, bytes);
+                        }
+                        webSocketSession.sendMessage(message);
+                        for (ByteBuffer attachment : frame.getAttachments()) {
+                            // the packet type byte goes out as a first fragment so the attachment itself is not copied
+                            webSocketSession.sendMessage(new BinaryMessage(SocketIOPacketCodec.binaryPrefix(), false));
+                            webSocketSession.sendMessage(new BinaryMessage(attachment.duplicate(), true));
+                        }
+                        metrics.recordSent(frame, bytes);
+                        frame.sent();
+                        n++;
+                    }
+                    if (n != 0 && c.batchingRemote != null) {
+                        c.batchingRemote.flushBatch();
+                    }
+                    if (n != 0 && webSocketSession instanceof Flushable) {
+                        // a polling connection answers its waiting poll with the whole batch
+                        ((Flushable) webSocketSession).flush();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Error sending frame Session ID : {} Error : {}", webSocketSession.getId(), e.getMessage());
+                    // a failing previous connection does not close the queue resumed meanwhile
+                    if (c == channel) {
+                        closed = true;
+                    }
+                    clear(c);
+                }
+
+                if (n != 0) {
+                    metrics.sent.add(n);
+                    metrics.batches.increment();
+                    for (Runnable listener : drainListeners) {
+                        listener.run();
+                    }
+                }
+
+                if (n == batchSize && !c.queue.isEmpty()) {
+                    // yield the executor thread to other connections and continue in a fresh task
+                    try {
+                        executor.execute(this);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        continue;
+                    }
+                }
+            }
+
+            missed = addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void disconnect() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        final WebSocketSession webSocketSession = channel.webSocketSession;
+        logger.warn("Disconnecting slow consumer Session ID : {} Queue Depth : {}", webSocketSession.getId(), depth.get());
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        webSocketSession.close(CloseStatus.SESSION_NOT_RELIABLE);
+                    } catch (IOException e) {
+                        logger.warn("Error closing Session ID : {} Error : {}", webSocketSession.getId(), e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Outbound executor rejected close Session ID : {}", webSocketSession.getId());
+        }
+        schedule();
+    }
+
+    /**
+     * Stops accepting frames, pending frames are discarded by the drainer.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            schedule();
+        }
+    }
+
+    /**
+     * Reopens a closed queue on a new connection of the same client. The given frames are queued first, followed
+     * by the recorded events after the offset; events offered meanwhile follow those, none is lost or repeated.
+     *
+     * @param offset the offset of the last event the client received, null if it received none
+     * @return the number of events replayed, -1 if the queue stays closed because it has no replay log, is not
+     * closed, or the events after the offset are no longer retained
+     */
+    int resume(WebSocketSession webSocketSession, List<SocketIOFrame> first, String offset) {
+
+        SocketIOReplayLog log = replayLog;
+
+        if (log == null) {
+            return -1;
+        }
+
+        synchronized (log) {
+
+            List<SocketIOFrame> missed = log.after(offset);
+
+            if (!closed || missed == null) {
+                return -1;
+            }
+
+            Channel previous = channel;
+            channel = open(webSocketSession);
+            clear(previous);
+
+            closed = false;
+
+            for (SocketIOFrame frame : first) {
+                enqueue(frame);
+            }
+            for (SocketIOFrame frame : missed) {
+                enqueue(frame);
+            }
+
+            return missed.size();
+        }
+    }
+
+    private void clear(Channel c) {
+        SocketIOFrame frame;
+        while ((frame = c.queue.poll()) != null) {
+            depth.decrementAndGet();
+            metrics.queueDepth.decrement();
+            frame.dropped();
+        }
+    }
+
+    /**
+     * Adds a listener run by the drainer after each batch it wrote, so that publishers pulling frames at the pace
+     * of the connection can ask for more.
+     */
+    synchronized void addDrainListener(Runnable listener) {
+        Runnable[] l = Arrays.copyOf(drainListeners, drainListeners.length + 1);
+        l[l.length - 1] = listener;
+        drainListeners = l;
+    }
+
+    synchronized void removeDrainListener(Runnable listener) {
+        Runnable[] l = drainListeners;
+        for (int i = 0; i < l.length; i++) {
+            if (l[i] == listener) {
+                Runnable[] updated = new Runnable[l.length - 1];
+                System.arraycopy(l, 0, updated, 0, i);
+                System.arraycopy(l, i + 1, updated, i, l.length - i - 1);
+                drainListeners = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of frames that can be queued before the overflow policy applies
+     */
+    public int getRemainingCapacity() {
+        return Math.max(0, capacity - depth.get());
+    }
+
+    SocketIOOutboundMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the number of frames waiting to be written
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return the largest depth observed so far
+     */
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public SocketIOOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return the connection frames are written to, the latest one if the queue was resumed
+     */
+    public WebSocketSession getWebSocketSession() {
+        return channel.webSocketSession;
+    }
+}
@@ -0,0 +1,23 @@
+package com.solutionarchitects.socketio;
+
+/**
+ * What a connection's outbound queue does when a frame arrives while it is full.
+ */
+public enum SocketIOOverflowPolicy {
+
+    /**
+     * Discard the oldest pending event without ack id to make room. Handshakes, connects, pongs and acks are never
+     * discarded; when only those are pending the connection is closed as with {@link #Disconnect}.
+     */
+    DropOldest,
+
+    /**
+     * Replace a pending event of the same name and namespace, the client only sees the latest one. Falls back to
+     * {@link #DropOldest} when no such event is pending.
+     */
+    Conflate,
+
+    /** Close the connection, the client is expected to reconnect and resynchronize. */
+    Disconnect
+
+}
@@ -0,0 +1,202 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOJsonStreamParser;
+import com.solutionarchitects.socketio.protocol.SocketIOMessageType;
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import com.solutionarchitects.socketio.protocol.SocketIOPacketCodec;
+
+/**
+ * A text message arriving in fragments.
+ * <p>
+ * Fragments are buffered until the Socket.IO header, everything before the JSON data, is complete. Events of a
+ * streamed namespace are then fed fragment by fragment into a {@link SocketIOJsonStreamParser} and handed to the
+ * {@link SocketIOEventStream} of the connection, so the message is never held as a whole. All other messages are
+ * buffered and decoded as usual once their last fragment arrived.
+ * <p>
+ * Only accessed by the thread delivering the connection's messages.
+ */
+final class SocketIOPartialMessage implements SocketIOJsonStreamParser.Handler {
+
+    /** A header longer than this is not looked for any further, the message is buffered. */
+    private static final int MAX_HEADER = 1024;
+
+    /**
+     * Decides which messages are streamed.
+     */
+    interface Streams {
+
+        /**
+         * @param header the decoded header of an Event message
+         */
+        boolean isStreamed(SocketIOSession session, SocketIOPacket header);
+
+        SocketIOEventStream open(SocketIOSession session, SocketIOPacket header, String eventName);
+    }
+
+    private final SocketIOSession session;
+    private final Streams streams;
+
+    private StringBuilder buffer = new StringBuilder();
+    private long length;
+    private boolean decided;
+
+    private SocketIOPacket header;
+    private SocketIOJsonStreamParser parser;
+    private SocketIOEventStream stream;
+    private int depth;
+
+    SocketIOPartialMessage(SocketIOSession session, Streams streams) {
+        this.session = session;
+        this.streams = streams;
+    }
+
+    /**
+     * @return the number of chars received so far
+     */
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * Adds the next fragment.
+     *
+     * @return the whole message after its last fragment if it was buffered, null otherwise
+     * @throws IllegalArgumentException if a streamed message is malformed
+     */
+    String append(String fragment, boolean last) {
+
+        length += fragment.length();
+
+        if (parser != null) {
+            parser.feed(fragment);
+            if (last) {
+                finish();
+            }
+            return null;
+        }
+
+        buffer.append(fragment);
+
+        if (!decided) {
+            int payloadStart = indexOf(buffer, '[', length - fragment.length());
+            if (payloadStart >= 0) {
+                decided = true;
+                startStream(payloadStart);
+                if (parser != null) {
+                    if (last) {
+                        finish();
+                    }
+                    return null;
+                }
+            } else if (buffer.length() > MAX_HEADER) {
+                decided = true;
+            }
+        }
+
+        return last ? buffer.toString() : null;
+    }
+
+    /**
+     * Gives up on the message, a started stream is aborted.
+     */
+    void abort(Exception cause) {
+        buffer = null;
+        parser = null;
+        if (stream != null) {
+            SocketIOEventStream s = stream;
+            stream = null;
+            s.abort(cause);
+        }
+    }
+
+    private void startStream(int payloadStart) {
+        SocketIOPacket packet = new SocketIOPacket();
+        if (!SocketIOPacketCodec.decode(buffer.substring(0, payloadStart), packet)
+                || packet.getMessageType() != SocketIOMessageType.Event || !streams.isStreamed(session, packet)) {
+            return;
+        }
+        header = packet;
+        parser = new SocketIOJsonStreamParser(this);
+        parser.feed(buffer, payloadStart, buffer.length());
+        buffer = null;
+    }
+
+    private void finish() {
+        parser.end();
+        if (stream == null) {
+            throw new IllegalArgumentException("Event without a name");
+        }
+        SocketIOEventStream s = stream;
+        stream = null;
+        s.end();
+    }
+
+    private static int indexOf(StringBuilder sb, char c, long from) {
+        for (int i = (int) Math.max(0, from); i < sb.length(); i++) {
+            if (sb.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // the outer array of the event is [eventName, args...], only the args reach the stream
+
+    @Override
+    public void startObject() {
+        eventStream().startObject();
+        depth++;
+    }
+
+    @Override
+    public void endObject() {
+        depth--;
+        eventStream().endObject();
+    }
+
+    @Override
+    public void startArray() {
+        if (depth++ == 0) {
+            return;
+        }
+        eventStream().startArray();
+    }
+
+    @Override
+    public void endArray() {
+        if (--depth == 0) {
+            return;
+        }
+        eventStream().endArray();
+    }
+
+    @Override
+    public void name(String name) {
+        eventStream().name(name);
+    }
+
+    @Override
+    public void value(Object value) {
+        if (depth == 0) {
+            throw new IllegalArgumentException("Event data must be an array");
+        }
+        if (stream == null && depth == 1) {
+            if (!(value instanceof String)) {
+                throw new IllegalArgumentException("Event name must be a string");
+            }
+            stream = streams.open(session, header, (String) value);
+            return;
+        }
+        eventStream().value(value);
+    }
+
+    private SocketIOEventStream eventStream() {
+        if (depth == 0) {
+            throw new IllegalArgumentException("Event data must be an array");
+        }
+        if (stream == null) {
+            throw new IllegalArgumentException("Event name must be a string");
+        }
+        return stream;
+    }
+}
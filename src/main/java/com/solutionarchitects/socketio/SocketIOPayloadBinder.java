@@ -0,0 +1,334 @@
+package com.solutionarchitects.socketio;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binds the data of inbound events to the payload type declared for the event.
+ * <p>
+ * The event array is read with a Jackson streaming parser straight from the frame, past the Socket.IO header,
+ * and the data is deserialized directly into the declared type; no intermediate tree is built. Events without a
+ * declared type are bound to plain maps, lists, strings, numbers and booleans. Readers are created once per
+ * payload type and shared.
+ */
+@Service
+public class SocketIOPayloadBinder {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final JsonFactory jsonFactory = objectMapper.getFactory();
+
+    private final ObjectReader untypedReader = objectMapper.readerFor(Object.class);
+
+    private final ObjectReader argumentsReader = objectMapper.readerFor(
+            objectMapper.getTypeFactory().constructCollectionType(List.class, Object.class));
+
+    private final ConcurrentHashMap<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    /** Readers by event name per namespace, replaced as a whole when an event is bound. */
+    private volatile Map<String, Map<String, ObjectReader>> bindings = Collections.emptyMap();
+
+    /** Frames are read through a reader reused by the thread decoding them. */
+    private static final ThreadLocal<CharSequenceReader> FRAME_READER = new ThreadLocal<CharSequenceReader>() {
+        @Override
+        protected CharSequenceReader initialValue() {
+            return new CharSequenceReader();
+        }
+    };
+
+    /**
+     * Declares the payload type of an event, the first argument of the event is bound to it.
+     *
+     * @param nameSpace the namespace, the empty string for the default namespace
+     */
+    public synchronized void bind(String nameSpace, String eventName, Type payloadType) {
+
+        HashMap<String, Map<String, ObjectReader>> map = new HashMap<>(bindings);
+        HashMap<String, ObjectReader> events = new HashMap<>(map.containsKey(nameSpace) ? map.get(nameSpace) : Collections.<String, ObjectReader>emptyMap());
+
+        events.put(eventName, getReader(payloadType));
+        map.put(nameSpace, events);
+
+        bindings = map;
+
+        logger.debug("Bound Namespace : {} EventName : {} to {}", nameSpace, eventName, payloadType);
+    }
+
+    /**
+     * @return the shared reader of a payload type
+     */
+    public ObjectReader getReader(Type payloadType) {
+        JavaType javaType = objectMapper.getTypeFactory().constructType(payloadType);
+        ObjectReader reader = readers.get(javaType);
+        if (reader == null) {
+            reader = objectMapper.readerFor(javaType);
+            ObjectReader existing = readers.putIfAbsent(javaType, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * @return the reader of the payload type declared for an event, or the untyped reader
+     */
+    public ObjectReader getEventReader(String nameSpace, String eventName) {
+        Map<String, ObjectReader> events = bindings.get(nameSpace);
+        ObjectReader reader = events == null ? null : events.get(eventName);
+        return reader == null ? untypedReader : reader;
+    }
+
+    /**
+     * @return true if a payload type was declared for the event
+     */
+    public boolean isBound(String nameSpace, String eventName) {
+        Map<String, ObjectReader> events = bindings.get(nameSpace);
+        return events != null && events.containsKey(eventName);
+    }
+
+    /**
+     * Reads the event name and binds the event data of a decoded Event packet.
+     *
+     * @param nameSpace the namespace of the packet, the empty string for the default namespace
+     * @return the event, or null if the data is not an array starting with the event name
+     * @throws IOException if the data is not valid JSON or does not match the payload type
+     */
+    public SocketIOInboundEvent decodeEvent(SocketIOPacket packet, String nameSpace) throws IOException {
+
+        CharSequenceReader frameReader = FRAME_READER.get();
+        frameReader.reset(packet.getFrame(), packet.getPayloadOffset());
+
+        try (JsonParser parser = jsonFactory.createParser(frameReader)) {
+
+            if (parser.nextToken() != JsonToken.START_ARRAY || parser.nextToken() != JsonToken.VALUE_STRING) {
+                return null;
+            }
+
+            String eventName = parser.getText();
+
+            JsonToken token = parser.nextToken();
+
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return new SocketIOInboundEvent(eventName, null);
+            }
+
+            return new SocketIOInboundEvent(eventName, getEventReader(nameSpace, eventName).readValue(parser));
+        } finally {
+            frameReader.reset(null, 0);
+        }
+    }
+
+    /**
+     * Binds the whole data of a decoded packet untyped, e.g. the auth data of a CONNECT packet.
+     *
+     * @return the data, null if the packet has none
+     * @throws IOException if the data is not valid JSON
+     */
+    public Object decodeData(SocketIOPacket packet) throws IOException {
+
+        if (!packet.hasPayload()) {
+            return null;
+        }
+
+        CharSequenceReader frameReader = FRAME_READER.get();
+        frameReader.reset(packet.getFrame(), packet.getPayloadOffset());
+
+        try (JsonParser parser = jsonFactory.createParser(frameReader)) {
+            return parser.nextToken() == null ? null : untypedReader.readValue(parser);
+        } finally {
+            frameReader.reset(null, 0);
+        }
+    }
+
+    /**
+     * Binds the argument array of a decoded packet untyped, e.g. the arguments of an ACK packet, the same way event
+     * data without a declared type is bound.
+     *
+     * @return the arguments, empty if the packet has none
+     * @throws IOException if the data is not a valid JSON array
+     */
+    public List<Object> decodeArguments(SocketIOPacket packet) throws IOException {
+
+        if (!packet.hasPayload()) {
+            return Collections.emptyList();
+        }
+
+        CharSequenceReader frameReader = FRAME_READER.get();
+        frameReader.reset(packet.getFrame(), packet.getPayloadOffset());
+
+        try (JsonParser parser = jsonFactory.createParser(frameReader)) {
+            return parser.nextToken() == null ? Collections.emptyList() : argumentsReader.readValue(parser);
+        } finally {
+            frameReader.reset(null, 0);
+        }
+    }
+
+    /**
+     * Collects the tokens of a streamed event and binds them to the declared payload type once the event is
+     * complete.
+     */
+    public SocketIOEventStream bindEventStream(final SocketIOConnectionHandler socketIOConnectionHandler, final String eventName, final SocketIOAckReply ack) {
+
+        final ObjectReader reader = getEventReader(socketIOConnectionHandler.getNameSpace(), eventName);
+
+        return new SocketIOEventStream() {
+
+            private final TokenBuffer tokens = new TokenBuffer(objectMapper, false);
+
+            private int depth;
+
+            private boolean done;
+
+            @Override
+            public void startObject() {
+                depth++;
+                write(() -> tokens.writeStartObject());
+            }
+
+            @Override
+            public void endObject() {
+                depth--;
+                write(() -> tokens.writeEndObject());
+            }
+
+            @Override
+            public void startArray() {
+                depth++;
+                write(() -> tokens.writeStartArray());
+            }
+
+            @Override
+            public void endArray() {
+                depth--;
+                write(() -> tokens.writeEndArray());
+            }
+
+            @Override
+            public void name(String name) {
+                write(() -> tokens.writeFieldName(name));
+            }
+
+            @Override
+            public void value(Object value) {
+                write(() -> {
+                    if (value == null) {
+                        tokens.writeNull();
+                    } else if (value instanceof String) {
+                        tokens.writeString((String) value);
+                    } else if (value instanceof Boolean) {
+                        tokens.writeBoolean((Boolean) value);
+                    } else {
+                        double d = (Double) value;
+                        if (d == Math.rint(d) && Math.abs(d) < (1L << 53)) {
+                            tokens.writeNumber((long) d);
+                        } else {
+                            tokens.writeNumber(d);
+                        }
+                    }
+                });
+            }
+
+            /**
+             * Only the first argument is the payload, later arguments are not recorded.
+             */
+            private void write(TokenWrite write) {
+                if (done) {
+                    return;
+                }
+                try {
+                    write.write();
+                } catch (IOException e) {
+                    throw new IllegalArgumentException(e.getMessage(), e);
+                }
+                if (depth == 0) {
+                    done = true;
+                }
+            }
+
+            @Override
+            public void end() {
+                Object payload = null;
+                if (done) {
+                    try (JsonParser parser = tokens.asParser()) {
+                        payload = reader.readValue(parser);
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException(e.getMessage(), e);
+                    }
+                }
+                socketIOConnectionHandler.receiveEvent(eventName, payload, ack);
+            }
+
+            @Override
+            public void abort(Exception cause) {
+            }
+        };
+    }
+
+    private interface TokenWrite {
+        void write() throws IOException;
+    }
+
+    /**
+     * A reusable Reader over the tail of a CharSequence, avoids copying the payload out of the frame.
+     */
+    private static final class CharSequenceReader extends Reader {
+
+        private CharSequence text;
+        private int position;
+
+        void reset(CharSequence text, int position) {
+            this.text = text;
+            this.position = position;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int end = text.length();
+            if (position >= end) {
+                return -1;
+            }
+            int n = Math.min(length, end - position);
+            if (text instanceof String) {
+                ((String) text).getChars(position, position + n, buffer, offset);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    buffer[offset + i] = text.charAt(position + i);
+                }
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int read() {
+            return position < text.length() ? text.charAt(position++) : -1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
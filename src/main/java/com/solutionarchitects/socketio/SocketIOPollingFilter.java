@@ -0,0 +1,222 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOPayloadCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Serves the Engine.IO HTTP long-polling transport on the path of the WebSocket endpoint. Requests with
+ * {@code transport=polling} are answered here, all others continue to the WebSocket handshake.
+ * <p>
+ * A GET without sid opens a connection, GETs with sid poll for frames and POSTs deliver the packets of a payload
+ * to the protocol handler one by one, exactly as if they had arrived as WebSocket frames.
+ */
+public class SocketIOPollingFilter extends OncePerRequestFilter {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+    private final SocketIOWebSocketProtocolHandler socketIOWebSocketProtocolHandler;
+
+    private final SocketIOConfig socketIOConfig;
+
+    private final SocketIOCompressionPolicy socketIOCompressionPolicy;
+
+    /**
+     * @param socketIOCompressionPolicy selects the responses to compress, null to compress none
+     */
+    public SocketIOPollingFilter(SocketIOWebSocketProtocolHandler socketIOWebSocketProtocolHandler, SocketIOConfig socketIOConfig,
+                                 SocketIOCompressionPolicy socketIOCompressionPolicy) {
+        this.socketIOWebSocketProtocolHandler = socketIOWebSocketProtocolHandler;
+        this.socketIOConfig = socketIOConfig;
+        this.socketIOCompressionPolicy = socketIOCompressionPolicy;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+
+        if (!"polling".equals(request.getParameter("transport"))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        AllowOrigin(request, response);
+
+        if ("OPTIONS".equals(request.getMethod())) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            return;
+        }
+
+        if (request.getParameter("j") != null) {
+            Reject(response, HttpServletResponse.SC_BAD_REQUEST, 3, "JSONP not supported");
+            return;
+        }
+
+        String sid = request.getParameter("sid");
+
+        if (sid == null) {
+            if ("GET".equals(request.getMethod())) {
+                HandleHandshake(request, response);
+            } else {
+                Reject(response, HttpServletResponse.SC_BAD_REQUEST, 2, "Bad handshake method");
+            }
+            return;
+        }
+
+        SocketIOSession socketIOSession = socketIOWebSocketProtocolHandler.getSession(sid);
+
+        if (socketIOSession == null || !(socketIOSession.getWebSocketSession() instanceof SocketIOPollingSession)) {
+            Reject(response, HttpServletResponse.SC_BAD_REQUEST, 1, "Session ID unknown");
+            return;
+        }
+
+        SocketIOPollingSession pollingSession = (SocketIOPollingSession) socketIOSession.getWebSocketSession();
+
+        if ("GET".equals(request.getMethod())) {
+            if (!pollingSession.poll(request, response)) {
+                Reject(response, HttpServletResponse.SC_BAD_REQUEST, 3, "Bad request");
+            }
+        } else if ("POST".equals(request.getMethod())) {
+            HandlePayload(pollingSession, request, response);
+        } else {
+            Reject(response, HttpServletResponse.SC_BAD_REQUEST, 3, "Bad request");
+        }
+    }
+
+    private void HandleHandshake(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        // a parked poll is answered before the client's next ping is due
+        SocketIOPollingSession pollingSession = new SocketIOPollingSession(request, socketIOWebSocketProtocolHandler, socketIOConfig.pingInterval, socketIOCompressionPolicy);
+
+        try {
+            socketIOWebSocketProtocolHandler.afterConnectionEstablished(pollingSession);
+        } catch (Exception e) {
+            logger.error("Error opening polling connection", e);
+            Reject(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, 3, "Bad request");
+            return;
+        }
+
+        pollingSession.poll(request, response);
+    }
+
+    private void HandlePayload(SocketIOPollingSession pollingSession, HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        if (pollingSession.isUpgraded()) {
+            Reject(response, HttpServletResponse.SC_BAD_REQUEST, 3, "Bad request");
+            return;
+        }
+
+        int maxLength = socketIOConfig.inboundMaxMessageSize;
+
+        if (request.getContentLengthLong() > maxLength) {
+            Reject(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, 3, "Payload too large");
+            return;
+        }
+
+        byte[] body = ReadBody(request.getInputStream(), maxLength);
+
+        if (body == null) {
+            Reject(response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, 3, "Payload too large");
+            return;
+        }
+
+        List<Object> packets;
+
+        try {
+            packets = request.getContentType() != null && request.getContentType().startsWith("application/octet-stream")
+                    ? SocketIOPayloadCodec.decodeBinary(ByteBuffer.wrap(body))
+                    : SocketIOPayloadCodec.decodeText(new String(body, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Dropping malformed payload Session ID : {} Error : {}", pollingSession.getId(), e.getMessage());
+            Reject(response, HttpServletResponse.SC_BAD_REQUEST, 3, "Bad request");
+            return;
+        }
+
+        pollingSession.receive(packets);
+
+        byte[] ok = "ok".getBytes(StandardCharsets.UTF_8);
+        response.setContentType("text/html");
+        response.setContentLength(ok.length);
+        response.getOutputStream().write(ok);
+    }
+
+    /**
+     * @return the body, null if it is longer than maxLength
+     */
+    private static byte[] ReadBody(InputStream in, int maxLength) throws IOException {
+
+        byte[] body = StreamUtils.copyToByteArray(new LimitedInputStream(in, maxLength + 1L));
+
+        return body.length > maxLength ? null : body;
+    }
+
+    /**
+     * Cross-origin polls carry cookies, so the origin is echoed instead of allowing any origin.
+     */
+    private static void AllowOrigin(HttpServletRequest request, HttpServletResponse response) {
+
+        String origin = request.getHeader("Origin");
+
+        if (origin != null) {
+            response.setHeader("Access-Control-Allow-Origin", origin);
+            response.setHeader("Access-Control-Allow-Credentials", "true");
+            response.setHeader("Access-Control-Allow-Headers", "Content-Type");
+        }
+    }
+
+    private static void Reject(HttpServletResponse response, int status, int code, String message) throws IOException {
+
+        byte[] body = ("{\"code\":" + code + ",\"message\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static final class LimitedInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+}
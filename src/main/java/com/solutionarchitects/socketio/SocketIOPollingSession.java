@@ -0,0 +1,564 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOPayloadCodec;
+import com.solutionarchitects.socketio.protocol.SocketIOPacketCodec;
+import com.solutionarchitects.socketio.protocol.SocketIOPacketType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An Engine.IO HTTP long-polling connection presented as a WebSocketSession, so that the protocol handler, the
+ * outbound queue and the heartbeat serve it unchanged.
+ * <p>
+ * The outbound queue only drains while a poll is waiting, so frames wait in the bounded queue under its overflow
+ * policy and at most one batch is kept here. A poll is answered right away with the kept frames, or parked with
+ * Servlet 3 async and the queue is asked to drain, so a waiting client holds no thread; all frames of a batch go out
+ * in one response. Once an upgrading WebSocket answered the probe, a parked poll is released with a noop and later
+ * polls are answered with one right away, the client waits for them before it upgrades. After the upgrade, frames
+ * kept so far and all later ones are sent over the WebSocket.
+ * <p>
+ * A response is deflated when the client accepts it and the compression policy selects one of its frames; the
+ * Deflater is kept for the life of the connection.
+ */
+public class SocketIOPollingSession implements WebSocketSession, Flushable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketIOPollingSession.class.getName());
+
+    private static final String NOOP = SocketIOPayloadCodec.encodeText(new StringBuilder(3),
+            SocketIOPacketCodec.encodePacket(new StringBuilder(1), SocketIOPacketType.NoOp, null)).toString();
+
+    private static final String CLOSE = SocketIOPayloadCodec.encodeText(new StringBuilder(3),
+            SocketIOPacketCodec.encodePacket(new StringBuilder(1), SocketIOPacketType.Close, null)).toString();
+
+    private final String id = UUID.randomUUID().toString();
+    private final URI uri;
+    private final HttpHeaders handshakeHeaders;
+    private final Principal principal;
+    private final InetSocketAddress localAddress;
+    private final InetSocketAddress remoteAddress;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+    private final WebSocketHandler webSocketHandler;
+
+    /** Parked polls are answered with a noop after this long so that proxies do not cut them. */
+    private final long pollTimeoutMillis;
+
+    /** Null when responses are never compressed. */
+    private final SocketIOCompressionPolicy compressionPolicy;
+
+    /** Created with the first compressed response, guarded by this. */
+    private SocketIOCompressor compressor;
+
+    /** Whether the policy selected one of the pending frames, guarded by this. */
+    private boolean compressPending;
+
+    /** Whether the parked poll accepts a deflated response, guarded by this. */
+    private boolean pollAcceptsDeflate;
+
+    /** Frames of a batch sent while no poll was waiting any more, guarded by this. */
+    private final List<WebSocketMessage<?>> pending = new ArrayList<>();
+
+    /** Asks the outbound queue to drain, run when a poll is parked or the client upgraded. */
+    private volatile Runnable pollListener;
+
+    /** The fragments of a binary frame being sent, guarded by this. */
+    private ByteArrayOutputStream binaryFragments;
+
+    /** The poll waiting for frames, guarded by this. */
+    private AsyncContext poll;
+
+    /** The WebSocket the client upgraded to, guarded by this. */
+    private WebSocketSession upgraded;
+
+    /** Whether a WebSocket answered the probe and the upgrade is under way, guarded by this. */
+    private boolean upgrading;
+
+    private volatile boolean closed;
+
+    /** Payloads of concurrent POSTs are delivered one after the other, like the frames of a WebSocket. */
+    private final Object receiveLock = new Object();
+
+    /**
+     * @param request the handshake request
+     */
+    public SocketIOPollingSession(HttpServletRequest request, WebSocketHandler webSocketHandler, long pollTimeoutMillis) {
+        this(request, webSocketHandler, pollTimeoutMillis, null);
+    }
+
+    /**
+     * @param request           the handshake request
+     * @param compressionPolicy selects the responses to compress, null to compress none
+     */
+    public SocketIOPollingSession(HttpServletRequest request, WebSocketHandler webSocketHandler, long pollTimeoutMillis,
+                                  SocketIOCompressionPolicy compressionPolicy) {
+        StringBuffer url = request.getRequestURL();
+        if (request.getQueryString() != null) {
+            url.append('?').append(request.getQueryString());
+        }
+        this.uri = URI.create(url.toString());
+        this.handshakeHeaders = headers(request);
+        this.principal = request.getUserPrincipal();
+        this.localAddress = new InetSocketAddress(request.getLocalAddr(), request.getLocalPort());
+        this.remoteAddress = new InetSocketAddress(request.getRemoteAddr(), request.getRemotePort());
+        this.webSocketHandler = webSocketHandler;
+        this.pollTimeoutMillis = pollTimeoutMillis;
+        this.compressionPolicy = compressionPolicy;
+    }
+
+    private static HttpHeaders headers(HttpServletRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        for (Enumeration<String> names = request.getHeaderNames(); names != null && names.hasMoreElements(); ) {
+            String name = names.nextElement();
+            headers.put(name, Collections.list(request.getHeaders(name)));
+        }
+        return headers;
+    }
+
+    /**
+     * Answers a poll with the kept frames, or parks it until there are some.
+     *
+     * @return false if another poll is already waiting or the connection was upgraded or closed
+     */
+    public boolean poll(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        synchronized (this) {
+            if (!answerOrPark(request, response)) {
+                return false;
+            }
+        }
+
+        Runnable listener = pollListener;
+
+        if (listener != null) {
+            listener.run();
+        }
+
+        return true;
+    }
+
+    /**
+     * @return false if the poll was rejected
+     */
+    private boolean answerOrPark(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        if (closed || upgraded != null || poll != null) {
+            return false;
+        }
+
+        boolean acceptsDeflate = acceptsDeflate(request);
+
+        if (!pending.isEmpty()) {
+            writePending(response, acceptsDeflate);
+            return true;
+        }
+
+        if (upgrading) {
+            write(response, NOOP.getBytes(StandardCharsets.UTF_8), false);
+            return true;
+        }
+
+        final AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(pollTimeoutMillis);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                release(asyncContext, NOOP);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                unpark(asyncContext);
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+                unpark(asyncContext);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        poll = asyncContext;
+        pollAcceptsDeflate = acceptsDeflate;
+
+        return true;
+    }
+
+    /**
+     * Sets the listener run when a poll is parked or the client upgraded, the outbound queue drains then.
+     */
+    void setPollListener(Runnable pollListener) {
+        this.pollListener = pollListener;
+    }
+
+    /**
+     * @return true if frames sent now go out without waiting: a poll is parked, the client upgraded, or the
+     * connection is closed and rejects them
+     */
+    synchronized boolean isWritable() {
+        return poll != null || upgraded != null || closed;
+    }
+
+    private static boolean acceptsDeflate(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("deflate");
+    }
+
+    /**
+     * Lets the compression policy see a frame the outbound queue is about to send.
+     *
+     * @param length the length of the frame and its attachments
+     */
+    synchronized void selectCompression(SocketIOFrame frame, long length) {
+        if (compressionPolicy != null && upgraded == null && !compressPending) {
+            compressPending = compressionPolicy.shouldCompress(frame.getNameSpace(), frame.getEventName(), length);
+        }
+    }
+
+    private synchronized void unpark(AsyncContext asyncContext) {
+        if (poll == asyncContext) {
+            poll = null;
+        }
+    }
+
+    /**
+     * Answers a parked poll with the given payload, or the pending frames if it is null, if it is still parked.
+     */
+    private synchronized void release(AsyncContext asyncContext, String payload) {
+        if (poll != asyncContext) {
+            return;
+        }
+        poll = null;
+        try {
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            if (payload == null) {
+                writePending(response, pollAcceptsDeflate);
+            } else {
+                write(response, payload.getBytes(StandardCharsets.UTF_8), false);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Error answering poll Session ID : {} Error : {}", id, e.getMessage());
+        } finally {
+            asyncContext.complete();
+        }
+    }
+
+    private void writePending(HttpServletResponse response, boolean acceptsDeflate) throws IOException {
+
+        byte[] bytes = drainPending().getBytes(StandardCharsets.UTF_8);
+
+        boolean compress = compressPending;
+        compressPending = false;
+
+        if (compressionPolicy == null) {
+            write(response, bytes, false);
+        } else if (compress && acceptsDeflate) {
+            if (compressor == null) {
+                compressor = new SocketIOCompressor(compressionPolicy.getLevel(), compressionPolicy.getMetrics());
+            }
+            write(response, compressor.deflate(bytes), true);
+        } else {
+            compressionPolicy.getMetrics().skipped.increment();
+            write(response, bytes, false);
+        }
+    }
+
+    private static void write(HttpServletResponse response, byte[] bytes, boolean deflated) throws IOException {
+        response.setContentType("text/plain; charset=UTF-8");
+        if (deflated) {
+            response.setHeader("Content-Encoding", "deflate");
+        }
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    private String drainPending() {
+        StringBuilder payload = new StringBuilder();
+        for (WebSocketMessage<?> message : pending) {
+            if (message instanceof TextMessage) {
+                SocketIOPayloadCodec.encodeText(payload, ((TextMessage) message).getPayload());
+            } else {
+                SocketIOPayloadCodec.encodeBinary(payload, ((BinaryMessage) message).getPayload());
+            }
+        }
+        pending.clear();
+        return payload.toString();
+    }
+
+    /**
+     * Hands the packets of a posted payload to the handler in order.
+     *
+     * @param packets Strings for text packets and ByteBuffers for binary packets
+     */
+    public void receive(List<Object> packets) {
+        synchronized (receiveLock) {
+            for (Object packet : packets) {
+                try {
+                    webSocketHandler.handleMessage(this, packet instanceof String
+                            ? new TextMessage((String) packet) : new BinaryMessage((ByteBuffer) packet));
+                } catch (Exception e) {
+                    logger.error("Error handling polled packet Session ID : {}", id, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps a frame for the next poll, or sends it over the WebSocket the client upgraded to.
+     */
+    @Override
+    public synchronized void sendMessage(WebSocketMessage<?> message) throws IOException {
+
+        if (upgraded != null) {
+            upgraded.sendMessage(message);
+            return;
+        }
+
+        if (closed) {
+            throw new IOException("Polling session closed " + id);
+        }
+
+        if (message instanceof TextMessage) {
+            pending.add(message);
+        } else if (message instanceof BinaryMessage) {
+            // the outbound queue sends the packet type byte and the attachment as two fragments
+            if (message.isLast() && binaryFragments == null) {
+                pending.add(message);
+                return;
+            }
+            if (binaryFragments == null) {
+                binaryFragments = new ByteArrayOutputStream();
+            }
+            ByteBuffer payload = ((BinaryMessage) message).getPayload().duplicate();
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            binaryFragments.write(bytes, 0, bytes.length);
+            if (message.isLast()) {
+                pending.add(new BinaryMessage(binaryFragments.toByteArray()));
+                binaryFragments = null;
+            }
+        }
+    }
+
+    /**
+     * Answers a parked poll with the frames kept so far, called by the outbound queue after each batch.
+     */
+    @Override
+    public synchronized void flush() {
+        if (poll != null && !pending.isEmpty()) {
+            release(poll, null);
+        }
+    }
+
+    /**
+     * Releases the parked poll once a WebSocket answered the probe: the client pauses polling and waits for that
+     * poll before it sends the upgrade packet.
+     */
+    public synchronized void probed() {
+
+        upgrading = true;
+
+        if (poll != null) {
+            release(poll, pending.isEmpty() ? NOOP : null);
+        }
+    }
+
+    /**
+     * Moves the connection to the WebSocket the client upgraded to.
+     */
+    public void upgrade(WebSocketSession webSocketSession) throws IOException {
+
+        synchronized (this) {
+
+            upgraded = webSocketSession;
+
+            if (poll != null) {
+                release(poll, NOOP);
+            }
+
+            for (WebSocketMessage<?> message : pending) {
+                webSocketSession.sendMessage(message);
+            }
+
+            pending.clear();
+            compressPending = false;
+
+            endCompressor();
+        }
+
+        Runnable listener = pollListener;
+
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    private void endCompressor() {
+        if (compressor != null) {
+            compressor.end();
+            compressor = null;
+        }
+    }
+
+    public synchronized boolean isUpgraded() {
+        return upgraded != null;
+    }
+
+    /**
+     * @return the WebSocket the client upgraded to, null if it did not
+     */
+    public synchronized WebSocketSession getUpgraded() {
+        return upgraded;
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(CloseStatus.NORMAL);
+    }
+
+    /**
+     * Sends a close packet to a parked poll and reports the connection closed to the handler; an upgraded
+     * connection closes its WebSocket instead.
+     */
+    @Override
+    public void close(CloseStatus status) throws IOException {
+
+        WebSocketSession webSocketSession;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            webSocketSession = upgraded;
+            if (poll != null) {
+                release(poll, CLOSE);
+            }
+            pending.clear();
+            endCompressor();
+        }
+
+        if (webSocketSession != null) {
+            webSocketSession.close(status);
+            return;
+        }
+
+        try {
+            webSocketHandler.afterConnectionClosed(this, status);
+        } catch (Exception e) {
+            logger.warn("Error closing Session ID : {} Error : {}", id, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        WebSocketSession webSocketSession;
+        synchronized (this) {
+            webSocketSession = upgraded;
+        }
+        return webSocketSession != null ? webSocketSession.isOpen() : !closed;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public URI getUri() {
+        return uri;
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return handshakeHeaders;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return principal;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return null;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOPollingSession{" +
+                "id='" + id + '\'' +
+                ", remoteAddress=" + remoteAddress +
+                ", upgraded=" + isUpgraded() +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.solutionarchitects.socketio;
+
+/**
+ * The per-second rate of a counter, an exponentially weighted moving average over about a minute like the one
+ * minute load average.
+ * <p>
+ * The counter is sampled by {@link #tick} every {@link #TICK_SECONDS} seconds on a single thread; the rate may be
+ * read from any thread.
+ */
+public class SocketIORate {
+
+    static final int TICK_SECONDS = 5;
+
+    private static final double ALPHA = 1 - Math.exp(-TICK_SECONDS / 60.0);
+
+    /** The count at the previous tick, tick thread only. */
+    private long last;
+
+    private boolean started;
+
+    private volatile double rate;
+
+    /**
+     * @param count the current value of the counter, which only grows
+     */
+    void tick(long count) {
+        double instant = (count - last) / (double) TICK_SECONDS;
+        last = count;
+        if (started) {
+            rate += ALPHA * (instant - rate);
+        } else {
+            rate = instant;
+            started = true;
+        }
+    }
+
+    /**
+     * @return the average number of counts per second over about the last minute
+     */
+    public double getRate() {
+        return rate;
+    }
+}
@@ -0,0 +1,74 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.common.rx.v2.ReplayEvictionService;
+import com.solutionarchitects.common.rx.v2.ReplaySizeAndTimeBoundBuffer;
+import rx.Scheduler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The recent events sent to one connection, kept so that a client coming back after a network blip with the offset
+ * of the last event it received can be sent just the events it missed.
+ * <p>
+ * Events are retained up to a count and an age by a {@link ReplaySizeAndTimeBoundBuffer}. The buffer takes a single
+ * writer, so callers hold the lock of the log, which also orders the recorded events the way they were queued.
+ */
+final class SocketIOReplayLog {
+
+    private static final SocketIOFrame[] EMPTY = new SocketIOFrame[0];
+
+    private final ReplaySizeAndTimeBoundBuffer<SocketIOFrame> buffer;
+
+    private long recorded;
+
+    private String lastOffset;
+
+    SocketIOReplayLog(int size, long maxAgeMillis, Scheduler scheduler) {
+        this.buffer = new ReplaySizeAndTimeBoundBuffer<>(size, maxAgeMillis, scheduler);
+        // the events of a connection that went quiet age out without waiting for its next event
+        ReplayEvictionService.getDefault().register(buffer);
+    }
+
+    /**
+     * Records an event that carries an offset.
+     */
+    void record(SocketIOFrame frame) {
+        buffer.next(frame);
+        recorded++;
+        lastOffset = frame.getOffset();
+    }
+
+    /**
+     * @param offset the offset of the last event the client received, null if it received none
+     * @return the events recorded after it, null if some of them are no longer retained
+     */
+    List<SocketIOFrame> after(String offset) {
+
+        if (offset != null && offset.equals(lastOffset)) {
+            return Collections.emptyList();
+        }
+
+        SocketIOFrame[] frames = buffer.toArray(EMPTY);
+
+        if (offset == null) {
+            return frames.length == recorded ? Arrays.asList(frames) : null;
+        }
+
+        for (int i = frames.length - 1; i >= 0; i--) {
+            if (offset.equals(frames[i].getOffset())) {
+                return Arrays.asList(frames).subList(i + 1, frames.length);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the number of events retained
+     */
+    int size() {
+        return buffer.size();
+    }
+}
@@ -0,0 +1,98 @@
+package com.solutionarchitects.socketio;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The members of a room, or of a whole namespace.
+ * <p>
+ * Joining and leaving are O(1) updates of a concurrent set. Broadcasts iterate over an immutable member array
+ * that is rebuilt at most once per membership change, so iteration needs no lock and sees a stable set of
+ * members even while connections churn.
+ */
+public final class SocketIORoom {
+
+    private static final SocketIOConnectionHandler[] EMPTY = new SocketIOConnectionHandler[0];
+
+    private final String name;
+
+    private final Set<SocketIOConnectionHandler> members = Collections.newSetFromMap(new ConcurrentHashMap<SocketIOConnectionHandler, Boolean>());
+
+    /** Incremented after every membership change. */
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Snapshot snapshot = new Snapshot(0L, EMPTY);
+
+    public SocketIORoom(String name) {
+        this.name = name;
+    }
+
+    boolean add(SocketIOConnectionHandler socketIOConnectionHandler) {
+        if (members.add(socketIOConnectionHandler)) {
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    boolean remove(SocketIOConnectionHandler socketIOConnectionHandler) {
+        if (members.remove(socketIOConnectionHandler)) {
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean contains(SocketIOConnectionHandler socketIOConnectionHandler) {
+        return members.contains(socketIOConnectionHandler);
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the members as of the latest membership change. The array is shared and must not be modified.
+     *
+     * @return the current members
+     */
+    public SocketIOConnectionHandler[] snapshot() {
+        // the version is read first: a snapshot built afterwards contains at least every change up to it
+        long v = version.get();
+        Snapshot s = snapshot;
+        if (s.version != v) {
+            s = new Snapshot(v, members.toArray(EMPTY));
+            snapshot = s;
+        }
+        return s.members;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIORoom{" +
+                "name='" + name + '\'' +
+                ", size=" + members.size() +
+                '}';
+    }
+
+    private static final class Snapshot {
+
+        final long version;
+        final SocketIOConnectionHandler[] members;
+
+        Snapshot(long version, SocketIOConnectionHandler[] members) {
+            this.version = version;
+            this.members = members;
+        }
+    }
+}
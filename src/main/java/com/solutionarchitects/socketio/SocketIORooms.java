@@ -0,0 +1,287 @@
+package com.solutionarchitects.socketio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Membership index of namespaces and rooms.
+ * <p>
+ * Every connected namespace handler is a member of its namespace and of any rooms it joined. Rooms are created on
+ * first join and removed when their last member leaves. Emitting to a room or a namespace encodes the event once
+ * and costs one queue offer per member, independently of the total number of connections.
+ */
+@Service
+public class SocketIORooms {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+    private final ConcurrentHashMap<String, Namespace> namespaces = new ConcurrentHashMap<>();
+
+    /**
+     * Notified when a handler joins or leaves a namespace or room, on the thread that changed the membership.
+     * Notifications of one handler may race, so listeners should check {@link SocketIOConnectionHandler#inRoom}.
+     */
+    interface MembershipListener {
+
+        void joined(SocketIOConnectionHandler socketIOConnectionHandler);
+
+        void left(SocketIOConnectionHandler socketIOConnectionHandler);
+    }
+
+    private Namespace namespace(String nameSpace) {
+        Namespace n = namespaces.get(nameSpace);
+        if (n == null) {
+            Namespace created = new Namespace(nameSpace);
+            n = namespaces.putIfAbsent(nameSpace, created);
+            if (n == null) {
+                n = created;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Adds a connected handler to its namespace.
+     */
+    public void register(SocketIOConnectionHandler socketIOConnectionHandler) {
+        Namespace n = namespace(socketIOConnectionHandler.getNameSpace());
+        n.all.add(socketIOConnectionHandler);
+        n.joined(null, socketIOConnectionHandler);
+        if (socketIOConnectionHandler.isUnregistered()) {
+            // unregistered meanwhile
+            n.all.remove(socketIOConnectionHandler);
+            n.left(null, socketIOConnectionHandler);
+        }
+    }
+
+    /**
+     * Removes a handler from its namespace and from every room it joined. A handler is never added to a room
+     * again once this was called, joins racing with it leave the room themselves.
+     */
+    public void unregister(SocketIOConnectionHandler socketIOConnectionHandler) {
+        socketIOConnectionHandler.unregistered();
+        Namespace n = namespaces.get(socketIOConnectionHandler.getNameSpace());
+        if (n == null) {
+            return;
+        }
+        for (String room : socketIOConnectionHandler.getRooms()) {
+            leave(socketIOConnectionHandler, room);
+        }
+        n.all.remove(socketIOConnectionHandler);
+        n.left(null, socketIOConnectionHandler);
+    }
+
+    void join(SocketIOConnectionHandler socketIOConnectionHandler, String room) {
+        Namespace n = namespace(socketIOConnectionHandler.getNameSpace());
+        // room creation and removal are atomic per room, so a join can never land in a room that is being dropped
+        n.rooms.compute(room, (name, r) -> {
+            if (r == null) {
+                r = new SocketIORoom(name);
+            }
+            r.add(socketIOConnectionHandler);
+            return r;
+        });
+        n.joined(room, socketIOConnectionHandler);
+    }
+
+    void leave(SocketIOConnectionHandler socketIOConnectionHandler, String room) {
+        Namespace n = namespaces.get(socketIOConnectionHandler.getNameSpace());
+        if (n == null) {
+            return;
+        }
+        n.rooms.computeIfPresent(room, (name, r) -> {
+            r.remove(socketIOConnectionHandler);
+            return r.isEmpty() ? null : r;
+        });
+        n.left(room, socketIOConnectionHandler);
+    }
+
+    /**
+     * Starts notifying a listener of the members joining and leaving a namespace or one of its rooms.
+     *
+     * @param room the room, null for the whole namespace
+     * @return the members at the time the listener was added, some of which may also be reported as joined
+     */
+    SocketIOConnectionHandler[] watch(String nameSpace, String room, MembershipListener listener) {
+        Namespace n = namespace(nameSpace);
+        n.watch(new Watcher(room, listener));
+        SocketIORoom members = room == null ? n.all : n.rooms.get(room);
+        return members == null ? new SocketIOConnectionHandler[0] : members.snapshot();
+    }
+
+    void unwatch(String nameSpace, MembershipListener listener) {
+        Namespace n = namespaces.get(nameSpace);
+        if (n != null) {
+            n.unwatch(listener);
+        }
+    }
+
+    /**
+     * @return the room or null if nobody is in it
+     */
+    public SocketIORoom getRoom(String nameSpace, String room) {
+        Namespace n = namespaces.get(nameSpace);
+        return n == null ? null : n.rooms.get(room);
+    }
+
+    /**
+     * @return the members of a namespace, null if nobody ever connected to it
+     */
+    public SocketIORoom getNamespace(String nameSpace) {
+        Namespace n = namespaces.get(nameSpace);
+        return n == null ? null : n.all;
+    }
+
+    /**
+     * Emits an event to every member of a namespace.
+     *
+     * @return the number of connections the event was handed to
+     */
+    public int emit(String nameSpace, String eventName, Object payload) {
+        SocketIORoom all = getNamespace(nameSpace);
+        if (all == null) {
+            return 0;
+        }
+        return emit(all.snapshot(), null, SocketIOFrame.event(nameSpace, eventName, payload));
+    }
+
+    /**
+     * Hands an encoded event to every member of a namespace.
+     *
+     * @return the number of connections the frame was handed to
+     */
+    int emit(String nameSpace, SocketIOFrame frame) {
+        SocketIORoom all = getNamespace(nameSpace);
+        return all == null ? 0 : emit(all.snapshot(), null, frame);
+    }
+
+    /**
+     * Hands an encoded event to every member of a room.
+     *
+     * @return the number of connections the frame was handed to
+     */
+    int emitToRoom(String nameSpace, String room, SocketIOFrame frame) {
+        SocketIORoom r = getRoom(nameSpace, room);
+        return r == null ? 0 : emit(r.snapshot(), null, frame);
+    }
+
+    /**
+     * Hands an encoded event to every member of a namespace that is not in the given room.
+     *
+     * @return the number of connections the frame was handed to
+     */
+    int emitExceptRoom(String nameSpace, String exceptRoom, SocketIOFrame frame) {
+        SocketIORoom all = getNamespace(nameSpace);
+        return all == null ? 0 : emit(all.snapshot(), getRoom(nameSpace, exceptRoom), frame);
+    }
+
+    /**
+     * Emits an event to every member of a room.
+     *
+     * @return the number of connections the event was handed to
+     */
+    public int emitToRoom(String nameSpace, String room, String eventName, Object payload) {
+        SocketIORoom r = getRoom(nameSpace, room);
+        if (r == null) {
+            return 0;
+        }
+        return emit(r.snapshot(), null, SocketIOFrame.event(nameSpace, eventName, payload));
+    }
+
+    /**
+     * Emits an event to every member of a namespace that is not in the given room.
+     *
+     * @return the number of connections the event was handed to
+     */
+    public int emitExceptRoom(String nameSpace, String exceptRoom, String eventName, Object payload) {
+        SocketIORoom all = getNamespace(nameSpace);
+        if (all == null) {
+            return 0;
+        }
+        return emit(all.snapshot(), getRoom(nameSpace, exceptRoom), SocketIOFrame.event(nameSpace, eventName, payload));
+    }
+
+    private int emit(SocketIOConnectionHandler[] members, SocketIORoom except, SocketIOFrame frame) {
+
+        int count = 0;
+
+        for (SocketIOConnectionHandler socketIOConnectionHandler : members) {
+            if (except != null && except.contains(socketIOConnectionHandler)) {
+                continue;
+            }
+            if (socketIOConnectionHandler.sendFrame(frame)) {
+                count++;
+            }
+        }
+
+        logger.debug("Emitted {} to {} connections", frame, count);
+
+        return count;
+    }
+
+    private static final class Watcher {
+
+        /** Null for the whole namespace. */
+        final String room;
+        final MembershipListener listener;
+
+        Watcher(String room, MembershipListener listener) {
+            this.room = room;
+            this.listener = listener;
+        }
+
+        boolean matches(String room) {
+            return this.room == null ? room == null : this.room.equals(room);
+        }
+    }
+
+    private static final class Namespace {
+
+        private static final Watcher[] NO_WATCHERS = new Watcher[0];
+
+        final SocketIORoom all;
+
+        final ConcurrentHashMap<String, SocketIORoom> rooms = new ConcurrentHashMap<>();
+
+        /** Replaced as a whole when a watcher is added or removed, which is rare. */
+        volatile Watcher[] watchers = NO_WATCHERS;
+
+        Namespace(String nameSpace) {
+            this.all = new SocketIORoom(nameSpace);
+        }
+
+        synchronized void watch(Watcher watcher) {
+            Watcher[] w = Arrays.copyOf(watchers, watchers.length + 1);
+            w[w.length - 1] = watcher;
+            watchers = w;
+        }
+
+        synchronized void unwatch(MembershipListener listener) {
+            List<Watcher> w = new ArrayList<>(Arrays.asList(watchers));
+            w.removeIf(watcher -> watcher.listener == listener);
+            watchers = w.toArray(NO_WATCHERS);
+        }
+
+        void joined(String room, SocketIOConnectionHandler socketIOConnectionHandler) {
+            for (Watcher watcher : watchers) {
+                if (watcher.matches(room)) {
+                    watcher.listener.joined(socketIOConnectionHandler);
+                }
+            }
+        }
+
+        void left(String room, SocketIOConnectionHandler socketIOConnectionHandler) {
+            for (Watcher watcher : watchers) {
+                if (watcher.matches(room)) {
+                    watcher.listener.left(socketIOConnectionHandler);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.solutionarchitects.socketio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the inbound event handlers of one connection one after the other, in the order they were submitted, on a
+ * shared executor.
+ * <p>
+ * Tasks go into a linked queue that any thread may append to. A single drainer is submitted to the shared executor
+ * whenever the queue goes from idle to busy and runs at most {@link #BATCH_SIZE} tasks before it yields the thread
+ * to other connections. An idle connection holds neither a thread nor a pending task. When the shared executor
+ * rejects the drainer, it runs on the submitting thread instead, which pushes back on the reader without reordering
+ * the connection's events.
+ * <p>
+ * This holds the work-in-progress indicator of the drainer.
+ */
+public class SocketIOSerialExecutor extends AtomicInteger implements Executor, Runnable {
+
+    /** */
+    private static final long serialVersionUID = -2201406263312307346L;
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketIOSerialExecutor.class.getName());
+
+    /** Tasks run per turn on the shared executor. */
+    static final int BATCH_SIZE = 64;
+
+    private final Executor executor;
+    private final SocketIOHandlerMetrics metrics;
+
+    /** Producers append at the tail, the drainer consumes after the head. */
+    private final AtomicReference<Task> tail;
+    private Task head;
+
+    public SocketIOSerialExecutor(Executor executor, SocketIOHandlerMetrics metrics) {
+        this.executor = executor;
+        this.metrics = metrics;
+        this.head = new Task(null, 0);
+        this.tail = new AtomicReference<>(head);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+
+        Task task = new Task(command, System.nanoTime());
+        tail.getAndSet(task).next = task;
+
+        metrics.submitted.increment();
+        metrics.pending.increment();
+
+        if (getAndIncrement() == 0) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                metrics.rejected.increment();
+                run();
+            }
+        }
+    }
+
+    /**
+     * Runs pending tasks, only ever run by one thread at a time.
+     */
+    @Override
+    public void run() {
+
+        int missed = 1;
+        int n = 0;
+
+        for (; ; ) {
+
+            Task task;
+
+            while ((task = poll()) != null) {
+
+                long start = System.nanoTime();
+                metrics.pending.decrement();
+                metrics.recordQueued(start - task.submitted);
+
+                try {
+                    task.command.run();
+                } catch (Throwable t) {
+                    metrics.failed.increment();
+                    logger.error("Event handler task failed", t);
+                }
+
+                metrics.recordExecuted(System.nanoTime() - start);
+
+                if (++n == BATCH_SIZE) {
+                    n = 0;
+                    // give other connections a turn, the work-in-progress count keeps producers from scheduling
+                    try {
+                        executor.execute(this);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        metrics.rejected.increment();
+                    }
+                }
+            }
+
+            missed = addAndGet(-missed);
+
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private Task poll() {
+        Task next = head.next;
+        if (next == null) {
+            if (head == tail.get()) {
+                return null;
+            }
+            // a producer swapped the tail but did not link it yet
+            while ((next = head.next) == null) {
+                Thread.yield();
+            }
+        }
+        head.command = null;
+        head = next;
+        return next;
+    }
+
+    /**
+     * @return true if no task is pending or running
+     */
+    public boolean isIdle() {
+        return get() == 0;
+    }
+
+    private static final class Task {
+
+        Runnable command;
+        final long submitted;
+        volatile Task next;
+
+        Task(Runnable command, long submitted) {
+            this.command = command;
+            this.submitted = submitted;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOBinaryPacket;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-connection state, stored once in the WebSocketSession attributes.
+ * <p>
+ * The namespace handlers of the connection live in a small array indexed by the namespace id, see
+ * {@link SocketIONamespaceIds}. The array is replaced on connect and disconnect, which are rare, so resolving the
+ * handler of an inbound event is a volatile read and an index.
+ * <p>
+ * With connection state recovery a session whose connection dropped is suspended instead of closed: it keeps its
+ * handlers, their rooms and its outbound queue, which goes on recording events, until the client resumes it on a
+ * new connection or the session expires.
+ */
+public final class SocketIOSession {
+
+    /** The WebSocketSession attribute the session is stored under. */
+    public static final String ATTRIBUTE = SocketIOSession.class.getName();
+
+    private static final SocketIOConnectionHandler[] EMPTY = new SocketIOConnectionHandler[0];
+
+    private final String sessionId;
+    /** Only sent to the client in its Open packet, unlike the session id it is never part of a URL. */
+    private final String recoveryId;
+    private volatile WebSocketSession webSocketSession;
+    private final SocketIOOutboundQueue outboundQueue;
+    private final SocketIOAckTable acks;
+
+    /** When the WebSocket was established, in System.nanoTime. */
+    private final long openNanos = System.nanoTime();
+
+    /** Set once the first namespace was connected. */
+    private volatile boolean handshakeCompleted;
+
+    private volatile SocketIOConnectionHandler[] handlers = EMPTY;
+
+    private volatile SocketIOHeartbeat heartbeat;
+
+    /** Runs the event handlers of the connection, null to run them on the reading thread. */
+    private volatile SocketIOSerialExecutor handlerExecutor;
+
+    private boolean closed;
+
+    private boolean suspended;
+
+    /** Ends a suspended session once the recovery window passed, guarded by this. */
+    private SocketIOTimerWheel.Timeout expiry;
+
+    /** Set once the session was resumed on a new connection. */
+    private volatile boolean recovered;
+
+    /** Only accessed by the thread delivering the connection's messages. */
+    private SocketIOBinaryPacket pendingBinaryPacket;
+
+    /** Only accessed by the thread delivering the connection's messages. */
+    private SocketIOPartialMessage partialMessage;
+
+    /** Only accessed by the thread delivering the connection's messages. */
+    private ByteArrayOutputStream binaryFragments;
+
+    /** Receipt of the message being handled, only accessed by the thread delivering the connection's messages. */
+    private long receivedNanos;
+
+    /** Whether the message being handled is logged, only accessed by the thread delivering the connection's messages. */
+    private boolean logged;
+
+    /**
+     * @param acks the pending acks of the connection, null if emits cannot request acks
+     */
+    public SocketIOSession(String sessionId, WebSocketSession webSocketSession, SocketIOOutboundQueue outboundQueue, SocketIOAckTable acks) {
+        this(sessionId, null, webSocketSession, outboundQueue, acks);
+    }
+
+    /**
+     * @param recoveryId the secret a client resumes the session with, null if the session cannot be recovered
+     * @param acks       the pending acks of the connection, null if emits cannot request acks
+     */
+    public SocketIOSession(String sessionId, String recoveryId, WebSocketSession webSocketSession, SocketIOOutboundQueue outboundQueue, SocketIOAckTable acks) {
+        this.sessionId = sessionId;
+        this.recoveryId = recoveryId;
+        this.webSocketSession = webSocketSession;
+        this.outboundQueue = outboundQueue;
+        this.acks = acks;
+    }
+
+    /**
+     * @return the session stored in the attributes of a WebSocketSession, null before it was established
+     */
+    public static SocketIOSession of(WebSocketSession webSocketSession) {
+        return (SocketIOSession) webSocketSession.getAttributes().get(ATTRIBUTE);
+    }
+
+    /**
+     * @return the handler of a namespace or null if the connection is not connected to it
+     */
+    public SocketIOConnectionHandler getHandler(int nameSpaceId) {
+        SocketIOConnectionHandler[] h = handlers;
+        return nameSpaceId >= 0 && nameSpaceId < h.length ? h[nameSpaceId] : null;
+    }
+
+    /**
+     * Sets the handler of a namespace.
+     *
+     * @return the handler it replaced, or null; if the session is closed the handler is not added and returned
+     */
+    public synchronized SocketIOConnectionHandler putHandler(int nameSpaceId, SocketIOConnectionHandler handler) {
+        if (closed) {
+            return handler;
+        }
+        SocketIOConnectionHandler[] h = handlers;
+        SocketIOConnectionHandler[] updated = Arrays.copyOf(h, Math.max(h.length, nameSpaceId + 1));
+        SocketIOConnectionHandler previous = updated[nameSpaceId];
+        updated[nameSpaceId] = handler;
+        handlers = updated;
+        return previous;
+    }
+
+    /**
+     * @return the removed handler or null if the connection is not connected to the namespace
+     */
+    public synchronized SocketIOConnectionHandler removeHandler(int nameSpaceId) {
+        SocketIOConnectionHandler[] h = handlers;
+        if (nameSpaceId < 0 || nameSpaceId >= h.length || h[nameSpaceId] == null) {
+            return null;
+        }
+        SocketIOConnectionHandler[] updated = h.clone();
+        SocketIOConnectionHandler previous = updated[nameSpaceId];
+        updated[nameSpaceId] = null;
+        handlers = updated;
+        return previous;
+    }
+
+    /**
+     * Marks the session closed and detaches every handler, only the first call does anything.
+     *
+     * @return the handlers connected until now, null if the session was already closed
+     */
+    public synchronized SocketIOConnectionHandler[] close() {
+        if (closed) {
+            return null;
+        }
+        closed = true;
+        SocketIOConnectionHandler[] h = handlers;
+        handlers = EMPTY;
+        if (heartbeat != null) {
+            heartbeat.cancel();
+        }
+        if (expiry != null) {
+            expiry.cancel();
+        }
+        outboundQueue.close();
+        if (acks != null) {
+            acks.close();
+        }
+        return h;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Detaches the session from its dropped connection but keeps its handlers; the outbound queue is closed and
+     * records the events sent meanwhile.
+     *
+     * @return false if the session is closed or already suspended
+     */
+    synchronized boolean suspend() {
+        if (closed || suspended) {
+            return false;
+        }
+        suspended = true;
+        if (heartbeat != null) {
+            heartbeat.cancel();
+        }
+        outboundQueue.close();
+        return true;
+    }
+
+    /**
+     * Moves a suspended session to the new connection of its client, see
+     * {@link SocketIOOutboundQueue#resume(WebSocketSession, List, String)}.
+     *
+     * @return the number of events replayed, -1 if the session cannot be resumed
+     */
+    synchronized int resume(WebSocketSession webSocketSession, List<SocketIOFrame> first, String offset) {
+        if (closed || !suspended) {
+            return -1;
+        }
+        int replayed = outboundQueue.resume(webSocketSession, first, offset);
+        if (replayed < 0) {
+            return -1;
+        }
+        this.webSocketSession = webSocketSession;
+        for (SocketIOConnectionHandler handler : handlers) {
+            if (handler != null) {
+                handler.rebind(webSocketSession);
+            }
+        }
+        pendingBinaryPacket = null;
+        partialMessage = null;
+        binaryFragments = null;
+        if (expiry != null) {
+            expiry.cancel();
+            expiry = null;
+        }
+        suspended = false;
+        recovered = true;
+        return replayed;
+    }
+
+    /**
+     * @return the secret a client resumes the session with, null if the session cannot be recovered
+     */
+    public String getRecoveryId() {
+        return recoveryId;
+    }
+
+    /**
+     * Compares in constant time, so the id cannot be guessed from response times.
+     *
+     * @return true if the id is the recovery id of the session
+     */
+    boolean isRecoveryId(String id) {
+        return recoveryId != null && id != null
+                && MessageDigest.isEqual(recoveryId.getBytes(StandardCharsets.UTF_8), id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    synchronized void setExpiry(SocketIOTimerWheel.Timeout expiry) {
+        this.expiry = expiry;
+    }
+
+    public synchronized boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * @return true if the session was resumed on a new connection after its connection dropped
+     */
+    public boolean isRecovered() {
+        return recovered;
+    }
+
+    /**
+     * @return the number of namespaces the connection is connected to
+     */
+    public int getHandlerCount() {
+        int count = 0;
+        for (SocketIOConnectionHandler handler : handlers) {
+            if (handler != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the binary message waiting for attachments, or null
+     */
+    public SocketIOBinaryPacket getPendingBinaryPacket() {
+        return pendingBinaryPacket;
+    }
+
+    public void setPendingBinaryPacket(SocketIOBinaryPacket pendingBinaryPacket) {
+        this.pendingBinaryPacket = pendingBinaryPacket;
+    }
+
+    SocketIOPartialMessage getPartialMessage() {
+        return partialMessage;
+    }
+
+    void setPartialMessage(SocketIOPartialMessage partialMessage) {
+        this.partialMessage = partialMessage;
+    }
+
+    ByteArrayOutputStream getBinaryFragments() {
+        return binaryFragments;
+    }
+
+    void setBinaryFragments(ByteArrayOutputStream binaryFragments) {
+        this.binaryFragments = binaryFragments;
+    }
+
+    long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    boolean isLogged() {
+        return logged;
+    }
+
+    void received(long receivedNanos, boolean logged) {
+        this.receivedNanos = receivedNanos;
+        this.logged = logged;
+    }
+
+    /**
+     * Marks the handshake complete.
+     *
+     * @return nanoseconds since the WebSocket was established on the first call, -1 on later calls
+     */
+    long completeHandshake() {
+        if (handshakeCompleted) {
+            return -1;
+        }
+        handshakeCompleted = true;
+        return System.nanoTime() - openNanos;
+    }
+
+    void setHeartbeat(SocketIOHeartbeat heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
+    void setHandlerExecutor(SocketIOSerialExecutor handlerExecutor) {
+        this.handlerExecutor = handlerExecutor;
+    }
+
+    public SocketIOSerialExecutor getHandlerExecutor() {
+        return handlerExecutor;
+    }
+
+    /**
+     * Runs an inbound event handler after the ones dispatched before it on this connection.
+     */
+    public void dispatch(Runnable handler) {
+        SocketIOSerialExecutor executor = handlerExecutor;
+        if (executor == null) {
+            handler.run();
+        } else {
+            executor.execute(handler);
+        }
+    }
+
+    public SocketIOHeartbeat getHeartbeat() {
+        return heartbeat;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public WebSocketSession getWebSocketSession() {
+        return webSocketSession;
+    }
+
+    public SocketIOOutboundQueue getOutboundQueue() {
+        return outboundQueue;
+    }
+
+    /**
+     * @return the acks the connection is waiting for, null if acks are not enabled
+     */
+    public SocketIOAckTable getAcks() {
+        return acks;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOSession{" +
+                "sessionId='" + sessionId + '\'' +
+                ", handlers=" + getHandlerCount() +
+                '}';
+    }
+}
@@ -0,0 +1,225 @@
+package com.solutionarchitects.socketio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timer wheel driven by a single thread.
+ * <p>
+ * Scheduling is a lock-free hand-off to the timer thread, which owns the wheel. Each tick the timer thread expires
+ * one bucket. Tasks are expected to be rescheduled lazily: instead of cancelling and re-arming a timeout every
+ * time something happens (e.g. a ping arrives), the task records a timestamp and, when its bucket fires, returns
+ * the new deadline if it has moved. Keeping a deadline current is then a single volatile write.
+ */
+public class SocketIOTimerWheel implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketIOTimerWheel.class.getName());
+
+    /**
+     * Work run by the timer thread when its deadline has passed.
+     */
+    public interface Task {
+        /**
+         * @param now the current time of the wheel, see {@link SocketIOTimerWheel#now()}
+         * @return a later deadline to be called again at, or a value not greater than {@code now} when done
+         */
+        long expire(long now);
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+
+        /** Null once cancelled, so a cancelled handle waiting for its bucket does not keep the task reachable. */
+        volatile Task task;
+        long deadline;
+        long rounds;
+
+        Timeout(Task task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prevents the task from running, the timer drops the handle when its bucket fires.
+         */
+        public void cancel() {
+            task = null;
+        }
+
+        public boolean isCancelled() {
+            return task == null;
+        }
+    }
+
+    private final long tickMillis;
+    private final int mask;
+    private final ArrayDeque<Timeout>[] wheel;
+    private final ConcurrentLinkedQueue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread thread;
+
+    /** Only accessed by the timer thread. */
+    private long tick;
+
+    private volatile boolean stopped;
+
+    /**
+     * @param name       the timer thread name
+     * @param tickMillis the resolution of the wheel
+     * @param wheelSize  the number of buckets, rounded up to a power of two
+     */
+    public SocketIOTimerWheel(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis > 0 required but it was " + tickMillis);
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 20)) {
+            throw new IllegalArgumentException("0 < wheelSize <= 2^20 required but it was " + wheelSize);
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        if (size == 0) {
+            size = 1;
+        }
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.wheel = buckets(size);
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<Timeout>[] buckets(int size) {
+        ArrayDeque<Timeout>[] buckets = (ArrayDeque<Timeout>[]) new ArrayDeque<?>[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        return buckets;
+    }
+
+    /**
+     * @return the wheel's clock in milliseconds, only meaningful relative to other values of it
+     */
+    public long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Schedules a task, may be called from any thread.
+     *
+     * @param delayMillis the delay from now
+     * @return the handle to cancel the task with
+     */
+    public Timeout schedule(Task task, long delayMillis) {
+        return scheduleAt(task, now() + Math.max(0L, delayMillis));
+    }
+
+    /**
+     * Schedules a task at a deadline of the wheel's clock, may be called from any thread.
+     *
+     * @return the handle to cancel the task with
+     */
+    public Timeout scheduleAt(Task task, long deadline) {
+        Timeout timeout = new Timeout(task, deadline);
+        scheduled.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread, pending tasks are not run.
+     */
+    public void stop() {
+        stopped = true;
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+
+        ArrayList<Timeout> rescheduled = new ArrayList<>();
+
+        while (!stopped) {
+
+            long tickDeadline = (tick + 1) * tickMillis;
+            long sleep = tickDeadline - now();
+
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (stopped) {
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            Timeout timeout;
+            while ((timeout = scheduled.poll()) != null) {
+                if (timeout.task != null) {
+                    place(timeout);
+                }
+            }
+
+            long now = now();
+
+            Iterator<Timeout> it = wheel[(int) (tick & mask)].iterator();
+            while (it.hasNext()) {
+                timeout = it.next();
+                Task task = timeout.task;
+                if (task == null) {
+                    it.remove();
+                } else if (timeout.rounds > 0) {
+                    timeout.rounds--;
+                } else {
+                    it.remove();
+                    long next;
+                    try {
+                        next = task.expire(now);
+                    } catch (Throwable e) {
+                        logger.error("Timer task failed", e);
+                        continue;
+                    }
+                    if (next > now && timeout.task != null) {
+                        timeout.deadline = next;
+                        rescheduled.add(timeout);
+                    }
+                }
+            }
+
+            tick++;
+
+            for (Timeout t : rescheduled) {
+                place(t);
+            }
+            rescheduled.clear();
+        }
+    }
+
+    /**
+     * Puts a timeout into the bucket of its deadline, a deadline already passed goes into the current bucket.
+     */
+    private void place(Timeout timeout) {
+        long ticks = Math.max(timeout.deadline / tickMillis, tick);
+        timeout.rounds = (ticks - tick) / wheel.length;
+        wheel[(int) (ticks & mask)].add(timeout);
+    }
+
+    /**
+     * @return the number of handles held by the wheel, including cancelled ones not dropped yet; racy
+     */
+    int size() {
+        int size = scheduled.size();
+        for (ArrayDeque<Timeout> bucket : wheel) {
+            size += bucket.size();
+        }
+        return size;
+    }
+}
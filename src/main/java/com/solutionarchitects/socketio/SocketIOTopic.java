@@ -0,0 +1,295 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.common.rx.v2.ReplaySubject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Subscriber;
+import rx.Subscription;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An Observable published as a named event to the members of a namespace or room.
+ * <p>
+ * The topic holds the only subscription to the source. Each value is encoded once into a frame and added to a
+ * size-bound {@link ReplaySubject} of frames, to which every member subscribes. A member requests as many frames as
+ * its outbound queue has room for, and more whenever the queue drained a batch, so a slow socket leaves its frames in
+ * the shared buffer instead of queueing them. A member joining later is sent the last frames the buffer retains.
+ * <p>
+ * A member more than {@code maxLag} frames behind would keep that many frames reachable, so it skips ahead to the
+ * retained frames instead. The source itself is never slowed down.
+ *
+ * @param <T> the type of the published values
+ */
+public final class SocketIOTopic<T> implements Subscription, SocketIORooms.MembershipListener {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+    private final SocketIORooms socketIORooms;
+
+    private final String nameSpace;
+
+    private final String room;
+
+    private final String eventName;
+
+    private final ReplaySubject<SocketIOFrame> frames;
+
+    private final int retained;
+
+    private final long maxLag;
+
+    private final ConcurrentHashMap<SocketIOConnectionHandler, Member> members = new ConcurrentHashMap<>();
+
+    private final Subscription upstream;
+
+    /** Written by the upstream subscriber only. */
+    private volatile long published;
+
+    private volatile boolean closed;
+
+    final LongAdder delivered = new LongAdder();
+    final LongAdder skipped = new LongAdder();
+
+    /**
+     * @param room     the room, null for every member of the namespace
+     * @param retained the frames sent to a member that joins later, at least 1
+     * @param maxLag   the frames a member may fall behind before it skips ahead
+     */
+    SocketIOTopic(Observable<? extends T> source, SocketIORooms socketIORooms, String nameSpace, String room, String eventName, int retained, long maxLag) {
+
+        if (retained <= 0) {
+            throw new IllegalArgumentException("retained > 0 required but it was " + retained);
+        }
+
+        this.socketIORooms = socketIORooms;
+        this.nameSpace = nameSpace;
+        this.room = room;
+        this.eventName = eventName;
+        this.retained = retained;
+        this.maxLag = Math.max(retained, maxLag);
+        this.frames = ReplaySubject.createWithSize(retained);
+
+        for (SocketIOConnectionHandler member : socketIORooms.watch(nameSpace, room, this)) {
+            joined(member);
+        }
+
+        this.upstream = source.subscribe(new Subscriber<T>() {
+            @Override
+            public void onNext(T value) {
+                Publish(SocketIOFrame.event(nameSpace, eventName, value));
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                logger.warn("Topic source failed Namespace : {} Room : {} EventName : {} Error : {}", nameSpace, room, eventName, e.getMessage());
+                frames.onCompleted();
+            }
+
+            @Override
+            public void onCompleted() {
+                frames.onCompleted();
+            }
+        });
+    }
+
+    private void Publish(SocketIOFrame frame) {
+
+        long p = published + 1;
+        published = p;
+
+        frames.onNext(frame);
+
+        // stalled members request nothing, so their lag is only seen from here
+        if (p % Math.max(1, maxLag / 2) == 0) {
+            for (Member member : members.values()) {
+                if (p - member.received > maxLag) {
+                    skipped.add(p - member.received - retained);
+                    logger.debug("Skipping ahead EventName : {} SessionId : {}", eventName, member.handler.getSessionId());
+                    detach(member);
+                    joined(member.handler);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void joined(SocketIOConnectionHandler handler) {
+
+        if (closed || !isMember(handler)) {
+            return;
+        }
+
+        Member member = new Member(handler);
+
+        if (members.putIfAbsent(handler, member) != null) {
+            return;
+        }
+
+        handler.getOutboundQueue().addDrainListener(member);
+        frames.unsafeSubscribe(member);
+    }
+
+    @Override
+    public void left(SocketIOConnectionHandler handler) {
+        Member member = members.get(handler);
+        if (member != null) {
+            detach(member);
+        }
+    }
+
+    private void detach(Member member) {
+        if (members.remove(member.handler, member)) {
+            member.unsubscribe();
+            member.handler.getOutboundQueue().removeDrainListener(member);
+        }
+    }
+
+    private boolean isMember(SocketIOConnectionHandler handler) {
+        return room == null ? !handler.getOutboundQueue().isClosed() : handler.inRoom(room);
+    }
+
+    /**
+     * Stops publishing, the source is unsubscribed and the frames already queued are still sent.
+     */
+    @Override
+    public void unsubscribe() {
+
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        socketIORooms.unwatch(nameSpace, this);
+        upstream.unsubscribe();
+
+        for (Member member : members.values()) {
+            detach(member);
+        }
+    }
+
+    @Override
+    public boolean isUnsubscribed() {
+        return closed;
+    }
+
+    public String getNameSpace() {
+        return nameSpace;
+    }
+
+    /**
+     * @return the room, null if the topic is published to the whole namespace
+     */
+    public String getRoom() {
+        return room;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    /**
+     * @return the number of values published
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    public int getMemberCount() {
+        return members.size();
+    }
+
+    /**
+     * @return the number of frames handed to members
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * @return the number of frames members skipped because they fell too far behind
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOTopic{" +
+                "nameSpace='" + nameSpace + '\'' +
+                ", room='" + room + '\'' +
+                ", eventName='" + eventName + '\'' +
+                ", published=" + getPublished() +
+                ", members=" + getMemberCount() +
+                ", delivered=" + getDelivered() +
+                ", skipped=" + getSkipped() +
+                '}';
+    }
+
+    /**
+     * The subscription of one member, run by its outbound queue after each batch to request the room freed.
+     */
+    private final class Member extends Subscriber<SocketIOFrame> implements Runnable {
+
+        final SocketIOConnectionHandler handler;
+
+        final SocketIOOutboundQueue queue;
+
+        /** Requested frames not received yet. */
+        final AtomicLong outstanding = new AtomicLong();
+
+        /** The number of published frames this member has seen or skipped. */
+        volatile long received;
+
+        Member(SocketIOConnectionHandler handler) {
+            this.handler = handler;
+            this.queue = handler.getOutboundQueue();
+            this.received = Math.max(0, published - retained);
+        }
+
+        @Override
+        public void onStart() {
+            // a request, even of nothing, keeps the producer from defaulting to an unbounded one
+            long want = queue.getRemainingCapacity();
+            outstanding.set(want);
+            request(want);
+        }
+
+        @Override
+        public void run() {
+            long want = queue.getRemainingCapacity() - outstanding.get();
+            if (want > 0) {
+                outstanding.addAndGet(want);
+                request(want);
+            }
+        }
+
+        @Override
+        public void onNext(SocketIOFrame frame) {
+
+            outstanding.decrementAndGet();
+            received++;
+
+            if (!isMember(handler) || !handler.sendFrame(frame) && queue.isClosed()) {
+                detach(this);
+                return;
+            }
+
+            delivered.increment();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            detach(this);
+        }
+
+        @Override
+        public void onCompleted() {
+            detach(this);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.solutionarchitects.socketio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import rx.Observable;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publishes Observables, typically a v2 {@link com.solutionarchitects.common.rx.v2.ReplaySubject} or
+ * {@link com.solutionarchitects.common.rx.v2.BehaviorSubject}, as named events to the members of a namespace or room.
+ * Each value is encoded once for all members, and each member is sent values at the pace of its connection, see
+ * {@link SocketIOTopic}.
+ */
+@Service
+public class SocketIOTopics {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+    private final CopyOnWriteArrayList<SocketIOTopic<?>> topics = new CopyOnWriteArrayList<>();
+
+    @Resource
+    private SocketIOConfig socketIOConfig;
+
+    @Resource
+    private SocketIORooms socketIORooms;
+
+    @PreDestroy
+    private void beforeDestroy() {
+        for (SocketIOTopic<?> topic : topics) {
+            topic.unsubscribe();
+        }
+    }
+
+    /**
+     * Publishes a source to every member of a namespace, a member that joins later is sent the latest value.
+     *
+     * @return the topic, unsubscribe it to stop publishing
+     */
+    public <T> SocketIOTopic<T> publish(Observable<? extends T> source, String nameSpace, String eventName) {
+        return publish(source, nameSpace, null, eventName, 1);
+    }
+
+    /**
+     * Publishes a source to every member of a room, a member that joins later is sent the latest value.
+     *
+     * @return the topic, unsubscribe it to stop publishing
+     */
+    public <T> SocketIOTopic<T> publishToRoom(Observable<? extends T> source, String nameSpace, String room, String eventName) {
+        return publish(source, nameSpace, room, eventName, 1);
+    }
+
+    /**
+     * @param room     the room, null for every member of the namespace
+     * @param retained the number of latest values sent to a member that joins later
+     * @return the topic, unsubscribe it to stop publishing
+     */
+    public <T> SocketIOTopic<T> publish(Observable<? extends T> source, String nameSpace, String room, String eventName, int retained) {
+
+        SocketIOTopic<T> topic = new SocketIOTopic<>(source, socketIORooms, nameSpace, room, eventName, retained, socketIOConfig.topicMaxLag);
+
+        topics.removeIf(SocketIOTopic::isUnsubscribed);
+        topics.add(topic);
+
+        logger.info("Publishing Topic Namespace : {} Room : {} EventName : {}", nameSpace, room, eventName);
+
+        return topic;
+    }
+
+    /**
+     * @return the topics still publishing
+     */
+    public int getTopicCount() {
+        return (int) topics.stream().filter(topic -> !topic.isUnsubscribed()).count();
+    }
+}
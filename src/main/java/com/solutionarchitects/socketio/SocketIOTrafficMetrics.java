@@ -0,0 +1,179 @@
+package com.solutionarchitects.socketio;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Frames and bytes in and out per namespace and event.
+ * <p>
+ * Counters are looked up in maps that are replaced as a whole when an event is seen for the first time, so the
+ * steady state is two map reads and striped increments. Event names come from clients, so each namespace tracks at
+ * most {@link #MAX_EVENTS} of them and counts the rest under {@link #OTHER}; namespaces are capped the same way.
+ * Each counter also has a per-second {@link SocketIORate}, updated by {@link #tick()}.
+ */
+public class SocketIOTrafficMetrics {
+
+    static final int MAX_EVENTS = 256;
+
+    static final String OTHER = "*";
+
+    /** Acks have no event name of their own, they are counted under this one. */
+    static final String ACK = "#ack";
+
+    /** Counters by event name per namespace, replaced as a whole when a counter is added. */
+    private volatile Map<String, Map<String, Counters>> counters = Collections.emptyMap();
+
+    /**
+     * @param nameSpace the namespace, the empty string for the default namespace
+     * @param bytes     the length of the frame, in chars for text
+     */
+    public void recordIn(String nameSpace, String eventName, long bytes) {
+        Counters c = counters(nameSpace, eventName);
+        c.framesIn.increment();
+        c.bytesIn.add(bytes);
+    }
+
+    /**
+     * @param nameSpace the namespace, the empty string for the default namespace
+     * @param bytes     the length of the frame and its attachments
+     */
+    public void recordOut(String nameSpace, String eventName, long bytes) {
+        Counters c = counters(nameSpace, eventName);
+        c.framesOut.increment();
+        c.bytesOut.add(bytes);
+    }
+
+    private Counters counters(String nameSpace, String eventName) {
+        Map<String, Counters> events = counters.get(nameSpace);
+        Counters c = events == null ? null : events.get(eventName);
+        return c == null ? addCounters(nameSpace, eventName) : c;
+    }
+
+    private synchronized Counters addCounters(String nameSpace, String eventName) {
+
+        Map<String, Map<String, Counters>> map = counters;
+
+        if (!map.containsKey(nameSpace) && map.size() >= MAX_EVENTS) {
+            nameSpace = OTHER;
+        }
+
+        Map<String, Counters> events = map.containsKey(nameSpace) ? map.get(nameSpace) : Collections.<String, Counters>emptyMap();
+
+        if (!events.containsKey(eventName) && events.size() >= MAX_EVENTS) {
+            eventName = OTHER;
+        }
+
+        Counters c = events.get(eventName);
+
+        if (c != null) {
+            return c;
+        }
+
+        c = new Counters();
+
+        HashMap<String, Counters> newEvents = new HashMap<>(events);
+        newEvents.put(eventName, c);
+
+        HashMap<String, Map<String, Counters>> newMap = new HashMap<>(map);
+        newMap.put(nameSpace, newEvents);
+
+        counters = newMap;
+
+        return c;
+    }
+
+    /**
+     * Samples every counter for its rate, called every {@link SocketIORate#TICK_SECONDS} seconds.
+     */
+    void tick() {
+        for (Map<String, Counters> events : counters.values()) {
+            for (Counters c : events.values()) {
+                c.tick();
+            }
+        }
+    }
+
+    /**
+     * @return per namespace its totals and the counters of each event, sorted by name
+     */
+    public Map<String, Object> snapshot() {
+
+        Map<String, Object> snapshot = new TreeMap<>();
+
+        for (Map.Entry<String, Map<String, Counters>> nameSpace : counters.entrySet()) {
+
+            Map<String, Object> events = new TreeMap<>();
+            long[] totals = new long[4];
+            double[] totalRates = new double[4];
+
+            for (Map.Entry<String, Counters> event : nameSpace.getValue().entrySet()) {
+                long[] values = event.getValue().values();
+                double[] rates = event.getValue().rates();
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += values[i];
+                    totalRates[i] += rates[i];
+                }
+                events.put(event.getKey(), toMap(values, rates));
+            }
+
+            Map<String, Object> entry = toMap(totals, totalRates);
+            entry.put("events", events);
+
+            snapshot.put(nameSpace.getKey().isEmpty() ? "/" : nameSpace.getKey(), entry);
+        }
+
+        return snapshot;
+    }
+
+    private static Map<String, Object> toMap(long[] values, double[] rates) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("framesIn", values[0]);
+        map.put("bytesIn", values[1]);
+        map.put("framesOut", values[2]);
+        map.put("bytesOut", values[3]);
+        map.put("framesInRate", rates[0]);
+        map.put("bytesInRate", rates[1]);
+        map.put("framesOutRate", rates[2]);
+        map.put("bytesOutRate", rates[3]);
+        return map;
+    }
+
+    static final class Counters {
+
+        final LongAdder framesIn = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder framesOut = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+
+        /** In the order of {@link #values()}. */
+        final SocketIORate[] rates = {new SocketIORate(), new SocketIORate(), new SocketIORate(), new SocketIORate()};
+
+        long[] values() {
+            return new long[]{framesIn.sum(), bytesIn.sum(), framesOut.sum(), bytesOut.sum()};
+        }
+
+        void tick() {
+            long[] values = values();
+            for (int i = 0; i < rates.length; i++) {
+                rates[i].tick(values[i]);
+            }
+        }
+
+        double[] rates() {
+            double[] r = new double[rates.length];
+            for (int i = 0; i < rates.length; i++) {
+                r[i] = rates[i].getRate();
+            }
+            return r;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOTrafficMetrics" + snapshot();
+    }
+}
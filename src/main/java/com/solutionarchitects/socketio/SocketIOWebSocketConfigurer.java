@@ -3,10 +3,19 @@ package com.solutionarchitects.socketio;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.embedded.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @EnableWebSocket
@@ -14,15 +23,52 @@ public class SocketIOWebSocketConfigurer implements WebSocketConfigurer {
 
     private final Logger LOGGER = LoggerFactory.getLogger(this.getClass().getName());
 
+    static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
     @Autowired
     SocketIOWebSocketProtocolHandler socketIOWebSocketProtocolHandler;
 
+    @Autowired
+    SocketIOConfig socketIOConfig;
+
+    @Autowired
+    SocketIOCompressionPolicy socketIOCompressionPolicy;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry webSocketHandlerRegistry) {
 
         LOGGER.info("Initializing Socket.IO WebSocket");
 
-        webSocketHandlerRegistry.addHandler(socketIOWebSocketProtocolHandler,"/socket.io/*");
+        webSocketHandlerRegistry.addHandler(socketIOWebSocketProtocolHandler,"/socket.io/*")
+                .setHandshakeHandler(new DefaultHandshakeHandler() {
+                    @Override
+                    protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request, List<WebSocketExtension> requestedExtensions,
+                                                                                 List<WebSocketExtension> supportedExtensions) {
+                        List<WebSocketExtension> extensions = super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+                        if (socketIOCompressionPolicy.isPermessageDeflate()) {
+                            return extensions;
+                        }
+                        List<WebSocketExtension> filtered = new ArrayList<>(extensions);
+                        filtered.removeIf(extension -> PERMESSAGE_DEFLATE.equals(extension.getName()));
+                        return filtered;
+                    }
+                });
+
+    }
+
+    /**
+     * Polling requests share the path of the WebSocket endpoint, the filter takes them before the handshake
+     * handler would reject them.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "socketio.polling.enabled", matchIfMissing = true)
+    public FilterRegistrationBean socketIOPollingFilter() {
+
+        LOGGER.info("Initializing Socket.IO HTTP long-polling");
 
+        FilterRegistrationBean registration = new FilterRegistrationBean(new SocketIOPollingFilter(socketIOWebSocketProtocolHandler, socketIOConfig, socketIOCompressionPolicy));
+        registration.addUrlPatterns("/socket.io/*");
+        registration.setAsyncSupported(true);
+        return registration;
     }
 }
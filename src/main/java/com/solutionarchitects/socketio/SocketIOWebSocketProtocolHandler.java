@@ -1,41 +1,183 @@
 package com.solutionarchitects.socketio;
 
-import com.google.gson.Gson;
-import com.google.gson.internal.StringMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.solutionarchitects.socketio.protocol.SocketIOBinaryPacket;
 import com.solutionarchitects.socketio.protocol.SocketIOHandshake;
 import com.solutionarchitects.socketio.protocol.SocketIOMessageType;
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import com.solutionarchitects.socketio.protocol.SocketIOPacketCodec;
 import com.solutionarchitects.socketio.protocol.SocketIOPacketType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.socket.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import rx.schedulers.Schedulers;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
 @Service
-public class SocketIOWebSocketProtocolHandler implements WebSocketHandler {
+public class SocketIOWebSocketProtocolHandler implements WebSocketHandler, SocketIOHeartbeat.Listener {
 
 
     private Logger logger = LoggerFactory.getLogger(this.getClass().getName());
-    private final ConcurrentHashMap<WebSocketSession, String> webSocketSessionMap = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, SocketIOConnectionHandler> socketIOConnectionHandlerConcurrentHashMap = new ConcurrentHashMap<>();
 
+    /** Open connections by Engine.IO session id, only touched on connect and close. */
+    private final ConcurrentHashMap<String, SocketIOSession> sessions = new ConcurrentHashMap<>();
+
+    /** Sessions of dropped connections kept for recovery, by session id. */
+    private final ConcurrentHashMap<String, SocketIOSession> suspendedSessions = new ConcurrentHashMap<>();
+
+    /**
+     * Inbound frames are decoded into a view reused by the container thread that delivers them.
+     */
+    private static final ThreadLocal<SocketIOPacket> INBOUND_PACKET = new ThreadLocal<SocketIOPacket>() {
+        @Override
+        protected SocketIOPacket initialValue() {
+            return new SocketIOPacket();
+        }
+    };
+
+    private static final String PONG = SocketIOPacketCodec.encodePacket(new StringBuilder(1), SocketIOPacketType.Pong, null).toString();
+
+    private static final String PROBE_PING = SocketIOPacketCodec.encodePacket(new StringBuilder(6), SocketIOPacketType.Ping, "probe").toString();
+
+    private static final String PROBE_PONG = SocketIOPacketCodec.encodePacket(new StringBuilder(6), SocketIOPacketType.Pong, "probe").toString();
+
+    private static final String UPGRADE = SocketIOPacketCodec.encodePacket(new StringBuilder(1), SocketIOPacketType.Upgrade, null).toString();
+
+    /** Attribute of a WebSocket probing to take over a polling connection, holds the session it upgrades. */
+    private static final String UPGRADE_ATTRIBUTE = SocketIOWebSocketProtocolHandler.class.getName() + ".upgrade";
+
+    private SocketIOOutboundMetrics outboundMetrics;
+
+    private ExecutorService outboundExecutor;
+
+    private SocketIOHandlerMetrics handlerMetrics;
+
+    /** Shared by the event handlers of all connections, null when they run inline. */
+    private ExecutorService handlerExecutor;
+
+    private final SocketIOPartialMessage.Streams eventStreams = new SocketIOPartialMessage.Streams() {
+        @Override
+        public boolean isStreamed(SocketIOSession session, SocketIOPacket header) {
+            int nameSpaceId = socketIONamespaceRegistry.lookup(header);
+            SocketIONamespace namespace = socketIONamespaceRegistry.get(nameSpaceId);
+            return namespace != null && namespace.isStreaming() && session.getHandler(nameSpaceId) != null;
+        }
+
+        @Override
+        public SocketIOEventStream open(SocketIOSession session, SocketIOPacket header, String eventName) {
+            SocketIOAckReply ack = header.hasAckId() ? new SocketIOAckReply(session.getOutboundQueue(), header.namespace(), header.getAckId()) : null;
+            SocketIOConnectionHandler socketIOConnectionHandler = session.getHandler(socketIONamespaceRegistry.lookup(header));
+            SocketIOEventStream stream = socketIOPayloadBinder.isBound(socketIOConnectionHandler.getNameSpace(), eventName)
+                    ? socketIOPayloadBinder.bindEventStream(socketIOConnectionHandler, eventName, ack)
+                    : socketIOConnectionHandler.openEventStream(eventName, ack);
+            return session.getHandlerExecutor() == null ? stream : new SocketIODispatchedEventStream(session, stream);
+        }
+    };
+
+    /** Drives heartbeat and ack timeouts of all connections. */
+    private SocketIOTimerWheel timerWheel;
 
     @Resource
     private SocketIOConfig socketIOConfig;
 
+    @Resource
+    private SocketIORooms socketIORooms;
+
+    @Resource
+    private SocketIOPayloadBinder socketIOPayloadBinder;
+
+    @Resource
+    private SocketIONamespaceRegistry socketIONamespaceRegistry;
+
+    @Resource
+    private SocketIOMetrics socketIOMetrics;
+
 
     @PostConstruct
     private void afterInit() {
 
         logger.info("SocketIO Configuration : {} ", socketIOConfig);
 
+        outboundMetrics = socketIOMetrics.getOutboundMetrics();
+
+        handlerMetrics = socketIOMetrics.getHandlerMetrics();
+
+        int outboundThreads = socketIOConfig.outboundThreads > 0 ? socketIOConfig.outboundThreads : Runtime.getRuntime().availableProcessors();
+
+        outboundExecutor = Executors.newFixedThreadPool(outboundThreads,
+                new ThreadFactoryBuilder().setNameFormat("socketio-outbound-%d").setDaemon(true).build());
+
+        timerWheel = new SocketIOTimerWheel("socketio-timer", socketIOConfig.timerTickMillis, 512);
+
+        handlerExecutor = CreateHandlerExecutor();
+
+        SocketIOFrame.setOffsets(socketIOConfig.recoveryEnabled);
+
+    }
+
+    @PreDestroy
+    private void beforeDestroy() {
+
+        timerWheel.stop();
+
+        outboundExecutor.shutdown();
+
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdown();
+        }
+
+    }
+
+    /**
+     * @return the executor shared by the event handlers of all connections, null to run them inline
+     */
+    private ExecutorService CreateHandlerExecutor() {
+
+        SocketIOHandlerExecutorType type = socketIOConfig.handlerExecutor;
+
+        int threads = socketIOConfig.handlerThreads > 0 ? socketIOConfig.handlerThreads : Runtime.getRuntime().availableProcessors();
+
+        if (type == null || type == SocketIOHandlerExecutorType.Inline) {
+            return null;
+        }
+
+        if (type == SocketIOHandlerExecutorType.Virtual) {
+            try {
+                // newVirtualThreadPerTaskExecutor exists from JDK 21 on, the build targets JDK 8
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Virtual threads not available on Java {}, using ForkJoin", System.getProperty("java.version"));
+                type = SocketIOHandlerExecutorType.ForkJoin;
+            }
+        }
+
+        if (type == SocketIOHandlerExecutorType.ForkJoin) {
+            return new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(socketIOConfig.handlerQueueCapacity),
+                new ThreadFactoryBuilder().setNameFormat("socketio-handler-%d").setDaemon(true).build());
     }
 
     @Override
@@ -43,38 +185,336 @@ public class SocketIOWebSocketProtocolHandler implements WebSocketHandler {
 
         logger.info("New WebSocket Connection Established : Session ID = {}", session);
 
-        Gson gson = new Gson();
+        MultiValueMap<String, String> query = session.getUri() == null ? null
+                : UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams();
+
+        String upgradeSessionId = query == null ? null : query.getFirst("sid");
+
+        if (upgradeSessionId != null) {
+            BeginUpgrade(session, upgradeSessionId);
+            return;
+        }
+
+        for (WebSocketExtension extension : session.getExtensions()) {
+            if (SocketIOWebSocketConfigurer.PERMESSAGE_DEFLATE.equals(extension.getName())) {
+                socketIOMetrics.getCompressionMetrics().deflateConnections.increment();
+            }
+        }
+
+        String recoverSessionId = query == null ? null : query.getFirst("recover");
+
+        if (recoverSessionId != null && socketIOConfig.recoveryEnabled
+                && Recover(session, recoverSessionId, query.getFirst("pid"), query.getFirst("offset"))) {
+            return;
+        }
+
+        SocketIOReplayLog replayLog = socketIOConfig.recoveryEnabled
+                ? new SocketIOReplayLog(socketIOConfig.recoveryBufferSize, socketIOConfig.recoveryWindowMillis, Schedulers.immediate())
+                : null;
+
+        SocketIOOutboundQueue outboundQueue = new SocketIOOutboundQueue(session, outboundExecutor,
+                socketIOConfig.outboundQueueCapacity, socketIOConfig.outboundBatchSize,
+                socketIOConfig.outboundOverflowPolicy, outboundMetrics, replayLog);
 
         String sessionId = UUID.randomUUID().toString();
+
+        String recoveryId = socketIOConfig.recoveryEnabled ? UUID.randomUUID().toString() : null;
+
+        SocketIOSession socketIOSession = new SocketIOSession(sessionId, recoveryId, session, outboundQueue, new SocketIOAckTable(timerWheel));
+
+        socketIOSession.setHeartbeat(NewHeartbeat(session));
+
+        if (handlerExecutor != null) {
+            socketIOSession.setHandlerExecutor(new SocketIOSerialExecutor(handlerExecutor, handlerMetrics));
+        }
+
+        session.getAttributes().put(SocketIOSession.ATTRIBUTE, socketIOSession);
+
+        sessions.put(sessionId, socketIOSession);
+
+        outboundQueue.offer(Handshake(session, socketIOSession));
+
+        outboundQueue.offer(SocketIOFrame.of(SocketIOPacketCodec.encodeConnect(SocketIOPacketCodec.buffer(), null)));
+
+
+
+    }
+
+    /**
+     * @return the Open packet of a connection
+     */
+    private SocketIOFrame Handshake(WebSocketSession session, SocketIOSession socketIOSession) {
+
         SocketIOHandshake h = new SocketIOHandshake();
-        h.sid = sessionId;
-        h.upgrades = new String[]{};
+        h.sid = socketIOSession.getSessionId();
+        h.pid = socketIOSession.getRecoveryId();
+        // only polling connections can move to a WebSocket
+        h.upgrades = session instanceof SocketIOPollingSession ? new String[]{"websocket"} : new String[]{};
         h.pingInterval = socketIOConfig.pingInterval;
         h.pingTimeout = socketIOConfig.pingTimeout;
 
-        TextMessage msg = new TextMessage(String.format("%d%s", 0, gson.toJson(h)));
+        return SocketIOFrame.of(SocketIOPacketCodec.encodeOpen(SocketIOPacketCodec.buffer(), h));
+    }
+
+    private SocketIOHeartbeat NewHeartbeat(WebSocketSession session) {
+        // clients ping every pingInterval and wait pingTimeout for the pong, the server allows the same slack
+        return new SocketIOHeartbeat(session, timerWheel, socketIOConfig.pingInterval + socketIOConfig.pingTimeout, this);
+    }
+
+    /**
+     * Resumes the session of a client that reconnected with its session id, the private recovery id it got in the
+     * Open packet, and the offset of the last event it received. The session id is public, it is part of every
+     * polling URL, so only the recovery id proves the client owns the session. The client gets its old session id
+     * in the Open packet, followed by the events it missed. A session whose connection the server has not seen
+     * drop yet is not taken over; it is suspended once its close or heartbeat timeout is seen.
+     *
+     * @return false if the session is unknown, still connected, the recovery id does not match or the missed
+     * events are no longer retained, the client then gets a new session
+     */
+    private boolean Recover(WebSocketSession session, String sessionId, String recoveryId, String offset) {
+
+        SocketIOSession socketIOSession = suspendedSessions.get(sessionId);
+
+        if (socketIOSession == null) {
+            logger.info("Not recovering Session ID : {} {}", sessionId, sessions.containsKey(sessionId) ? "still connected" : "unknown");
+            socketIOMetrics.recoveryFailed.increment();
+            return false;
+        }
+
+        if (!socketIOSession.isRecoveryId(recoveryId)) {
+            logger.warn("Not recovering Session ID : {} recovery id does not match", sessionId);
+            socketIOMetrics.recoveryFailed.increment();
+            return false;
+        }
+
+        if (!suspendedSessions.remove(sessionId, socketIOSession)) {
+            // expired or resumed by a concurrent request meanwhile
+            socketIOMetrics.recoveryFailed.increment();
+            return false;
+        }
+
+        List<SocketIOFrame> first = Arrays.asList(Handshake(session, socketIOSession),
+                SocketIOFrame.of(SocketIOPacketCodec.encodeConnect(SocketIOPacketCodec.buffer(), null)));
+
+        int replayed = socketIOSession.resume(session, first, offset);
+
+        if (replayed < 0) {
+            logger.info("Not recovering Session ID : {} events after Offset : {} no longer retained", sessionId, offset);
+            Release(socketIOSession);
+            socketIOMetrics.recoveryFailed.increment();
+            return false;
+        }
+
+        socketIOSession.setHeartbeat(NewHeartbeat(session));
+
+        session.getAttributes().put(SocketIOSession.ATTRIBUTE, socketIOSession);
+
+        sessions.put(sessionId, socketIOSession);
+
+        socketIOMetrics.sessionsRecovered.increment();
+        socketIOMetrics.eventsReplayed.add(replayed);
+
+        logger.info("Recovered Session ID : {} from Offset : {} replaying {} events", sessionId, offset, replayed);
+
+        return true;
+    }
+
+    /**
+     * Keeps the session of a dropped connection, with its rooms, for the recovery window. Sessions without
+     * namespace handlers have no events to replay and are not kept.
+     *
+     * @return false if the session was not suspended
+     */
+    private boolean Suspend(final SocketIOSession socketIOSession) {
+
+        if (socketIOSession.getHandlerCount() == 0) {
+            return false;
+        }
+
+        WebSocketSession previous = socketIOSession.getWebSocketSession();
+
+        if (!socketIOSession.suspend()) {
+            return false;
+        }
+
+        // late messages and the close of the previous connection are ignored from now on
+        previous.getAttributes().remove(SocketIOSession.ATTRIBUTE, socketIOSession);
+
+        if (previous instanceof SocketIOPollingSession) {
+            WebSocketSession upgraded = ((SocketIOPollingSession) previous).getUpgraded();
+            if (upgraded != null) {
+                upgraded.getAttributes().remove(SocketIOSession.ATTRIBUTE, socketIOSession);
+            }
+        }
+
+        String sessionId = socketIOSession.getSessionId();
+
+        socketIOSession.setExpiry(timerWheel.schedule(now -> {
+            if (suspendedSessions.remove(sessionId, socketIOSession)) {
+                logger.info("Recovery window passed Session ID : {}", sessionId);
+                Release(socketIOSession);
+            }
+            return now;
+        }, socketIOConfig.recoveryWindowMillis));
+
+        sessions.remove(sessionId, socketIOSession);
 
-        session.sendMessage(msg);
+        suspendedSessions.put(sessionId, socketIOSession);
 
-        msg = new TextMessage(String.format("%d%d", 4, 0));
+        socketIOMetrics.sessionsSuspended.increment();
 
-        session.sendMessage(msg);
+        logger.info("Suspended Session ID : {} for {} ms", sessionId, socketIOConfig.recoveryWindowMillis);
 
-        webSocketSessionMap.put(session, sessionId);
+        return true;
+    }
+
+    /**
+     * Lets a WebSocket opened with the sid of a polling connection probe for the upgrade.
+     */
+    private void BeginUpgrade(WebSocketSession session, String sessionId) throws IOException {
+
+        SocketIOSession socketIOSession = sessions.get(sessionId);
+
+        if (socketIOSession == null || !(socketIOSession.getWebSocketSession() instanceof SocketIOPollingSession)
+                || ((SocketIOPollingSession) socketIOSession.getWebSocketSession()).isUpgraded()) {
+            logger.warn("Rejecting upgrade of unknown Session ID : {}", sessionId);
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Session ID unknown"));
+            return;
+        }
 
+        session.getAttributes().put(UPGRADE_ATTRIBUTE, socketIOSession);
+    }
+
+    /**
+     * Answers the probe ping of an upgrading WebSocket and, on the upgrade packet, moves the polling connection
+     * over to it. Until then the polling connection carries all traffic.
+     */
+    private void HandleUpgrade(WebSocketSession session, WebSocketMessage<?> message) throws IOException {
+
+        SocketIOSession socketIOSession = (SocketIOSession) session.getAttributes().get(UPGRADE_ATTRIBUTE);
+
+        if (socketIOSession == null || !(message instanceof TextMessage)) {
+            return;
+        }
+
+        String payload = ((TextMessage) message).getPayload();
+
+        if (PROBE_PING.equals(payload)) {
+            session.sendMessage(new TextMessage(PROBE_PONG));
+            ((SocketIOPollingSession) socketIOSession.getWebSocketSession()).probed();
+        } else if (UPGRADE.equals(payload)) {
+            logger.info("Upgraded Session ID : {} to WebSocket {}", socketIOSession.getSessionId(), session.getId());
+            session.getAttributes().remove(UPGRADE_ATTRIBUTE);
+            session.getAttributes().put(SocketIOSession.ATTRIBUTE, socketIOSession);
+            ((SocketIOPollingSession) socketIOSession.getWebSocketSession()).upgrade(session);
+        }
+    }
+
+    /**
+     * @return the number of connections currently tracked
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the number of namespace handlers currently tracked, iterates over all connections
+     */
+    public int getConnectionHandlerCount() {
+        int count = 0;
+        for (SocketIOSession socketIOSession : sessions.values()) {
+            count += socketIOSession.getHandlerCount();
+        }
+        return count;
+    }
 
+    /**
+     * @return the number of sessions of dropped connections kept for recovery
+     */
+    public int getSuspendedSessionCount() {
+        return suspendedSessions.size();
+    }
+
+    /**
+     * @return the connection with the given Engine.IO session id or null
+     */
+    public SocketIOSession getSession(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * @return the counters shared by the event handlers of all connections
+     */
+    public SocketIOHandlerMetrics getHandlerMetrics() {
+        return handlerMetrics;
+    }
+
+    /**
+     * @return the counters shared by all outbound queues
+     */
+    public SocketIOOutboundMetrics getOutboundMetrics() {
+        return outboundMetrics;
     }
 
     @Override
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
 
-        logger.info("Message = {} Session ID : {}", message, session);
+        long receivedNanos = System.nanoTime();
+
+        boolean logged = logger.isInfoEnabled() && socketIOMetrics.isSampled();
+
+        if (logged) {
+            logger.info("Message = {} Session ID : {}", message, session);
+        }
+
+        SocketIOSession socketIOSession = SocketIOSession.of(session);
+
+        if (socketIOSession == null) {
+            HandleUpgrade(session, message);
+            return;
+        }
 
-        String payload = (String) message.getPayload();
+        socketIOMetrics.recordIn(message.getPayloadLength());
+
+        socketIOSession.received(receivedNanos, logged);
 
         try {
 
-            HandlePacket(session, payload);
+            SocketIOHeartbeat heartbeat = socketIOSession.getHeartbeat();
+
+            if (heartbeat != null) {
+                heartbeat.touch();
+            }
+
+            if (message instanceof BinaryMessage) {
+                HandleBinaryFragment(socketIOSession, (BinaryMessage) message);
+                return;
+            }
+
+            if (!(message instanceof TextMessage)) {
+                return;
+            }
+
+            String payload = ((TextMessage) message).getPayload();
+
+            if (!message.isLast() || socketIOSession.getPartialMessage() != null) {
+                payload = HandleTextFragment(socketIOSession, payload, message.isLast());
+                if (payload == null) {
+                    return;
+                }
+            } else if (payload.length() > socketIOConfig.inboundMaxMessageSize) {
+                CloseTooBig(socketIOSession, payload.length());
+                return;
+            }
+
+            SocketIOPacket packet = INBOUND_PACKET.get();
+
+            if (!SocketIOPacketCodec.decode(payload, packet)) {
+                logger.warn("Dropping malformed packet {} Session ID : {}", payload, session.getId());
+                return;
+            }
+
+            HandlePacket(socketIOSession, packet);
         } catch (Exception exp) {
             logger.error("Error handlign packet", exp);
         }
@@ -82,15 +522,111 @@ public class SocketIOWebSocketProtocolHandler implements WebSocketHandler {
     }
 
 
-    private void HandlePacket(WebSocketSession session, String packet) throws IOException {
+    /**
+     * @return the whole message once a buffered message is complete, null while fragments are pending or streamed
+     */
+    private String HandleTextFragment(SocketIOSession session, String fragment, boolean last) {
+
+        SocketIOPartialMessage partialMessage = session.getPartialMessage();
+
+        if (partialMessage == null) {
+            partialMessage = new SocketIOPartialMessage(session, eventStreams);
+            session.setPartialMessage(partialMessage);
+        }
+
+        long length = partialMessage.getLength() + fragment.length();
+
+        if (length > socketIOConfig.inboundMaxMessageSize) {
+            session.setPartialMessage(null);
+            partialMessage.abort(new IllegalStateException("Message too big"));
+            CloseTooBig(session, length);
+            return null;
+        }
+
+        try {
+            String message = partialMessage.append(fragment, last);
+            if (last) {
+                session.setPartialMessage(null);
+            }
+            return message;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Closing on malformed streamed message Session ID : {} Error : {}", session.getSessionId(), e.getMessage());
+            session.setPartialMessage(null);
+            partialMessage.abort(e);
+            Close(session, CloseStatus.PROTOCOL_ERROR);
+            return null;
+        }
+    }
+
+    /**
+     * Fragments of a binary message are joined, only a message delivered whole is kept without copying it.
+     */
+    private void HandleBinaryFragment(SocketIOSession session, BinaryMessage message) {
+
+        ByteArrayOutputStream fragments = session.getBinaryFragments();
+
+        if (message.isLast() && fragments == null) {
+            if (message.getPayloadLength() > socketIOConfig.inboundMaxMessageSize) {
+                CloseTooBig(session, message.getPayloadLength());
+                return;
+            }
+            HandleAttachment(session, message.getPayload());
+            return;
+        }
+
+        if (fragments == null) {
+            fragments = new ByteArrayOutputStream();
+            session.setBinaryFragments(fragments);
+        }
+
+        if ((long) fragments.size() + message.getPayloadLength() > socketIOConfig.inboundMaxMessageSize) {
+            session.setBinaryFragments(null);
+            CloseTooBig(session, (long) fragments.size() + message.getPayloadLength());
+            return;
+        }
+
+        // the container may reuse the buffer of a fragment once it was delivered
+        ByteBuffer payload = message.getPayload();
+        if (payload.hasArray()) {
+            fragments.write(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        } else {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            fragments.write(bytes, 0, bytes.length);
+        }
+
+        if (message.isLast()) {
+            session.setBinaryFragments(null);
+            HandleAttachment(session, ByteBuffer.wrap(fragments.toByteArray()));
+        }
+    }
+
+    private void CloseTooBig(SocketIOSession session, long length) {
+
+        logger.warn("Closing on message of {} exceeding {} Session ID : {}", length, socketIOConfig.inboundMaxMessageSize, session.getSessionId());
+
+        Close(session, CloseStatus.TOO_BIG_TO_PROCESS);
+    }
+
+    private void Close(final SocketIOSession session, final CloseStatus closeStatus) {
+
+        outboundExecutor.execute(() -> {
+            try {
+                session.getWebSocketSession().close(closeStatus);
+            } catch (IOException e) {
+                logger.warn("Error closing Session ID : {} Error : {}", session.getSessionId(), e.getMessage());
+            }
+        });
+    }
 
-        SocketIOPacketType packetType = ParsePacketType(packet);
+    private void HandlePacket(SocketIOSession session, SocketIOPacket packet) throws IOException {
 
-        switch (packetType) {
+        switch (packet.getPacketType()) {
 
             case Open:
                 break;
             case Close:
+                HandleClose(session);
                 break;
             case Ping:
                 HandlePingPong(session);
@@ -111,19 +647,42 @@ public class SocketIOWebSocketProtocolHandler implements WebSocketHandler {
         }
     }
 
-    private void HandlePingPong(WebSocketSession session) throws IOException {
+    /**
+     * Releases and closes a polling connection whose client closed it; a WebSocket client closes its socket
+     * instead, which is reported by {@link #afterConnectionClosed}. The close was deliberate, so the session is
+     * not kept for recovery.
+     */
+    private void HandleClose(SocketIOSession session) {
+
+        WebSocketSession webSocketSession = session.getWebSocketSession();
+
+        if (webSocketSession instanceof SocketIOPollingSession && !((SocketIOPollingSession) webSocketSession).isUpgraded()) {
+            logger.info("Client closed Session ID : {}", session.getSessionId());
+            Release(session);
+            Close(session, CloseStatus.NORMAL);
+        }
+    }
+
+    private void HandlePingPong(SocketIOSession session) throws IOException {
 
-        logger.info("Received Ping ..... Sending Pong");
+        if (session.isLogged()) {
+            logger.info("Received Ping ..... Sending Pong");
+        }
 
-        TextMessage t = new TextMessage(String.format("%d", 3));
+        final long receivedNanos = session.getReceivedNanos();
 
-        session.sendMessage(t);
+        session.getOutboundQueue().offer(new SocketIOFrame(PONG) {
+            @Override
+            void sent() {
+                socketIOMetrics.getPongLatency().record(System.nanoTime() - receivedNanos);
+            }
+        });
     }
 
-    private void HandleEventMessage(WebSocketSession session, String data) {
+    private void HandleEventMessage(SocketIOSession session, SocketIOPacket packet) {
 
         try {
-            DecodeEventMessage(session, data);
+            DecodeEventMessage(session, packet);
         } catch (Exception exp) {
 
             logger.error("Error decoding data", exp);
@@ -132,153 +691,329 @@ public class SocketIOWebSocketProtocolHandler implements WebSocketHandler {
     }
 
 
-    private void HandleConnect(WebSocketSession session, String data) throws IOException {
+    private void HandleConnect(SocketIOSession session, SocketIOPacket packet) throws IOException {
+
+        logger.info("Received Connected {}", packet);
+
+        int nameSpaceId = socketIONamespaceRegistry.lookup(packet);
 
-        logger.info("Received Connected {}", data);
+        SocketIONamespace namespace = socketIONamespaceRegistry.get(nameSpaceId);
+
+        if (namespace == null) {
+            logger.warn("Rejecting unknown Namespace : {} Session ID : {}", packet.namespace(), session.getSessionId());
+            RejectConnect(session, packet, "Invalid namespace");
+            return;
+        }
 
-        String nameSpace = DecodeConnectMessage(data);
+        String nameSpace = namespace.getName();
 
-        TextMessage msg = new TextMessage(String.format("%d%d%s", 4, 0, nameSpace));
+        if (!Authorize(session, namespace, packet)) {
+            logger.warn("Rejecting unauthorized Namespace : {} Session ID : {}", nameSpace, session.getSessionId());
+            RejectConnect(session, packet, "Not authorized");
+            return;
+        }
+
+        SocketIOConnectionHandler existing = session.getHandler(nameSpaceId);
+
+        if (existing != null && session.isRecovered()) {
+            // a recovered client connects its namespaces again, the handlers and their rooms stay
+            session.getOutboundQueue().offer(SocketIOFrame.of(SocketIOPacketCodec.encodeConnect(SocketIOPacketCodec.buffer(), nameSpace)));
+            logger.info("Resumed Namespace : {} Session ID : {}", nameSpace, session.getSessionId());
+            return;
+        }
 
-        session.sendMessage(msg);
+        // a repeated CONNECT replaces the handler and keeps its slot
+        boolean reconnect = existing != null;
+
+        if (!reconnect && !namespace.tryAcquire()) {
+            logger.warn("Rejecting Namespace : {} at {} connections Session ID : {}", nameSpace, namespace.getMaxConnections(), session.getSessionId());
+            RejectConnect(session, packet, "Namespace full");
+            return;
+        }
+
+        SocketIOOutboundQueue outboundQueue = session.getOutboundQueue();
+
+        outboundQueue.offer(SocketIOFrame.of(SocketIOPacketCodec.encodeConnect(SocketIOPacketCodec.buffer(), nameSpace)));
 
         logger.info("Connected Namespace : {}", nameSpace);
 
-        String sessionId = webSocketSessionMap.get(session);
-        String sessionIdNamespaceKey = String.format("%s#%s", sessionId, nameSpace);
+        SocketIOConnectionHandler socketIOConnectionHandler = new SocketIOConnectionHandler(session.getWebSocketSession(), outboundQueue, socketIORooms, session.getAcks(), session.getSessionId(), nameSpace);
+
+        socketIOConnectionHandler.setEventHandlers(namespace.getEventHandlers());
+
+        SocketIOConnectionHandler previous = session.putHandler(nameSpaceId, socketIOConnectionHandler);
+
+        if (previous == socketIOConnectionHandler) {
+            // the connection closed meanwhile
+            namespace.release();
+            return;
+        }
+
+        if (previous != null) {
+            socketIORooms.unregister(previous);
+        }
+
+        socketIORooms.register(socketIOConnectionHandler);
 
-        SocketIOConnectionHandler socketIOConnectionHandler = new SocketIOConnectionHandler(session, sessionId, nameSpace);
+        long handshakeNanos = session.completeHandshake();
 
-        socketIOConnectionHandlerConcurrentHashMap.put(sessionIdNamespaceKey, socketIOConnectionHandler);
+        if (handshakeNanos >= 0) {
+            socketIOMetrics.getHandshakeTime().record(handshakeNanos);
+        }
 
     }
 
-    private void HandleOpen(WebSocketSession session, String data) throws IOException {
+    private void RejectConnect(SocketIOSession session, SocketIOPacket packet, String reason) {
+        session.getOutboundQueue().offer(SocketIOFrame.of(SocketIOPacketCodec.encodeError(SocketIOPacketCodec.buffer(), packet.namespace(), reason)));
+    }
 
-        String nameSpace = data.substring(2);
+    /**
+     * @return true if the namespace has no authorization hook or it accepts the auth data of the CONNECT packet
+     */
+    private boolean Authorize(SocketIOSession session, SocketIONamespace namespace, SocketIOPacket packet) {
+
+        SocketIONamespace.Authorizer authorizer = namespace.getAuthorizer();
+
+        if (authorizer == null) {
+            return true;
+        }
+
+        try {
+            return authorizer.authorize(session, namespace, socketIOPayloadBinder.decodeData(packet));
+        } catch (Exception e) {
+            logger.warn("Authorization failed Namespace : {} Session ID : {} Error : {}", namespace.getName(), session.getSessionId(), e.getMessage());
+            return false;
+        }
+    }
 
-        TextMessage msg = new TextMessage(String.format("%d%d%s", 4, 0, nameSpace));
+    private void HandleDisconnect(SocketIOSession session, SocketIOPacket packet) {
 
-        session.sendMessage(msg);
+        logger.info("Disconnected Namespace : {} Session ID : {}", packet.namespace(), session.getSessionId());
 
+        SocketIOConnectionHandler socketIOConnectionHandler = session.removeHandler(socketIONamespaceRegistry.lookup(packet));
+
+        if (socketIOConnectionHandler != null) {
+            ReleaseHandler(socketIOConnectionHandler);
+        }
     }
 
+    /**
+     * Unregisters a handler that left its session and frees its slot of the namespace.
+     */
+    private void ReleaseHandler(SocketIOConnectionHandler socketIOConnectionHandler) {
 
-    private void HandleMessage(WebSocketSession session, String data) throws IOException {
+        socketIORooms.unregister(socketIOConnectionHandler);
 
-        SocketIOMessageType messageType = SocketIOMessageType.parseMessageType(GetOpCode(data.charAt(1)));
+        SocketIONamespace namespace = socketIONamespaceRegistry.get(socketIOConnectionHandler.getNameSpace());
 
-        switch (messageType) {
+        if (namespace != null) {
+            namespace.release();
+        }
+    }
+
+    private void HandleOpen(SocketIOSession session, String data) throws IOException {
+
+        String nameSpace = data.substring(2);
+
+        session.getOutboundQueue().offer(SocketIOFrame.of(SocketIOPacketCodec.encodeConnect(SocketIOPacketCodec.buffer(), nameSpace)));
+
+    }
+
+
+
+    private void HandleMessage(SocketIOSession session, SocketIOPacket packet) throws IOException {
+
+        switch (packet.getMessageType()) {
             case Connect:
-                HandleConnect(session, data);
+                HandleConnect(session, packet);
                 break;
             case DisConnect:
+                HandleDisconnect(session, packet);
                 break;
             case Event:
-                HandleEventMessage(session, data);
+                HandleEventMessage(session, packet);
                 break;
             case Ack:
+                HandleAck(session, packet);
                 break;
             case Error:
                 break;
             case BinaryEvent:
+            case BinaryAck:
+                HandleBinaryMessage(session, packet);
                 break;
         }
     }
 
-    private int GetOpCode(char c) {
-        return c - 48;
-    }
-
-    private SocketIOPacketType ParsePacketType(String data) {
+    private void HandleBinaryMessage(SocketIOSession session, SocketIOPacket packet) {
 
-        int c = GetOpCode(data.charAt(0));
+        if (packet.getAttachments() > SocketIOBinaryPacket.MAX_ATTACHMENTS) {
+            logger.warn("Dropping binary message with {} attachments Session ID : {}", packet.getAttachments(), session.getSessionId());
+            return;
+        }
 
-        return SocketIOPacketType.parsePacketType(c);
+        SocketIOBinaryPacket binaryPacket = new SocketIOBinaryPacket(packet);
 
+        if (binaryPacket.isComplete()) {
+            DispatchBinaryPacket(session, binaryPacket);
+        } else {
+            session.setPendingBinaryPacket(binaryPacket);
+        }
     }
 
+    private void HandleAttachment(SocketIOSession session, ByteBuffer attachment) {
 
-    private String DecodeConnectMessage(String message) {
+        SocketIOBinaryPacket binaryPacket = session.getPendingBinaryPacket();
 
-        int index = 0;
+        if (binaryPacket == null) {
+            logger.warn("Dropping unexpected binary frame Session ID : {}", session.getSessionId());
+            return;
+        }
 
-        SocketIOPacketType packetType = SocketIOPacketType.parsePacketType(GetOpCode(message.charAt(index)));
-        ++index;
+        if (binaryPacket.addAttachment(attachment)) {
+            session.setPendingBinaryPacket(null);
+            DispatchBinaryPacket(session, binaryPacket);
+        }
+    }
 
-        SocketIOPacketType messageType = SocketIOPacketType.parsePacketType(GetOpCode(message.charAt(index)));
-        index++;
+    private void DispatchBinaryPacket(SocketIOSession session, SocketIOBinaryPacket binaryPacket) {
 
-        String nameSpace = null;
+        List<Object> args = binaryPacket.args();
 
-        if ('/' == message.charAt(index)) {
+        if (binaryPacket.getMessageType() == SocketIOMessageType.BinaryAck) {
+            if (binaryPacket.hasAckId() && session.getAcks() != null) {
+                session.getAcks().complete(binaryPacket.getAckId(), args);
+            }
+            return;
+        }
+
+        if (args.isEmpty() || !(args.get(0) instanceof String)) {
+            logger.warn("Dropping binary event without a name {} Session ID : {}", binaryPacket, session.getSessionId());
+            return;
+        }
 
-            nameSpace = message.substring(index);
+        SocketIOConnectionHandler socketIOConnectionHandler = session.getHandler(socketIONamespaceRegistry.lookup(binaryPacket.getNameSpace()));
 
+        if (socketIOConnectionHandler == null) {
+            logger.warn("Event for unconnected Namespace : {} Session ID : {}", binaryPacket.getNameSpace(), session.getSessionId());
+            return;
         }
 
-        logger.debug("PacketType : {} MessageType : {} NameSpace : {}", packetType, message, nameSpace);
+        SocketIOAckReply ack = binaryPacket.hasAckId() ? new SocketIOAckReply(session.getOutboundQueue(), binaryPacket.getNameSpace(), binaryPacket.getAckId()) : null;
 
-        return nameSpace;
+        String eventName = (String) args.get(0);
+        Object payload = args.size() > 1 ? args.get(1) : null;
 
+        socketIOMetrics.getTraffic().recordIn(socketIOConnectionHandler.getNameSpace(), eventName, binaryPacket.getLength());
+
+        Dispatch(session, socketIOConnectionHandler, eventName, payload, ack);
     }
 
+    private void HandleAck(SocketIOSession session, SocketIOPacket packet) {
 
-    private void DecodeEventMessage(WebSocketSession webSocketSession, String message) {
+        if (!packet.hasAckId() || session.getAcks() == null) {
+            logger.warn("Dropping Ack without a pending ack {} Session ID : {}", packet, session.getSessionId());
+            return;
+        }
 
-        int index = 0;
+        List<Object> args;
 
-        SocketIOPacketType packetType = SocketIOPacketType.parsePacketType(GetOpCode(message.charAt(index)));
-        ++index;
+        try {
+            args = socketIOPayloadBinder.decodeArguments(packet);
+        } catch (IOException e) {
+            logger.warn("Malformed Ack {} Session ID : {} : {}", packet.getAckId(), session.getSessionId(), e.getMessage());
+            return;
+        }
 
-        SocketIOMessageType messageType = SocketIOMessageType.parseMessageType(GetOpCode(message.charAt(index)));
-        index++;
+        if (!session.getAcks().complete(packet.getAckId(), args)) {
+            logger.debug("Ack {} is no longer pending Session ID : {}", packet.getAckId(), session.getSessionId());
+        }
+    }
 
-        StringBuilder sb = new StringBuilder();
+    private void DecodeEventMessage(SocketIOSession session, SocketIOPacket packet) {
 
-        if ('/' == message.charAt(index)) {
+        String nameSpace = packet.namespace();
 
-            while (message.charAt(index) != ',') {
-                sb.append(message.charAt(index++));
-            }
+        if (session.isLogged()) {
+            logger.info("SocketIOPacketType : [{}] MessageType : [{}] Namespace : [{}] AckId : [{}]", packet.getPacketType(), packet.getMessageType(), nameSpace, packet.getAckId());
+        }
 
-            index++;
+        SocketIOConnectionHandler socketIOConnectionHandler = session.getHandler(socketIONamespaceRegistry.lookup(packet));
 
+        if (socketIOConnectionHandler == null) {
+            logger.warn("Event for unconnected Namespace : {} Session ID : {}", nameSpace, session.getSessionId());
+            return;
         }
 
-        StringBuilder idSb = new StringBuilder();
+        SocketIOInboundEvent event;
+
+        try {
+            event = socketIOPayloadBinder.decodeEvent(packet, nameSpace);
+        } catch (IOException e) {
+            logger.warn("Malformed Event Namespace : {} Session ID : {} : {}", nameSpace, session.getSessionId(), e.getMessage());
+            return;
+        }
 
-        while (Character.isDigit(message.charAt(index))) {
-            idSb.append(message.charAt(index));
-            index++;
+        if (event == null) {
+            logger.warn("Event without a name Namespace : {} Session ID : {}", nameSpace, session.getSessionId());
+            return;
         }
 
-        String ackId = idSb.toString();
+        socketIOMetrics.getDecodeTime().record(System.nanoTime() - session.getReceivedNanos());
 
-        String nameSpace = sb.toString();
+        socketIOMetrics.getTraffic().recordIn(socketIOConnectionHandler.getNameSpace(), event.getEventName(), packet.getFrame().length());
 
-        String jsonData = message.substring(index);
+        if (session.isLogged()) {
+            logger.info("Event Name = [{}]  Data : {} ", event.getEventName(), event.getPayload());
+        }
 
-        logger.info("SocketIOPacketType : [{}] MessageType : [{}] Namespace : [{}] AckId : [{}] JSON : {}", packetType, messageType, nameSpace, ackId, jsonData);
+        SocketIOAckReply ack = packet.hasAckId() ? new SocketIOAckReply(session.getOutboundQueue(), nameSpace, packet.getAckId()) : null;
 
-        Gson gson = new Gson();
+        Dispatch(session, socketIOConnectionHandler, event.getEventName(), event.getPayload(), ack);
+
+    }
 
-        ArrayList arrayList = gson.fromJson(jsonData, ArrayList.class);
+    /**
+     * Runs the handler of an event on the executor of the connection and records the time from its receipt.
+     */
+    private void Dispatch(SocketIOSession session, SocketIOConnectionHandler socketIOConnectionHandler, String eventName, Object payload, SocketIOAckReply ack) {
 
-        String eventName = (String) arrayList.get(0);
-        StringMap eventData = (StringMap) arrayList.get(1);
+        long receivedNanos = session.getReceivedNanos();
 
-        logger.info("Event Name = [{}]  Data : {} ", eventName, eventData);
+        session.dispatch(() -> {
+            socketIOConnectionHandler.receiveEvent(eventName, payload, ack);
+            socketIOMetrics.getDispatchTime().record(System.nanoTime() - receivedNanos);
+        });
+    }
 
-        String sessionId = webSocketSessionMap.get(webSocketSession);
+    /**
+     * Emits one event to every connection of a namespace. The event is encoded once and the same frame is
+     * handed to each connection.
+     *
+     * @param nameSpace the namespace, the empty string for the default namespace
+     * @return the number of connections the frame was handed to
+     */
+    public int broadcast(String nameSpace, String eventName, Object payload) {
 
-        String sessionNamespaceKey = String.format("%s#%s", sessionId, nameSpace);
+        return socketIORooms.emit(nameSpace, eventName, payload);
+    }
 
-        SocketIOConnectionHandler socketIOConnectionHandler = socketIOConnectionHandlerConcurrentHashMap.get(sessionNamespaceKey);
+    /**
+     * Hands an encoded frame to each of the given connections.
+     *
+     * @return the number of connections that accepted the frame, closed ones and full queues dropping it are not counted
+     */
+    public static int broadcast(SocketIOFrame frame, Iterable<SocketIOConnectionHandler> targets) {
 
-        socketIOConnectionHandler.receiveEvent(eventName, eventData);
+        int count = 0;
 
+        for (SocketIOConnectionHandler socketIOConnectionHandler : targets) {
+            if (socketIOConnectionHandler.sendFrame(frame)) {
+                count++;
+            }
+        }
 
+        return count;
     }
 
     @Override
@@ -291,11 +1026,76 @@ public class SocketIOWebSocketProtocolHandler implements WebSocketHandler {
     public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
 
         logger.info("Connection Closed =========================== {} Session ID : {} ", closeStatus, session.getId());
+
+        SocketIOSession socketIOSession = SocketIOSession.of(session);
+
+        if (socketIOSession != null && socketIOSession.getPartialMessage() != null) {
+            socketIOSession.getPartialMessage().abort(new IllegalStateException("Connection closed"));
+            socketIOSession.setPartialMessage(null);
+        }
+
+        CleanupSession(session);
+    }
+
+    @Override
+    public void onHeartbeatTimeout(final WebSocketSession session) {
+
+        logger.info("Heartbeat timed out Session ID : {}", session.getId());
+
+        // the container may never report a half-open connection as closed, so tear it down right away
+        CleanupSession(session);
+
+        outboundExecutor.execute(() -> {
+            try {
+                session.close(CloseStatus.GOING_AWAY.withReason("ping timeout"));
+            } catch (IOException e) {
+                logger.warn("Error closing Session ID : {} Error : {}", session.getId(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Removes every per-connection structure, or suspends the session for recovery; safe to call more than once.
+     */
+    private void CleanupSession(WebSocketSession session) {
+
+        SocketIOSession socketIOSession = SocketIOSession.of(session);
+
+        if (socketIOSession == null) {
+            return;
+        }
+
+        if (socketIOConfig.recoveryEnabled && Suspend(socketIOSession)) {
+            return;
+        }
+
+        Release(socketIOSession);
+    }
+
+    private void Release(SocketIOSession socketIOSession) {
+
+        SocketIOConnectionHandler[] socketIOConnectionHandlers = socketIOSession.close();
+
+        if (socketIOConnectionHandlers == null) {
+            return;
+        }
+
+        sessions.remove(socketIOSession.getSessionId(), socketIOSession);
+
+        for (SocketIOConnectionHandler socketIOConnectionHandler : socketIOConnectionHandlers) {
+            if (socketIOConnectionHandler != null) {
+                ReleaseHandler(socketIOConnectionHandler);
+            }
+        }
     }
 
+    /**
+     * With inbound streaming enabled the container hands over messages in fragments of its buffer size, the
+     * {@code socketio.inbound.maxMessageSize} guard then applies to the sum of the fragments.
+     */
     @Override
     public boolean supportsPartialMessages() {
-        return false;
+        return socketIOConfig.inboundStreaming;
     }
 
 
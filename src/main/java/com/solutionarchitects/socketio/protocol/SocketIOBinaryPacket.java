@@ -0,0 +1,155 @@
+package com.solutionarchitects.socketio.protocol;
+
+import com.google.gson.Gson;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary event or ack being reassembled from its text frame and the binary frames that follow it.
+ * <p>
+ * Attachments are kept as read-only views of the buffers the binary frames were delivered in, past the leading
+ * Engine.IO packet type byte; nothing is copied. {@link #args()} swaps the {@code {"_placeholder":true,"num":n}}
+ * objects of the JSON data for those views.
+ */
+public final class SocketIOBinaryPacket {
+
+    /** Upper bound of attachments a single message may announce. */
+    public static final int MAX_ATTACHMENTS = 256;
+
+    private static final Gson GSON = new Gson();
+
+    private final SocketIOMessageType messageType;
+    private final String nameSpace;
+    private final long ackId;
+    private final String json;
+    private final ByteBuffer[] attachments;
+    private int received;
+
+    /**
+     * Captures the decoded text frame, the packet view itself may be reused afterwards.
+     *
+     * @throws IllegalArgumentException if the packet is not binary or announces more than {@link #MAX_ATTACHMENTS}
+     */
+    public SocketIOBinaryPacket(SocketIOPacket packet) {
+        if (!packet.getMessageType().isBinary()) {
+            throw new IllegalArgumentException("Not a binary message " + packet);
+        }
+        if (packet.getAttachments() > MAX_ATTACHMENTS) {
+            throw new IllegalArgumentException("Too many attachments " + packet.getAttachments());
+        }
+        this.messageType = packet.getMessageType();
+        this.nameSpace = packet.namespace();
+        this.ackId = packet.getAckId();
+        this.json = packet.payload();
+        this.attachments = new ByteBuffer[packet.getAttachments()];
+    }
+
+    /**
+     * Adds the next attachment.
+     *
+     * @param frame the payload of a binary frame, starting with the Engine.IO packet type byte
+     * @return true once every announced attachment was received
+     */
+    public boolean addAttachment(ByteBuffer frame) {
+        if (received == attachments.length) {
+            throw new IllegalStateException("All " + attachments.length + " attachments already received");
+        }
+        ByteBuffer attachment = frame.asReadOnlyBuffer();
+        if (attachment.hasRemaining()) {
+            attachment.position(attachment.position() + 1);
+        }
+        attachments[received++] = attachment.slice();
+        return isComplete();
+    }
+
+    public boolean isComplete() {
+        return received == attachments.length;
+    }
+
+    /**
+     * @return the arguments of the message, for events the event name followed by its data, with placeholders
+     * replaced by the attachments
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> args() {
+        if (json.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> args = GSON.fromJson(json, ArrayList.class);
+        for (int i = 0; i < args.size(); i++) {
+            args.set(i, replacePlaceholders(args.get(i)));
+        }
+        return args;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object replacePlaceholders(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            Object num = map.get("num");
+            if (Boolean.TRUE.equals(map.get("_placeholder")) && num instanceof Number) {
+                int index = ((Number) num).intValue();
+                if (index < 0 || index >= received) {
+                    throw new IllegalArgumentException("Placeholder " + index + " without attachment");
+                }
+                return attachments[index].duplicate();
+            }
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                entry.setValue(replacePlaceholders(entry.getValue()));
+            }
+        } else if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            for (int i = 0; i < list.size(); i++) {
+                list.set(i, replacePlaceholders(list.get(i)));
+            }
+        }
+        return value;
+    }
+
+    public SocketIOMessageType getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return the namespace, the empty string for the default namespace
+     */
+    public String getNameSpace() {
+        return nameSpace;
+    }
+
+    public long getAckId() {
+        return ackId;
+    }
+
+    public boolean hasAckId() {
+        return ackId != SocketIOPacket.NO_ACK;
+    }
+
+    public int getAttachmentCount() {
+        return attachments.length;
+    }
+
+    /**
+     * @return the chars of the JSON data plus the bytes of the attachments received so far
+     */
+    public long getLength() {
+        long length = json == null ? 0 : json.length();
+        for (int i = 0; i < received; i++) {
+            length += attachments[i].remaining();
+        }
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOBinaryPacket{" +
+                "messageType=" + messageType +
+                ", nameSpace='" + nameSpace + '\'' +
+                ", ackId=" + ackId +
+                ", attachments=" + received + "/" + attachments.length +
+                '}';
+    }
+}
@@ -7,5 +7,7 @@ public class SocketIOHandshake {
     public String[] upgrades;
     public int pingInterval;
     public int pingTimeout;
+    /** The private id a client resumes its session with, sent only when connection state recovery is enabled. */
+    public String pid;
 
 }
@@ -0,0 +1,375 @@
+package com.solutionarchitects.socketio.protocol;
+
+/**
+ * An incremental, push-style JSON tokenizer.
+ * <p>
+ * Text is fed in arbitrary chunks, e.g. the fragments of a partial WebSocket message, and tokens are reported to a
+ * {@link Handler} as soon as they are complete. Only the token being read is buffered, so neither the whole text
+ * nor an object tree needs to be held in memory. Numbers are reported as {@link Double}, like Gson does for
+ * untyped JSON.
+ * <p>
+ * Instances are not thread-safe and parse a single JSON value.
+ */
+public final class SocketIOJsonStreamParser {
+
+    /**
+     * Receives the tokens of the value being parsed.
+     */
+    public interface Handler {
+
+        void startObject();
+
+        void endObject();
+
+        void startArray();
+
+        void endArray();
+
+        /**
+         * @param name the name of the next object member
+         */
+        void name(String name);
+
+        /**
+         * @param value a String, Double, Boolean or null
+         */
+        void value(Object value);
+    }
+
+    /** Nesting deeper than this is rejected rather than tracked. */
+    public static final int MAX_DEPTH = 256;
+
+    private static final byte ARRAY = 1;
+    private static final byte OBJECT = 2;
+
+    private static final int VALUE = 0;
+    private static final int VALUE_OR_END_ARRAY = 1;
+    private static final int NAME = 2;
+    private static final int NAME_OR_END_OBJECT = 3;
+    private static final int COLON = 4;
+    private static final int COMMA_OR_END = 5;
+    private static final int DONE = 6;
+
+    private static final int NO_TOKEN = 0;
+    private static final int STRING = 1;
+    private static final int STRING_ESCAPE = 2;
+    private static final int STRING_UNICODE = 3;
+    private static final int NUMBER = 4;
+    private static final int LITERAL = 5;
+
+    private final Handler handler;
+
+    private final byte[] stack = new byte[MAX_DEPTH];
+    private int depth;
+
+    private int state = VALUE;
+    private int tokenState = NO_TOKEN;
+
+    private final StringBuilder token = new StringBuilder();
+    private boolean tokenIsName;
+    private int unicode;
+    private int unicodeDigits;
+
+    private long position;
+
+    public SocketIOJsonStreamParser(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Parses the next chunk of text.
+     *
+     * @throws IllegalArgumentException if the text is not valid JSON
+     */
+    public void feed(CharSequence chunk, int start, int end) {
+        for (int i = start; i < end; i++, position++) {
+            char c = chunk.charAt(i);
+            switch (tokenState) {
+                case STRING:
+                    if (c == '"') {
+                        tokenState = NO_TOKEN;
+                        endString();
+                    } else if (c == '\\') {
+                        tokenState = STRING_ESCAPE;
+                    } else if (c < 0x20) {
+                        throw malformed("control character in string");
+                    } else {
+                        token.append(c);
+                    }
+                    continue;
+                case STRING_ESCAPE:
+                    escape(c);
+                    continue;
+                case STRING_UNICODE:
+                    int digit = Character.digit(c, 16);
+                    if (digit < 0) {
+                        throw malformed("bad unicode escape");
+                    }
+                    unicode = (unicode << 4) | digit;
+                    if (++unicodeDigits == 4) {
+                        token.append((char) unicode);
+                        tokenState = STRING;
+                    }
+                    continue;
+                case NUMBER:
+                    if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                        token.append(c);
+                        continue;
+                    }
+                    endNumber();
+                    break;
+                case LITERAL:
+                    if (c >= 'a' && c <= 'z') {
+                        token.append(c);
+                        continue;
+                    }
+                    endLiteral();
+                    break;
+                default:
+                    break;
+            }
+            structural(c);
+        }
+    }
+
+    /**
+     * Parses the next chunk of text.
+     */
+    public void feed(CharSequence chunk) {
+        feed(chunk, 0, chunk.length());
+    }
+
+    /**
+     * Signals the end of the text.
+     *
+     * @throws IllegalArgumentException if the text ended before the value was complete
+     */
+    public void end() {
+        if (tokenState == NUMBER) {
+            endNumber();
+        } else if (tokenState == LITERAL) {
+            endLiteral();
+        }
+        if (state != DONE || tokenState != NO_TOKEN) {
+            throw malformed("truncated");
+        }
+    }
+
+    /**
+     * @return the number of chars parsed so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the current nesting depth, 0 outside of any array or object
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    private void structural(char c) {
+        if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            return;
+        }
+        switch (state) {
+            case VALUE_OR_END_ARRAY:
+                if (c == ']') {
+                    endContainer(ARRAY);
+                    return;
+                }
+                startValue(c);
+                return;
+            case VALUE:
+                startValue(c);
+                return;
+            case NAME_OR_END_OBJECT:
+                if (c == '}') {
+                    endContainer(OBJECT);
+                    return;
+                }
+                startName(c);
+                return;
+            case NAME:
+                startName(c);
+                return;
+            case COLON:
+                if (c != ':') {
+                    throw malformed("expected ':'");
+                }
+                state = VALUE;
+                return;
+            case COMMA_OR_END:
+                byte top = stack[depth - 1];
+                if (c == ',') {
+                    state = top == ARRAY ? VALUE : NAME;
+                } else if (c == ']' && top == ARRAY) {
+                    endContainer(ARRAY);
+                } else if (c == '}' && top == OBJECT) {
+                    endContainer(OBJECT);
+                } else {
+                    throw malformed("expected ',' or end of " + (top == ARRAY ? "array" : "object"));
+                }
+                return;
+            default:
+                throw malformed("content after the end of the value");
+        }
+    }
+
+    private void startName(char c) {
+        if (c != '"') {
+            throw malformed("expected a member name");
+        }
+        tokenState = STRING;
+        tokenIsName = true;
+        token.setLength(0);
+    }
+
+    private void startValue(char c) {
+        switch (c) {
+            case '{':
+                push(OBJECT);
+                handler.startObject();
+                state = NAME_OR_END_OBJECT;
+                return;
+            case '[':
+                push(ARRAY);
+                handler.startArray();
+                state = VALUE_OR_END_ARRAY;
+                return;
+            case '"':
+                tokenState = STRING;
+                tokenIsName = false;
+                token.setLength(0);
+                return;
+            case 't':
+            case 'f':
+            case 'n':
+                tokenState = LITERAL;
+                token.setLength(0);
+                token.append(c);
+                return;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    tokenState = NUMBER;
+                    token.setLength(0);
+                    token.append(c);
+                    return;
+                }
+                throw malformed("unexpected '" + c + "'");
+        }
+    }
+
+    private void escape(char c) {
+        tokenState = STRING;
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                token.append(c);
+                return;
+            case 'b':
+                token.append('\b');
+                return;
+            case 'f':
+                token.append('\f');
+                return;
+            case 'n':
+                token.append('\n');
+                return;
+            case 'r':
+                token.append('\r');
+                return;
+            case 't':
+                token.append('\t');
+                return;
+            case 'u':
+                tokenState = STRING_UNICODE;
+                unicode = 0;
+                unicodeDigits = 0;
+                return;
+            default:
+                throw malformed("bad escape '\\" + c + "'");
+        }
+    }
+
+    private void endString() {
+        String s = token.toString();
+        token.setLength(0);
+        if (tokenIsName) {
+            handler.name(s);
+            state = COLON;
+        } else {
+            handler.value(s);
+            valueDone();
+        }
+    }
+
+    private void endNumber() {
+        tokenState = NO_TOKEN;
+        double d;
+        try {
+            d = Double.parseDouble(token.toString());
+        } catch (NumberFormatException e) {
+            throw malformed("bad number " + token);
+        }
+        token.setLength(0);
+        handler.value(d);
+        valueDone();
+    }
+
+    private void endLiteral() {
+        tokenState = NO_TOKEN;
+        Object value;
+        if (contentEquals(token, "true")) {
+            value = Boolean.TRUE;
+        } else if (contentEquals(token, "false")) {
+            value = Boolean.FALSE;
+        } else if (contentEquals(token, "null")) {
+            value = null;
+        } else {
+            throw malformed("bad literal " + token);
+        }
+        token.setLength(0);
+        handler.value(value);
+        valueDone();
+    }
+
+    private static boolean contentEquals(StringBuilder sb, String s) {
+        if (sb.length() != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (sb.charAt(i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void push(byte container) {
+        if (depth == MAX_DEPTH) {
+            throw malformed("nesting deeper than " + MAX_DEPTH);
+        }
+        stack[depth++] = container;
+    }
+
+    private void endContainer(byte container) {
+        depth--;
+        if (container == ARRAY) {
+            handler.endArray();
+        } else {
+            handler.endObject();
+        }
+        valueDone();
+    }
+
+    private void valueDone() {
+        state = depth == 0 ? DONE : COMMA_OR_END;
+    }
+
+    private IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("Malformed JSON at " + position + ": " + reason);
+    }
+}
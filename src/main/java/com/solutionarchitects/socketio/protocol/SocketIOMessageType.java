@@ -4,9 +4,20 @@ public enum SocketIOMessageType {
 
     Invalid(-1),
 
-    Connect(0), DisConnect(1), Event(2), Ack(3), Error(4), BinaryEvent(5);
+    Connect(0), DisConnect(1), Event(2), Ack(3), Error(4), BinaryEvent(5), BinaryAck(6);
 
     public static final SocketIOMessageType[] VALUES = values();
+
+    private static final SocketIOMessageType[] BY_VALUE = new SocketIOMessageType[VALUES.length - 1];
+
+    static {
+        for (SocketIOMessageType type : VALUES) {
+            if (type.value >= 0) {
+                BY_VALUE[type.value] = type;
+            }
+        }
+    }
+
     private final int value;
 
     SocketIOMessageType(int value) {
@@ -17,11 +28,16 @@ public enum SocketIOMessageType {
         return value;
     }
 
+    /**
+     * @return true if the message announces binary attachments before its namespace
+     */
+    public boolean isBinary() {
+        return this == BinaryEvent || this == BinaryAck;
+    }
+
     public static SocketIOMessageType parseMessageType(int value) {
-        for (SocketIOMessageType type : VALUES) {
-            if (type.getValue() == value) {
-                return type;
-            }
+        if (value >= 0 && value < BY_VALUE.length) {
+            return BY_VALUE[value];
         }
 
         return Invalid;
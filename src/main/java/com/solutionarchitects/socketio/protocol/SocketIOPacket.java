@@ -0,0 +1,143 @@
+package com.solutionarchitects.socketio.protocol;
+
+/**
+ * A reusable, mutable view over a decoded Engine.IO / Socket.IO text frame.
+ * <p>
+ * {@link SocketIOPacketCodec#decode(CharSequence, SocketIOPacket)} fills the view in a single pass without
+ * copying the frame: the namespace and the JSON payload are kept as offsets into the original frame and are
+ * only materialized when a caller asks for them.
+ * <p>
+ * Instances are not thread-safe and are meant to be reused by the thread that decodes into them.
+ */
+public final class SocketIOPacket {
+
+    /** Value of {@link #getAckId()} when the frame does not carry an ack id. */
+    public static final long NO_ACK = -1L;
+
+    CharSequence frame;
+    SocketIOPacketType packetType = SocketIOPacketType.Invalid;
+    SocketIOMessageType messageType = SocketIOMessageType.Invalid;
+    int attachments;
+    int namespaceStart;
+    int namespaceEnd;
+    long ackId = NO_ACK;
+    int payloadOffset;
+
+    void reset(CharSequence frame) {
+        this.frame = frame;
+        this.packetType = SocketIOPacketType.Invalid;
+        this.messageType = SocketIOMessageType.Invalid;
+        this.attachments = 0;
+        this.namespaceStart = 0;
+        this.namespaceEnd = 0;
+        this.ackId = NO_ACK;
+        this.payloadOffset = frame.length();
+    }
+
+    public CharSequence getFrame() {
+        return frame;
+    }
+
+    public SocketIOPacketType getPacketType() {
+        return packetType;
+    }
+
+    /**
+     * @return the Socket.IO message type, or {@link SocketIOMessageType#Invalid} for non-message packets
+     */
+    public SocketIOMessageType getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return the number of binary attachments announced by a binary event or ack
+     */
+    public int getAttachments() {
+        return attachments;
+    }
+
+    /**
+     * @return the ack id carried by the frame or {@link #NO_ACK}
+     */
+    public long getAckId() {
+        return ackId;
+    }
+
+    public boolean hasAckId() {
+        return ackId != NO_ACK;
+    }
+
+    public int getNamespaceStart() {
+        return namespaceStart;
+    }
+
+    public int getNamespaceEnd() {
+        return namespaceEnd;
+    }
+
+    public int getNamespaceLength() {
+        return namespaceEnd - namespaceStart;
+    }
+
+    /**
+     * Compares the namespace slice with the given namespace without materializing it.
+     *
+     * @param nameSpace the namespace to compare with, the default namespace is the empty string
+     * @return true if the slice holds exactly the given namespace
+     */
+    public boolean namespaceEquals(CharSequence nameSpace) {
+        int length = namespaceEnd - namespaceStart;
+        if (nameSpace.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (frame.charAt(namespaceStart + i) != nameSpace.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the namespace as a String, the empty string for the default namespace
+     */
+    public String namespace() {
+        if (namespaceEnd == namespaceStart) {
+            return "";
+        }
+        return frame.subSequence(namespaceStart, namespaceEnd).toString();
+    }
+
+    /**
+     * @return the offset of the first payload character within the frame
+     */
+    public int getPayloadOffset() {
+        return payloadOffset;
+    }
+
+    public boolean hasPayload() {
+        return payloadOffset < frame.length();
+    }
+
+    /**
+     * @return the payload (the JSON data for Socket.IO messages) as a String, the empty string if absent
+     */
+    public String payload() {
+        if (payloadOffset >= frame.length()) {
+            return "";
+        }
+        return frame.subSequence(payloadOffset, frame.length()).toString();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketIOPacket{" +
+                "packetType=" + packetType +
+                ", messageType=" + messageType +
+                ", namespace='" + namespace() + '\'' +
+                ", ackId=" + ackId +
+                ", attachments=" + attachments +
+                ", payloadOffset=" + payloadOffset +
+                '}';
+    }
+}
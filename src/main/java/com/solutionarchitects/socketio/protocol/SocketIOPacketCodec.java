@@ -0,0 +1,446 @@
+package com.solutionarchitects.socketio.protocol;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Engine.IO / Socket.IO text frame codec.
+ * <p>
+ * Frames have the shape {@code <packet type>[<message type>][<attachments>-][<namespace>,][<ack id>][<json>]}.
+ * Decoding walks the frame once and records offsets in a reusable {@link SocketIOPacket}; nothing is copied
+ * until the caller materializes the namespace or the payload. Encoding appends straight into a caller supplied
+ * {@link StringBuilder}, typically the per-thread buffer returned by {@link #buffer()}.
+ */
+public final class SocketIOPacketCodec {
+
+    /** Ack ids are bounded so that accumulating them can never overflow a long. */
+    private static final int MAX_ACK_ID_DIGITS = 18;
+
+    /** Buffers that grew beyond this many chars are not kept around after use. */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final Gson GSON = new Gson();
+
+    /** Engine.IO packet type byte that starts every binary frame. */
+    private static final ByteBuffer BINARY_PREFIX = ByteBuffer.wrap(new byte[]{(byte) SocketIOPacketType.Message.getValue()}).asReadOnlyBuffer();
+
+    /** Attachments collected while {@link #BINARY_GSON} serializes on the calling thread. */
+    private static final ThreadLocal<List<ByteBuffer>> ATTACHMENTS = new ThreadLocal<>();
+
+    /** Write-only, attachments of inbound messages are reassembled by SocketIOBinaryPacket, not by Gson. */
+    private static final JsonSerializer<ByteBuffer> PLACEHOLDER = new JsonSerializer<ByteBuffer>() {
+        @Override
+        public JsonElement serialize(ByteBuffer value, Type type, JsonSerializationContext context) {
+            List<ByteBuffer> attachments = ATTACHMENTS.get();
+            JsonObject placeholder = new JsonObject();
+            placeholder.addProperty("_placeholder", true);
+            placeholder.addProperty("num", attachments.size());
+            attachments.add(value.asReadOnlyBuffer());
+            return placeholder;
+        }
+    };
+
+    /** Serializes byte[] and ByteBuffer values as attachment placeholders. */
+    private static final Gson BINARY_GSON = new GsonBuilder()
+            .registerTypeHierarchyAdapter(ByteBuffer.class, PLACEHOLDER)
+            .registerTypeAdapter(byte[].class, (JsonSerializer<byte[]>) (value, type, context) ->
+                    PLACEHOLDER.serialize(ByteBuffer.wrap(value), ByteBuffer.class, context))
+            .create();
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    /** Holds the JSON of a binary message until the number of attachments in its header is known. */
+    private static final ThreadLocal<StringBuilder> JSON_BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private SocketIOPacketCodec() {
+    }
+
+    /**
+     * Returns the calling thread's encode buffer, cleared. The buffer must be consumed before the same thread
+     * asks for it again.
+     *
+     * @return an empty StringBuilder owned by the calling thread
+     */
+    public static StringBuilder buffer() {
+        StringBuilder sb = BUFFER.get();
+        if (sb.capacity() > MAX_RETAINED_BUFFER) {
+            sb = new StringBuilder(256);
+            BUFFER.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
+    // ********
+    // Decoding
+    // ********
+
+    /**
+     * Decodes a text frame into the given packet view.
+     *
+     * @param frame  the raw frame
+     * @param packet the view to fill, its previous content is discarded
+     * @return false if the frame is malformed, in which case the view content is unspecified
+     */
+    public static boolean decode(CharSequence frame, SocketIOPacket packet) {
+
+        packet.reset(frame);
+
+        int length = frame.length();
+
+        if (length == 0) {
+            return false;
+        }
+
+        SocketIOPacketType packetType = SocketIOPacketType.parsePacketType(frame.charAt(0) - '0');
+        packet.packetType = packetType;
+
+        if (packetType == SocketIOPacketType.Invalid) {
+            return false;
+        }
+
+        if (packetType != SocketIOPacketType.Message) {
+            packet.payloadOffset = 1;
+            return true;
+        }
+
+        if (length < 2) {
+            return false;
+        }
+
+        SocketIOMessageType messageType = SocketIOMessageType.parseMessageType(frame.charAt(1) - '0');
+        packet.messageType = messageType;
+
+        if (messageType == SocketIOMessageType.Invalid) {
+            return false;
+        }
+
+        int index = 2;
+
+        if (messageType.isBinary()) {
+            int attachments = 0;
+            char c;
+            while (index < length && isDigit(c = frame.charAt(index))) {
+                attachments = attachments * 10 + (c - '0');
+                index++;
+            }
+            if (index == length || frame.charAt(index) != '-' || index == 2) {
+                return false;
+            }
+            packet.attachments = attachments;
+            index++;
+        }
+
+        packet.namespaceStart = index;
+
+        if (index < length && frame.charAt(index) == '/') {
+
+            while (index < length) {
+                char c = frame.charAt(index);
+                if (c == ',' || c == '?') {
+                    break;
+                }
+                index++;
+            }
+
+            packet.namespaceEnd = index;
+
+            // connect packets may carry a query string after the namespace, it is not part of the name
+            while (index < length && frame.charAt(index) != ',') {
+                index++;
+            }
+
+            if (index < length) {
+                index++;
+            }
+        } else {
+            packet.namespaceEnd = index;
+        }
+
+        int digitsStart = index;
+        long ackId = 0;
+        char c;
+        while (index < length && isDigit(c = frame.charAt(index))) {
+            if (index - digitsStart == MAX_ACK_ID_DIGITS) {
+                return false;
+            }
+            ackId = ackId * 10 + (c - '0');
+            index++;
+        }
+
+        if (index != digitsStart) {
+            packet.ackId = ackId;
+        }
+
+        packet.payloadOffset = index;
+
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // ********
+    // Encoding
+    // ********
+
+    /**
+     * Appends an Engine.IO packet without Socket.IO framing, e.g. the handshake (Open) or a Pong.
+     */
+    public static StringBuilder encodePacket(StringBuilder out, SocketIOPacketType packetType, CharSequence data) {
+        out.append((char) ('0' + packetType.getValue()));
+        if (data != null) {
+            out.append(data);
+        }
+        return out;
+    }
+
+    /**
+     * Appends the Engine.IO open packet carrying the serialized handshake.
+     */
+    public static StringBuilder encodeOpen(StringBuilder out, SocketIOHandshake handshake) {
+        out.append((char) ('0' + SocketIOPacketType.Open.getValue()));
+        GSON.toJson(handshake, out);
+        return out;
+    }
+
+    /**
+     * Appends the Engine.IO message header, the message type and the namespace. A separating comma is only
+     * written when an ack id or data follows, as done by the reference socket.io-parser.
+     *
+     * @param followed true if an ack id or data will be appended after the header
+     */
+    public static StringBuilder encodeHeader(StringBuilder out, SocketIOMessageType messageType,
+                                             CharSequence nameSpace, boolean followed) {
+        out.append((char) ('0' + SocketIOPacketType.Message.getValue()));
+        out.append((char) ('0' + messageType.getValue()));
+        if (nameSpace != null && nameSpace.length() > 0 && !isDefaultNamespace(nameSpace)) {
+            out.append(nameSpace);
+            if (followed) {
+                out.append(',');
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Appends a complete Socket.IO message whose data is already serialized.
+     *
+     * @param ackId the ack id or {@link SocketIOPacket#NO_ACK}
+     * @param json  the serialized data or null
+     */
+    public static StringBuilder encodeMessage(StringBuilder out, SocketIOMessageType messageType,
+                                              CharSequence nameSpace, long ackId, CharSequence json) {
+        boolean hasData = json != null && json.length() > 0;
+        encodeHeader(out, messageType, nameSpace, ackId >= 0 || hasData);
+        if (ackId >= 0) {
+            out.append(ackId);
+        }
+        if (hasData) {
+            out.append(json);
+        }
+        return out;
+    }
+
+    public static StringBuilder encodeConnect(StringBuilder out, CharSequence nameSpace) {
+        return encodeHeader(out, SocketIOMessageType.Connect, nameSpace, false);
+    }
+
+    public static StringBuilder encodeDisconnect(StringBuilder out, CharSequence nameSpace) {
+        return encodeHeader(out, SocketIOMessageType.DisConnect, nameSpace, false);
+    }
+
+    /**
+     * Appends an Event message, serializing {@code [eventName, payload]} directly into the buffer.
+     *
+     * @param ackId the ack id or {@link SocketIOPacket#NO_ACK}
+     */
+    public static StringBuilder encodeEvent(StringBuilder out, CharSequence nameSpace, long ackId,
+                                            String eventName, Object payload) {
+        encodeHeader(out, SocketIOMessageType.Event, nameSpace, true);
+        if (ackId >= 0) {
+            out.append(ackId);
+        }
+        out.append('[');
+        appendJsonString(out, eventName);
+        out.append(',');
+        GSON.toJson(payload, out);
+        out.append(']');
+        return out;
+    }
+
+    /**
+     * Appends an Ack message whose arguments are serialized directly into the buffer.
+     */
+    public static StringBuilder encodeAck(StringBuilder out, CharSequence nameSpace, long ackId, Object... args) {
+        encodeHeader(out, SocketIOMessageType.Ack, nameSpace, true);
+        out.append(ackId);
+        out.append('[');
+        for (int i = 0; i < args.length; i++) {
+            if (i != 0) {
+                out.append(',');
+            }
+            GSON.toJson(args[i], out);
+        }
+        out.append(']');
+        return out;
+    }
+
+    /**
+     * Appends an Event message whose payload may contain byte[] or ByteBuffer values. Those are replaced by
+     * placeholders and added to {@code attachments}, to be sent as binary frames after the text frame. Without
+     * binary values a plain Event message is written.
+     *
+     * @param ackId       the ack id or {@link SocketIOPacket#NO_ACK}
+     * @param attachments receives read-only views of the binary values, nothing is copied
+     */
+    public static StringBuilder encodeBinaryEvent(StringBuilder out, CharSequence nameSpace, long ackId,
+                                                  String eventName, Object payload, List<ByteBuffer> attachments) {
+        StringBuilder json = jsonBuffer();
+        json.append('[');
+        appendJsonString(json, eventName);
+        json.append(',');
+        toBinaryJson(payload, json, attachments);
+        json.append(']');
+        return encodeBinaryMessage(out, SocketIOMessageType.Event, nameSpace, ackId, json, attachments.size());
+    }
+
+    /**
+     * Appends an Ack message whose arguments may contain byte[] or ByteBuffer values, see
+     * {@link #encodeBinaryEvent(StringBuilder, CharSequence, long, String, Object, List)}.
+     */
+    public static StringBuilder encodeBinaryAck(StringBuilder out, CharSequence nameSpace, long ackId,
+                                                List<ByteBuffer> attachments, Object... args) {
+        StringBuilder json = jsonBuffer();
+        json.append('[');
+        for (int i = 0; i < args.length; i++) {
+            if (i != 0) {
+                json.append(',');
+            }
+            toBinaryJson(args[i], json, attachments);
+        }
+        json.append(']');
+        return encodeBinaryMessage(out, SocketIOMessageType.Ack, nameSpace, ackId, json, attachments.size());
+    }
+
+    /**
+     * @return a read-only view of the byte every binary frame starts with, to be sent before an attachment
+     */
+    public static ByteBuffer binaryPrefix() {
+        return BINARY_PREFIX.duplicate();
+    }
+
+    private static StringBuilder jsonBuffer() {
+        StringBuilder sb = JSON_BUFFER.get();
+        if (sb.capacity() > MAX_RETAINED_BUFFER) {
+            sb = new StringBuilder(256);
+            JSON_BUFFER.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
+    private static void toBinaryJson(Object value, StringBuilder json, List<ByteBuffer> attachments) {
+        ATTACHMENTS.set(attachments);
+        try {
+            BINARY_GSON.toJson(value, json);
+        } finally {
+            ATTACHMENTS.remove();
+        }
+    }
+
+    /**
+     * Writes the binary variant of a plain message type, {@code 45<n>-} or {@code 46<n>-}, when there are attachments.
+     */
+    private static StringBuilder encodeBinaryMessage(StringBuilder out, SocketIOMessageType plainType, CharSequence nameSpace,
+                                                     long ackId, CharSequence json, int attachments) {
+        if (attachments == 0) {
+            return encodeMessage(out, plainType, nameSpace, ackId, json);
+        }
+        SocketIOMessageType binaryType = plainType == SocketIOMessageType.Event ? SocketIOMessageType.BinaryEvent : SocketIOMessageType.BinaryAck;
+        out.append((char) ('0' + SocketIOPacketType.Message.getValue()));
+        out.append((char) ('0' + binaryType.getValue()));
+        out.append(attachments).append('-');
+        if (nameSpace != null && nameSpace.length() > 0 && !isDefaultNamespace(nameSpace)) {
+            out.append(nameSpace).append(',');
+        }
+        if (ackId >= 0) {
+            out.append(ackId);
+        }
+        out.append(json);
+        return out;
+    }
+
+    /**
+     * Appends an Error message carrying the given reason as a JSON string.
+     */
+    public static StringBuilder encodeError(StringBuilder out, CharSequence nameSpace, String reason) {
+        encodeHeader(out, SocketIOMessageType.Error, nameSpace, true);
+        appendJsonString(out, reason);
+        return out;
+    }
+
+    /**
+     * Appends the given string as a quoted and escaped JSON string.
+     */
+    public static StringBuilder appendJsonString(StringBuilder out, CharSequence value) {
+        out.append('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                        out.append("\\u")
+                                .append(HEX[(c >> 12) & 0xF])
+                                .append(HEX[(c >> 8) & 0xF])
+                                .append(HEX[(c >> 4) & 0xF])
+                                .append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+        return out;
+    }
+
+    private static boolean isDefaultNamespace(CharSequence nameSpace) {
+        return nameSpace.length() == 1 && nameSpace.charAt(0) == '/';
+    }
+}
@@ -6,6 +6,16 @@ public enum SocketIOPacketType {
 
     public static final SocketIOPacketType[] VALUES = values();
 
+    private static final SocketIOPacketType[] BY_VALUE = new SocketIOPacketType[VALUES.length - 1];
+
+    static {
+        for (SocketIOPacketType type : VALUES) {
+            if (type.value >= 0) {
+                BY_VALUE[type.value] = type;
+            }
+        }
+    }
+
     private final int value;
 
     SocketIOPacketType(int value) {
@@ -17,10 +27,8 @@ public enum SocketIOPacketType {
     }
 
     public static SocketIOPacketType parsePacketType(int value) {
-        for (SocketIOPacketType type : VALUES) {
-            if (type.getValue() == value) {
-                return type;
-            }
+        if (value >= 0 && value < BY_VALUE.length) {
+            return BY_VALUE[value];
         }
 
         return Invalid;
@@ -0,0 +1,148 @@
+package com.solutionarchitects.socketio.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Engine.IO v3 payload codec, the encoding of the packets batched into one HTTP long-polling request or response.
+ * <p>
+ * Text payloads are a sequence of {@code <length>:<packet>} where the length counts the chars of the packet.
+ * Binary packets travel in text payloads as {@code b<packet type><base64 data>}, which every client decodes, so
+ * responses are always text. Requests may also be XHR2 binary payloads: per packet a 0 (text) or 1 (binary) byte,
+ * the decimal digits of the length as bytes 0-9, a 255 byte and the packet.
+ * <p>
+ * Decoded packets are Strings for text packets and ByteBuffers for binary packets; a binary packet starts with its
+ * Engine.IO packet type byte, like a binary WebSocket frame.
+ */
+public final class SocketIOPayloadCodec {
+
+    /** Lengths are bounded so that accumulating them can never overflow an int. */
+    private static final int MAX_LENGTH_DIGITS = 9;
+
+    private SocketIOPayloadCodec() {
+    }
+
+    /**
+     * Appends a text packet to a payload.
+     */
+    public static StringBuilder encodeText(StringBuilder payload, CharSequence packet) {
+        return payload.append(packet.length()).append(':').append(packet);
+    }
+
+    /**
+     * Appends a binary packet to a payload as base64.
+     *
+     * @param packet the packet type byte followed by the data
+     */
+    public static StringBuilder encodeBinary(StringBuilder payload, ByteBuffer packet) {
+        ByteBuffer data = packet.duplicate();
+        int type = data.get();
+        String base64 = Base64.getEncoder().encodeToString(toArray(data));
+        return payload.append(base64.length() + 2).append(':').append('b').append(type).append(base64);
+    }
+
+    /**
+     * Decodes a text payload.
+     *
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public static List<Object> decodeText(CharSequence payload) {
+
+        List<Object> packets = new ArrayList<>(2);
+
+        int i = 0;
+        int end = payload.length();
+
+        while (i < end) {
+
+            int length = 0;
+            int digits = 0;
+            char c;
+
+            while (i < end && (c = payload.charAt(i)) != ':') {
+                if (c < '0' || c > '9' || ++digits > MAX_LENGTH_DIGITS) {
+                    throw new IllegalArgumentException("Malformed payload length at " + i);
+                }
+                length = length * 10 + (c - '0');
+                i++;
+            }
+
+            if (digits == 0 || i == end || length > end - i - 1) {
+                throw new IllegalArgumentException("Malformed payload at " + i);
+            }
+
+            i++;
+
+            String packet = payload.subSequence(i, i + length).toString();
+
+            packets.add(packet.startsWith("b") ? decodeBase64(packet) : packet);
+
+            i += length;
+        }
+
+        return packets;
+    }
+
+    /**
+     * Decodes an XHR2 binary payload.
+     *
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public static List<Object> decodeBinary(ByteBuffer payload) {
+
+        List<Object> packets = new ArrayList<>(2);
+
+        ByteBuffer data = payload.duplicate();
+
+        while (data.hasRemaining()) {
+
+            int kind = data.get();
+
+            if (kind != 0 && kind != 1) {
+                throw new IllegalArgumentException("Malformed payload packet kind " + kind);
+            }
+
+            int length = 0;
+            int digits = 0;
+            int b;
+
+            while ((b = data.hasRemaining() ? data.get() & 0xff : -1) != 0xff) {
+                if (b < 0 || b > 9 || ++digits > MAX_LENGTH_DIGITS) {
+                    throw new IllegalArgumentException("Malformed payload length at " + data.position());
+                }
+                length = length * 10 + b;
+            }
+
+            if (digits == 0 || length > data.remaining()) {
+                throw new IllegalArgumentException("Malformed payload at " + data.position());
+            }
+
+            ByteBuffer packet = data.slice();
+            packet.limit(length);
+            data.position(data.position() + length);
+
+            packets.add(kind == 0 ? StandardCharsets.UTF_8.decode(packet).toString() : packet);
+        }
+
+        return packets;
+    }
+
+    private static ByteBuffer decodeBase64(String packet) {
+        if (packet.length() < 2 || packet.charAt(1) < '0' || packet.charAt(1) > '9') {
+            throw new IllegalArgumentException("Malformed base64 packet");
+        }
+        byte[] data = Base64.getDecoder().decode(packet.substring(2));
+        ByteBuffer buffer = ByteBuffer.allocate(data.length + 1);
+        buffer.put((byte) (packet.charAt(1) - '0')).put(data).flip();
+        return buffer;
+    }
+
+    private static byte[] toArray(ByteBuffer data) {
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return bytes;
+    }
+}
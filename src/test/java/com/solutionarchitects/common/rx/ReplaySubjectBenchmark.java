@@ -0,0 +1,125 @@
+package com.solutionarchitects.common.rx;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rx.Subscriber;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The array ring of {@link ReplaySubject#createWithSize} against the linked list of
+ * {@link ReplaySubject#createWithSizeLinked}, for a full buffer of ticks.
+ * <p>
+ * {@code onNext} scores are per item with one subscriber attached, {@code replay} scores are per late subscriber
+ * receiving the whole buffer and {@code size} per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplaySubjectBenchmark {
+
+    @Param({"1000", "10000"})
+    int size;
+
+    ReplaySubject<Long> ring;
+
+    ReplaySubject<Long> linked;
+
+    long tick;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+
+        ring = ReplaySubject.createWithSize(size);
+        linked = ReplaySubject.createWithSizeLinked(size);
+
+        for (long i = 0; i < size; i++) {
+            ring.onNext(i);
+            linked.onNext(i);
+        }
+
+        ring.subscribe(new Sink(blackhole));
+        linked.subscribe(new Sink(blackhole));
+    }
+
+    @Benchmark
+    public void onNextRing() {
+        ring.onNext(tick++);
+    }
+
+    @Benchmark
+    public void onNextLinked() {
+        linked.onNext(tick++);
+    }
+
+    @Benchmark
+    public void replayRing(Blackhole blackhole) {
+        Sink sink = new Sink(blackhole);
+        ring.subscribe(sink);
+        sink.unsubscribe();
+    }
+
+    @Benchmark
+    public void replayLinked(Blackhole blackhole) {
+        Sink sink = new Sink(blackhole);
+        linked.subscribe(sink);
+        sink.unsubscribe();
+    }
+
+    @Benchmark
+    public int sizeRing() {
+        return ring.size();
+    }
+
+    @Benchmark
+    public int sizeLinked() {
+        return linked.size();
+    }
+
+    static final class Sink extends Subscriber<Long> {
+
+        final Blackhole blackhole;
+
+        Sink(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onNext(Long value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReplaySubjectBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,225 @@
+package com.solutionarchitects.common.rx;
+
+import org.junit.Test;
+import rx.exceptions.MissingBackpressureException;
+import rx.observers.TestSubscriber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReplaySubjectTest {
+
+    @Test
+    public void sizeBoundReplaysLatestItemsToLateSubscribers() {
+
+        ReplaySubject<Integer> subject = ReplaySubject.createWithSize(3);
+
+        assertEquals(0, subject.size());
+        assertNull(subject.getValue());
+
+        TestSubscriber<Integer> early = new TestSubscriber<>();
+        subject.subscribe(early);
+
+        for (int i = 0; i < 10; i++) {
+            subject.onNext(i);
+        }
+
+        assertEquals(3, subject.size());
+        assertEquals(Integer.valueOf(9), subject.getValue());
+        assertArrayEquals(new Object[]{7, 8, 9}, subject.getValues());
+
+        TestSubscriber<Integer> late = new TestSubscriber<>();
+        subject.subscribe(late);
+        subject.onNext(10);
+
+        early.assertValueCount(11);
+        late.assertValues(7, 8, 9, 10);
+    }
+
+    @Test
+    public void sizeBoundReplaysTerminalNotification() {
+
+        ReplaySubject<Integer> subject = ReplaySubject.createWithSize(2);
+
+        subject.onNext(1);
+        subject.onNext(2);
+        subject.onNext(3);
+        subject.onCompleted();
+
+        assertEquals(2, subject.size());
+        assertEquals(Integer.valueOf(3), subject.getValue());
+
+        TestSubscriber<Integer> late = new TestSubscriber<>();
+        subject.subscribe(late);
+
+        late.assertValues(2, 3);
+        late.assertCompleted();
+        assertEquals(Arrays.asList(2, 3), Arrays.asList(subject.getValues(new Integer[0])));
+    }
+
+    @Test
+    public void snapshotDeltaSendsSnapshotThenLaterDeltas() {
+
+        ReplaySubject<Integer> subject = ReplaySubject.createWithSnapshotDeltaState((a, b) -> (Integer) a + (Integer) b);
+
+        subject.onNext(1);
+        subject.onNext(2);
+        subject.onNext(3);
+
+        TestSubscriber<Integer> late = new TestSubscriber<>();
+        subject.subscribe(late);
+        subject.onNext(4);
+
+        late.assertValues(6, 4);
+        assertEquals(Integer.valueOf(10), subject.getValue());
+
+        subject.onCompleted();
+
+        TestSubscriber<Integer> terminated = new TestSubscriber<>();
+        subject.subscribe(terminated);
+
+        terminated.assertValues(10);
+        terminated.assertCompleted();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void snapshotDeltaWithCollectionKeepsSentSnapshotsUnchanged() {
+
+        ReplaySubject<Object> subject = ReplaySubject.createWithSnapshotDeltaState(Collections::emptyList, (list, value) -> {
+            List<Object> copy = new ArrayList<>((List<Object>) list);
+            copy.add(value);
+            return copy;
+        });
+
+        subject.onNext("a");
+
+        TestSubscriber<Object> first = new TestSubscriber<>();
+        subject.subscribe(first);
+        subject.onNext("b");
+
+        TestSubscriber<Object> second = new TestSubscriber<>();
+        subject.subscribe(second);
+
+        first.assertValues(Collections.singletonList("a"), "b");
+        second.assertValues(Arrays.asList("a", "b"));
+    }
+
+    @Test
+    public void snapshotDeltaSubscribersJoiningMidStreamMissNoDelta() throws InterruptedException {
+
+        // the state is the last sequence number, so the snapshot plus its deltas count up by one; a joiner the
+        // producer laps ends with an error instead
+        SnapshotDeltaState<Long> state = new SnapshotDeltaState<Long>((a, b) -> b, 1 << 16);
+        ReplaySubject<Long> subject = ReplaySubject.createWithSnapshotDeltaState(state);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        Thread producer = new Thread(() -> {
+            for (long i = 1; running.get(); i++) {
+                subject.onNext(i);
+            }
+        });
+        producer.start();
+
+        List<Thread> joiners = new ArrayList<>();
+        for (int j = 0; j < 4; j++) {
+            Thread joiner = new Thread(() -> {
+                for (int k = 0; k < 200; k++) {
+                    AtomicLong last = new AtomicLong(-1);
+                    AtomicInteger received = new AtomicInteger();
+                    TestSubscriber<Long> subscriber = new TestSubscriber<Long>() {
+                        @Override
+                        public void onNext(Long value) {
+                            long previous = last.getAndSet(value);
+                            if (previous != -1 && value != previous + 1) {
+                                failures.add(previous + " -> " + value);
+                            }
+                            received.incrementAndGet();
+                        }
+                    };
+                    subject.subscribe(subscriber);
+                    long deadline = System.currentTimeMillis() + 1000;
+                    while (received.get() < 16 && subscriber.getOnErrorEvents().isEmpty()) {
+                        if (System.currentTimeMillis() > deadline) {
+                            failures.add("stalled after " + last.get());
+                            break;
+                        }
+                        Thread.yield();
+                    }
+                    for (Throwable e : subscriber.getOnErrorEvents()) {
+                        if (!(e instanceof MissingBackpressureException)) {
+                            failures.add(e.toString());
+                        }
+                    }
+                    subscriber.unsubscribe();
+                }
+            });
+            joiner.start();
+            joiners.add(joiner);
+        }
+
+        for (Thread joiner : joiners) {
+            joiner.join();
+        }
+        running.set(false);
+        producer.join();
+
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void snapshotDeltaWithCollectionEndsLappedSubscribersWithoutMixingSnapshotsIntoDeltas() {
+
+        SnapshotDeltaWithCollectionState<Object> state = new SnapshotDeltaWithCollectionState<Object>(Collections::emptyList, (list, value) -> {
+            List<Object> copy = new ArrayList<>((List<Object>) list);
+            copy.add(value);
+            return copy;
+        }, 4);
+        ReplaySubject<Object> subject = ReplaySubject.createWithSnapshotDeltaState(state);
+
+        subject.onNext("a");
+
+        // publishes while the subscriber holds its snapshot, before it replays the deltas after it
+        TestSubscriber<Object> behind = publishingOnSnapshot(subject, 3);
+        behind.assertValues(Collections.singletonList("a"), 0, 1, 2);
+        behind.assertNoErrors();
+
+        TestSubscriber<Object> lapped = publishingOnSnapshot(subject, 32);
+        lapped.assertValues(Arrays.asList("a", 0, 1, 2));
+        lapped.assertError(MissingBackpressureException.class);
+        assertEquals(1, state.getLapped());
+
+        subject.onNext("b");
+
+        behind.assertValueCount(4 + 32 + 1);
+        lapped.assertValueCount(1);
+    }
+
+    private static TestSubscriber<Object> publishingOnSnapshot(ReplaySubject<Object> subject, int deltas) {
+        TestSubscriber<Object> subscriber = new TestSubscriber<Object>() {
+            @Override
+            public void onNext(Object value) {
+                super.onNext(value);
+                if (getOnNextEvents().size() == 1) {
+                    for (int i = 0; i < deltas; i++) {
+                        subject.onNext(i);
+                    }
+                }
+            }
+        };
+        subject.subscribe(subscriber);
+        return subscriber;
+    }
+}
@@ -0,0 +1,141 @@
+package com.solutionarchitects.common.rx;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rx.Subscriber;
+import rx.exceptions.MissingBackpressureException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Subscribers joining a snapshot+delta {@link ReplaySubject} while one thread publishes as fast as it can.
+ * <p>
+ * The state is the last sequence number published, so every joiner must see its snapshot followed by consecutive
+ * numbers. A joiner takes {@value #DELTAS} values and leaves again. After each iteration the gaps and duplicates seen
+ * are printed, both must be zero, with the joiners the producer lapped, which end with a missing backpressure error.
+ * {@code onNext} scores are per published value, {@code join} per joiner.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotDeltaBenchmark {
+
+    static final int DELTAS = 16;
+
+    SnapshotDeltaState<Long> state;
+
+    ReplaySubject<Long> subject;
+
+    final LongAdder gaps = new LongAdder();
+
+    final LongAdder duplicates = new LongAdder();
+
+    final LongAdder joins = new LongAdder();
+
+    final LongAdder lapped = new LongAdder();
+
+    long sequence;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        state = new SnapshotDeltaState<Long>((previous, value) -> value);
+        subject = ReplaySubject.createWithSnapshotDeltaState(state);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.printf("%n  joins %,d, gaps %d, duplicates %d, lapped %d%n",
+                joins.sum(), gaps.sum(), duplicates.sum(), lapped.sum());
+        gaps.reset();
+        duplicates.reset();
+        joins.reset();
+        lapped.reset();
+    }
+
+    @Benchmark
+    @Group("midStream")
+    @GroupThreads(1)
+    public void onNext() {
+        subject.onNext(++sequence);
+    }
+
+    @Benchmark
+    @Group("midStream")
+    @GroupThreads(7)
+    public void join() {
+
+        Joiner joiner = new Joiner();
+        subject.subscribe(joiner);
+
+        // the iteration may end while the producer is stopped
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        while (!joiner.done && joiner.received.get() < DELTAS && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+
+        joiner.unsubscribe();
+        joins.increment();
+    }
+
+    final class Joiner extends Subscriber<Long> {
+
+        final AtomicInteger received = new AtomicInteger();
+
+        volatile boolean done;
+
+        long last = -1;
+
+        @Override
+        public void onNext(Long value) {
+            if (last != -1) {
+                if (value <= last) {
+                    duplicates.increment();
+                } else if (value != last + 1) {
+                    gaps.increment();
+                }
+            }
+            last = value;
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            if (e instanceof MissingBackpressureException) {
+                lapped.increment();
+            }
+            done = true;
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SnapshotDeltaBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.solutionarchitects.common.rx.v2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rx.Subscriber;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one price tick through a size-bounded replay subject with one subscriber attached, the boxed
+ * {@link ReplaySubject} against {@link DoubleReplaySubject}. Run with the GC profiler, {@code gc.alloc.rate.norm}
+ * of the primitive subject should be 0 bytes per tick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveSubjectBenchmark {
+
+    ReplaySubject<Double> boxed;
+
+    DoubleReplaySubject primitive;
+
+    DoubleBehaviorSubject behavior;
+
+    double price = 100.0;
+
+    @Setup(Level.Trial)
+    public void setup(Blackhole blackhole) {
+
+        boxed = ReplaySubject.createWithSize(1024);
+        primitive = DoubleReplaySubject.createWithSize(1024);
+        behavior = DoubleBehaviorSubject.create(price);
+
+        boxed.subscribe(new Subscriber<Double>() {
+            @Override
+            public void onNext(Double value) {
+                blackhole.consume(value.doubleValue());
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+
+        DoubleObserver observer = new DoubleObserver() {
+            @Override
+            public void onNext(double value) {
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+
+        primitive.subscribe(observer);
+        behavior.subscribe(observer);
+    }
+
+    @Benchmark
+    public void boxedReplay() {
+        boxed.onNext(price += 0.01);
+    }
+
+    @Benchmark
+    public void primitiveReplay() {
+        primitive.onNext(price += 0.01);
+    }
+
+    @Benchmark
+    public void primitiveBehavior() {
+        behavior.onNext(price += 0.01);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PrimitiveSubjectBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
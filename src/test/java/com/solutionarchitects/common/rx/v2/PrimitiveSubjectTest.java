@@ -0,0 +1,110 @@
+package com.solutionarchitects.common.rx.v2;
+
+import org.junit.Test;
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrimitiveSubjectTest {
+
+    private static final class Recorder implements LongObserver, DoubleObserver {
+
+        final List<Object> events = new ArrayList<>();
+
+        @Override
+        public void onNext(long value) {
+            events.add(value);
+        }
+
+        @Override
+        public void onNext(double value) {
+            events.add(value);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            events.add(e);
+        }
+
+        @Override
+        public void onCompleted() {
+            events.add("completed");
+        }
+    }
+
+    @Test
+    public void longReplayRetainsLatestValues() {
+
+        LongReplaySubject subject = LongReplaySubject.createWithSize(3);
+
+        Recorder early = new Recorder();
+        Subscription s = subject.subscribe(early);
+
+        for (long i = 0; i < 10; i++) {
+            subject.onNext(i);
+        }
+
+        assertEquals(3, subject.size());
+        assertEquals(9L, subject.getValue());
+        assertArrayEquals(new long[]{7, 8, 9}, subject.getValues());
+        assertEquals(10, early.events.size());
+
+        s.unsubscribe();
+        subject.onNext(10);
+        subject.onCompleted();
+
+        Recorder late = new Recorder();
+        subject.subscribe(late);
+
+        assertEquals(10, early.events.size());
+        assertEquals(Arrays.<Object>asList(8L, 9L, 10L, "completed"), late.events);
+        assertFalse(subject.hasObservers());
+    }
+
+    @Test
+    public void behaviorSendsLatestOrDefault() {
+
+        DoubleBehaviorSubject subject = DoubleBehaviorSubject.create(1.5);
+
+        Recorder first = new Recorder();
+        subject.subscribe(first);
+        subject.onNext(2.5);
+
+        Recorder second = new Recorder();
+        subject.subscribe(second);
+        subject.onCompleted();
+
+        Recorder third = new Recorder();
+        subject.subscribe(third);
+
+        assertEquals(Arrays.<Object>asList(1.5, 2.5, "completed"), first.events);
+        assertEquals(Arrays.<Object>asList(2.5, "completed"), second.events);
+        assertEquals(Arrays.<Object>asList("completed"), third.events);
+        assertTrue(subject.hasCompleted());
+    }
+
+    @Test
+    public void adaptsToObservable() {
+
+        LongBehaviorSubject subject = LongBehaviorSubject.create();
+
+        TestSubscriber<Long> subscriber = new TestSubscriber<>();
+        subject.asObservable().subscribe(subscriber);
+
+        subject.onNext(1);
+        subject.onNext(2);
+        subscriber.unsubscribe();
+        subject.onNext(3);
+
+        subscriber.assertValues(1L, 2L);
+        assertFalse(subject.hasObservers());
+    }
+}
@@ -0,0 +1,74 @@
+package com.solutionarchitects.common.rx.v2;
+
+import org.junit.After;
+import org.junit.Test;
+import rx.schedulers.TestScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ReplayEvictionServiceTest {
+
+    private final TestScheduler scheduler = new TestScheduler();
+
+    /** Swept by the test only. */
+    private final ReplayEvictionService service = new ReplayEvictionService(1, TimeUnit.DAYS);
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void sweepReleasesValuesOfQuietBuffer() {
+
+        ReplaySizeAndTimeBoundBuffer<Integer> buffer = new ReplaySizeAndTimeBoundBuffer<>(Integer.MAX_VALUE, 1000, scheduler);
+        service.register(buffer);
+
+        for (int i = 0; i < 10000; i++) {
+            buffer.next(i);
+        }
+
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        buffer.next(10000);
+
+        service.sweep();
+
+        assertEquals(0, service.getEvicted());
+        assertEquals(0, buffer.head.index);
+
+        scheduler.advanceTimeBy(900, TimeUnit.MILLISECONDS);
+
+        service.sweep();
+
+        assertEquals(10000, service.getEvicted());
+        assertEquals(10000, buffer.head.index);
+        assertArrayEquals(new Integer[]{10000}, buffer.toArray(new Integer[0]));
+
+        buffer.complete();
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        service.sweep();
+
+        assertEquals(0, buffer.size());
+        assertEquals(0, service.getRegisteredCount());
+    }
+
+    @Test
+    public void sizeLimitHoldsAfterSweeps() {
+
+        ReplaySizeAndTimeBoundBuffer<Integer> buffer = new ReplaySizeAndTimeBoundBuffer<>(3, 1000, scheduler);
+        service.register(buffer);
+
+        buffer.next(1);
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        service.sweep();
+
+        for (int i = 2; i <= 6; i++) {
+            buffer.next(i);
+        }
+
+        assertArrayEquals(new Integer[]{4, 5, 6}, buffer.toArray(new Integer[0]));
+    }
+}
@@ -0,0 +1,127 @@
+package com.solutionarchitects.common.rx.v2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rx.Subscriber;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A late subscriber replaying the whole history of ticks from the segment files of a {@link ReplayMappedBuffer}
+ * against the heap of the unbounded {@link ReplaySubject}. Scores are per full replay, divide by {@code history}
+ * for the cost per value. The heap used by each subject after the history was written is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayMappedBufferBenchmark {
+
+    @Param({"1000000"})
+    int history;
+
+    Path directory;
+
+    ReplayMappedBuffer<Long> buffer;
+
+    ReplaySubject<Long> mapped;
+
+    ReplaySubject<Long> heap;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        directory = Files.createTempDirectory("replay-mapped");
+
+        long before = UsedHeap();
+
+        buffer = new ReplayMappedBuffer<>(ReplayMappedBufferTest.LONGS, directory, 1024, 64 << 20, 0);
+        mapped = ReplaySubject.createWithMappedBuffer(buffer);
+        for (long i = 0; i < history; i++) {
+            mapped.onNext(i);
+        }
+
+        long afterMapped = UsedHeap();
+
+        heap = ReplaySubject.create();
+        for (long i = 0; i < history; i++) {
+            heap.onNext(i);
+        }
+
+        long afterHeap = UsedHeap();
+
+        System.out.printf("%nHeap for %d values, mapped: %d KB, heap: %d KB%n", history, (afterMapped - before) >> 10, (afterHeap - afterMapped) >> 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        buffer.close();
+        Files.deleteIfExists(directory);
+    }
+
+    private static long UsedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public void replayMapped(Blackhole blackhole) {
+        mapped.subscribe(new Sink(blackhole));
+    }
+
+    @Benchmark
+    public void replayHeap(Blackhole blackhole) {
+        heap.subscribe(new Sink(blackhole));
+    }
+
+    static final class Sink extends Subscriber<Long> {
+
+        final Blackhole blackhole;
+
+        Sink(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onNext(Long value) {
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReplayMappedBufferBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
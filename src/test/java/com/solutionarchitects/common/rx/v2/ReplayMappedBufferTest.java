@@ -0,0 +1,96 @@
+package com.solutionarchitects.common.rx.v2;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rx.observers.TestSubscriber;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReplayMappedBufferTest {
+
+    static final ReplaySerializer<Long> LONGS = new ReplaySerializer<Long>() {
+        @Override
+        public void write(Long value, ByteBuffer out) {
+            out.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer in) {
+            return in.getLong();
+        }
+    };
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void lateSubscriberReplaysHistoryFromSegments() throws Exception {
+
+        ReplayMappedBuffer<Long> buffer = new ReplayMappedBuffer<>(LONGS, folder.getRoot().toPath(), 16, 4096, 0);
+        ReplaySubject<Long> subject = ReplaySubject.createWithMappedBuffer(buffer);
+
+        TestSubscriber<Long> early = new TestSubscriber<>();
+        subject.subscribe(early);
+
+        for (long i = 0; i < 10000; i++) {
+            subject.onNext(i);
+        }
+
+        assertTrue(buffer.getSegmentCount() > 20);
+        assertEquals(10000, buffer.size());
+        assertEquals(Long.valueOf(9999), buffer.last());
+
+        TestSubscriber<Long> late = new TestSubscriber<>();
+        subject.subscribe(late);
+        subject.onNext(10000L);
+        subject.onCompleted();
+
+        early.assertValueCount(10001);
+        late.assertValueCount(10001);
+        List<Long> values = late.getOnNextEvents();
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i, values.get(i).longValue());
+        }
+        late.assertCompleted();
+
+        buffer.close();
+
+        File[] files = folder.getRoot().listFiles();
+        assertEquals(0, files.length);
+    }
+
+    @Test
+    public void retentionDropsOldSegmentsAndLateSubscribersSkipAhead() throws Exception {
+
+        ReplayMappedBuffer<Long> buffer = new ReplayMappedBuffer<>(LONGS, folder.getRoot().toPath(), 16, 1200, 3);
+        ReplaySubject<Long> subject = ReplaySubject.createWithMappedBuffer(buffer);
+
+        TestSubscriber<Long> slow = new TestSubscriber<>(10L);
+        subject.subscribe(slow);
+
+        for (long i = 0; i < 10000; i++) {
+            subject.onNext(i);
+        }
+
+        assertEquals(3, buffer.getSegmentCount());
+        assertEquals(3, folder.getRoot().listFiles().length);
+
+        long first = buffer.first();
+
+        slow.requestMore(Long.MAX_VALUE);
+
+        List<Long> values = slow.getOnNextEvents();
+        assertEquals(10, values.get(9).longValue() + 1);
+        assertEquals(first, values.get(10).longValue());
+        assertEquals(9999L, values.get(values.size() - 1).longValue());
+        assertEquals(10 + 10000 - first, values.size());
+
+        buffer.close();
+    }
+}
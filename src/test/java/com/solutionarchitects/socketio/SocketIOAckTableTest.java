@@ -0,0 +1,108 @@
+package com.solutionarchitects.socketio;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SocketIOAckTableTest {
+
+    private final SocketIOTimerWheel wheel = new SocketIOTimerWheel("test-acks", 5, 8);
+
+    private final SocketIOAckTable acks = new SocketIOAckTable(wheel);
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void completesAcksByIdInAnyOrder() throws Exception {
+
+        List<CompletableFuture<List<Object>>> futures = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            CompletableFuture<List<Object>> future = new CompletableFuture<>();
+            futures.add(future);
+            ids.add(acks.register(future, 60000));
+        }
+
+        for (int i = 999; i >= 0; i -= 2) {
+            assertTrue(acks.complete(ids.get(i), Collections.<Object>singletonList(i)));
+        }
+
+        assertEquals(500, acks.size());
+        assertFalse(acks.complete(ids.get(999), Collections.emptyList()));
+
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(acks.complete(ids.get(i), Collections.<Object>singletonList(i)));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Collections.<Object>singletonList(i), futures.get(i).get());
+        }
+        assertEquals(0, acks.size());
+    }
+
+    @Test
+    public void expiresOverdueAcksAndFailsPendingOnClose() throws Exception {
+
+        CompletableFuture<List<Object>> shortLived = new CompletableFuture<>();
+        CompletableFuture<List<Object>> longLived = new CompletableFuture<>();
+
+        acks.register(longLived, 60000);
+        long id = acks.register(shortLived, 20);
+
+        try {
+            shortLived.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        assertFalse(acks.complete(id, Collections.emptyList()));
+        assertEquals(1, acks.size());
+
+        acks.close();
+
+        assertTrue(longLived.isCompletedExceptionally());
+        assertEquals(SocketIOAckTable.CLOSED, acks.register(new CompletableFuture<List<Object>>(), 1000));
+    }
+
+    @Test
+    public void staysArmedOnceWhenEarlierDeadlinesArrive() throws Exception {
+
+        acks.register(new CompletableFuture<List<Object>>(), 60000);
+        acks.register(new CompletableFuture<List<Object>>(), 30000);
+
+        CompletableFuture<List<Object>> shortLived = new CompletableFuture<>();
+        acks.register(shortLived, 20);
+
+        try {
+            shortLived.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        // the replaced handles were cancelled and are dropped by the time their bucket comes round, only the
+        // re-armed one is left
+        long deadline = System.currentTimeMillis() + 1000;
+        while (wheel.size() != 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, wheel.size());
+    }
+}
@@ -0,0 +1,203 @@
+package com.solutionarchitects.socketio;
+
+import org.apache.qpid.server.SystemLauncher;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link SocketIOAmqpClusterTransport} against an embedded Qpid broker speaking AMQP 0-9-1 from memory.
+ */
+public class SocketIOAmqpClusterTransportTest {
+
+    private static final String EXCHANGE = "socketio.cluster.test";
+
+    private static SystemLauncher broker;
+
+    private static int port;
+
+    private final List<CachingConnectionFactory> connectionFactories = new ArrayList<>();
+
+    private final List<SocketIOAmqpClusterTransport> transports = new ArrayList<>();
+
+    @BeforeClass
+    public static void startBroker() throws Exception {
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        Map<String, String> context = new HashMap<>();
+        context.put("qpid.amqp_port", String.valueOf(port));
+        context.put("qpid.work_dir", Files.createTempDirectory("qpid").toString());
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("type", "Memory");
+        attributes.put("initialConfigurationLocation", SocketIOAmqpClusterTransportTest.class.getResource("/qpid-broker.json").toExternalForm());
+        attributes.put("startupLoggedToSystemOut", false);
+        attributes.put("context", context);
+
+        broker = new SystemLauncher();
+        broker.startup(attributes);
+    }
+
+    @AfterClass
+    public static void stopBroker() {
+        broker.shutdown();
+    }
+
+    @After
+    public void tearDown() {
+        for (SocketIOAmqpClusterTransport transport : transports) {
+            ReflectionTestUtils.invokeMethod(transport, "beforeDestroy");
+        }
+        for (CachingConnectionFactory connectionFactory : connectionFactories) {
+            connectionFactory.destroy();
+        }
+    }
+
+    private CachingConnectionFactory connectionFactory() {
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory("localhost", port);
+        connectionFactory.setUsername("guest");
+        connectionFactory.setPassword("guest");
+        connectionFactories.add(connectionFactory);
+        return connectionFactory;
+    }
+
+    private SocketIOAmqpClusterTransport transport() {
+        SocketIOConfig config = new SocketIOConfig();
+        config.clusterExchange = EXCHANGE;
+        SocketIOAmqpClusterTransport transport = new SocketIOAmqpClusterTransport();
+        ReflectionTestUtils.setField(transport, "socketIOConfig", config);
+        ReflectionTestUtils.setField(transport, "connectionFactory", connectionFactory());
+        ReflectionTestUtils.invokeMethod(transport, "afterInit");
+        transports.add(transport);
+        return transport;
+    }
+
+    private static void await(LongSupplier counter, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (counter.getAsLong() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, counter.getAsLong());
+    }
+
+    @Test
+    public void fansBatchesOutToTheQueueOfEveryNodeAsRawBytes() throws Exception {
+
+        SocketIOAmqpClusterTransport a = transport();
+        SocketIOAmqpClusterTransport b = transport();
+
+        List<String> receivedByA = new CopyOnWriteArrayList<>();
+        List<byte[]> receivedByB = new CopyOnWriteArrayList<>();
+
+        a.subscribe((nodeId, batch) -> receivedByA.add(nodeId));
+        b.subscribe((nodeId, batch) -> receivedByB.add(batch));
+
+        // bound with an unrelated routing key, a fanout exchange still delivers to it
+        CachingConnectionFactory connectionFactory = connectionFactory();
+        RabbitAdmin admin = new RabbitAdmin(connectionFactory);
+        Queue probe = admin.declareQueue();
+        admin.declareBinding(new Binding(probe.getName(), Binding.DestinationType.QUEUE, EXCHANGE, "unrelated", null));
+
+        byte[] batch = {0, 1, (byte) 0xc3, (byte) 0x28, (byte) 0xff, 'b', 'a', 't', 'c', 'h'};
+
+        a.publish("node-a", batch);
+
+        await(receivedByA::size, 1);
+        await(receivedByB::size, 1);
+
+        assertEquals(Collections.singletonList("node-a"), receivedByA);
+        assertArrayEquals(batch, receivedByB.get(0));
+
+        RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+        Message message = rabbitTemplate.receive(probe.getName());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (message == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            message = rabbitTemplate.receive(probe.getName());
+        }
+
+        assertNotNull(message);
+        assertArrayEquals(batch, message.getBody());
+        assertEquals("node-a", message.getMessageProperties().getAppId());
+        assertEquals(MessageProperties.CONTENT_TYPE_BYTES, message.getMessageProperties().getContentType());
+        assertEquals(MessageDeliveryMode.NON_PERSISTENT, message.getMessageProperties().getDeliveryMode());
+    }
+
+    @Test
+    public void anonymousQueueGoesAwayWithItsConsumer() throws Exception {
+
+        SocketIOAmqpClusterTransport a = transport();
+        a.subscribe((nodeId, batch) -> {
+        });
+
+        String queueName = a.getQueueName();
+        // the queue is exclusive to the connection of the node
+        RabbitAdmin admin = (RabbitAdmin) ReflectionTestUtils.getField(a, "rabbitAdmin");
+
+        assertNotNull(admin.getQueueProperties(queueName));
+
+        ReflectionTestUtils.invokeMethod(a, "beforeDestroy");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (admin.getQueueProperties(queueName) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(admin.getQueueProperties(queueName));
+    }
+
+    @Test
+    public void clusterNodesDeliverBroadcastsOnceAndDropTheirOwnBatches() throws Exception {
+
+        SocketIOClusterAdapterTest.Node a = new SocketIOClusterAdapterTest.Node(transport(), 256);
+        SocketIOClusterAdapterTest.Node b = new SocketIOClusterAdapterTest.Node(transport(), 256);
+
+        SocketIOConnectionHandler a1 = a.connect("a1", "/market");
+        SocketIOConnectionHandler b1 = b.connect("b1", "/market");
+
+        for (int i = 0; i < 10; i++) {
+            a.adapter.broadcast("/market", "quote", i);
+        }
+
+        await(a.adapter::getPublished, 10);
+        await(b.adapter::getReceived, 10);
+        await(a.adapter::getOwnBatches, a.adapter.getBatches());
+
+        List<String> receivedByA1 = ((StubWebSocketSession) a1.getWebSocketSession()).getTextPayloads();
+        List<String> receivedByB1 = ((StubWebSocketSession) b1.getWebSocketSession()).getTextPayloads();
+
+        assertEquals(10, receivedByA1.size());
+        assertEquals(receivedByA1, receivedByB1);
+        assertTrue(receivedByB1.get(9).contains("\"quote\",9"));
+        assertEquals(0, a.adapter.getReceived());
+        assertEquals(0, b.adapter.getOwnBatches());
+    }
+}
@@ -0,0 +1,97 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out cost of emitting one market update to every session of a namespace, per-recipient
+ * {@link SocketIOConnectionHandler#sendEvent(String, Object)} against the encode-once
+ * {@link SocketIOWebSocketProtocolHandler#broadcast(SocketIOFrame, Iterable)} path.
+ * <p>
+ * Scores are per fan-out, divide by {@code sessions} for the cost per recipient; the GC profiler
+ * {@code gc.alloc.rate.norm} likewise gives bytes per fan-out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocketIOBroadcastBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    int sessions;
+
+    List<SocketIOConnectionHandler> handlers;
+
+    final SocketIOOutboundMetrics metrics = new SocketIOOutboundMetrics();
+
+    final SocketIORooms rooms = new SocketIORooms();
+
+    HashMap<String, Object> quote;
+
+    @Setup(Level.Trial)
+    public void setup() {
+
+        handlers = new ArrayList<>(sessions);
+
+        for (int i = 0; i < sessions; i++) {
+            String id = Integer.toString(i);
+            StubWebSocketSession session = new StubWebSocketSession(id, false);
+            SocketIOOutboundQueue outboundQueue = new SocketIOOutboundQueue(session, MoreExecutors.directExecutor(),
+                    1024, 64, SocketIOOverflowPolicy.DropOldest, metrics);
+            SocketIOConnectionHandler handler = new SocketIOConnectionHandler(session, outboundQueue, rooms, id, "/market");
+            rooms.register(handler);
+            handlers.add(handler);
+        }
+
+        quote = new HashMap<>();
+        quote.put("Symbol", "AAPL");
+        quote.put("Bid", 100);
+        quote.put("Ask", 102);
+    }
+
+    @Benchmark
+    public void sendEventPerRecipient() {
+        for (SocketIOConnectionHandler handler : handlers) {
+            handler.sendEvent("quote", quote);
+        }
+    }
+
+    @Benchmark
+    public int broadcastEncodeOnce() {
+        return SocketIOWebSocketProtocolHandler.broadcast(SocketIOFrame.event("/market", "quote", quote), handlers);
+    }
+
+    @Benchmark
+    public int emitToNamespace() {
+        return rooms.emit("/market", "quote", quote);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SocketIOBroadcastBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,139 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOClusterAdapterTest {
+
+    /**
+     * Stands in for the fanout exchange: every batch is delivered to every subscriber, the publisher included.
+     */
+    static final class InProcessBroker {
+
+        final List<SocketIOClusterTransport.Receiver> receivers = new CopyOnWriteArrayList<>();
+
+        SocketIOClusterTransport transport() {
+            return new SocketIOClusterTransport() {
+                @Override
+                public void publish(String nodeId, byte[] batch) {
+                    for (Receiver receiver : receivers) {
+                        receiver.receive(nodeId, batch);
+                    }
+                }
+
+                @Override
+                public void subscribe(Receiver receiver) {
+                    receivers.add(receiver);
+                }
+            };
+        }
+    }
+
+    static final class Node {
+
+        final SocketIORooms rooms = new SocketIORooms();
+
+        final SocketIOClusterAdapter adapter = new SocketIOClusterAdapter();
+
+        final SocketIOOutboundMetrics metrics = new SocketIOOutboundMetrics();
+
+        Node(SocketIOClusterTransport transport, int batchSize) {
+            SocketIOConfig config = new SocketIOConfig();
+            config.clusterBatchSize = batchSize;
+            ReflectionTestUtils.setField(adapter, "socketIOConfig", config);
+            ReflectionTestUtils.setField(adapter, "socketIORooms", rooms);
+            ReflectionTestUtils.setField(adapter, "socketIOClusterTransport", transport);
+            ReflectionTestUtils.invokeMethod(adapter, "afterInit");
+        }
+
+        SocketIOConnectionHandler connect(String id, String nameSpace) {
+            StubWebSocketSession session = new StubWebSocketSession(id);
+            SocketIOOutboundQueue queue = new SocketIOOutboundQueue(session, MoreExecutors.directExecutor(), 16, 16, SocketIOOverflowPolicy.DropOldest, metrics);
+            SocketIOConnectionHandler handler = new SocketIOConnectionHandler(session, queue, rooms, id, nameSpace);
+            rooms.register(handler);
+            return handler;
+        }
+    }
+
+    private static List<String> received(SocketIOConnectionHandler handler) {
+        return ((StubWebSocketSession) handler.getWebSocketSession()).getTextPayloads();
+    }
+
+    private static void await(LongSupplier counter, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (counter.getAsLong() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, counter.getAsLong());
+    }
+
+    private final InProcessBroker broker = new InProcessBroker();
+
+    private Node a;
+
+    private Node b;
+
+    @Before
+    public void setUp() {
+        a = new Node(broker.transport(), 256);
+        b = new Node(broker.transport(), 256);
+    }
+
+    @Test
+    public void broadcastsReachTheMembersOfEveryNodeOnce() throws Exception {
+
+        SocketIOConnectionHandler a1 = a.connect("a1", "/market");
+        SocketIOConnectionHandler b1 = b.connect("b1", "/market");
+        SocketIOConnectionHandler b2 = b.connect("b2", "/market");
+        SocketIOConnectionHandler other = b.connect("b3", "/news");
+
+        a1.join("AAPL");
+        b1.join("AAPL");
+
+        assertEquals(1, a.adapter.broadcastToRoom("/market", "AAPL", "quote", 1));
+        assertEquals(0, a.adapter.broadcastExceptRoom("/market", "AAPL", "quote", 2));
+        assertEquals(1, a.adapter.broadcast("/market", "quote", 3));
+
+        await(a.adapter::getPublished, 3);
+        await(b.adapter::getReceived, 3);
+
+        assertEquals(2, received(a1).size());
+        assertEquals(2, received(b1).size());
+        assertEquals(2, received(b2).size());
+        assertEquals(0, received(other).size());
+
+        assertEquals(received(a1), received(b1));
+        assertTrue(received(b2).get(0).contains("\"quote\",2"));
+
+        assertEquals(0, a.adapter.getReceived());
+        assertEquals(a.adapter.getBatches(), a.adapter.getOwnBatches());
+    }
+
+    @Test
+    public void batchesAreCappedAtTheBatchSize() throws Exception {
+
+        Node c = new Node(broker.transport(), 2);
+
+        SocketIOConnectionHandler b1 = b.connect("b1", "/market");
+
+        for (int i = 0; i < 5; i++) {
+            c.adapter.broadcast("/market", "quote", i);
+        }
+
+        await(c.adapter::getPublished, 5);
+        await(b.adapter::getReceived, 5);
+
+        assertEquals(5, received(b1).size());
+        assertTrue(c.adapter.getBatches() >= 3);
+        assertEquals(0, c.adapter.getFailed());
+    }
+}
@@ -0,0 +1,85 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a broadcast on one node reaching the sessions of another: encode, batch, publish over an in-process
+ * fanout, decode and fan out to {@code sessions} members. The broker hop of a real cluster comes on top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocketIOClusterBenchmark {
+
+    @Param({"100", "10000"})
+    int sessions;
+
+    SocketIOClusterAdapterTest.Node a;
+
+    SocketIOClusterAdapterTest.Node b;
+
+    HashMap<String, Object> quote;
+
+    @Setup(Level.Trial)
+    public void setup() {
+
+        SocketIOClusterAdapterTest.InProcessBroker broker = new SocketIOClusterAdapterTest.InProcessBroker();
+
+        a = new SocketIOClusterAdapterTest.Node(broker.transport(), 256);
+        b = new SocketIOClusterAdapterTest.Node(broker.transport(), 256);
+
+        for (int i = 0; i < sessions; i++) {
+            String id = Integer.toString(i);
+            StubWebSocketSession session = new StubWebSocketSession(id, false);
+            SocketIOOutboundQueue outboundQueue = new SocketIOOutboundQueue(session, MoreExecutors.directExecutor(),
+                    1024, 64, SocketIOOverflowPolicy.DropOldest, b.metrics);
+            b.rooms.register(new SocketIOConnectionHandler(session, outboundQueue, b.rooms, id, "/market"));
+        }
+
+        quote = new HashMap<>();
+        quote.put("Symbol", "AAPL");
+        quote.put("Bid", 100);
+        quote.put("Ask", 102);
+    }
+
+    @Benchmark
+    public long crossNodeBroadcast() {
+
+        long received = b.adapter.getReceived();
+
+        a.adapter.broadcast("/market", "quote", quote);
+
+        while (b.adapter.getReceived() == received) {
+            Thread.yield();
+        }
+
+        return received;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SocketIOClusterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,133 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares dispatching an inbound event to its {@link SocketIOEvent} handler with calling the handler directly and
+ * with reflective {@link Method#invoke}.
+ * <p>
+ * Run the {@link #main(String[])} method (or {@code org.openjdk.jmh.Main SocketIOEventDispatchBenchmark -prof gc})
+ * from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocketIOEventDispatchBenchmark {
+
+    public static class Quote {
+        public String Symbol;
+        public double Bid;
+        public double Ask;
+    }
+
+    public static class QuoteHandlers {
+
+        private double total;
+
+        @SocketIOEvent(namespace = "/market", event = "quote")
+        public void quote(Quote quote, SocketIOConnectionHandler connection) {
+            total += quote.Bid;
+        }
+
+        // a few more events so the lookup is not against a single entry table
+        @SocketIOEvent(namespace = "/market", event = "trade")
+        public void trade(Quote quote) {
+        }
+
+        @SocketIOEvent(namespace = "/market", event = "subscribe")
+        public void subscribe(String symbol) {
+        }
+
+        @SocketIOEvent(namespace = "/market", event = "unsubscribe")
+        public void unsubscribe(String symbol) {
+        }
+    }
+
+    private final QuoteHandlers handlers = new QuoteHandlers();
+
+    private final Quote quote = new Quote();
+
+    private final String eventName = new String("quote");
+
+    private SocketIOConnectionHandler connection;
+
+    private Method method;
+
+    private SocketIOEventInvoker invoker;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+
+        StubWebSocketSession webSocketSession = new StubWebSocketSession("s1", false);
+        SocketIOOutboundQueue queue = new SocketIOOutboundQueue(webSocketSession, MoreExecutors.directExecutor(),
+                1024, 64, SocketIOOverflowPolicy.DropOldest, new SocketIOOutboundMetrics());
+
+        SocketIOEventHandlers eventHandlers = new SocketIOEventHandlers();
+        ReflectionTestUtils.setField(eventHandlers, "socketIOPayloadBinder", new SocketIOPayloadBinder());
+        ReflectionTestUtils.setField(eventHandlers, "socketIONamespaceRegistry", new SocketIONamespaceRegistry());
+        eventHandlers.register(handlers);
+
+        connection = new SocketIOConnectionHandler(webSocketSession, queue, new SocketIORooms(), "s1", "/market");
+        connection.setEventHandlers(eventHandlers.getDispatchTable("/market"));
+
+        invoker = eventHandlers.getDispatchTable("/market").get("quote");
+
+        method = QuoteHandlers.class.getMethod("quote", Quote.class, SocketIOConnectionHandler.class);
+
+        quote.Symbol = "AAPL";
+        quote.Bid = 100;
+        quote.Ask = 102;
+    }
+
+    @Benchmark
+    public double direct() {
+        handlers.quote(quote, connection);
+        return handlers.total;
+    }
+
+    @Benchmark
+    public double invoke() throws Exception {
+        invoker.invoke(connection, quote, null);
+        return handlers.total;
+    }
+
+    @Benchmark
+    public double dispatch() {
+        connection.receiveEvent(eventName, quote, null);
+        return handlers.total;
+    }
+
+    @Benchmark
+    public double reflection() throws Exception {
+        method.invoke(handlers, quote, connection);
+        return handlers.total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SocketIOEventDispatchBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import com.solutionarchitects.socketio.protocol.SocketIOPacketCodec;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SocketIOEventHandlersTest {
+
+    public static class Order {
+        public String symbol;
+        public int quantity;
+    }
+
+    public static class OrderHandlers {
+
+        private final List<Object> received = new ArrayList<>();
+
+        @SocketIOEvent(namespace = "/orders", event = "place")
+        public String place(SocketIOAckReply ack, Order order, SocketIOConnectionHandler connection) {
+            received.add(connection);
+            received.add(order.symbol);
+            received.add(order.quantity);
+            return "accepted";
+        }
+
+        @SocketIOEvent(event = "ping")
+        void ping() {
+            received.add("ping");
+        }
+
+        @SocketIOEvent(namespace = "/orders", event = "fail")
+        public void fail(SocketIOConnectionHandler connection) {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    private final StubWebSocketSession webSocketSession = new StubWebSocketSession("s1", true);
+
+    private final SocketIOOutboundQueue queue = new SocketIOOutboundQueue(webSocketSession, MoreExecutors.directExecutor(),
+            1024, 64, SocketIOOverflowPolicy.DropOldest, new SocketIOOutboundMetrics());
+
+    private final SocketIOPayloadBinder binder = new SocketIOPayloadBinder();
+
+    private final SocketIOEventHandlers eventHandlers = new SocketIOEventHandlers();
+
+    {
+        ReflectionTestUtils.setField(eventHandlers, "socketIOPayloadBinder", binder);
+        ReflectionTestUtils.setField(eventHandlers, "socketIONamespaceRegistry", new SocketIONamespaceRegistry());
+    }
+
+    @Test
+    public void dispatchesBoundPayloadAndAcksReturnValue() throws Exception {
+
+        OrderHandlers handlers = new OrderHandlers();
+        assertEquals(3, eventHandlers.register(handlers));
+
+        SocketIOConnectionHandler connection = new SocketIOConnectionHandler(webSocketSession, queue, new SocketIORooms(), "s1", "/orders");
+        connection.setEventHandlers(eventHandlers.getDispatchTable("/orders"));
+
+        SocketIOPacket packet = new SocketIOPacket();
+        SocketIOPacketCodec.decode("42/orders,9[\"place\",{\"symbol\":\"AAPL\",\"quantity\":10}]", packet);
+        SocketIOInboundEvent event = binder.decodeEvent(packet, packet.namespace());
+
+        connection.receiveEvent(event.getEventName(), event.getPayload(), new SocketIOAckReply(queue, "/orders", 9));
+
+        assertEquals(Arrays.<Object>asList(connection, "AAPL", 10), handlers.received);
+        assertEquals(Arrays.asList("43/orders,9[\"accepted\"]"), webSocketSession.getTextPayloads());
+
+        // a failing handler is logged, not propagated
+        connection.receiveEvent("fail", null, null);
+
+        SocketIOConnectionHandler root = new SocketIOConnectionHandler(webSocketSession, queue, new SocketIORooms(), "s1", "");
+        root.setEventHandlers(eventHandlers.getDispatchTable("/"));
+        root.receiveEvent("ping", null, null);
+
+        assertEquals("ping", handlers.received.get(3));
+    }
+
+    @Test
+    public void unknownNamespaceHasEmptyTable() {
+        assertSame(SocketIOEventDispatchTable.EMPTY, eventHandlers.getDispatchTable("/none"));
+        assertNull(eventHandlers.getDispatchTable("").get("ping"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsSecondHandlerOfAnEvent() {
+        eventHandlers.register(new OrderHandlers());
+        eventHandlers.register(new OrderHandlers());
+    }
+}
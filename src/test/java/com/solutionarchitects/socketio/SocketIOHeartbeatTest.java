@@ -0,0 +1,60 @@
+package com.solutionarchitects.socketio;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOHeartbeatTest {
+
+    private final SocketIOTimerWheel wheel = new SocketIOTimerWheel("test-heartbeat", 5, 8);
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void silentConnectionTimesOutAndTouchedOneDoesNot() throws InterruptedException {
+
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final StubWebSocketSession silent = new StubWebSocketSession("silent");
+        final StubWebSocketSession alive = new StubWebSocketSession("alive");
+        final AtomicBoolean aliveTimedOut = new AtomicBoolean();
+
+        SocketIOHeartbeat.Listener listener = new SocketIOHeartbeat.Listener() {
+            @Override
+            public void onHeartbeatTimeout(WebSocketSession session) {
+                if (session == alive) {
+                    aliveTimedOut.set(true);
+                }
+                timedOut.countDown();
+            }
+        };
+
+        new SocketIOHeartbeat(silent, wheel, 100, listener);
+        SocketIOHeartbeat heartbeat = new SocketIOHeartbeat(alive, wheel, 100, listener);
+
+        // keeps the second connection alive well past the timeout, across several laps of the wheel
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+        while (System.nanoTime() < end) {
+            heartbeat.touch();
+            Thread.sleep(10);
+        }
+
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+        assertFalse(aliveTimedOut.get());
+
+        heartbeat.cancel();
+        Thread.sleep(50);
+
+        assertEquals(0, wheel.size());
+    }
+}
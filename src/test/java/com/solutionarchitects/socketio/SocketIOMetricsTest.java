@@ -0,0 +1,103 @@
+package com.solutionarchitects.socketio;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOMetricsTest {
+
+    @Test
+    public void reportsPercentilesAsBucketUpperBounds() {
+
+        SocketIOHistogram histogram = new SocketIOHistogram();
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1023, histogram.getPercentile(50));
+        assertEquals(1023, histogram.getPercentile(99));
+        assertEquals(1_000_000, histogram.getPercentile(100));
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(0, new SocketIOHistogram().getPercentile(99));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void countsTrafficPerNamespaceAndEvent() {
+
+        SocketIOTrafficMetrics traffic = new SocketIOTrafficMetrics();
+
+        traffic.recordIn("", "quote", 10);
+        traffic.recordIn("", "quote", 20);
+        traffic.recordOut("", "trade", 5);
+        traffic.recordIn("/chat", "message", 7);
+
+        Map<String, Object> defaultNamespace = (Map<String, Object>) traffic.snapshot().get("/");
+        Map<String, Object> quote = (Map<String, Object>) ((Map<String, Object>) defaultNamespace.get("events")).get("quote");
+
+        assertEquals(2L, quote.get("framesIn"));
+        assertEquals(30L, quote.get("bytesIn"));
+        assertEquals(30L, defaultNamespace.get("bytesIn"));
+        assertEquals(5L, defaultNamespace.get("bytesOut"));
+        assertTrue(traffic.snapshot().containsKey("/chat"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void countsEventsBeyondTheLimitTogether() {
+
+        SocketIOTrafficMetrics traffic = new SocketIOTrafficMetrics();
+
+        for (int i = 0; i < SocketIOTrafficMetrics.MAX_EVENTS + 10; i++) {
+            traffic.recordIn("", "event" + i, 1);
+        }
+
+        Map<String, Object> events = (Map<String, Object>) ((Map<String, Object>) traffic.snapshot().get("/")).get("events");
+
+        assertEquals(SocketIOTrafficMetrics.MAX_EVENTS + 1, events.size());
+        assertEquals(10L, ((Map<String, Object>) events.get(SocketIOTrafficMetrics.OTHER)).get("framesIn"));
+    }
+
+    @Test
+    public void averagesTheRateOverTicks() {
+
+        SocketIORate rate = new SocketIORate();
+
+        rate.tick(50);
+        assertEquals(10.0, rate.getRate(), 1e-9);
+
+        rate.tick(50);
+        assertTrue(rate.getRate() < 10.0 && rate.getRate() > 9.0);
+
+        for (int i = 0; i < 200; i++) {
+            rate.tick(50 + (i + 1) * 100L);
+        }
+        assertEquals(20.0, rate.getRate(), 0.01);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reportsTrafficRatesPerNamespaceAndEvent() {
+
+        SocketIOTrafficMetrics traffic = new SocketIOTrafficMetrics();
+
+        for (int i = 0; i < 5; i++) {
+            traffic.recordIn("", "quote", 100);
+        }
+        traffic.tick();
+
+        Map<String, Object> defaultNamespace = (Map<String, Object>) traffic.snapshot().get("/");
+        Map<String, Object> quote = (Map<String, Object>) ((Map<String, Object>) defaultNamespace.get("events")).get("quote");
+
+        assertEquals(1.0, (Double) quote.get("framesInRate"), 1e-9);
+        assertEquals(100.0, (Double) quote.get("bytesInRate"), 1e-9);
+        assertEquals(100.0, (Double) defaultNamespace.get("bytesInRate"), 1e-9);
+        assertEquals(0.0, (Double) defaultNamespace.get("bytesOutRate"), 1e-9);
+    }
+}
@@ -0,0 +1,44 @@
+package com.solutionarchitects.socketio;
+
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import com.solutionarchitects.socketio.protocol.SocketIOPacketCodec;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SocketIONamespaceIdsTest {
+
+    private final SocketIONamespaceIds namespaceIds = new SocketIONamespaceIds(3);
+
+    private int lookup(String frame) {
+        SocketIOPacket packet = new SocketIOPacket();
+        SocketIOPacketCodec.decode(frame, packet);
+        return namespaceIds.lookup(packet);
+    }
+
+    @Test
+    public void resolvesDecodedNamespacesToInternedIds() {
+
+        int market = namespaceIds.intern("/market");
+        int chat = namespaceIds.intern("/chat");
+
+        assertEquals(SocketIONamespaceIds.DEFAULT, namespaceIds.intern("/"));
+        assertEquals(market, namespaceIds.intern("/market"));
+        assertEquals("/chat", namespaceIds.name(chat));
+
+        assertEquals(market, lookup("42/market,[\"quote\",{}]"));
+        assertEquals(chat, lookup("40/chat?token=abc"));
+        assertEquals(SocketIONamespaceIds.DEFAULT, lookup("42[\"quote\",{}]"));
+        assertEquals(SocketIONamespaceIds.UNKNOWN, lookup("42/news,[\"quote\",{}]"));
+    }
+
+    @Test
+    public void stopsInterningAtCapacity() {
+
+        namespaceIds.intern("/a");
+        namespaceIds.intern("/b");
+
+        assertEquals(SocketIONamespaceIds.UNKNOWN, namespaceIds.intern("/c"));
+        assertEquals(3, namespaceIds.size());
+    }
+}
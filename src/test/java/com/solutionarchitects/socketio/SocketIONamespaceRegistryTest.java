@@ -0,0 +1,119 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIONamespaceRegistryTest {
+
+    private final SocketIOConfig socketIOConfig = new SocketIOConfig();
+
+    private final SocketIONamespaceRegistry registry = new SocketIONamespaceRegistry();
+
+    private final SocketIOWebSocketProtocolHandler protocolHandler = new SocketIOWebSocketProtocolHandler();
+
+    @Before
+    public void setup() {
+
+        socketIOConfig.pingInterval = 25000;
+        socketIOConfig.pingTimeout = 60000;
+        socketIOConfig.outboundQueueCapacity = 1024;
+        socketIOConfig.outboundBatchSize = 64;
+        socketIOConfig.outboundOverflowPolicy = SocketIOOverflowPolicy.DropOldest;
+        socketIOConfig.timerTickMillis = 100;
+        socketIOConfig.inboundMaxMessageSize = 1 << 20;
+        socketIOConfig.namespaces = new String[]{"/", "/market"};
+        socketIOConfig.namespaceMaxConnections = 1;
+
+        ReflectionTestUtils.setField(registry, "socketIOConfig", socketIOConfig);
+        ReflectionTestUtils.invokeMethod(registry, "afterInit");
+
+        ReflectionTestUtils.setField(protocolHandler, "socketIOConfig", socketIOConfig);
+        ReflectionTestUtils.setField(protocolHandler, "socketIORooms", new SocketIORooms());
+        ReflectionTestUtils.setField(protocolHandler, "socketIOPayloadBinder", new SocketIOPayloadBinder());
+        ReflectionTestUtils.setField(protocolHandler, "socketIONamespaceRegistry", registry);
+        ReflectionTestUtils.setField(protocolHandler, "socketIOMetrics", new SocketIOMetrics());
+        ReflectionTestUtils.invokeMethod(protocolHandler, "afterInit");
+        ReflectionTestUtils.setField(protocolHandler, "outboundExecutor", MoreExecutors.newDirectExecutorService());
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(protocolHandler, "beforeDestroy");
+    }
+
+    private StubWebSocketSession connect(String id) throws Exception {
+        StubWebSocketSession session = new StubWebSocketSession(id, true);
+        protocolHandler.afterConnectionEstablished(session);
+        session.getTextPayloads().clear();
+        return session;
+    }
+
+    private static String last(StubWebSocketSession session) {
+        return session.getTextPayloads().get(session.getTextPayloads().size() - 1);
+    }
+
+    @Test
+    public void rejectsUnknownNamespaceWithoutInterningIt() throws Exception {
+
+        StubWebSocketSession session = connect("s1");
+
+        protocolHandler.handleMessage(session, new TextMessage("40/invented"));
+
+        assertEquals("44/invented,\"Invalid namespace\"", last(session));
+        assertEquals(0, protocolHandler.getConnectionHandlerCount());
+        assertNull(registry.get("/invented"));
+        assertEquals(2, registry.getNamespaces().size());
+    }
+
+    @Test
+    public void enforcesConnectionLimitAndReleasesOnClose() throws Exception {
+
+        StubWebSocketSession first = connect("s1");
+        protocolHandler.handleMessage(first, new TextMessage("40/market"));
+        assertEquals("40/market", last(first));
+
+        // a repeated CONNECT keeps the slot
+        protocolHandler.handleMessage(first, new TextMessage("40/market"));
+        assertEquals("40/market", last(first));
+
+        StubWebSocketSession second = connect("s2");
+        protocolHandler.handleMessage(second, new TextMessage("40/market"));
+        assertEquals("44/market,\"Namespace full\"", last(second));
+
+        protocolHandler.afterConnectionClosed(first, CloseStatus.NORMAL);
+        assertEquals(0, registry.get("/market").getConnectionCount());
+
+        protocolHandler.handleMessage(second, new TextMessage("40/market"));
+        assertEquals("40/market", last(second));
+        assertEquals(1, registry.get("/market").getConnectionCount());
+    }
+
+    @Test
+    public void passesConnectAuthDataToAuthorizer() throws Exception {
+
+        SocketIONamespace market = registry.get("/market");
+        market.setAuthorizer((session, nameSpace, auth) -> auth instanceof Map && "secret".equals(((Map<?, ?>) auth).get("token")));
+
+        StubWebSocketSession session = connect("s1");
+
+        protocolHandler.handleMessage(session, new TextMessage("40/market,{\"token\":\"guess\"}"));
+        assertEquals("44/market,\"Not authorized\"", last(session));
+
+        protocolHandler.handleMessage(session, new TextMessage("40/market,{\"token\":\"secret\"}"));
+        assertEquals("40/market", last(session));
+        assertNotNull(SocketIOSession.of(session).getHandler(market.getId()));
+        assertTrue(market.getConnectionCount() == 1);
+    }
+}
@@ -0,0 +1,128 @@
+package com.solutionarchitects.socketio;
+
+import org.junit.Test;
+import org.springframework.web.socket.CloseStatus;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOOutboundQueueTest {
+
+    /** Holds drain tasks until the test runs them, so frames pile up like on a slow socket. */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    };
+
+    private final SocketIOOutboundMetrics metrics = new SocketIOOutboundMetrics();
+
+    private final StubWebSocketSession session = new StubWebSocketSession("s1");
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void drainsInBatchesInOrder() {
+
+        SocketIOOutboundQueue queue = new SocketIOOutboundQueue(session, executor, 16, 2, SocketIOOverflowPolicy.DropOldest, metrics);
+
+        for (int i = 0; i < 5; i++) {
+            queue.offer(SocketIOFrame.of("3" + i));
+        }
+
+        assertEquals(5, queue.getDepth());
+        assertEquals(1, tasks.size());
+
+        runTasks();
+
+        assertEquals(Arrays.asList("30", "31", "32", "33", "34"), session.getTextPayloads());
+        assertEquals(0, queue.getDepth());
+        assertEquals(3, metrics.getBatches());
+        assertEquals(0, metrics.getQueueDepth());
+    }
+
+    @Test
+    public void dropOldestKeepsNewestFrames() {
+
+        SocketIOOutboundQueue queue = new SocketIOOutboundQueue(session, executor, 2, 64, SocketIOOverflowPolicy.DropOldest, metrics);
+
+        queue.offer(SocketIOFrame.event("/market", "quote", 0));
+        queue.offer(SocketIOFrame.event("/market", "quote", 1));
+        queue.offer(SocketIOFrame.event("/market", "quote", 2));
+
+        runTasks();
+
+        assertEquals(Arrays.asList("42/market,[\"quote\",1]", "42/market,[\"quote\",2]"), session.getTextPayloads());
+        assertEquals(1, metrics.getDropped());
+    }
+
+    @Test
+    public void dropOldestNeverDropsControlFrames() {
+
+        SocketIOOutboundQueue queue = new SocketIOOutboundQueue(session, executor, 2, 64, SocketIOOverflowPolicy.DropOldest, metrics);
+
+        queue.offer(SocketIOFrame.of("40/market"));
+        queue.offer(SocketIOFrame.event("/market", "quote", 0));
+        queue.offer(SocketIOFrame.event("/market", "quote", 1));
+
+        runTasks();
+
+        assertEquals(Arrays.asList("40/market", "42/market,[\"quote\",1]"), session.getTextPayloads());
+        assertEquals(1, metrics.getDropped());
+
+        queue.offer(SocketIOFrame.of("3"));
+        queue.offer(SocketIOFrame.of("3"));
+        assertFalse(queue.offer(SocketIOFrame.event("/market", "quote", 2)));
+
+        runTasks();
+
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, session.getCloseStatus());
+        assertEquals(1, metrics.getDisconnected());
+    }
+
+    @Test
+    public void conflateReplacesPendingEventOfSameName() {
+
+        SocketIOOutboundQueue queue = new SocketIOOutboundQueue(session, executor, 2, 64, SocketIOOverflowPolicy.Conflate, metrics);
+
+        queue.offer(SocketIOFrame.event("/market", "quote", 1));
+        queue.offer(SocketIOFrame.event("/market", "news", "a"));
+        queue.offer(SocketIOFrame.event("/market", "quote", 2));
+
+        runTasks();
+
+        assertEquals(Arrays.asList("42/market,[\"news\",\"a\"]", "42/market,[\"quote\",2]"), session.getTextPayloads());
+        assertEquals(1, metrics.getConflated());
+        assertEquals(0, metrics.getDropped());
+    }
+
+    @Test
+    public void disconnectClosesSlowConsumer() {
+
+        SocketIOOutboundQueue queue = new SocketIOOutboundQueue(session, executor, 1, 64, SocketIOOverflowPolicy.Disconnect, metrics);
+
+        assertTrue(queue.offer(SocketIOFrame.of("30")));
+        assertFalse(queue.offer(SocketIOFrame.of("31")));
+        assertTrue(queue.isClosed());
+
+        runTasks();
+
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, session.getCloseStatus());
+        assertTrue(session.getTextPayloads().isEmpty());
+        assertEquals(1, metrics.getDisconnected());
+    }
+}
@@ -0,0 +1,78 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOPartialMessageTest {
+
+    private final StubWebSocketSession webSocketSession = new StubWebSocketSession("s1");
+
+    private final SocketIOOutboundQueue queue = new SocketIOOutboundQueue(webSocketSession, MoreExecutors.directExecutor(),
+            1024, 64, SocketIOOverflowPolicy.DropOldest, new SocketIOOutboundMetrics());
+
+    private final SocketIOSession session = new SocketIOSession("s1", webSocketSession, queue, null);
+
+    private final List<Object> received = new ArrayList<>();
+
+    private final SocketIOConnectionHandler handler = new SocketIOConnectionHandler(webSocketSession, queue, new SocketIORooms(), "s1", "/upload") {
+        @Override
+        public void receiveEvent(String eventName, Object payload, SocketIOAckReply ack) {
+            received.add(eventName);
+            received.add(payload);
+            received.add(ack == null ? null : ack.getAckId());
+        }
+    };
+
+    private final SocketIOPartialMessage.Streams streams = new SocketIOPartialMessage.Streams() {
+        @Override
+        public boolean isStreamed(SocketIOSession session, SocketIOPacket header) {
+            return header.namespaceEquals("/upload");
+        }
+
+        @Override
+        public SocketIOEventStream open(SocketIOSession session, SocketIOPacket header, String eventName) {
+            SocketIOAckReply ack = header.hasAckId() ? new SocketIOAckReply(queue, header.namespace(), header.getAckId()) : null;
+            return handler.openEventStream(eventName, ack);
+        }
+    };
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void streamsEventOfStreamedNamespaceAcrossFragments() {
+
+        SocketIOPartialMessage message = new SocketIOPartialMessage(session, streams);
+
+        assertNull(message.append("42/upl", false));
+        assertNull(message.append("oad,5[\"up", false));
+        assertNull(message.append("load\",{\"rows\":[1,2.5", false));
+        assertNull(message.append("],\"name\":\"a\\u0041\",\"ok\":tr", false));
+        assertNull(message.append("ue}]", true));
+
+        assertEquals("upload", received.get(0));
+        Map<String, Object> payload = (Map<String, Object>) received.get(1);
+        assertEquals(Arrays.<Object>asList(1.0, 2.5), payload.get("rows"));
+        assertEquals("aA", payload.get("name"));
+        assertEquals(Boolean.TRUE, payload.get("ok"));
+        assertEquals(5L, received.get(2));
+    }
+
+    @Test
+    public void buffersOtherMessagesUntilTheLastFragment() {
+
+        SocketIOPartialMessage message = new SocketIOPartialMessage(session, streams);
+
+        assertNull(message.append("42/chat,[\"say\",", false));
+        assertEquals("42/chat,[\"say\",\"hi\"]", message.append("\"hi\"]", true));
+        assertTrue(received.isEmpty());
+    }
+}
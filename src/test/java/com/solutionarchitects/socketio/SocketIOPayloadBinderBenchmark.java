@@ -0,0 +1,86 @@
+package com.solutionarchitects.socketio;
+
+import com.google.gson.Gson;
+import com.google.gson.internal.StringMap;
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import com.solutionarchitects.socketio.protocol.SocketIOPacketCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding the data of an inbound event with the previous Gson StringMap path of the protocol handler.
+ * <p>
+ * Run the {@link #main(String[])} method (or {@code org.openjdk.jmh.Main SocketIOPayloadBinderBenchmark -prof gc})
+ * from the test classpath; the GC profiler reports {@code gc.alloc.rate.norm}, the bytes allocated per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocketIOPayloadBinderBenchmark {
+
+    public static class Quote {
+        public String Symbol;
+        public double Bid;
+        public double Ask;
+    }
+
+    private final String eventFrame = "42/market,17[\"quote\",{\"Symbol\":\"AAPL\",\"Bid\":100,\"Ask\":102}]";
+
+    private final SocketIOPacket packet = new SocketIOPacket();
+
+    private final SocketIOPayloadBinder typedBinder = new SocketIOPayloadBinder();
+
+    private final SocketIOPayloadBinder untypedBinder = new SocketIOPayloadBinder();
+
+    @Setup
+    public void setup() {
+        SocketIOPacketCodec.decode(eventFrame, packet);
+        typedBinder.bind("/market", "quote", Quote.class);
+    }
+
+    @Benchmark
+    public void decodeLegacy(Blackhole bh) {
+
+        ArrayList<?> arrayList = new Gson().fromJson(packet.payload(), ArrayList.class);
+
+        bh.consume((String) arrayList.get(0));
+        bh.consume((StringMap) arrayList.get(1));
+    }
+
+    @Benchmark
+    public SocketIOInboundEvent decodeTyped() throws IOException {
+        return typedBinder.decodeEvent(packet, "/market");
+    }
+
+    @Benchmark
+    public SocketIOInboundEvent decodeUntyped() throws IOException {
+        return untypedBinder.decodeEvent(packet, "/market");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SocketIOPayloadBinderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.solutionarchitects.socketio.protocol.SocketIOJsonStreamParser;
+import com.solutionarchitects.socketio.protocol.SocketIOPacket;
+import com.solutionarchitects.socketio.protocol.SocketIOPacketCodec;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOPayloadBinderTest {
+
+    public static class Quote {
+        public String symbol;
+        public double bid;
+        public List<Integer> sizes;
+    }
+
+    private final SocketIOPayloadBinder binder = new SocketIOPayloadBinder();
+
+    private final SocketIOPacket packet = new SocketIOPacket();
+
+    @Test
+    public void bindsDeclaredPayloadTypeIgnoringUnknownFields() throws Exception {
+
+        binder.bind("/market", "quote", Quote.class);
+
+        SocketIOPacketCodec.decode("42/market,3[\"quote\",{\"symbol\":\"AAPL\",\"bid\":100.5,\"venue\":\"X\",\"sizes\":[1,2]},\"extra\"]", packet);
+
+        SocketIOInboundEvent event = binder.decodeEvent(packet, packet.namespace());
+
+        assertEquals("quote", event.getEventName());
+        Quote quote = (Quote) event.getPayload();
+        assertEquals("AAPL", quote.symbol);
+        assertEquals(100.5, quote.bid, 0);
+        assertEquals(Arrays.asList(1, 2), quote.sizes);
+    }
+
+    @Test
+    public void bindsUndeclaredPayloadsUntyped() throws Exception {
+
+        binder.bind("/market", "quote", Quote.class);
+
+        SocketIOPacketCodec.decode("42[\"quote\",{\"symbol\":\"AAPL\"}]", packet);
+        assertTrue(binder.decodeEvent(packet, packet.namespace()).getPayload() instanceof Map);
+
+        SocketIOPacketCodec.decode("42/market,[\"chat\",\"hello\"]", packet);
+        assertEquals("hello", binder.decodeEvent(packet, packet.namespace()).getPayload());
+
+        SocketIOPacketCodec.decode("42/market,[\"ping\"]", packet);
+        assertNull(binder.decodeEvent(packet, packet.namespace()).getPayload());
+
+        SocketIOPacketCodec.decode("42/market,{\"quote\":1}", packet);
+        assertNull(binder.decodeEvent(packet, packet.namespace()));
+    }
+
+    @Test
+    public void bindsAckArgumentsLikeUntypedEventData() throws Exception {
+
+        SocketIOPacketCodec.decode("43/market,7[1,{\"bid\":100},\"ok\"]", packet);
+
+        List<Object> args = binder.decodeArguments(packet);
+
+        assertEquals(3, args.size());
+        assertEquals(1, args.get(0));
+        assertEquals(100, ((Map<?, ?>) args.get(1)).get("bid"));
+        assertEquals("ok", args.get(2));
+
+        SocketIOPacketCodec.decode("43/market,7", packet);
+        assertTrue(binder.decodeArguments(packet).isEmpty());
+    }
+
+    @Test
+    public void bindsStreamedEventOnceComplete() {
+
+        StubWebSocketSession webSocketSession = new StubWebSocketSession("s1");
+        SocketIOOutboundQueue queue = new SocketIOOutboundQueue(webSocketSession, MoreExecutors.directExecutor(),
+                1024, 64, SocketIOOverflowPolicy.DropOldest, new SocketIOOutboundMetrics());
+
+        List<Object> received = new ArrayList<>();
+
+        SocketIOConnectionHandler handler = new SocketIOConnectionHandler(webSocketSession, queue, new SocketIORooms(), "s1", "/market") {
+            @Override
+            public void receiveEvent(String eventName, Object payload, SocketIOAckReply ack) {
+                received.add(eventName);
+                received.add(payload);
+            }
+        };
+
+        binder.bind("/market", "quote", Quote.class);
+
+        SocketIOEventStream stream = binder.bindEventStream(handler, "quote", null);
+
+        // the args of ["quote",{...},"extra"] as the partial message hands them on
+        SocketIOJsonStreamParser parser = new SocketIOJsonStreamParser(stream);
+        parser.feed("{\"symbol\":\"MSFT\",\"si");
+        parser.feed("zes\":[3],\"bid\":7}");
+        parser.end();
+        stream.value("extra");
+        stream.end();
+
+        assertEquals("quote", received.get(0));
+        Quote quote = (Quote) received.get(1);
+        assertEquals("MSFT", quote.symbol);
+        assertEquals(7, quote.bid, 0);
+        assertEquals(Arrays.asList(3), quote.sizes);
+    }
+}
@@ -0,0 +1,259 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOPollingTest {
+
+    private static final Pattern SID = Pattern.compile("\"sid\":\"([^\"]+)\"");
+
+    private final SocketIOConfig socketIOConfig = new SocketIOConfig();
+
+    private final SocketIONamespaceRegistry registry = new SocketIONamespaceRegistry();
+
+    private final SocketIOWebSocketProtocolHandler protocolHandler = new SocketIOWebSocketProtocolHandler();
+
+    private final SocketIOMetrics socketIOMetrics = new SocketIOMetrics();
+
+    private final SocketIOCompressionPolicy compressionPolicy = new SocketIOCompressionPolicy();
+
+    private SocketIOPollingFilter filter;
+
+    @Before
+    public void setup() {
+
+        socketIOConfig.pingInterval = 25000;
+        socketIOConfig.pingTimeout = 60000;
+        socketIOConfig.outboundQueueCapacity = 1024;
+        socketIOConfig.outboundBatchSize = 64;
+        socketIOConfig.outboundOverflowPolicy = SocketIOOverflowPolicy.DropOldest;
+        socketIOConfig.timerTickMillis = 100;
+        socketIOConfig.inboundMaxMessageSize = 1 << 20;
+        socketIOConfig.namespaces = new String[]{"/"};
+
+        ReflectionTestUtils.setField(registry, "socketIOConfig", socketIOConfig);
+        ReflectionTestUtils.invokeMethod(registry, "afterInit");
+
+        ReflectionTestUtils.setField(protocolHandler, "socketIOConfig", socketIOConfig);
+        ReflectionTestUtils.setField(protocolHandler, "socketIORooms", new SocketIORooms());
+        ReflectionTestUtils.setField(protocolHandler, "socketIOPayloadBinder", new SocketIOPayloadBinder());
+        ReflectionTestUtils.setField(protocolHandler, "socketIONamespaceRegistry", registry);
+        ReflectionTestUtils.setField(protocolHandler, "socketIOMetrics", socketIOMetrics);
+        ReflectionTestUtils.invokeMethod(protocolHandler, "afterInit");
+        ReflectionTestUtils.setField(protocolHandler, "outboundExecutor", MoreExecutors.newDirectExecutorService());
+
+        socketIOConfig.compressionThreshold = 512;
+        socketIOConfig.compressionLevel = -1;
+        socketIOConfig.compressionExcludedEvents = new String[]{"tick"};
+
+        ReflectionTestUtils.setField(compressionPolicy, "socketIOConfig", socketIOConfig);
+        ReflectionTestUtils.setField(compressionPolicy, "socketIOMetrics", socketIOMetrics);
+        ReflectionTestUtils.invokeMethod(compressionPolicy, "afterInit");
+
+        filter = new SocketIOPollingFilter(protocolHandler, socketIOConfig, compressionPolicy);
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(protocolHandler, "beforeDestroy");
+    }
+
+    private MockHttpServletRequest request(String method, String sid) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/socket.io/");
+        request.setParameter("EIO", "3");
+        request.setParameter("transport", "polling");
+        if (sid != null) {
+            request.setParameter("sid", sid);
+        }
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private MockHttpServletResponse poll(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private void post(String sid, String payload) throws Exception {
+        MockHttpServletRequest request = request("POST", sid);
+        request.setContentType("text/plain;charset=UTF-8");
+        request.setContent(payload.getBytes(StandardCharsets.UTF_8));
+        assertEquals("ok", poll(request).getContentAsString());
+    }
+
+    private String handshake() throws Exception {
+        String body = poll(request("GET", null)).getContentAsString();
+        assertTrue(body, body.endsWith("2:40"));
+        assertTrue(body, body.contains("\"upgrades\":[\"websocket\"]"));
+        Matcher matcher = SID.matcher(body);
+        assertTrue(matcher.find());
+        return matcher.group(1);
+    }
+
+    @Test
+    public void batchesPendingPacketsIntoParkedPolls() throws Exception {
+
+        String sid = handshake();
+
+        MockHttpServletRequest parked = request("GET", sid);
+        MockHttpServletResponse response = poll(parked);
+
+        assertTrue(parked.isAsyncStarted());
+        assertEquals("", response.getContentAsString());
+        assertEquals(400, poll(request("GET", sid)).getStatus());
+
+        post(sid, "1:2");
+
+        assertFalse(parked.isAsyncStarted());
+        assertEquals("1:3", response.getContentAsString());
+
+        assertEquals(400, poll(request("GET", "unknown")).getStatus());
+    }
+
+    @Test
+    public void upgradesToWebSocketAfterTheProbe() throws Exception {
+
+        String sid = handshake();
+
+        MockHttpServletRequest parked = request("GET", sid);
+        MockHttpServletResponse response = poll(parked);
+
+        StubWebSocketSession webSocket = new StubWebSocketSession("ws") {
+            @Override
+            public URI getUri() {
+                return URI.create("ws://localhost/socket.io/?EIO=3&transport=websocket&sid=" + sid);
+            }
+        };
+
+        protocolHandler.afterConnectionEstablished(webSocket);
+        protocolHandler.handleMessage(webSocket, new TextMessage("2probe"));
+
+        // the client pauses polling and waits for the parked poll before it upgrades
+        assertEquals("3probe", webSocket.getTextPayloads().get(0));
+        assertFalse(parked.isAsyncStarted());
+        assertEquals("1:6", response.getContentAsString());
+
+        MockHttpServletRequest late = request("GET", sid);
+        assertEquals("1:6", poll(late).getContentAsString());
+        assertFalse(late.isAsyncStarted());
+
+        protocolHandler.handleMessage(webSocket, new TextMessage("5"));
+
+        protocolHandler.handleMessage(webSocket, new TextMessage("2"));
+
+        assertEquals("3", webSocket.getTextPayloads().get(1));
+        assertEquals(1, protocolHandler.getSessionCount());
+        assertEquals(400, poll(request("GET", sid)).getStatus());
+    }
+
+    @Test
+    public void deflatesResponsesTheCompressionPolicySelects() throws Exception {
+
+        String sid = handshake();
+
+        post(sid, "2:40");
+
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            rows.append("row ").append(i).append(' ');
+        }
+
+        protocolHandler.broadcast("", "snapshot", rows.toString());
+
+        MockHttpServletRequest request = request("GET", sid);
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        MockHttpServletResponse response = poll(request);
+
+        assertEquals("deflate", response.getHeader("Content-Encoding"));
+
+        byte[] compressed = response.getContentAsByteArray();
+        String body = new String(StreamUtils.copyToByteArray(new InflaterInputStream(new ByteArrayInputStream(compressed))), StandardCharsets.UTF_8);
+
+        assertTrue(body, body.contains("[\"snapshot\",\"row 0 row 1"));
+        assertTrue(compressed.length < body.length());
+
+        protocolHandler.broadcast("", "tick", rows.toString());
+
+        request = request("GET", sid);
+        request.addHeader("Accept-Encoding", "deflate");
+        response = poll(request);
+
+        assertEquals(null, response.getHeader("Content-Encoding"));
+        assertTrue(response.getContentAsString().contains("[\"tick\""));
+
+        assertEquals(1, socketIOMetrics.getCompressionMetrics().getCompressed());
+        assertTrue(socketIOMetrics.getCompressionMetrics().getRatio() < 1);
+    }
+
+    @Test
+    public void framesOfAClientThatStopsPollingStayUnderTheOverflowPolicy() throws Exception {
+
+        socketIOConfig.outboundQueueCapacity = 4;
+
+        String sid = handshake();
+
+        post(sid, "2:40");
+
+        for (int i = 0; i < 100; i++) {
+            protocolHandler.broadcast("", "tick", i);
+        }
+
+        SocketIOOutboundQueue outboundQueue = protocolHandler.getSession(sid).getOutboundQueue();
+
+        assertEquals(4, outboundQueue.getDepth());
+        // the connect answer is pending too and may not be dropped
+        assertEquals(97, socketIOMetrics.getOutboundMetrics().getDropped());
+
+        String body = poll(request("GET", sid)).getContentAsString();
+
+        assertTrue(body, body.contains("[\"tick\",99]"));
+        assertFalse(body, body.contains("[\"tick\",95]"));
+        assertEquals(0, outboundQueue.getDepth());
+    }
+
+    @Test
+    public void closePacketReleasesThePollingSession() throws Exception {
+
+        String sid = handshake();
+
+        post(sid, "2:40");
+
+        assertEquals("2:40", poll(request("GET", sid)).getContentAsString());
+
+        MockHttpServletRequest parked = request("GET", sid);
+        MockHttpServletResponse response = poll(parked);
+
+        assertTrue(parked.isAsyncStarted());
+        assertEquals(1, protocolHandler.getSessionCount());
+        assertEquals(1, protocolHandler.getConnectionHandlerCount());
+
+        post(sid, "1:1");
+
+        assertEquals(0, protocolHandler.getSessionCount());
+        assertEquals(0, protocolHandler.getSuspendedSessionCount());
+        assertEquals(0, registry.get("/").getConnectionCount());
+        assertFalse(parked.isAsyncStarted());
+        assertEquals("1:1", response.getContentAsString());
+        assertEquals(400, poll(request("GET", sid)).getStatus());
+    }
+}
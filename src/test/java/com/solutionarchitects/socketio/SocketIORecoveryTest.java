@@ -0,0 +1,230 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.net.URI;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIORecoveryTest {
+
+    private static final Pattern SID = Pattern.compile("\"sid\":\"([^\"]+)\"");
+
+    private static final Pattern PID = Pattern.compile("\"pid\":\"([^\"]+)\"");
+
+    private static final Pattern OFFSET = Pattern.compile(",\"(\\d+)\"]$");
+
+    private final SocketIOConfig socketIOConfig = new SocketIOConfig();
+
+    private final SocketIORooms rooms = new SocketIORooms();
+
+    private final SocketIOMetrics socketIOMetrics = new SocketIOMetrics();
+
+    private final SocketIONamespaceRegistry registry = new SocketIONamespaceRegistry();
+
+    private final SocketIOWebSocketProtocolHandler protocolHandler = new SocketIOWebSocketProtocolHandler();
+
+    @Before
+    public void setup() {
+
+        socketIOConfig.pingInterval = 25000;
+        socketIOConfig.pingTimeout = 60000;
+        socketIOConfig.outboundQueueCapacity = 1024;
+        socketIOConfig.outboundBatchSize = 64;
+        socketIOConfig.outboundOverflowPolicy = SocketIOOverflowPolicy.DropOldest;
+        socketIOConfig.timerTickMillis = 100;
+        socketIOConfig.inboundMaxMessageSize = 1 << 20;
+        socketIOConfig.namespaces = new String[]{"/", "/market"};
+        socketIOConfig.recoveryEnabled = true;
+        socketIOConfig.recoveryWindowMillis = 60000;
+        socketIOConfig.recoveryBufferSize = 4;
+
+        ReflectionTestUtils.setField(registry, "socketIOConfig", socketIOConfig);
+        ReflectionTestUtils.invokeMethod(registry, "afterInit");
+
+        ReflectionTestUtils.setField(protocolHandler, "socketIOConfig", socketIOConfig);
+        ReflectionTestUtils.setField(protocolHandler, "socketIORooms", rooms);
+        ReflectionTestUtils.setField(protocolHandler, "socketIOPayloadBinder", new SocketIOPayloadBinder());
+        ReflectionTestUtils.setField(protocolHandler, "socketIONamespaceRegistry", registry);
+        ReflectionTestUtils.setField(protocolHandler, "socketIOMetrics", socketIOMetrics);
+        ReflectionTestUtils.invokeMethod(protocolHandler, "afterInit");
+        ReflectionTestUtils.setField(protocolHandler, "outboundExecutor", MoreExecutors.newDirectExecutorService());
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(protocolHandler, "beforeDestroy");
+        SocketIOFrame.setOffsets(false);
+    }
+
+    /**
+     * Connects to /market and joins the AAPL room.
+     *
+     * @return the session id
+     */
+    private String connect(StubWebSocketSession ws) throws Exception {
+
+        protocolHandler.afterConnectionEstablished(ws);
+        protocolHandler.handleMessage(ws, new TextMessage("40/market,"));
+
+        SocketIOSession.of(ws).getHandler(registry.lookup("/market")).join("AAPL");
+
+        Matcher sid = SID.matcher(ws.getTextPayloads().get(0));
+        assertTrue(sid.find());
+        return sid.group(1);
+    }
+
+    /**
+     * @return the private recovery id the connection got in its Open packet
+     */
+    private static String pid(StubWebSocketSession ws) {
+        Matcher pid = PID.matcher(ws.getTextPayloads().get(0));
+        assertTrue(pid.find());
+        return pid.group(1);
+    }
+
+    private static String lastOffset(StubWebSocketSession ws) {
+        List<String> payloads = ws.getTextPayloads();
+        Matcher offset = OFFSET.matcher(payloads.get(payloads.size() - 1));
+        assertTrue(offset.find());
+        return offset.group(1);
+    }
+
+    private static StubWebSocketSession reconnect(String id, String sid, String pid, String offset) {
+        StubWebSocketSession ws = new StubWebSocketSession(id);
+        ws.setUri(URI.create("ws://localhost/socket.io/?EIO=3&transport=websocket&recover=" + sid + "&pid=" + pid + "&offset=" + offset));
+        return ws;
+    }
+
+    @Test
+    public void resumesWithRoomsAndOnlyTheMissedEvents() throws Exception {
+
+        StubWebSocketSession ws1 = new StubWebSocketSession("ws1");
+        String sid = connect(ws1);
+
+        assertEquals(1, rooms.emitToRoom("/market", "AAPL", "quote", 1));
+        String offset = lastOffset(ws1);
+
+        protocolHandler.afterConnectionClosed(ws1, CloseStatus.GOING_AWAY);
+
+        assertEquals(0, protocolHandler.getSessionCount());
+        assertEquals(1, protocolHandler.getSuspendedSessionCount());
+
+        // the suspended session stays in its room and records what it misses
+        assertEquals(1, rooms.getRoom("/market", "AAPL").snapshot().length);
+        rooms.emitToRoom("/market", "AAPL", "quote", 2);
+        rooms.emit("/market", "quote", 3);
+
+        StubWebSocketSession ws2 = reconnect("ws2", sid, pid(ws1), offset);
+        protocolHandler.afterConnectionEstablished(ws2);
+
+        List<String> payloads = ws2.getTextPayloads();
+        assertEquals(4, payloads.size());
+        assertTrue(payloads.get(0).contains("\"sid\":\"" + sid + "\""));
+        assertEquals("40", payloads.get(1));
+        assertTrue(payloads.get(2).startsWith("42/market,[\"quote\",2,"));
+        assertTrue(payloads.get(3).startsWith("42/market,[\"quote\",3,"));
+
+        protocolHandler.handleMessage(ws2, new TextMessage("40/market,"));
+        assertEquals("40/market", ws2.getTextPayloads().get(4));
+
+        assertEquals(1, rooms.emitToRoom("/market", "AAPL", "quote", 4));
+        assertEquals(6, ws2.getTextPayloads().size());
+
+        // the dropped connection no longer reaches the session
+        protocolHandler.afterConnectionClosed(ws1, CloseStatus.GOING_AWAY);
+        assertEquals(1, protocolHandler.getSessionCount());
+        assertEquals(0, protocolHandler.getSuspendedSessionCount());
+
+        assertEquals(1, socketIOMetrics.getSessionsRecovered());
+        assertEquals(2, socketIOMetrics.getEventsReplayed());
+    }
+
+    @Test
+    public void startsOverWhenTheMissedEventsAreNoLongerRetained() throws Exception {
+
+        StubWebSocketSession ws1 = new StubWebSocketSession("ws1");
+        String sid = connect(ws1);
+
+        rooms.emitToRoom("/market", "AAPL", "quote", 0);
+        String offset = lastOffset(ws1);
+
+        protocolHandler.afterConnectionClosed(ws1, CloseStatus.GOING_AWAY);
+
+        for (int i = 1; i <= socketIOConfig.recoveryBufferSize; i++) {
+            rooms.emitToRoom("/market", "AAPL", "quote", i);
+        }
+
+        StubWebSocketSession ws2 = reconnect("ws2", sid, pid(ws1), offset);
+        protocolHandler.afterConnectionEstablished(ws2);
+
+        Matcher newSid = SID.matcher(ws2.getTextPayloads().get(0));
+        assertTrue(newSid.find());
+        assertNotEquals(sid, newSid.group(1));
+        assertEquals(2, ws2.getTextPayloads().size());
+
+        assertNull(rooms.getRoom("/market", "AAPL"));
+        assertEquals(0, protocolHandler.getSuspendedSessionCount());
+        assertEquals(1, socketIOMetrics.getRecoveryFailed());
+    }
+
+    @Test
+    public void doesNotTakeOverAConnectedSession() throws Exception {
+
+        StubWebSocketSession ws1 = new StubWebSocketSession("ws1");
+        String sid = connect(ws1);
+
+        rooms.emitToRoom("/market", "AAPL", "quote", 1);
+
+        StubWebSocketSession ws2 = reconnect("ws2", sid, pid(ws1), lastOffset(ws1));
+        protocolHandler.afterConnectionEstablished(ws2);
+
+        assertNull(ws1.getCloseStatus());
+        assertFalse(ws2.getTextPayloads().get(0).contains("\"sid\":\"" + sid + "\""));
+
+        assertEquals(1, rooms.emitToRoom("/market", "AAPL", "quote", 2));
+        assertEquals(2, protocolHandler.getSessionCount());
+        assertEquals(1, socketIOMetrics.getRecoveryFailed());
+    }
+
+    @Test
+    public void requiresTheRecoveryIdNotJustTheSessionId() throws Exception {
+
+        StubWebSocketSession ws1 = new StubWebSocketSession("ws1");
+        String sid = connect(ws1);
+
+        rooms.emitToRoom("/market", "AAPL", "quote", 1);
+        String offset = lastOffset(ws1);
+
+        assertFalse(ws1.getTextPayloads().get(0).contains("\"pid\":\"" + sid + "\""));
+
+        protocolHandler.afterConnectionClosed(ws1, CloseStatus.GOING_AWAY);
+
+        StubWebSocketSession ws2 = reconnect("ws2", sid, sid, offset);
+        protocolHandler.afterConnectionEstablished(ws2);
+
+        assertFalse(ws2.getTextPayloads().get(0).contains("\"sid\":\"" + sid + "\""));
+        assertEquals(1, protocolHandler.getSuspendedSessionCount());
+        assertEquals(1, socketIOMetrics.getRecoveryFailed());
+
+        // the owner can still resume it
+        StubWebSocketSession ws3 = reconnect("ws3", sid, pid(ws1), offset);
+        protocolHandler.afterConnectionEstablished(ws3);
+
+        assertTrue(ws3.getTextPayloads().get(0).contains("\"sid\":\"" + sid + "\""));
+        assertEquals(0, protocolHandler.getSuspendedSessionCount());
+    }
+}
@@ -0,0 +1,111 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SocketIORoomsTest {
+
+    private final SocketIORooms rooms = new SocketIORooms();
+
+    private final SocketIOOutboundMetrics metrics = new SocketIOOutboundMetrics();
+
+    private SocketIOConnectionHandler connect(String id, String nameSpace) {
+        StubWebSocketSession session = new StubWebSocketSession(id);
+        SocketIOOutboundQueue queue = new SocketIOOutboundQueue(session, MoreExecutors.directExecutor(), 16, 16, SocketIOOverflowPolicy.DropOldest, metrics);
+        SocketIOConnectionHandler handler = new SocketIOConnectionHandler(session, queue, rooms, id, nameSpace);
+        rooms.register(handler);
+        return handler;
+    }
+
+    private static int received(SocketIOConnectionHandler handler) {
+        return ((StubWebSocketSession) handler.getWebSocketSession()).getTextPayloads().size();
+    }
+
+    @Test
+    public void emitsToRoomAndToNamespaceExceptRoom() {
+
+        SocketIOConnectionHandler a = connect("a", "/market");
+        SocketIOConnectionHandler b = connect("b", "/market");
+        SocketIOConnectionHandler c = connect("c", "/market");
+        SocketIOConnectionHandler other = connect("d", "/news");
+
+        a.join("AAPL");
+        b.join("AAPL");
+
+        assertEquals(2, rooms.emitToRoom("/market", "AAPL", "quote", 1));
+        assertEquals(1, rooms.emitExceptRoom("/market", "AAPL", "quote", 2));
+        assertEquals(3, rooms.emit("/market", "quote", 3));
+
+        assertEquals(2, received(a));
+        assertEquals(2, received(b));
+        assertEquals(2, received(c));
+        assertEquals(0, received(other));
+    }
+
+    @Test
+    public void emptyRoomsAreRemoved() {
+
+        SocketIOConnectionHandler a = connect("a", "/market");
+        SocketIOConnectionHandler b = connect("b", "/market");
+
+        a.join("AAPL");
+        b.join("AAPL");
+
+        assertEquals(2, rooms.getRoom("/market", "AAPL").snapshot().length);
+
+        a.leave("AAPL");
+
+        assertEquals(1, rooms.getRoom("/market", "AAPL").snapshot().length);
+
+        rooms.unregister(b);
+
+        assertNull(rooms.getRoom("/market", "AAPL"));
+        assertEquals(1, rooms.getNamespace("/market").size());
+    }
+
+    @Test
+    public void joinRacingWithCloseLeavesNoDeadMember() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            for (int i = 0; i < 2000; i++) {
+
+                SocketIOConnectionHandler a = connect("a" + i, "/market");
+                CountDownLatch start = new CountDownLatch(1);
+
+                Future<?> joins = executor.submit(() -> {
+                    start.await();
+                    for (int r = 0; r < 8; r++) {
+                        a.join("room" + r);
+                    }
+                    return null;
+                });
+                Future<?> close = executor.submit(() -> {
+                    start.await();
+                    rooms.unregister(a);
+                    return null;
+                });
+
+                start.countDown();
+                joins.get();
+                close.get();
+
+                for (int r = 0; r < 8; r++) {
+                    assertNull("room" + r + " after close " + i, rooms.getRoom("/market", "room" + r));
+                }
+                assertEquals(0, rooms.getNamespace("/market").size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.solutionarchitects.socketio;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOSerialExecutorTest {
+
+    /** Holds drain tasks until the test runs them. */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    private final SocketIOHandlerMetrics metrics = new SocketIOHandlerMetrics();
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void runsInOrderAndYieldsAfterABatch() {
+
+        SocketIOSerialExecutor executor = new SocketIOSerialExecutor(tasks::add, metrics);
+        List<Integer> ran = new ArrayList<>();
+
+        for (int i = 0; i < SocketIOSerialExecutor.BATCH_SIZE + 10; i++) {
+            int n = i;
+            executor.execute(() -> ran.add(n));
+        }
+
+        // a single drainer no matter how many events are pending
+        assertEquals(1, tasks.size());
+
+        tasks.poll().run();
+        assertEquals(SocketIOSerialExecutor.BATCH_SIZE, ran.size());
+        assertEquals(1, tasks.size());
+
+        runTasks();
+        for (int i = 0; i < ran.size(); i++) {
+            assertEquals(i, (int) ran.get(i));
+        }
+        assertEquals(SocketIOSerialExecutor.BATCH_SIZE + 10, ran.size());
+        assertTrue(executor.isIdle());
+        assertEquals(SocketIOSerialExecutor.BATCH_SIZE + 10, metrics.getExecuted());
+        assertEquals(0, metrics.getPending());
+    }
+
+    @Test
+    public void runsOnSubmittingThreadWhenRejected() {
+
+        SocketIOSerialExecutor executor = new SocketIOSerialExecutor(command -> {
+            throw new RejectedExecutionException();
+        }, metrics);
+        List<Integer> ran = new ArrayList<>();
+
+        executor.execute(() -> ran.add(1));
+        executor.execute(() -> {
+            throw new IllegalStateException("failed");
+        });
+        executor.execute(() -> ran.add(3));
+
+        assertEquals(2, ran.size());
+        assertEquals(3, metrics.getRejected());
+        assertEquals(1, metrics.getFailed());
+        assertTrue(executor.isIdle());
+    }
+
+    @Test
+    public void keepsOrderUnderConcurrentSubmitters() throws Exception {
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        SocketIOSerialExecutor executor = new SocketIOSerialExecutor(pool, metrics);
+
+        int perThread = 10000;
+        int[] last = new int[4];
+        int[] running = new int[1];
+        boolean[] overlap = new boolean[1];
+        CountDownLatch done = new CountDownLatch(4 * perThread);
+
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                for (int i = 1; i <= perThread; i++) {
+                    int n = i;
+                    executor.execute(() -> {
+                        if (running[0]++ != 0 || last[thread] != n - 1) {
+                            overlap[0] = true;
+                        }
+                        last[thread] = n;
+                        running[0]--;
+                        done.countDown();
+                    });
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // the last task counts down before its execution is recorded
+        while (!executor.isIdle()) {
+            Thread.yield();
+        }
+        pool.shutdown();
+
+        assertTrue(!overlap[0]);
+        assertEquals(4L * perThread, metrics.getExecuted());
+    }
+}
@@ -0,0 +1,117 @@
+package com.solutionarchitects.socketio;
+
+import ch.qos.logback.classic.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection churn soak: each iteration opens 100k sessions, connects them to a namespace, sends an event and closes
+ * them again. After every iteration the heap is collected and printed together with the number of sessions and
+ * handlers still tracked; both counts must be zero and the used heap must stay flat across iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = SocketIOSessionSoakBenchmark.CONNECTIONS)
+@Measurement(iterations = 10, batchSize = SocketIOSessionSoakBenchmark.CONNECTIONS)
+@Fork(1)
+public class SocketIOSessionSoakBenchmark {
+
+    static final int CONNECTIONS = 100_000;
+
+    SocketIOWebSocketProtocolHandler protocolHandler;
+
+    final TextMessage connect = new TextMessage("40/market");
+
+    final TextMessage event = new TextMessage("42/market,[\"quote\",{\"Symbol\":\"AAPL\",\"Bid\":100}]");
+
+    int next;
+
+    @Setup
+    public void setup() {
+
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        SocketIOConfig socketIOConfig = new SocketIOConfig();
+        socketIOConfig.pingInterval = 25000;
+        socketIOConfig.pingTimeout = 60000;
+        socketIOConfig.outboundQueueCapacity = 1024;
+        socketIOConfig.outboundBatchSize = 64;
+        socketIOConfig.outboundOverflowPolicy = SocketIOOverflowPolicy.DropOldest;
+        socketIOConfig.timerTickMillis = 100;
+        socketIOConfig.inboundMaxMessageSize = 1 << 20;
+        socketIOConfig.namespaces = new String[]{"/", "/market"};
+
+        SocketIONamespaceRegistry namespaceRegistry = new SocketIONamespaceRegistry();
+        ReflectionTestUtils.setField(namespaceRegistry, "socketIOConfig", socketIOConfig);
+        ReflectionTestUtils.invokeMethod(namespaceRegistry, "afterInit");
+
+        protocolHandler = new SocketIOWebSocketProtocolHandler();
+        ReflectionTestUtils.setField(protocolHandler, "socketIOConfig", socketIOConfig);
+        ReflectionTestUtils.setField(protocolHandler, "socketIORooms", new SocketIORooms());
+        ReflectionTestUtils.setField(protocolHandler, "socketIOPayloadBinder", new SocketIOPayloadBinder());
+        ReflectionTestUtils.setField(protocolHandler, "socketIONamespaceRegistry", namespaceRegistry);
+        ReflectionTestUtils.setField(protocolHandler, "socketIOMetrics", new SocketIOMetrics());
+        ReflectionTestUtils.invokeMethod(protocolHandler, "afterInit");
+    }
+
+    @TearDown
+    public void tearDown() {
+        ReflectionTestUtils.invokeMethod(protocolHandler, "beforeDestroy");
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+    public void reportHeap() throws InterruptedException {
+
+        // lets the outbound executor finish the last closes before measuring
+        Thread.sleep(200);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+
+        System.out.printf("%n  used heap %,d KB, sessions %d, handlers %d%n",
+                memory.getHeapMemoryUsage().getUsed() / 1024,
+                protocolHandler.getSessionCount(), protocolHandler.getConnectionHandlerCount());
+    }
+
+    @Benchmark
+    public void connectAndClose() throws Exception {
+
+        StubWebSocketSession session = new StubWebSocketSession(Integer.toString(next++), false);
+
+        protocolHandler.afterConnectionEstablished(session);
+        protocolHandler.handleMessage(session, connect);
+        protocolHandler.handleMessage(session, event);
+        protocolHandler.afterConnectionClosed(session, CloseStatus.NORMAL);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SocketIOSessionSoakBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.solutionarchitects.socketio;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.solutionarchitects.common.rx.v2.BehaviorSubject;
+import com.solutionarchitects.common.rx.v2.ReplaySubject;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOTopicTest {
+
+    private final SocketIORooms rooms = new SocketIORooms();
+
+    private final SocketIOOutboundMetrics metrics = new SocketIOOutboundMetrics();
+
+    /** Runs the drainer of a slow connection only when pumped. */
+    private final ArrayDeque<Runnable> socket = new ArrayDeque<>();
+
+    private SocketIOConnectionHandler connect(String id, Executor executor) {
+        StubWebSocketSession session = new StubWebSocketSession(id);
+        SocketIOOutboundQueue queue = new SocketIOOutboundQueue(session, executor, 4, 2, SocketIOOverflowPolicy.DropOldest, metrics);
+        SocketIOConnectionHandler handler = new SocketIOConnectionHandler(session, queue, rooms, id, "/market");
+        rooms.register(handler);
+        return handler;
+    }
+
+    private static List<String> received(SocketIOConnectionHandler handler) {
+        return ((StubWebSocketSession) handler.getWebSocketSession()).getTextPayloads();
+    }
+
+    private void pump() {
+        Runnable task;
+        while ((task = socket.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void fansOutToRoomMembersAndSendsLatestToLateJoiners() {
+
+        SocketIOConnectionHandler a = connect("a", MoreExecutors.directExecutor());
+        SocketIOConnectionHandler b = connect("b", MoreExecutors.directExecutor());
+        SocketIOConnectionHandler c = connect("c", MoreExecutors.directExecutor());
+
+        a.join("AAPL");
+        b.join("AAPL");
+
+        BehaviorSubject<Integer> quotes = BehaviorSubject.create(1);
+
+        SocketIOTopic<Integer> topic = new SocketIOTopic<>(quotes, rooms, "/market", "AAPL", "quote", 1, 1024);
+
+        quotes.onNext(2);
+        quotes.onNext(3);
+
+        assertEquals(3, received(a).size());
+        assertEquals(received(a), received(b));
+        assertEquals(0, received(c).size());
+
+        c.join("AAPL");
+        b.leave("AAPL");
+        quotes.onNext(4);
+
+        assertEquals(2, received(c).size());
+        assertTrue(received(c).get(0).endsWith("[\"quote\",3]"));
+        assertEquals(3, received(b).size());
+        assertEquals(2, topic.getMemberCount());
+
+        topic.unsubscribe();
+        quotes.onNext(5);
+
+        assertEquals(4, received(a).size());
+        assertEquals(0, topic.getMemberCount());
+    }
+
+    @Test
+    public void slowConnectionPullsAtItsOwnPace() {
+
+        SocketIOConnectionHandler fast = connect("fast", MoreExecutors.directExecutor());
+        SocketIOConnectionHandler slow = connect("slow", socket::add);
+
+        ReplaySubject<Integer> ticks = ReplaySubject.create();
+
+        SocketIOTopic<Integer> topic = new SocketIOTopic<>(ticks, rooms, "/market", null, "tick", 1, 1024);
+
+        for (int i = 0; i < 20; i++) {
+            ticks.onNext(i);
+            assertTrue(slow.getOutboundQueue().getDepth() <= 4);
+        }
+
+        assertEquals(20, received(fast).size());
+        assertEquals(0, received(slow).size());
+
+        pump();
+
+        assertEquals(received(fast), received(slow));
+        assertEquals(0, metrics.getDropped());
+        assertEquals(0, topic.getSkipped());
+    }
+
+    @Test
+    public void laggingConnectionSkipsAhead() {
+
+        SocketIOConnectionHandler slow = connect("slow", socket::add);
+
+        ReplaySubject<Integer> ticks = ReplaySubject.create();
+
+        SocketIOTopic<Integer> topic = new SocketIOTopic<>(ticks, rooms, "/market", null, "tick", 1, 8);
+
+        for (int i = 0; i < 100; i++) {
+            ticks.onNext(i);
+        }
+
+        pump();
+
+        List<String> payloads = received(slow);
+
+        assertTrue(topic.getSkipped() > 0);
+        assertTrue(payloads.size() < 100);
+        assertTrue(payloads.get(payloads.size() - 1).endsWith("[\"tick\",99]"));
+        assertEquals(0, metrics.getDropped());
+    }
+}
@@ -0,0 +1,152 @@
+package com.solutionarchitects.socketio;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory WebSocketSession for tests and benchmarks. Messages are counted and, optionally, recorded.
+ */
+public class StubWebSocketSession implements WebSocketSession {
+
+    private final String id;
+    private final boolean record;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final List<WebSocketMessage<?>> messages = Collections.synchronizedList(new ArrayList<WebSocketMessage<?>>());
+    private final AtomicLong sent = new AtomicLong();
+    private volatile CloseStatus closeStatus;
+    private volatile URI uri = URI.create("ws://localhost/socket.io/?EIO=3&transport=websocket");
+
+    public StubWebSocketSession(String id, boolean record) {
+        this.id = id;
+        this.record = record;
+    }
+
+    public StubWebSocketSession(String id) {
+        this(id, true);
+    }
+
+    public List<WebSocketMessage<?>> getMessages() {
+        return messages;
+    }
+
+    public List<String> getTextPayloads() {
+        List<String> payloads = new ArrayList<>();
+        synchronized (messages) {
+            for (WebSocketMessage<?> message : messages) {
+                payloads.add(String.valueOf(message.getPayload()));
+            }
+        }
+        return payloads;
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public CloseStatus getCloseStatus() {
+        return closeStatus;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public URI getUri() {
+        return uri;
+    }
+
+    public void setUri(URI uri) {
+        this.uri = uri;
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return new HttpHeaders();
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return null;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        sent.incrementAndGet();
+        if (record) {
+            messages.add(message);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return closeStatus == null;
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public void close(CloseStatus status) {
+        closeStatus = status;
+    }
+}
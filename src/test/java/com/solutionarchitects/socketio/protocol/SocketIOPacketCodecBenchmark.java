@@ -0,0 +1,190 @@
+package com.solutionarchitects.socketio.protocol;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gson.Gson;
+import com.solutionarchitects.socketio.SocketIOConnectionHandler;
+import com.solutionarchitects.socketio.SocketIONamespaceIds;
+import com.solutionarchitects.socketio.SocketIOOutboundMetrics;
+import com.solutionarchitects.socketio.SocketIOOutboundQueue;
+import com.solutionarchitects.socketio.SocketIOOverflowPolicy;
+import com.solutionarchitects.socketio.SocketIORooms;
+import com.solutionarchitects.socketio.SocketIOSession;
+import com.solutionarchitects.socketio.StubWebSocketSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the frame codec with the previous ad-hoc parsing / String.format path of the protocol handler.
+ * <p>
+ * Both decode benchmarks consume the payload string, as the handler does before binding it.
+ * <p>
+ * Run the {@link #main(String[])} method (or {@code org.openjdk.jmh.Main SocketIOPacketCodecBenchmark -prof gc})
+ * from the test classpath; the GC profiler reports {@code gc.alloc.rate.norm}, the bytes allocated per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocketIOPacketCodecBenchmark {
+
+    private final String eventFrame = "42/market,17[\"quote\",{\"Symbol\":\"AAPL\",\"Bid\":100,\"Ask\":102}]";
+
+    private final SocketIOPacket packet = new SocketIOPacket();
+
+    private final HashMap<String, Object> quote = new HashMap<>();
+
+    {
+        quote.put("Symbol", "AAPL");
+        quote.put("Bid", 100);
+        quote.put("Ask", 102);
+    }
+
+    private final StubWebSocketSession webSocketSession = new StubWebSocketSession("s1", false);
+
+    private final ConcurrentHashMap<WebSocketSession, String> webSocketSessionMap = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, SocketIOConnectionHandler> handlerMap = new ConcurrentHashMap<>();
+
+    private final SocketIONamespaceIds namespaceIds = new SocketIONamespaceIds(256);
+
+    @Setup
+    public void setup() {
+
+        SocketIOOutboundQueue outboundQueue = new SocketIOOutboundQueue(webSocketSession, MoreExecutors.directExecutor(),
+                1024, 64, SocketIOOverflowPolicy.DropOldest, new SocketIOOutboundMetrics());
+        SocketIOSession session = new SocketIOSession("sid", webSocketSession, outboundQueue, null);
+        webSocketSession.getAttributes().put(SocketIOSession.ATTRIBUTE, session);
+
+        // a few other connections and namespaces so neither path resolves against a trivially small table
+        for (int i = 0; i < 1000; i++) {
+            webSocketSessionMap.put(new StubWebSocketSession(Integer.toString(i), false), Integer.toString(i));
+        }
+        webSocketSessionMap.put(webSocketSession, "sid");
+
+        for (String nameSpace : new String[]{"/", "/news", "/chat", "/market"}) {
+            SocketIOConnectionHandler handler = new SocketIOConnectionHandler(webSocketSession, outboundQueue, new SocketIORooms(), "sid", nameSpace);
+            handlerMap.put(String.format("%s#%s", "sid", nameSpace), handler);
+            session.putHandler(namespaceIds.intern(nameSpace), handler);
+        }
+    }
+
+    @Benchmark
+    public void decodeLegacy(Blackhole bh) {
+
+        String message = eventFrame;
+        int index = 0;
+
+        SocketIOPacketType packetType = SocketIOPacketType.parsePacketType(message.charAt(index) - 48);
+        ++index;
+
+        SocketIOMessageType messageType = SocketIOMessageType.parseMessageType(message.charAt(index) - 48);
+        index++;
+
+        StringBuilder sb = new StringBuilder();
+
+        if ('/' == message.charAt(index)) {
+            while (message.charAt(index) != ',') {
+                sb.append(message.charAt(index++));
+            }
+            index++;
+        }
+
+        StringBuilder idSb = new StringBuilder();
+
+        while (Character.isDigit(message.charAt(index))) {
+            idSb.append(message.charAt(index));
+            index++;
+        }
+
+        bh.consume(packetType);
+        bh.consume(messageType);
+        bh.consume(idSb.toString());
+        bh.consume(sb.toString());
+        bh.consume(message.substring(index));
+    }
+
+    @Benchmark
+    public void decodeCodec(Blackhole bh) {
+
+        SocketIOPacketCodec.decode(eventFrame, packet);
+
+        bh.consume(packet.getPacketType());
+        bh.consume(packet.getMessageType());
+        bh.consume(packet.getAckId());
+        bh.consume(packet.namespaceEquals("/market"));
+        bh.consume(packet.payload());
+    }
+
+    @Benchmark
+    public SocketIOConnectionHandler resolveHandlerLegacy() {
+
+        SocketIOPacketCodec.decode(eventFrame, packet);
+
+        String sessionId = webSocketSessionMap.get(webSocketSession);
+
+        return handlerMap.get(String.format("%s#%s", sessionId, packet.namespace()));
+    }
+
+    @Benchmark
+    public SocketIOConnectionHandler resolveHandlerSession() {
+
+        SocketIOPacketCodec.decode(eventFrame, packet);
+
+        return SocketIOSession.of(webSocketSession).getHandler(namespaceIds.lookup(packet));
+    }
+
+    @Benchmark
+    public String encodeConnectLegacy() {
+        return String.format("%d%d%s", 4, 0, "/market");
+    }
+
+    @Benchmark
+    public String encodeConnectCodec() {
+        return SocketIOPacketCodec.encodeConnect(SocketIOPacketCodec.buffer(), "/market").toString();
+    }
+
+    @Benchmark
+    public String encodeEventLegacy() {
+
+        ArrayList<Object> eventPayload = new ArrayList<>();
+        eventPayload.add("quote");
+        eventPayload.add(quote);
+
+        String json = new Gson().toJson(eventPayload);
+
+        return String.format("%d%d%s,%s", 4, 2, "/market", json);
+    }
+
+    @Benchmark
+    public String encodeEventCodec() {
+        return SocketIOPacketCodec.encodeEvent(SocketIOPacketCodec.buffer(), "/market", SocketIOPacket.NO_ACK, "quote", quote).toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SocketIOPacketCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
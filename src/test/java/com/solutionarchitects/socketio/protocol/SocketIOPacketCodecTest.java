@@ -0,0 +1,145 @@
+package com.solutionarchitects.socketio.protocol;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SocketIOPacketCodecTest {
+
+    private final SocketIOPacket packet = new SocketIOPacket();
+
+    @Test
+    public void decodesEventWithNamespaceAndAckId() {
+
+        assertTrue(SocketIOPacketCodec.decode("42/market,17[\"quote\",{\"Bid\":1}]", packet));
+
+        assertEquals(SocketIOPacketType.Message, packet.getPacketType());
+        assertEquals(SocketIOMessageType.Event, packet.getMessageType());
+        assertEquals("/market", packet.namespace());
+        assertTrue(packet.namespaceEquals("/market"));
+        assertEquals(17L, packet.getAckId());
+        assertEquals("[\"quote\",{\"Bid\":1}]", packet.payload());
+    }
+
+    @Test
+    public void decodesEventOnDefaultNamespace() {
+
+        assertTrue(SocketIOPacketCodec.decode("42[\"quote\"]", packet));
+
+        assertEquals("", packet.namespace());
+        assertFalse(packet.hasAckId());
+        assertEquals("[\"quote\"]", packet.payload());
+    }
+
+    @Test
+    public void decodesConnectWithQuery() {
+
+        assertTrue(SocketIOPacketCodec.decode("40/market?token=abc", packet));
+
+        assertEquals(SocketIOMessageType.Connect, packet.getMessageType());
+        assertEquals("/market", packet.namespace());
+        assertFalse(packet.hasPayload());
+    }
+
+    @Test
+    public void decodesEngineIOPacket() {
+
+        assertTrue(SocketIOPacketCodec.decode("2probe", packet));
+
+        assertEquals(SocketIOPacketType.Ping, packet.getPacketType());
+        assertEquals("probe", packet.payload());
+    }
+
+    @Test
+    public void rejectsMalformedFrames() {
+
+        assertFalse(SocketIOPacketCodec.decode("", packet));
+        assertFalse(SocketIOPacketCodec.decode("9", packet));
+        assertFalse(SocketIOPacketCodec.decode("4", packet));
+        assertFalse(SocketIOPacketCodec.decode("49", packet));
+        assertFalse(SocketIOPacketCodec.decode("45x-[]", packet));
+    }
+
+    @Test
+    public void encodesMessages() {
+
+        assertEquals("40/market", SocketIOPacketCodec.encodeConnect(SocketIOPacketCodec.buffer(), "/market").toString());
+        assertEquals("40", SocketIOPacketCodec.encodeConnect(SocketIOPacketCodec.buffer(), "").toString());
+        assertEquals("3", SocketIOPacketCodec.encodePacket(SocketIOPacketCodec.buffer(), SocketIOPacketType.Pong, null).toString());
+
+        assertEquals("42/market,[\"quote\",{\"Bid\":1}]",
+                SocketIOPacketCodec.encodeEvent(SocketIOPacketCodec.buffer(), "/market", SocketIOPacket.NO_ACK, "quote",
+                        Collections.singletonMap("Bid", 1)).toString());
+
+        assertEquals("42[\"say \\\"hi\\\"\",null]",
+                SocketIOPacketCodec.encodeEvent(SocketIOPacketCodec.buffer(), "", SocketIOPacket.NO_ACK, "say \"hi\"", null).toString());
+
+        assertEquals("43/market,5[\"ok\"]",
+                SocketIOPacketCodec.encodeAck(SocketIOPacketCodec.buffer(), "/market", 5, "ok").toString());
+    }
+
+    @Test
+    public void encodesBinaryValuesAsAttachments() {
+
+        byte[] blob = {1, 2, 3};
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("name", "a.bin");
+        payload.put("data", blob);
+
+        List<ByteBuffer> attachments = new ArrayList<>();
+
+        assertEquals("451-/files,[\"upload\",{\"name\":\"a.bin\",\"data\":{\"_placeholder\":true,\"num\":0}}]",
+                SocketIOPacketCodec.encodeBinaryEvent(SocketIOPacketCodec.buffer(), "/files", SocketIOPacket.NO_ACK, "upload", payload, attachments).toString());
+        assertEquals(1, attachments.size());
+        blob[0] = 42;
+        assertEquals(42, attachments.get(0).get(0));
+
+        attachments.clear();
+
+        assertEquals("43/files,7[\"ok\"]",
+                SocketIOPacketCodec.encodeBinaryAck(SocketIOPacketCodec.buffer(), "/files", 7, attachments, "ok").toString());
+        assertTrue(attachments.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reassemblesBinaryEventFromFollowingFrames() {
+
+        assertTrue(SocketIOPacketCodec.decode("452-/files,3[\"upload\",{\"a\":{\"_placeholder\":true,\"num\":1},\"b\":[{\"_placeholder\":true,\"num\":0}]}]", packet));
+        assertEquals(SocketIOMessageType.BinaryEvent, packet.getMessageType());
+
+        SocketIOBinaryPacket binaryPacket = new SocketIOBinaryPacket(packet);
+
+        ByteBuffer first = ByteBuffer.wrap(new byte[]{4, 10, 11});
+        ByteBuffer second = ByteBuffer.wrap(new byte[]{4, 20});
+
+        assertFalse(binaryPacket.addAttachment(first));
+        assertTrue(binaryPacket.addAttachment(second));
+
+        List<Object> args = binaryPacket.args();
+        Map<String, Object> data = (Map<String, Object>) args.get(1);
+        ByteBuffer a = (ByteBuffer) data.get("a");
+        ByteBuffer b = (ByteBuffer) ((List<Object>) data.get("b")).get(0);
+
+        assertEquals("upload", args.get(0));
+        assertEquals("/files", binaryPacket.getNameSpace());
+        assertEquals(3L, binaryPacket.getAckId());
+        assertEquals(1, a.remaining());
+        assertEquals(20, a.get(0));
+        assertEquals(2, b.remaining());
+        assertEquals(11, b.get(1));
+
+        // attachments are views of the received frames, not copies
+        first.put(1, (byte) 99);
+        assertEquals(99, b.get(0));
+    }
+}
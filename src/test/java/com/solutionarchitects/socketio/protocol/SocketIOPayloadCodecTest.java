@@ -0,0 +1,50 @@
+package com.solutionarchitects.socketio.protocol;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SocketIOPayloadCodecTest {
+
+    @Test
+    public void encodesAndDecodesTextPayloads() {
+
+        StringBuilder payload = new StringBuilder();
+        SocketIOPayloadCodec.encodeText(payload, "2");
+        SocketIOPayloadCodec.encodeText(payload, "42[\"quote\",\"é\"]");
+        SocketIOPayloadCodec.encodeBinary(payload, ByteBuffer.wrap(new byte[]{4, 1, 2, 3}));
+
+        assertEquals("1:215:42[\"quote\",\"é\"]6:b4AQID", payload.toString());
+
+        List<Object> packets = SocketIOPayloadCodec.decodeText(payload);
+
+        assertEquals(3, packets.size());
+        assertEquals("2", packets.get(0));
+        assertEquals("42[\"quote\",\"é\"]", packets.get(1));
+        assertEquals(ByteBuffer.wrap(new byte[]{4, 1, 2, 3}), packets.get(2));
+    }
+
+    @Test
+    public void decodesBinaryPayloads() {
+
+        byte[] text = "42[\"a\"]".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(64);
+        payload.put((byte) 0).put((byte) 7).put((byte) 0xff).put(text);
+        payload.put((byte) 1).put((byte) 3).put((byte) 0xff).put(new byte[]{4, 9, 8});
+        payload.flip();
+
+        List<Object> packets = SocketIOPayloadCodec.decodeBinary(payload);
+
+        assertEquals(Arrays.<Object>asList("42[\"a\"]", ByteBuffer.wrap(new byte[]{4, 9, 8})), packets);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLengthsBeyondThePayload() {
+        SocketIOPayloadCodec.decodeText("9:2");
+    }
+}